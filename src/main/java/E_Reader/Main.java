@@ -1,6 +1,9 @@
 package E_Reader;
 
+import E_Reader.core.ComicArchive;
 import E_Reader.core.EpubLoader;
+import E_Reader.core.ImageLoader;
+import E_Reader.filemanager.FileManagerController;
 import E_Reader.ui.MainController;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -36,24 +39,18 @@ public class Main extends Application {
             var fileManagerController = mainController.getFileManagerController();
 
             // 設定檔案開啟回調 - 當用戶選擇檔案時啟動閱讀器
-            fileManagerController.initialize(file -> {
-                try {
-                    // 初始化主控制器
-                    mainController.initialize();
-
-                    // 關閉檔案管理器
-                    fileManagerStage.hide();
-
-                    // 顯示主閱讀器視窗
-                    primaryStage.show();
-
+            fileManagerController.initialize(new FileManagerController.FileOpenCallback() {
+                @Override
+                public void onFileOpen(java.io.File file) {
                     // 開啟選中的檔案（使用新的非阻塞方法）
-                    openSelectedFileAsync(file);
+                    showReader(primaryStage, fileManagerStage, file, () -> openSelectedFileAsync(file));
+                }
 
-                } catch (Exception ex) {
-                    System.err.println("開啟檔案失敗: " + ex.getMessage());
-                    ex.printStackTrace();
-                    showFileOpenError(primaryStage, ex, file.getName());
+                @Override
+                public void onFileOpen(java.io.File file, int page, long textOffset) {
+                    // 全文搜尋的結果：開啟後跳到符合的位置
+                    showReader(primaryStage, fileManagerStage, file,
+                            () -> mainController.openFileAt(file, page, textOffset));
                 }
             });
 
@@ -89,6 +86,29 @@ public class Main extends Application {
         }
     }
 
+    /**
+     * 初始化主控制器、關閉檔案管理器並顯示閱讀器視窗，再開啟選中的檔案
+     */
+    private void showReader(Stage primaryStage, Stage fileManagerStage, java.io.File file, Runnable open) {
+        try {
+            // 初始化主控制器
+            mainController.initialize();
+
+            // 關閉檔案管理器
+            fileManagerStage.hide();
+
+            // 顯示主閱讀器視窗
+            primaryStage.show();
+
+            open.run();
+
+        } catch (Exception ex) {
+            System.err.println("開啟檔案失敗: " + ex.getMessage());
+            ex.printStackTrace();
+            showFileOpenError(primaryStage, ex, file.getName());
+        }
+    }
+
     /**
      * 非阻塞方式處理選中的檔案
      */
@@ -112,6 +132,9 @@ public class Main extends Application {
         } else if (isImageFile(fileName)) {
             // 開啟圖片檔案
             openImageFile(file);
+        } else if (ComicArchive.isArchiveName(fileName)) {
+            // 開啟漫畫壓縮檔
+            mainController.openArchiveFromFile(file);
         } else {
             // 不支援的檔案格式，嘗試使用系統預設程式開啟
             openWithSystemDefault(file);
@@ -209,23 +232,11 @@ public class Main extends Application {
     }
 
     /**
-     * 開啟TXT檔案
+     * 開啟TXT檔案（以文字頁面顯示，頁面在需要時才解碼與排版）
      */
     private void openTextFile(java.io.File file) {
-        try {
-            var images = mainController.getTextLoader().loadImagesFromText(file);
-            if (!images.isEmpty()) {
-                mainController.getStateManager().setFileLoaded(file.getAbsolutePath(), false, false, images, null);
-                mainController.getImageViewer().setImages(images);
-                mainController.getPrimaryStage().setTitle("E_Reader - " + file.getName());
-
-                showSuccess("檔案開啟", "成功開啟 TXT檔案: " + file.getName());
-            } else {
-                showError("載入失敗", "TXT檔案中沒有可讀取的內容");
-            }
-        } catch (Exception ex) {
-            showError("無法載入 TXT 檔案", ex.getMessage());
-        }
+        // 視窗標題在背景開啟成功後才更新
+        mainController.openTextFile(file);
     }
 
     /**
@@ -301,10 +312,7 @@ public class Main extends Application {
      * 檢查是否為圖片檔案
      */
     private boolean isImageFile(String fileName) {
-        return fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") ||
-                fileName.endsWith(".png") || fileName.endsWith(".gif") ||
-                fileName.endsWith(".bmp") || fileName.endsWith(".tiff") ||
-                fileName.endsWith(".webp");
+        return ImageLoader.isSupportedImageName(fileName);
     }
 
     /**
@@ -350,41 +358,10 @@ public class Main extends Application {
     }
 
     /**
-     * 找到目標圖片檔案在圖片列表中的索引
+     * 找到目標圖片檔案在圖片列表中的索引（多頁TIFF為第一頁）
      */
     private int findImageIndex(java.io.File parentFolder, java.io.File targetFile, java.util.List<javafx.scene.image.Image> images) {
-        try {
-            // 獲取資料夾中所有支援的圖片檔案
-            java.io.File[] imageFiles = parentFolder.listFiles(this::isSupportedImageFile);
-            if (imageFiles == null) return -1;
-
-            // 按檔名排序（與ImageLoader中的排序方式一致）
-            java.util.Arrays.sort(imageFiles, java.util.Comparator.comparing(java.io.File::getName));
-
-            // 找到目標檔案的索引
-            for (int i = 0; i < imageFiles.length; i++) {
-                if (imageFiles[i].equals(targetFile)) {
-                    return i;
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("尋找圖片索引時發生錯誤: " + e.getMessage());
-        }
-        return -1;
-    }
-
-    /**
-     * 檢查檔案是否為支援的圖片格式
-     */
-    private boolean isSupportedImageFile(java.io.File file) {
-        if (file == null || !file.isFile()) {
-            return false;
-        }
-        String fileName = file.getName().toLowerCase();
-        return fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") ||
-                fileName.endsWith(".png") || fileName.endsWith(".gif") ||
-                fileName.endsWith(".bmp") || fileName.endsWith(".tiff") ||
-                fileName.endsWith(".webp");
+        return ImageLoader.indexOfFile(images, targetFile);
     }
 
     /**
@@ -0,0 +1,330 @@
+package E_Reader.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文字編碼偵測器 - 先檢查BOM，再從檔案中等距取樣固定數量的位元組區塊，
+ * 依UTF-8結構、Big5與GB18030的雙位元組結構與常用字分佈判斷編碼。
+ * 取樣量固定，偵測時間與檔案大小無關
+ */
+public class CharsetDetector {
+
+    // 取樣區塊數量與大小（最多讀取 SAMPLE_WINDOWS * WINDOW_SIZE 位元組）
+    private static final int SAMPLE_WINDOWS = 64;
+    private static final int WINDOW_SIZE = 8 * 1024;
+    // 檔案開頭額外取樣的大小
+    private static final int HEAD_SIZE = 64 * 1024;
+
+    public static final Charset BIG5 = charsetOrFallback("x-windows-950", "Big5");
+    public static final Charset GB18030 = charsetOrFallback("GB18030", "GBK");
+
+    // 中文常用字（繁簡兩種字形都列入），用來比較Big5與GB18030的常用字命中率
+    private static final String COMMON_CHARACTERS =
+            "的一是不了在人有我他這这個个們们中來来上大為为和國国地到以說说時时要就出會会可也你對对生能而子那得於于著着下自之年過过"
+            + "發发後后作裡里用道行所然家種种事成方多經经麼么去法學学如都同現现當当沒没動动面起看定天分還还進进好小部其些主樣样理心她本前開开"
+            + "但因只從从想實实日月水火山門门見见長长問问間间聽听話话手頭头眼聲声身氣气點点無无已再又很把被讓让給给向走回明知意情";
+
+    private static final boolean[] BIG5_COMMON = encodePairs(BIG5);
+    private static final boolean[] GB_COMMON = encodePairs(GB18030);
+
+    /**
+     * 偵測結果
+     */
+    public static class Result {
+        private final Charset charset;
+        private final int bomLength;
+
+        Result(Charset charset, int bomLength) {
+            this.charset = charset;
+            this.bomLength = bomLength;
+        }
+
+        public Charset getCharset() { return charset; }
+
+        /**
+         * BOM的位元組數，沒有BOM時為0
+         */
+        public int getBomLength() { return bomLength; }
+
+        @Override
+        public String toString() { return charset.name() + (bomLength > 0 ? " (BOM)" : ""); }
+    }
+
+    /**
+     * 偵測檔案的文字編碼
+     */
+    public static Result detect(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return detect(channel);
+        }
+    }
+
+    /**
+     * 偵測已開啟檔案的文字編碼，只讀取BOM與固定數量的取樣區塊
+     */
+    public static Result detect(FileChannel channel) throws IOException {
+        long size = channel.size();
+
+        byte[] head = read(channel, 0, (int) Math.min(4, size));
+        if (startsWith(head, 0xEF, 0xBB, 0xBF)) {
+            return new Result(StandardCharsets.UTF_8, 3);
+        }
+        if (startsWith(head, 0xFF, 0xFE)) {
+            return new Result(StandardCharsets.UTF_16LE, 2);
+        }
+        if (startsWith(head, 0xFE, 0xFF)) {
+            return new Result(StandardCharsets.UTF_16BE, 2);
+        }
+
+        Statistics statistics = new Statistics();
+        statistics.analyze(read(channel, 0, (int) Math.min(HEAD_SIZE, size)), false);
+
+        if (size > HEAD_SIZE) {
+            long stride = (size - HEAD_SIZE) / SAMPLE_WINDOWS;
+            for (int i = 0; i < SAMPLE_WINDOWS; i++) {
+                long position = HEAD_SIZE + i * stride;
+                int length = (int) Math.min(WINDOW_SIZE, size - position);
+                if (length <= 0) {
+                    break;
+                }
+                // 區塊從換行之後開始分析，避免從多位元組字元中間開始
+                statistics.analyze(read(channel, position, length), true);
+            }
+        }
+
+        return new Result(statistics.decide(), 0);
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position + buffer.position());
+            if (count < 0) {
+                break;
+            }
+        }
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 各編碼的結構統計
+     */
+    private static class Statistics {
+        long highBytes = 0;
+
+        long utf8Sequences = 0;
+        long utf8Invalid = 0;
+
+        long big5Pairs = 0;
+        long big5Invalid = 0;
+        long big5Common = 0;
+
+        long gbPairs = 0;
+        long gbInvalid = 0;
+        long gbCommon = 0;
+
+        void analyze(byte[] bytes, boolean skipToLineStart) {
+            int start = 0;
+            if (skipToLineStart) {
+                while (start < bytes.length && bytes[start] != '\n') {
+                    start++;
+                }
+                start++;
+            }
+            // 區塊結尾可能截斷多位元組字元，只分析到最後一個換行
+            int end = bytes.length;
+            if (skipToLineStart) {
+                while (end > start && bytes[end - 1] != '\n') {
+                    end--;
+                }
+            }
+            if (end <= start) {
+                return;
+            }
+
+            analyzeUtf8(bytes, start, end);
+            analyzeBig5(bytes, start, end);
+            analyzeGb18030(bytes, start, end);
+        }
+
+        private void analyzeUtf8(byte[] bytes, int start, int end) {
+            int i = start;
+            while (i < end) {
+                int b = bytes[i] & 0xFF;
+                if (b < 0x80) {
+                    i++;
+                    continue;
+                }
+                highBytes++;
+
+                int length;
+                if (b >= 0xC2 && b <= 0xDF) length = 2;
+                else if (b >= 0xE0 && b <= 0xEF) length = 3;
+                else if (b >= 0xF0 && b <= 0xF4) length = 4;
+                else {
+                    utf8Invalid++;
+                    i++;
+                    continue;
+                }
+
+                if (i + length > end) {
+                    break;
+                }
+                boolean valid = true;
+                for (int k = 1; k < length; k++) {
+                    if ((bytes[i + k] & 0xC0) != 0x80) {
+                        valid = false;
+                        break;
+                    }
+                }
+                if (valid) {
+                    utf8Sequences++;
+                    i += length;
+                } else {
+                    utf8Invalid++;
+                    i++;
+                }
+            }
+        }
+
+        private void analyzeBig5(byte[] bytes, int start, int end) {
+            int i = start;
+            while (i < end) {
+                int lead = bytes[i] & 0xFF;
+                if (lead < 0x80) {
+                    i++;
+                    continue;
+                }
+                if (lead < 0x81 || lead > 0xFE || i + 1 >= end) {
+                    big5Invalid++;
+                    i++;
+                    continue;
+                }
+                int trail = bytes[i + 1] & 0xFF;
+                if ((trail >= 0x40 && trail <= 0x7E) || (trail >= 0xA1 && trail <= 0xFE)) {
+                    big5Pairs++;
+                    if (BIG5_COMMON[(lead << 8) | trail]) {
+                        big5Common++;
+                    }
+                    i += 2;
+                } else {
+                    big5Invalid++;
+                    i++;
+                }
+            }
+        }
+
+        private void analyzeGb18030(byte[] bytes, int start, int end) {
+            int i = start;
+            while (i < end) {
+                int lead = bytes[i] & 0xFF;
+                if (lead < 0x80) {
+                    i++;
+                    continue;
+                }
+                if (lead < 0x81 || lead > 0xFE || i + 1 >= end) {
+                    gbInvalid++;
+                    i++;
+                    continue;
+                }
+                int second = bytes[i + 1] & 0xFF;
+                if (second >= 0x30 && second <= 0x39) {
+                    // 四位元組序列
+                    if (i + 3 < end && (bytes[i + 2] & 0xFF) >= 0x81 && (bytes[i + 2] & 0xFF) <= 0xFE
+                            && (bytes[i + 3] & 0xFF) >= 0x30 && (bytes[i + 3] & 0xFF) <= 0x39) {
+                        gbPairs++;
+                        i += 4;
+                    } else {
+                        gbInvalid++;
+                        i++;
+                    }
+                } else if (second >= 0x40 && second <= 0xFE && second != 0x7F) {
+                    gbPairs++;
+                    if (GB_COMMON[(lead << 8) | second]) {
+                        gbCommon++;
+                    }
+                    i += 2;
+                } else {
+                    gbInvalid++;
+                    i++;
+                }
+            }
+        }
+
+        Charset decide() {
+            // 純ASCII或完全符合UTF-8結構
+            if (highBytes == 0 || (utf8Invalid == 0 && utf8Sequences > 0)) {
+                return StandardCharsets.UTF_8;
+            }
+            // 少量錯誤（例如取樣區塊邊界）仍以UTF-8為主
+            if (utf8Invalid * 50 < utf8Sequences) {
+                return StandardCharsets.UTF_8;
+            }
+
+            double big5Score = score(big5Common, big5Pairs, big5Invalid);
+            double gbScore = score(gbCommon, gbPairs, gbInvalid);
+            if (big5Pairs == 0 && gbPairs == 0) {
+                return StandardCharsets.UTF_8;
+            }
+            return big5Score > gbScore ? BIG5 : GB18030;
+        }
+
+        /**
+         * 常用字命中率減去結構錯誤率
+         */
+        private static double score(long common, long pairs, long invalid) {
+            long total = pairs + invalid;
+            if (total == 0) {
+                return 0;
+            }
+            return (double) common / total - 2.0 * invalid / total;
+        }
+    }
+
+    /**
+     * 將常用字以指定編碼轉為雙位元組並記錄
+     */
+    private static boolean[] encodePairs(Charset charset) {
+        boolean[] table = new boolean[1 << 16];
+        for (int i = 0; i < COMMON_CHARACTERS.length(); i++) {
+            String character = COMMON_CHARACTERS.substring(i, i + 1);
+            if (!charset.newEncoder().canEncode(character)) {
+                continue;
+            }
+            byte[] bytes = character.getBytes(charset);
+            if (bytes.length == 2) {
+                table[((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF)] = true;
+            }
+        }
+        return table;
+    }
+
+    private static Charset charsetOrFallback(String name, String fallback) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return Charset.forName(fallback);
+        }
+    }
+}
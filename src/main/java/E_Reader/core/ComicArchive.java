@@ -0,0 +1,260 @@
+package E_Reader.core;
+
+import javafx.scene.image.Image;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * 漫畫壓縮檔（CBZ/ZIP）- 開啟時只讀取壓縮檔結尾的中央目錄，
+ * 圖片項目依自然順序排列（page2 在 page10 之前），
+ * 頁面顯示時才直接從項目的資料流解碼，不解壓縮到暫存檔
+ */
+public class ComicArchive implements Closeable {
+
+    // 原始像素數超過解碼尺寸的這個倍數時，以ImageIO取樣解碼
+    private static final int SUBSAMPLE_THRESHOLD = 4;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 自然排序：連續數字以數值比較，其餘字元不分大小寫
+     */
+    public static final Comparator<String> NATURAL_ORDER = ComicArchive::compareNatural;
+
+    private final File file;
+    private final ZipFile zipFile;
+    private final List<EntryPage> pages;
+
+    private ComicArchive(File file, ZipFile zipFile) {
+        this.file = file;
+        this.zipFile = zipFile;
+        this.pages = listPages();
+    }
+
+    /**
+     * 開啟壓縮檔，檔名不是UTF-8編碼時改以Big5讀取（常見於繁體中文系統建立的壓縮檔）
+     */
+    public static ComicArchive open(File file) throws IOException {
+        ZipFile zipFile;
+        try {
+            zipFile = new ZipFile(file, StandardCharsets.UTF_8);
+        } catch (ZipException e) {
+            zipFile = new ZipFile(file, CharsetDetector.BIG5);
+        }
+        return new ComicArchive(file, zipFile);
+    }
+
+    /**
+     * 是否為支援的壓縮檔名稱
+     */
+    public static boolean isArchiveName(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        return lowerName.endsWith(".cbz") || lowerName.endsWith(".zip");
+    }
+
+    private List<EntryPage> listPages() {
+        List<ZipEntry> entries = new ArrayList<>();
+        Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+        while (enumeration.hasMoreElements()) {
+            ZipEntry entry = enumeration.nextElement();
+            if (isPageEntry(entry)) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparing(ZipEntry::getName, NATURAL_ORDER));
+
+        List<EntryPage> result = new ArrayList<>(entries.size());
+        for (ZipEntry entry : entries) {
+            result.add(new EntryPage(entry));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * 略過資料夾、macOS的資源項目與隱藏檔
+     */
+    private static boolean isPageEntry(ZipEntry entry) {
+        if (entry.isDirectory()) {
+            return false;
+        }
+        String name = entry.getName();
+        if (name.startsWith("__MACOSX/") || name.contains("/__MACOSX/")) {
+            return false;
+        }
+        String baseName = name.substring(name.lastIndexOf('/') + 1);
+        return !baseName.startsWith(".") && ImageLoader.isSupportedImageName(baseName);
+    }
+
+    private static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                // 略過前導零後，位數較多的數值較大，位數相同時逐位比較
+                int startA = i;
+                int startB = j;
+                while (startA < a.length() - 1 && a.charAt(startA) == '0' && Character.isDigit(a.charAt(startA + 1))) startA++;
+                while (startB < b.length() - 1 && b.charAt(startB) == '0' && Character.isDigit(b.charAt(startB + 1))) startB++;
+                int endA = startA;
+                int endB = startB;
+                while (endA < a.length() && Character.isDigit(a.charAt(endA))) endA++;
+                while (endB < b.length() && Character.isDigit(b.charAt(endB))) endB++;
+
+                int lengthDiff = (endA - startA) - (endB - startB);
+                if (lengthDiff != 0) {
+                    return lengthDiff;
+                }
+                for (int k = 0; k < endA - startA; k++) {
+                    int diff = a.charAt(startA + k) - b.charAt(startB + k);
+                    if (diff != 0) {
+                        return diff;
+                    }
+                }
+                i = endA;
+                j = endB;
+                continue;
+            }
+
+            int diff = Character.toLowerCase(ca) - Character.toLowerCase(cb);
+            if (diff != 0) {
+                return diff;
+            }
+            i++;
+            j++;
+        }
+        int remaining = (a.length() - i) - (b.length() - j);
+        return remaining != 0 ? remaining : a.compareTo(b);
+    }
+
+    public File getFile() { return file; }
+    public List<EntryPage> getPages() { return pages; }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+
+    private ImageInputStream openImageStream(ZipEntry entry) throws IOException {
+        // 使用記憶體快取，ImageIO預設的檔案快取會建立暫存檔
+        return new MemoryCacheImageInputStream(openStream(entry));
+    }
+
+    private InputStream openStream(ZipEntry entry) throws IOException {
+        InputStream input = zipFile.getInputStream(entry);
+        if (input == null) {
+            throw new IOException("壓縮檔中找不到項目: " + entry.getName());
+        }
+        return new BufferedInputStream(input, STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * 壓縮檔中的一個圖片項目
+     */
+    public class EntryPage implements ImagePageList.RegionSource {
+        private final ZipEntry entry;
+        private volatile int[] size;
+
+        EntryPage(ZipEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getName() {
+            return entry.getName();
+        }
+
+        @Override
+        public int getSourceWidth() {
+            int[] known = getSize();
+            return known != null ? known[0] : 0;
+        }
+
+        @Override
+        public int getSourceHeight() {
+            int[] known = getSize();
+            return known != null ? known[1] : 0;
+        }
+
+        /**
+         * 原始尺寸只讀取一次項目開頭的檔頭
+         */
+        private int[] getSize() {
+            int[] known = size;
+            if (known == null) {
+                try (ImageInputStream input = openImageStream(entry)) {
+                    known = ImageDecoder.readSize(input, 0);
+                } catch (IOException e) {
+                    known = null;
+                }
+                size = known;
+            }
+            return known;
+        }
+
+        @Override
+        public Image decode(int maxWidth, int maxHeight) throws IOException {
+            int[] known = getSize();
+            String lowerName = entry.getName().toLowerCase();
+            boolean javaFxFormat = !lowerName.endsWith(".tif") && !lowerName.endsWith(".tiff")
+                    && !lowerName.endsWith(".webp");
+
+            if (!javaFxFormat || (known != null
+                    && (long) known[0] * known[1] > (long) maxWidth * maxHeight * SUBSAMPLE_THRESHOLD)) {
+                try (ImageInputStream input = openImageStream(entry)) {
+                    return ImageDecoder.toFxImage(ImageDecoder.decode(input, 0, null, maxWidth, maxHeight));
+                }
+            }
+
+            // JavaFX會把圖片放大到要求的尺寸，原圖較小時以原尺寸解碼
+            double requestedWidth = 0;
+            double requestedHeight = 0;
+            if (known == null || known[0] > maxWidth || known[1] > maxHeight) {
+                requestedWidth = maxWidth;
+                requestedHeight = maxHeight;
+            }
+            try (InputStream input = openStream(entry)) {
+                Image image = new Image(input, requestedWidth, requestedHeight, true, true);
+                if (image.isError()) {
+                    throw new IOException(image.getException() != null ? image.getException().getMessage() : "無法解碼");
+                }
+                return image;
+            }
+        }
+
+        @Override
+        public Image decodeRegion(int x, int y, int width, int height, int maxWidth, int maxHeight)
+                throws IOException {
+            try (ImageInputStream input = openImageStream(entry)) {
+                return ImageDecoder.toFxImage(ImageDecoder.decode(input, 0, new Rectangle(x, y, width, height),
+                        maxWidth, maxHeight));
+            }
+        }
+
+        /**
+         * 以整數倍取樣解碼整頁（不經過JavaFX，可在沒有啟動JavaFX的執行緒產生縮圖）
+         */
+        public BufferedImage decodeSampled(int maxWidth, int maxHeight) throws IOException {
+            try (ImageInputStream input = openImageStream(entry)) {
+                return ImageDecoder.decode(input, 0, null, maxWidth, maxHeight);
+            }
+        }
+    }
+}
@@ -0,0 +1,727 @@
+package E_Reader.core;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * DOCX文字文件 - 以StAX串流讀取壓縮檔中的word/document.xml，不建立DOM。
+ * 背景執行緒一次掃描取出段落文字並估算分頁，純文字依序寫入暫存檔並記錄各頁的位元組位移，
+ * 顯示時只讀取目前頁面的範圍，記憶體用量只與可見頁面有關。
+ * 標題段落前後加上空行、清單項目加上項目符號、表格以定位字元分隔儲存格；
+ * 粗體等字元格式在純文字模型中不保留
+ */
+public class DocxDocument implements PagedTextDocument {
+
+    private static final String DOCUMENT_ENTRY = "word/document.xml";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    // 掃描進度通知間隔（毫秒）
+    private static final long PROGRESS_INTERVAL_MS = 200;
+    // 已解碼頁面的快取數量
+    private static final int DECODED_PAGE_CACHE_SIZE = 8;
+    private static final String LIST_BULLET = "• ";
+
+    private final File file;
+    private final ZipFile zipFile;
+    private final ZipEntry documentEntry;
+    private final MappedTextDocument.PageSettings pageSettings;
+    private final File spillFile;
+    private final FileChannel spillChannel;
+
+    // 分頁起點在暫存檔中的位元組位移，pageStarts[i]為第i頁的起點
+    private volatile long[] pageStarts = new long[1024];
+    // 分頁起點在整份文件文字中的字元位置，與pageStarts對應
+    private volatile long[] pageTextStarts = new long[1024];
+    private volatile int pageStartCount = 0;
+    // 已寫入暫存檔的位元組數與字元數（由掃描執行緒更新）
+    private volatile long spilledBytes = 0;
+    private volatile long spilledChars = 0;
+
+    private volatile long scannedBytes = 0;
+    private volatile boolean scanFinished = false;
+    private volatile boolean closed = false;
+    private volatile ScanListener scanListener;
+    private Thread scanThread;
+    private final Object firstPageLock = new Object();
+
+    private final Map<Integer, String> decodedPages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > DECODED_PAGE_CACHE_SIZE;
+        }
+    };
+
+    private DocxDocument(File file, ZipFile zipFile, ZipEntry documentEntry,
+                         MappedTextDocument.PageSettings pageSettings) throws IOException {
+        this.file = file;
+        this.zipFile = zipFile;
+        this.documentEntry = documentEntry;
+        this.pageSettings = pageSettings;
+        this.spillFile = File.createTempFile("e_reader-docx-", ".txt");
+        this.spillFile.deleteOnExit();
+        this.spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * 開啟DOCX檔案並開始背景掃描，等到第一頁可用（或掃描結束）後返回
+     *
+     * @param file DOCX檔案
+     * @param pageSettings 分頁設定
+     * @return 文字文件
+     */
+    public static DocxDocument open(File file, MappedTextDocument.PageSettings pageSettings) throws IOException {
+        ZipFile zipFile = new ZipFile(file, StandardCharsets.UTF_8);
+        DocxDocument document;
+        try {
+            ZipEntry entry = zipFile.getEntry(DOCUMENT_ENTRY);
+            if (entry == null) {
+                throw new IOException("不是有效的DOCX檔案，找不到 " + DOCUMENT_ENTRY);
+            }
+            document = new DocxDocument(file, zipFile, entry, pageSettings);
+        } catch (IOException | RuntimeException e) {
+            zipFile.close();
+            throw e;
+        }
+        document.startScan();
+        document.awaitFirstPage();
+        return document;
+    }
+
+    /**
+     * 是否為DOCX檔名（舊版二進位的.doc不是壓縮檔，無法以此方式讀取）
+     */
+    public static boolean isDocxName(String fileName) {
+        return fileName.toLowerCase().endsWith(".docx");
+    }
+
+    private void startScan() {
+        addPageStart(0, 0);
+        scanThread = new Thread(this::scan, "docx-scan");
+        scanThread.setDaemon(true);
+        scanThread.setPriority(Thread.NORM_PRIORITY - 1);
+        scanThread.start();
+    }
+
+    private void awaitFirstPage() {
+        synchronized (firstPageLock) {
+            while (!scanFinished && pageStartCount < 2 && !closed) {
+                try {
+                    firstPageLock.wait(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void scan() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // 不處理DTD與外部實體
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try (InputStream input = new CountingInputStream(new BufferedInputStream(
+                zipFile.getInputStream(documentEntry), STREAM_BUFFER_SIZE));
+             OutputStream output = new BufferedOutputStream(new FileOutputStream(spillFile), STREAM_BUFFER_SIZE)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            try {
+                new BodyParser(new Paginator(output)).parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            if (!closed) {
+                System.err.println("DOCX檔案讀取失敗 " + file.getName() + ": " + e.getMessage());
+            }
+        } finally {
+            scannedBytes = Math.max(scannedBytes, documentEntry.getSize());
+            scanFinished = true;
+            synchronized (firstPageLock) {
+                firstPageLock.notifyAll();
+            }
+            notifyProgress(true);
+        }
+    }
+
+    private void addPageStart(long offset, long textOffset) {
+        long[] starts = pageStarts;
+        long[] textStarts = pageTextStarts;
+        if (pageStartCount == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+            textStarts = Arrays.copyOf(textStarts, textStarts.length * 2);
+            pageStarts = starts;
+            pageTextStarts = textStarts;
+        }
+        starts[pageStartCount] = offset;
+        textStarts[pageStartCount] = textOffset;
+        pageStartCount++;
+
+        if (pageStartCount == 2) {
+            synchronized (firstPageLock) {
+                firstPageLock.notifyAll();
+            }
+        }
+    }
+
+    private void notifyProgress(boolean finished) {
+        ScanListener listener = scanListener;
+        if (listener != null && !closed) {
+            listener.onScanProgress(getPageCount(), getScanProgress(), finished);
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        int count = pageStartCount;
+        return scanFinished ? count : Math.max(0, count - 1);
+    }
+
+    /**
+     * 取得指定頁面的文字，只讀取暫存檔中該頁的位元組範圍
+     *
+     * @param pageIndex 頁面索引
+     * @return 頁面文字
+     */
+    @Override
+    public String getPageText(int pageIndex) {
+        int count = getPageCount();
+        if (pageIndex < 0 || pageIndex >= count) {
+            return "";
+        }
+
+        synchronized (decodedPages) {
+            String cached = decodedPages.get(pageIndex);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long[] starts = pageStarts;
+        long start = starts[pageIndex];
+        long end = pageIndex + 1 < pageStartCount ? starts[pageIndex + 1] : spilledBytes;
+        String text;
+        try {
+            text = read(start, end);
+        } catch (IOException e) {
+            System.err.println("無法讀取文字頁面 " + (pageIndex + 1) + ": " + e.getMessage());
+            return "";
+        }
+
+        synchronized (decodedPages) {
+            decodedPages.put(pageIndex, text);
+        }
+        return text;
+    }
+
+    /**
+     * 以掃描時記錄的各頁起始字元位置找出頁面，不需要讀回頁面文字
+     *
+     * @return 頁碼，該位置尚未完成分頁或超出文件時回傳-1
+     */
+    @Override
+    public int getPageForTextOffset(long textOffset) {
+        // 先讀取頁數再讀取陣列，陣列只會換成較大的複本
+        boolean finished = scanFinished;
+        int count = getPageCount();
+        long[] textStarts = pageTextStarts;
+        if (textOffset < 0 || count == 0) {
+            return -1;
+        }
+        long end = finished ? spilledChars : textStarts[count];
+        if (textOffset >= end) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(textStarts, 0, count, textOffset);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    /**
+     * 頁面起點在文件文字中的字元位置
+     */
+    @Override
+    public long getPagePosition(int pageIndex) {
+        int count = getPageCount();
+        long[] textStarts = pageTextStarts;
+        if (count == 0) {
+            return 0;
+        }
+        return textStarts[Math.max(0, Math.min(pageIndex, count - 1))];
+    }
+
+    @Override
+    public int getPageForPosition(long position) {
+        return getPageForTextOffset(position);
+    }
+
+    private String read(long start, long end) throws IOException {
+        if (closed) {
+            throw new IOException("文件已關閉");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (spillChannel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public List<TextExtractor.PageText> getPages() {
+        return new PageList();
+    }
+
+    private class PageList extends AbstractList<TextExtractor.PageText> {
+        @Override
+        public TextExtractor.PageText get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("頁面索引超出範圍: " + index);
+            }
+            TextExtractor.PageText page = new TextExtractor.PageText();
+            page.setPageNumber(index);
+            page.setOriginalText(getPageText(index));
+            page.setTextSource(TextExtractor.TextSource.NATIVE);
+            return page;
+        }
+
+        @Override
+        public int size() {
+            return getPageCount();
+        }
+    }
+
+    @Override
+    public void setScanListener(ScanListener scanListener) {
+        this.scanListener = scanListener;
+        if (scanListener != null && scanFinished) {
+            scanListener.onScanProgress(getPageCount(), 1.0, true);
+        }
+    }
+
+    @Override
+    public double getScanProgress() {
+        long total = documentEntry.getSize();
+        return total <= 0 ? (scanFinished ? 1.0 : 0.0) : Math.min(1.0, (double) scannedBytes / total);
+    }
+
+    @Override
+    public boolean isScanFinished() { return scanFinished; }
+    @Override
+    public File getFile() { return file; }
+    public long getTextSize() { return spilledBytes; }
+    @Override
+    public MappedTextDocument.PageSettings getPageSettings() { return pageSettings; }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (decodedPages) {
+            decodedPages.clear();
+        }
+        try {
+            // 等待掃描執行緒寫完暫存檔後再刪除
+            if (scanThread != null && scanThread != Thread.currentThread()) {
+                scanThread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            spillChannel.close();
+            zipFile.close();
+        } catch (IOException e) {
+            System.err.println("關閉DOCX檔案失敗: " + e.getMessage());
+        }
+        if (!spillFile.delete()) {
+            spillFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * 計算已讀取的解壓縮位元組數，作為掃描進度
+     */
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                scannedBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("文件已關閉");
+            }
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                scannedBytes += count;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 分頁並把段落寫入暫存檔 - 與MappedTextDocument共用LinePaginator，
+     * 依實際字寬與斷行規則換行，分頁落在顯示行的起點
+     */
+    private class Paginator {
+        private final OutputStream output;
+        private final LinePaginator lines = new LinePaginator(pageSettings, this::breakLine);
+        private long position = 0;
+        // 已寫入的字元數，與頁面文字的字元位置一致
+        private long textPosition = 0;
+        private long lastProgress = System.currentTimeMillis();
+        // 正在寫入的行，以及其中已寫出的字元數
+        private String line = "";
+        private int written = 0;
+
+        Paginator(OutputStream output) {
+            this.output = output;
+        }
+
+        /**
+         * 寫入一個段落，段落中的換行各自成為一行
+         */
+        void writeParagraph(String paragraph) throws IOException {
+            int lineStart = 0;
+            for (int i = 0; i <= paragraph.length(); i++) {
+                if (i == paragraph.length() || paragraph.charAt(i) == '\n') {
+                    writeLine(paragraph.substring(lineStart, i));
+                    lineStart = i + 1;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                lastProgress = now;
+                notifyProgress(false);
+            }
+        }
+
+        private void writeLine(String text) throws IOException {
+            line = text;
+            written = 0;
+            lines.startLine(0);
+            for (int i = 0; i < text.length(); i += Character.charCount(text.codePointAt(i))) {
+                lines.append(text.codePointAt(i), i);
+            }
+            write(text.substring(written));
+            write("\n");
+        }
+
+        /**
+         * LinePaginator在行中的字元索引處分頁：先寫出分頁點之前的文字
+         */
+        private void breakLine(long index) throws IOException {
+            write(line.substring(written, (int) index));
+            written = (int) index;
+            pageBreak();
+        }
+
+        /**
+         * 在目前位置開始新頁（目前頁面沒有內容時不分頁）。
+         * 分頁前先寫出緩衝，讓前一頁的內容可以被讀取
+         */
+        void pageBreak() throws IOException {
+            lines.resetPage();
+            if (position == pageStarts[pageStartCount - 1]) {
+                return;
+            }
+            output.flush();
+            spilledBytes = position;
+            spilledChars = textPosition;
+            addPageStart(position, textPosition);
+        }
+
+        void finish() throws IOException {
+            output.flush();
+            spilledBytes = position;
+            spilledChars = textPosition;
+        }
+
+        private void write(String text) throws IOException {
+            if (text.isEmpty()) {
+                return;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            output.write(bytes);
+            position += bytes.length;
+            textPosition += text.length();
+        }
+    }
+
+    /**
+     * 串流解析document.xml的本文，只處理段落、文字、換行與表格結構
+     */
+    private class BodyParser {
+        private final Paginator paginator;
+        private final StringBuilder paragraph = new StringBuilder();
+        private final StringBuilder cell = new StringBuilder();
+        private final StringBuilder row = new StringBuilder();
+
+        // 巢狀深度：文字方塊中的段落位於外層段落內，併入外層段落
+        private int paragraphDepth = 0;
+        private int tableDepth = 0;
+        private int runDepth = 0;
+        private int propertiesDepth = 0;
+        private boolean inText = false;
+        private boolean heading = false;
+        private boolean listItem = false;
+        private boolean pageBreakBefore = false;
+
+        BodyParser(Paginator paginator) {
+            this.paginator = paginator;
+        }
+
+        void parse(XMLStreamReader reader) throws XMLStreamException, IOException {
+            while (reader.hasNext() && !closed) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (isWordElement(reader)) {
+                        startElement(reader);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (isWordElement(reader)) {
+                        endElement(reader.getLocalName());
+                    }
+                } else if (inText && (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+                    paragraph.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            }
+            paginator.finish();
+        }
+
+        private boolean isWordElement(XMLStreamReader reader) {
+            String namespace = reader.getNamespaceURI();
+            return namespace != null && namespace.contains("wordprocessingml");
+        }
+
+        private void startElement(XMLStreamReader reader) throws IOException {
+            String name = reader.getLocalName();
+            switch (name) {
+                case "p":
+                    if (paragraphDepth == 0) {
+                        heading = false;
+                        listItem = false;
+                        pageBreakBefore = false;
+                    } else if (paragraph.length() > 0) {
+                        paragraph.append(' ');
+                    }
+                    paragraphDepth++;
+                    return;
+                case "tbl":
+                    tableDepth++;
+                    return;
+                case "r":
+                    runDepth++;
+                    return;
+                case "pPr":
+                case "rPr":
+                case "tblPr":
+                case "trPr":
+                case "tcPr":
+                case "sectPr":
+                    propertiesDepth++;
+                    return;
+                default:
+                    break;
+            }
+
+            if (propertiesDepth > 0) {
+                // 只取段落屬性中的樣式，巢狀段落沿用外層段落的設定
+                if (paragraphDepth == 1 && tableDepth == 0) {
+                    readParagraphProperty(reader, name);
+                }
+                return;
+            }
+            if (runDepth == 0) {
+                return;
+            }
+
+            switch (name) {
+                case "t":
+                    inText = true;
+                    break;
+                case "tab":
+                    paragraph.append('\t');
+                    break;
+                case "br":
+                    if ("page".equals(attribute(reader, "type")) && paragraphDepth == 1 && tableDepth == 0) {
+                        flushParagraph();
+                        paginator.pageBreak();
+                    } else {
+                        paragraph.append('\n');
+                    }
+                    break;
+                case "cr":
+                    paragraph.append('\n');
+                    break;
+                case "noBreakHyphen":
+                    paragraph.append('-');
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void readParagraphProperty(XMLStreamReader reader, String name) {
+            switch (name) {
+                case "pStyle":
+                    heading |= isHeadingStyle(attribute(reader, "val"));
+                    break;
+                case "outlineLvl":
+                    String level = attribute(reader, "val");
+                    heading |= level != null && !"9".equals(level);
+                    break;
+                case "numPr":
+                    listItem = true;
+                    break;
+                case "pageBreakBefore":
+                    String value = attribute(reader, "val");
+                    pageBreakBefore = value == null || !("0".equals(value) || "false".equals(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void endElement(String name) throws IOException {
+            switch (name) {
+                case "t":
+                    inText = false;
+                    break;
+                case "r":
+                    runDepth--;
+                    break;
+                case "pPr":
+                case "rPr":
+                case "tblPr":
+                case "trPr":
+                case "tcPr":
+                case "sectPr":
+                    propertiesDepth--;
+                    break;
+                case "p":
+                    paragraphDepth--;
+                    if (paragraphDepth > 0) {
+                        break;
+                    }
+                    if (tableDepth > 0) {
+                        appendToCell(paragraph);
+                        paragraph.setLength(0);
+                    } else {
+                        flushParagraph();
+                    }
+                    break;
+                case "tc":
+                    if (tableDepth == 1) {
+                        if (row.length() > 0) {
+                            row.append('\t');
+                        }
+                        row.append(cell);
+                        cell.setLength(0);
+                    }
+                    break;
+                case "tr":
+                    if (tableDepth == 1) {
+                        paginator.writeParagraph(row.toString());
+                        row.setLength(0);
+                    }
+                    break;
+                case "tbl":
+                    tableDepth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * 儲存格中的多個段落（包含巢狀表格）以空白連接
+         */
+        private void appendToCell(CharSequence text) {
+            if (text.length() == 0) {
+                return;
+            }
+            if (cell.length() > 0) {
+                cell.append(' ');
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                cell.append(c == '\n' || c == '\t' ? ' ' : c);
+            }
+        }
+
+        /**
+         * 寫出目前段落：標題前後加上空行，清單項目加上項目符號
+         */
+        private void flushParagraph() throws IOException {
+            if (pageBreakBefore) {
+                paginator.pageBreak();
+                pageBreakBefore = false;
+            }
+            if (heading && paragraph.length() > 0) {
+                paginator.writeParagraph("");
+                paginator.writeParagraph(paragraph.toString());
+                paginator.writeParagraph("");
+            } else if (listItem && paragraph.length() > 0) {
+                paginator.writeParagraph(LIST_BULLET + paragraph);
+            } else {
+                paginator.writeParagraph(paragraph.toString());
+            }
+            paragraph.setLength(0);
+        }
+
+        private String attribute(XMLStreamReader reader, String localName) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                if (localName.equals(reader.getAttributeLocalName(i))) {
+                    return reader.getAttributeValue(i);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 標題樣式：英文版的Heading1、Title等，中文版Word的標題樣式代號為數字
+     */
+    static boolean isHeadingStyle(String styleId) {
+        if (styleId == null || styleId.isEmpty()) {
+            return false;
+        }
+        String lower = styleId.toLowerCase();
+        if (lower.startsWith("heading") || lower.equals("title") || lower.equals("subtitle")) {
+            return true;
+        }
+        return styleId.length() == 1 && styleId.charAt(0) >= '1' && styleId.charAt(0) <= '9';
+    }
+}
@@ -0,0 +1,574 @@
+package E_Reader.core;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * EPUB閱讀會話 - 開啟時只解析container.xml與OPF建立spine索引，
+ * 章節內容在需要時才從同一個ZipFile讀取和清理
+ */
+public class EpubBook implements Closeable {
+
+    // EPUB檔案結構常數
+    static final String MIMETYPE_FILE = "mimetype";
+    static final String CONTAINER_XML = "META-INF/container.xml";
+    static final String EPUB_MIMETYPE = "application/epub+zip";
+
+    static final String DC_NAMESPACE = "http://purl.org/dc/elements/1.1/";
+
+    // 已解析章節的快取數量（前後章節加上目前章節已足夠）
+    private static final int CHAPTER_CACHE_SIZE = 8;
+
+    /**
+     * 章節解析器 - 將章節的XHTML內容轉換為章節物件
+     */
+    @FunctionalInterface
+    public interface ChapterParser {
+        EpubLoader.Chapter parse(Reader content, int expectedLength, String chapterId) throws IOException;
+    }
+
+    private final File file;
+    private final long lastModified;
+    private final ZipFile zipFile;
+    private final ChapterParser chapterParser;
+
+    private String opfPath;
+    private String basePath = "";
+    private final List<SpineItem> spine = new ArrayList<>();
+    private final Map<String, ManifestItem> manifest = new HashMap<>();
+    private final Map<String, ManifestItem> manifestByPath = new HashMap<>();
+    private final Map<String, Integer> spineIndexByPath = new HashMap<>();
+    private String ncxId;
+    private String coverId;
+    private String title;
+    private final List<String> creators = new ArrayList<>();
+    private final List<String> subjects = new ArrayList<>();
+    private EpubTableOfContents tableOfContents;
+
+    private final Map<Integer, EpubLoader.Chapter> chapterCache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, EpubLoader.Chapter> eldest) {
+                    return size() > CHAPTER_CACHE_SIZE;
+                }
+            };
+
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "epub-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private volatile boolean closed = false;
+
+    private EpubBook(File file, ZipFile zipFile, ChapterParser chapterParser) {
+        this.file = file;
+        this.lastModified = file.lastModified();
+        this.zipFile = zipFile;
+        this.chapterParser = chapterParser;
+    }
+
+    /**
+     * 開啟EPUB檔案並建立spine索引
+     *
+     * @param file EPUB檔案
+     * @param chapterParser 章節解析器
+     * @return 已開啟的EPUB會話
+     * @throws IOException 如果檔案不是有效的EPUB
+     */
+    public static EpubBook open(File file, ChapterParser chapterParser) throws IOException {
+        if (file == null || !file.exists() || !file.isFile()) {
+            throw new IOException("EPUB檔案不存在或無法讀取: " + file);
+        }
+
+        ZipFile zipFile = new ZipFile(file);
+        EpubBook book = new EpubBook(file, zipFile, chapterParser);
+        try {
+            book.verifyMimetype();
+            book.parseContainer();
+            book.parsePackageDocument();
+        } catch (IOException e) {
+            book.close();
+            throw e;
+        } catch (Exception e) {
+            book.close();
+            throw new IOException("解析EPUB檔案時發生錯誤: " + e.getMessage(), e);
+        }
+
+        if (book.spine.isEmpty()) {
+            book.close();
+            throw new IOException("EPUB檔案中沒有可讀取的內容");
+        }
+
+        return book;
+    }
+
+    private void verifyMimetype() throws IOException {
+        ZipEntry mimetypeEntry = zipFile.getEntry(MIMETYPE_FILE);
+        if (mimetypeEntry != null) {
+            try (InputStream is = zipFile.getInputStream(mimetypeEntry)) {
+                String mimetype = new String(is.readAllBytes(), StandardCharsets.UTF_8).trim();
+                if (!EPUB_MIMETYPE.equals(mimetype)) {
+                    throw new IOException("不是有效的EPUB檔案: " + file.getName());
+                }
+            }
+        }
+    }
+
+    private void parseContainer() throws Exception {
+        ZipEntry containerEntry = zipFile.getEntry(CONTAINER_XML);
+        if (containerEntry == null) {
+            throw new IOException("找不到container.xml檔案");
+        }
+
+        try (InputStream is = zipFile.getInputStream(containerEntry)) {
+            XMLStreamReader reader = newStreamReader(is);
+            try {
+                while (reader.hasNext() && opfPath == null) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "rootfile".equals(reader.getLocalName())) {
+                        opfPath = attribute(reader, "full-path");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        if (opfPath == null || opfPath.isEmpty()) {
+            throw new IOException("container.xml中找不到rootfile");
+        }
+
+        int lastSlash = opfPath.lastIndexOf('/');
+        if (lastSlash > 0) {
+            basePath = opfPath.substring(0, lastSlash + 1);
+        }
+    }
+
+    private void parsePackageDocument() throws Exception {
+        ZipEntry opfEntry = zipFile.getEntry(opfPath);
+        if (opfEntry == null) {
+            throw new IOException("找不到OPF檔案: " + opfPath);
+        }
+
+        // 以串流方式讀取OPF，只保留manifest與spine需要的屬性，以及metadata中的標題、作者與主題
+        List<String> spineRefs = new ArrayList<>();
+        try (InputStream is = zipFile.getInputStream(opfEntry)) {
+            XMLStreamReader reader = newStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+
+                    String name = reader.getLocalName();
+                    if ("item".equals(name)) {
+                        String id = attribute(reader, "id");
+                        String href = attribute(reader, "href");
+                        if (!id.isEmpty() && !href.isEmpty()) {
+                            ManifestItem item = new ManifestItem(id, resolvePath(opfPath, decodeHref(href)),
+                                    attribute(reader, "media-type"), attribute(reader, "properties"));
+                            manifest.put(id, item);
+                            manifestByPath.put(item.getPath(), item);
+                        }
+                    } else if ("itemref".equals(name)) {
+                        spineRefs.add(attribute(reader, "idref"));
+                    } else if ("spine".equals(name)) {
+                        ncxId = attribute(reader, "toc");
+                    } else if ("meta".equals(name) && "cover".equals(attribute(reader, "name"))) {
+                        // EPUB2以metadata中的meta指向封面圖片的manifest項目
+                        coverId = attribute(reader, "content");
+                    } else if (DC_NAMESPACE.equals(reader.getNamespaceURI())
+                            && ("title".equals(name) || "creator".equals(name) || "subject".equals(name))) {
+                        String value = reader.getElementText().trim();
+                        if (value.isEmpty()) {
+                            continue;
+                        }
+                        if ("title".equals(name)) {
+                            if (title == null) {
+                                title = value;
+                            }
+                        } else {
+                            ("creator".equals(name) ? creators : subjects).add(value);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        for (String idref : spineRefs) {
+            ManifestItem item = manifest.get(idref);
+            ZipEntry entry = item != null ? zipFile.getEntry(item.getPath()) : null;
+            if (entry != null) {
+                spineIndexByPath.putIfAbsent(item.getPath(), spine.size());
+                spine.add(new SpineItem(spine.size(), idref, item.getPath(), entry.getSize()));
+            }
+        }
+    }
+
+    static XMLStreamReader newStreamReader(InputStream is) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory.createXMLStreamReader(is);
+    }
+
+    private static String attribute(XMLStreamReader reader, String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (localName.equals(reader.getAttributeLocalName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return "";
+    }
+
+    /**
+     * 解碼manifest中以URL編碼的路徑（保留'+'字元）
+     */
+    static String decodeHref(String href) {
+        try {
+            return URLDecoder.decode(href.replace("+", "%2B"), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return href;
+        }
+    }
+
+    /**
+     * 將相對於某個檔案的href解析為EPUB內的完整路徑（處理./與../，去除#片段）
+     *
+     * @param referencingPath 參照來源檔案的完整路徑
+     * @param href 相對路徑
+     * @return EPUB內的完整路徑
+     */
+    static String resolvePath(String referencingPath, String href) {
+        int fragment = href.indexOf('#');
+        if (fragment >= 0) {
+            href = href.substring(0, fragment);
+        }
+
+        Deque<String> segments = new ArrayDeque<>();
+        if (!href.startsWith("/")) {
+            int lastSlash = referencingPath.lastIndexOf('/');
+            if (lastSlash > 0) {
+                for (String segment : referencingPath.substring(0, lastSlash).split("/")) {
+                    segments.addLast(segment);
+                }
+            }
+        }
+        for (String segment : href.split("/")) {
+            if (segment.isEmpty() || ".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                segments.pollLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * 封面圖片在EPUB內的完整路徑。EPUB3以manifest的cover-image屬性標示，
+     * EPUB2以name="cover"的meta指向manifest項目；都沒有時改找ID或檔名含cover的圖片
+     *
+     * @return 封面圖片路徑，沒有封面時回傳null
+     */
+    public String getCoverPath() {
+        for (ManifestItem item : manifest.values()) {
+            if (isImage(item) && (" " + item.getProperties() + " ").contains(" cover-image ")) {
+                return item.getPath();
+            }
+        }
+        ManifestItem declared = coverId != null ? manifest.get(coverId) : null;
+        if (declared != null && isImage(declared)) {
+            return declared.getPath();
+        }
+        for (ManifestItem item : manifest.values()) {
+            if (isImage(item) && (item.getId().toLowerCase().contains("cover")
+                    || item.getPath().toLowerCase().contains("cover"))) {
+                return item.getPath();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isImage(ManifestItem item) {
+        return item.getMediaType() != null && item.getMediaType().startsWith("image/");
+    }
+
+    /**
+     * 依完整路徑查詢manifest項目
+     *
+     * @param path EPUB內的完整路徑
+     * @return manifest項目，若不存在則回傳null
+     */
+    public ManifestItem getManifestItemByPath(String path) {
+        return manifestByPath.get(path);
+    }
+
+    /**
+     * 依完整路徑查詢spine索引
+     *
+     * @param path EPUB內的完整路徑
+     * @return spine索引，不在spine中時回傳-1
+     */
+    public int getSpineIndex(String path) {
+        Integer index = spineIndexByPath.get(path);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 取得目錄索引，第一次呼叫時才解析導覽文件或NCX
+     *
+     * @return 目錄索引
+     */
+    public synchronized EpubTableOfContents getTableOfContents() {
+        if (tableOfContents == null) {
+            tableOfContents = EpubTableOfContents.parse(this, ncxId);
+        }
+        return tableOfContents;
+    }
+
+    /**
+     * 取得章節，若尚未解析則從ZIP讀取並清理
+     *
+     * @param index spine索引
+     * @return 章節物件
+     */
+    public EpubLoader.Chapter getChapter(int index) {
+        if (index < 0 || index >= spine.size()) {
+            throw new IndexOutOfBoundsException("章節索引超出範圍: " + index);
+        }
+
+        synchronized (chapterCache) {
+            EpubLoader.Chapter cached = chapterCache.get(index);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        EpubLoader.Chapter chapter = loadChapter(spine.get(index));
+
+        synchronized (chapterCache) {
+            EpubLoader.Chapter existing = chapterCache.putIfAbsent(index, chapter);
+            return existing != null ? existing : chapter;
+        }
+    }
+
+    /**
+     * 取得章節但不放入快取，供背景工作逐章掃描時使用，避免擠掉閱讀中的章節
+     *
+     * @param index spine索引
+     * @return 章節物件
+     */
+    public EpubLoader.Chapter peekChapter(int index) {
+        if (index < 0 || index >= spine.size()) {
+            throw new IndexOutOfBoundsException("章節索引超出範圍: " + index);
+        }
+
+        synchronized (chapterCache) {
+            EpubLoader.Chapter cached = chapterCache.get(index);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return loadChapter(spine.get(index));
+    }
+
+    private EpubLoader.Chapter loadChapter(SpineItem item) {
+        try {
+            ensureOpen();
+            ZipEntry entry = zipFile.getEntry(item.getPath());
+            try (Reader reader = new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8)) {
+                return chapterParser.parse(reader, (int) Math.min(Integer.MAX_VALUE, entry.getSize() / 2), item.getId());
+            }
+        } catch (Exception e) {
+            System.err.println("無法讀取章節 " + item.getId() + ": " + e.getMessage());
+            EpubLoader.Chapter errorChapter = new EpubLoader.Chapter();
+            errorChapter.setId(item.getId());
+            errorChapter.setTitle("錯誤章節: " + item.getId());
+            errorChapter.setContent("無法載入此章節內容");
+            return errorChapter;
+        }
+    }
+
+    /**
+     * 讀取ZIP中的資源
+     *
+     * @param path EPUB內的完整路徑
+     * @return 資源內容
+     * @throws IOException 如果找不到或無法讀取
+     */
+    public byte[] readEntry(String path) throws IOException {
+        ensureOpen();
+        ZipEntry entry = zipFile.getEntry(path);
+        if (entry == null) {
+            throw new IOException("EPUB中找不到資源: " + path);
+        }
+        try (InputStream is = zipFile.getInputStream(entry)) {
+            return is.readAllBytes();
+        }
+    }
+
+    /**
+     * 以串流開啟ZIP中的資源，呼叫者負責關閉
+     *
+     * @param path EPUB內的完整路徑
+     * @return 資源輸入串流
+     * @throws IOException 如果找不到或無法讀取
+     */
+    public InputStream openEntry(String path) throws IOException {
+        ensureOpen();
+        ZipEntry entry = zipFile.getEntry(path);
+        if (entry == null) {
+            throw new IOException("EPUB中找不到資源: " + path);
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * 在背景執行預取工作
+     *
+     * @param task 預取工作
+     */
+    public void prefetch(Runnable task) {
+        if (closed) return;
+        try {
+            prefetchExecutor.execute(() -> {
+                if (closed) return;
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    System.err.println("EPUB預取失敗: " + e.getMessage());
+                }
+            });
+        } catch (java.util.concurrent.RejectedExecutionException ignored) {
+            // 會話已關閉
+        }
+    }
+
+    /**
+     * 預取相鄰章節
+     *
+     * @param index 目前章節索引
+     */
+    public void prefetchAdjacent(int index) {
+        for (int adjacent : new int[]{index + 1, index - 1}) {
+            if (adjacent >= 0 && adjacent < spine.size()) {
+                prefetch(() -> getChapter(adjacent));
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("EPUB會話已關閉: " + file.getName());
+        }
+    }
+
+    /**
+     * 檢查會話是否仍對應到磁碟上的同一個檔案
+     */
+    public boolean isSameFile(File other) {
+        return !closed && other != null
+                && file.getAbsoluteFile().equals(other.getAbsoluteFile())
+                && lastModified == other.lastModified();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        prefetchExecutor.shutdownNow();
+        synchronized (chapterCache) {
+            chapterCache.clear();
+        }
+        try {
+            zipFile.close();
+        } catch (IOException e) {
+            System.err.println("關閉EPUB檔案時發生錯誤: " + e.getMessage());
+        }
+    }
+
+    // Getter 方法
+    public File getFile() { return file; }
+    public String getOpfPath() { return opfPath; }
+    /** OPF中第一個dc:title，沒有時為null */
+    public String getTitle() { return title; }
+    /** OPF中所有的dc:creator */
+    public List<String> getCreators() { return Collections.unmodifiableList(creators); }
+    /** OPF中所有的dc:subject */
+    public List<String> getSubjects() { return Collections.unmodifiableList(subjects); }
+    public String getBasePath() { return basePath; }
+    public int getChapterCount() { return spine.size(); }
+    public List<SpineItem> getSpine() { return Collections.unmodifiableList(spine); }
+    public Map<String, ManifestItem> getManifest() { return Collections.unmodifiableMap(manifest); }
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Spine項目 - 閱讀順序中的一個章節檔案
+     */
+    public static class SpineItem {
+        private final int index;
+        private final String id;
+        private final String path;
+        private final long size;
+
+        SpineItem(int index, String id, String path, long size) {
+            this.index = index;
+            this.id = id;
+            this.path = path;
+            this.size = size;
+        }
+
+        public int getIndex() { return index; }
+        public String getId() { return id; }
+        public String getPath() { return path; }
+
+        /**
+         * 章節檔案解壓縮後的大小（來自ZIP中央目錄，未知時為-1）
+         */
+        public long getSize() { return size; }
+    }
+
+    /**
+     * Manifest項目 - EPUB中的一個資源檔案
+     */
+    public static class ManifestItem {
+        private final String id;
+        private final String path;
+        private final String mediaType;
+        private final String properties;
+
+        ManifestItem(String id, String path, String mediaType, String properties) {
+            this.id = id;
+            this.path = path;
+            this.mediaType = mediaType;
+            this.properties = properties;
+        }
+
+        public String getId() { return id; }
+        public String getPath() { return path; }
+        public String getMediaType() { return mediaType; }
+        public String getProperties() { return properties; }
+    }
+}
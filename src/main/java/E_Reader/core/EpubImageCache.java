@@ -0,0 +1,214 @@
+package E_Reader.core;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * EPUB圖片快取 - 圖片依manifest解析，分頁時只讀取檔頭取得尺寸，
+ * 頁面顯示時才以接近顯示大小的取樣倍率解碼，解碼結果依記憶體用量共用快取
+ */
+public class EpubImageCache {
+
+    // 解碼圖片的記憶體上限
+    private static final long DEFAULT_MEMORY_BUDGET = 48L * 1024 * 1024;
+
+    private final EpubBook book;
+    private final long memoryBudget;
+    private long usedBytes = 0;
+
+    // 圖片尺寸（只讀檔頭），無法讀取的圖片記錄為null
+    private final Map<String, Dimension> sizes = new HashMap<>();
+    private final LinkedHashMap<String, BufferedImage> decoded = new LinkedHashMap<>(16, 0.75f, true);
+
+    public EpubImageCache(EpubBook book) {
+        this(book, DEFAULT_MEMORY_BUDGET);
+    }
+
+    public EpubImageCache(EpubBook book, long memoryBudget) {
+        this.book = book;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * 取得以章節檔案為基準解析圖片路徑的圖片來源
+     *
+     * @param chapterPath 章節在EPUB內的完整路徑
+     * @return 供分頁器使用的圖片來源
+     */
+    public EpubPaginator.ImageProvider forChapter(String chapterPath) {
+        return new EpubPaginator.ImageProvider() {
+            @Override
+            public Dimension getImageSize(String source) {
+                String path = resolve(chapterPath, source);
+                return path != null ? EpubImageCache.this.getImageSize(path) : null;
+            }
+
+            @Override
+            public BufferedImage getImage(String source, int width, int height) {
+                String path = resolve(chapterPath, source);
+                return path != null ? EpubImageCache.this.getImage(path, width, height) : null;
+            }
+        };
+    }
+
+    /**
+     * 將章節中的圖片參照解析為manifest中的圖片路徑
+     *
+     * @return 圖片的完整路徑，不是manifest中的圖片時回傳null
+     */
+    private String resolve(String chapterPath, String source) {
+        if (source == null || source.isEmpty() || source.startsWith("data:") || source.contains("://")) {
+            return null;
+        }
+
+        String path = EpubBook.resolvePath(chapterPath, EpubBook.decodeHref(source));
+        EpubBook.ManifestItem item = book.getManifestItemByPath(path);
+        if (item == null || !item.getMediaType().startsWith("image/")) {
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * 取得圖片原始尺寸，只讀取檔頭不解碼像素
+     *
+     * @param path 圖片完整路徑
+     * @return 圖片尺寸，無法讀取時回傳null
+     */
+    public Dimension getImageSize(String path) {
+        synchronized (sizes) {
+            if (sizes.containsKey(path)) {
+                return sizes.get(path);
+            }
+        }
+
+        Dimension size = null;
+        try (InputStream is = book.openEntry(path);
+             ImageInputStream iis = ImageIO.createImageInputStream(is)) {
+            ImageReader reader = firstReader(iis);
+            if (reader != null) {
+                try {
+                    reader.setInput(iis, true, true);
+                    size = new Dimension(reader.getWidth(0), reader.getHeight(0));
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("無法讀取EPUB圖片尺寸 " + path + ": " + e.getMessage());
+        }
+
+        synchronized (sizes) {
+            sizes.put(path, size);
+        }
+        return size;
+    }
+
+    /**
+     * 取得接近指定顯示大小的圖片，以整數倍率取樣解碼
+     *
+     * @param path 圖片完整路徑
+     * @param width 顯示寬度
+     * @param height 顯示高度
+     * @return 解碼後的圖片（尺寸不小於顯示大小），失敗時回傳null
+     */
+    public BufferedImage getImage(String path, int width, int height) {
+        Dimension size = getImageSize(path);
+        if (size == null || width <= 0 || height <= 0) {
+            return null;
+        }
+
+        int subsampling = Math.max(1, Math.min(size.width / width, size.height / height));
+        String key = path + '@' + subsampling;
+        synchronized (decoded) {
+            BufferedImage cached = decoded.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        BufferedImage image = decode(path, subsampling);
+        if (image == null) {
+            return null;
+        }
+
+        synchronized (decoded) {
+            BufferedImage existing = decoded.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            decoded.put(key, image);
+            usedBytes += estimateBytes(image);
+            evictOverBudget(key);
+        }
+        return image;
+    }
+
+    private BufferedImage decode(String path, int subsampling) {
+        try (InputStream is = book.openEntry(path);
+             ImageInputStream iis = ImageIO.createImageInputStream(is)) {
+            ImageReader reader = firstReader(iis);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(iis, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            System.err.println("無法解碼EPUB圖片 " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static ImageReader firstReader(ImageInputStream iis) {
+        if (iis == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    /**
+     * 超出記憶體上限時移除最久未使用的圖片（保留剛放入的圖片）
+     */
+    private void evictOverBudget(String keepKey) {
+        Iterator<Map.Entry<String, BufferedImage>> iterator = decoded.entrySet().iterator();
+        while (usedBytes > memoryBudget && iterator.hasNext()) {
+            Map.Entry<String, BufferedImage> eldest = iterator.next();
+            if (eldest.getKey().equals(keepKey)) {
+                continue;
+            }
+            usedBytes -= estimateBytes(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    private static long estimateBytes(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * 清除所有解碼的圖片
+     */
+    public void clear() {
+        synchronized (decoded) {
+            decoded.clear();
+            usedBytes = 0;
+        }
+    }
+}
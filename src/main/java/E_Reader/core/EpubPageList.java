@@ -0,0 +1,508 @@
+package E_Reader.core;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * EPUB頁面列表 - 以整本書的頁碼存取渲染後的頁面
+ *
+ * 目前閱讀的章節在存取時立即分頁，其餘章節在背景從目前位置向外逐章分頁；
+ * 尚未分頁的章節依檔案大小估計頁數。分頁結果依字型大小與頁面尺寸快取，
+ * 頁數改變時透過監聽器通知舊頁碼到新頁碼的對應方式
+ */
+public class EpubPageList extends AbstractList<Image> implements PageDimensions {
+
+    // 已渲染頁面的快取數量
+    private static final int RENDERED_PAGE_CACHE_SIZE = 6;
+    // 保留分頁結果的排版設定數量（切回先前的字型大小時不必重新分頁）
+    private static final int LAYOUT_SETTINGS_CACHE_SIZE = 3;
+
+    /**
+     * 分頁結果改變的監聽器
+     */
+    @FunctionalInterface
+    public interface LayoutListener {
+        /**
+         * @param remap 將改變前的頁碼對應到改變後的頁碼
+         */
+        void onLayoutChanged(IntUnaryOperator remap);
+    }
+
+    private final EpubBook book;
+    private final EpubImageCache imageCache;
+    private EpubPaginator paginator;
+    private int generation = 0;
+
+    // 目前排版設定下每個章節的分頁結果（null表示尚未分頁）與頁數
+    private long[][] layouts;
+    private int[] pageCounts;
+    private int[] pageStarts;
+    private boolean pageStartsDirty = true;
+    private double bytesPerPage;
+    // 已分頁章節的原始大小與頁數總和，用於校正估計值
+    private long measuredBytes;
+    private long measuredPages;
+    private int measuredChapters;
+    private boolean backgroundRunning = false;
+    private int focusChapter = 0;
+
+    private final Map<EpubPaginator, long[][]> layoutCache =
+            new LinkedHashMap<>(4, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<EpubPaginator, long[][]> eldest) {
+                    return size() > LAYOUT_SETTINGS_CACHE_SIZE;
+                }
+            };
+
+    private final Map<Long, Image> renderedPages =
+            new LinkedHashMap<>(8, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+                    return size() > RENDERED_PAGE_CACHE_SIZE;
+                }
+            };
+
+    private volatile LayoutListener layoutListener;
+
+    public EpubPageList(EpubBook book, EpubPaginator paginator) {
+        this.book = book;
+        this.imageCache = new EpubImageCache(book);
+        this.pageCounts = new int[book.getChapterCount()];
+        applyPaginator(paginator, null);
+    }
+
+    @Override
+    public Image get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("頁面索引超出範圍: " + index);
+        }
+
+        int chapter;
+        int localPage;
+        int currentGeneration;
+        EpubPaginator currentPaginator;
+        synchronized (this) {
+            chapter = chapterOf(index);
+            localPage = index - pageStarts[chapter];
+            focusChapter = chapter;
+            currentGeneration = generation;
+            currentPaginator = paginator;
+        }
+
+        // 目前章節優先分頁，分頁後頁數可能與估計不同，超出範圍時停在最後一頁
+        long[] starts = ensureLayout(chapter, currentGeneration, currentPaginator);
+        localPage = Math.min(localPage, starts.length - 1);
+
+        Image image = renderIfAbsent(chapter, localPage, starts, currentGeneration, currentPaginator);
+        prefetchNext(chapter, localPage, starts.length, currentGeneration, currentPaginator);
+        startBackgroundPagination();
+        return image;
+    }
+
+    @Override
+    public synchronized int size() {
+        updatePageStarts();
+        return pageStarts[pageCounts.length];
+    }
+
+    /**
+     * 改變字型大小並重新分頁，目前閱讀位置所在章節會在下次存取時優先分頁
+     *
+     * @param fontSize 新的字型大小
+     */
+    public void setFontSize(int fontSize) {
+        EpubPaginator current = getPaginator();
+        if (current.getFontSize() == fontSize) {
+            return;
+        }
+
+        EpubPaginator next = new EpubPaginator(fontSize, current.getWidth(), current.getHeight());
+        IntUnaryOperator remap;
+        synchronized (this) {
+            int[] oldStarts = snapshotPageStarts();
+            applyPaginator(next, current);
+            remap = proportionalRemap(oldStarts, snapshotPageStarts(), -1);
+        }
+        notifyLayoutChanged(remap);
+    }
+
+    /**
+     * 取得頁碼所在的章節索引
+     */
+    public synchronized int getChapterIndex(int pageIndex) {
+        return chapterOf(Math.max(0, Math.min(pageIndex, size() - 1)));
+    }
+
+    /**
+     * 取得章節第一頁的頁碼
+     */
+    public synchronized int getChapterStartPage(int chapterIndex) {
+        updatePageStarts();
+        return pageStarts[chapterIndex];
+    }
+
+    /**
+     * 取得章節內錨點所在的頁碼，只會讀取和分頁目標章節，
+     * 中間的章節維持估計頁數，因此跳到任何章節的成本相同
+     *
+     * @param chapterIndex spine索引
+     * @param fragment 章節內的錨點ID，為null時回傳章節第一頁
+     * @return 整本書的頁碼
+     */
+    public int getPageForLocation(int chapterIndex, String fragment) {
+        int currentGeneration;
+        EpubPaginator currentPaginator;
+        synchronized (this) {
+            focusChapter = chapterIndex;
+            currentGeneration = generation;
+            currentPaginator = paginator;
+        }
+
+        long[] starts = ensureLayout(chapterIndex, currentGeneration, currentPaginator);
+        int localPage = 0;
+        StyledText styledText = book.getChapter(chapterIndex).getStyledText();
+        int anchorBlock = styledText != null ? styledText.getAnchorBlock(fragment) : -1;
+        if (anchorBlock > 0) {
+            // 找出起始區塊不晚於錨點區塊的最後一頁
+            long anchor = (long) anchorBlock << 32 | (styledText.getBlocks().get(anchorBlock).getStart() & 0xFFFFFFFFL);
+            while (localPage + 1 < starts.length && starts[localPage + 1] <= anchor) {
+                localPage++;
+            }
+        }
+
+        synchronized (this) {
+            updatePageStarts();
+            return pageStarts[chapterIndex] + Math.min(localPage, pageCounts[chapterIndex] - 1);
+        }
+    }
+
+    /**
+     * 是否所有章節都已完成分頁（頁碼不再是估計值）
+     */
+    public synchronized boolean isFullyPaginated() {
+        for (long[] layout : layouts) {
+            if (layout == null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 所有頁面都以目前排版設定的頁面尺寸渲染
+     */
+    @Override
+    public double getPageWidth(int index) { return getPaginator().getWidth(); }
+
+    @Override
+    public double getPageHeight(int index) { return getPaginator().getHeight(); }
+
+    public synchronized EpubPaginator getPaginator() { return paginator; }
+    public EpubBook getBook() { return book; }
+    public int getFontSize() { return getPaginator().getFontSize(); }
+
+    public void setLayoutListener(LayoutListener layoutListener) {
+        this.layoutListener = layoutListener;
+    }
+
+    /**
+     * 切換排版設定，沿用快取的分頁結果，其餘章節重新估計頁數
+     */
+    private void applyPaginator(EpubPaginator next, EpubPaginator previous) {
+        double previousBytesPerPage = bytesPerPage;
+        boolean previousCalibrated = measuredPages > 0;
+
+        paginator = next;
+        generation++;
+        layouts = layoutCache.computeIfAbsent(next, key -> new long[pageCounts.length][]);
+        synchronized (renderedPages) {
+            renderedPages.clear();
+        }
+
+        measuredBytes = 0;
+        measuredPages = 0;
+        measuredChapters = 0;
+        for (int i = 0; i < layouts.length; i++) {
+            if (layouts[i] != null) {
+                recordMeasurement(i, layouts[i].length);
+            }
+        }
+
+        // 沒有快取的分頁結果時，已校正的估計值依字型面積比例換算，否則使用理論值
+        if (measuredPages > 0) {
+            bytesPerPage = Math.max(1.0, measuredBytes / (double) measuredPages);
+        } else if (previous != null && previousCalibrated) {
+            double scale = (double) previous.getFontSize() / next.getFontSize();
+            bytesPerPage = previousBytesPerPage * scale * scale;
+        } else {
+            bytesPerPage = next.estimateBytesPerPage();
+        }
+        reestimate();
+        backgroundRunning = false;
+    }
+
+    private void recordMeasurement(int chapter, int pages) {
+        long size = book.getSpine().get(chapter).getSize();
+        if (size > 0) {
+            measuredBytes += size;
+            measuredPages += pages;
+            measuredChapters++;
+        }
+    }
+
+    private long[] ensureLayout(int chapter, int expectedGeneration, EpubPaginator expectedPaginator) {
+        synchronized (this) {
+            if (generation == expectedGeneration && layouts[chapter] != null) {
+                return layouts[chapter];
+            }
+        }
+
+        long[] starts = paginateChapter(chapter, expectedPaginator, false);
+        installLayout(chapter, starts, expectedGeneration);
+        return starts;
+    }
+
+    private long[] paginateChapter(int chapter, EpubPaginator chapterPaginator, boolean background) {
+        EpubLoader.Chapter content = background ? book.peekChapter(chapter) : book.getChapter(chapter);
+        if (content.getStyledText() == null) {
+            return new long[]{0};
+        }
+        return chapterPaginator.paginate(content.getStyledText(), imagesFor(chapter));
+    }
+
+    /**
+     * 記錄章節的分頁結果，頁數與估計不同時通知監聽器
+     */
+    private void installLayout(int chapter, long[] starts, int expectedGeneration) {
+        IntUnaryOperator remap = null;
+        synchronized (this) {
+            if (generation != expectedGeneration) {
+                return;
+            }
+            if (layouts[chapter] != null) {
+                return;
+            }
+
+            layouts[chapter] = starts;
+            recordMeasurement(chapter, starts.length);
+
+            // 在第1、4、16、64...個章節分頁完成時重新校正其餘章節的頁數估計，
+            // 避免每完成一章就讓所有估計頁碼跳動
+            if (measuredPages > 0 && Integer.bitCount(measuredChapters) == 1
+                    && Integer.numberOfTrailingZeros(measuredChapters) % 2 == 0) {
+                bytesPerPage = Math.max(1.0, measuredBytes / (double) measuredPages);
+                int[] oldStarts = snapshotPageStarts();
+                reestimate();
+                remap = proportionalRemap(oldStarts, snapshotPageStarts(), chapter);
+            }
+
+            if (remap == null && pageCounts[chapter] != starts.length) {
+                updatePageStarts();
+                int chapterStart = pageStarts[chapter];
+                int oldCount = pageCounts[chapter];
+                int newCount = starts.length;
+                pageCounts[chapter] = newCount;
+                pageStartsDirty = true;
+                remap = index -> {
+                    if (index < chapterStart) return index;
+                    if (index < chapterStart + oldCount) {
+                        return chapterStart + Math.min(index - chapterStart, newCount - 1);
+                    }
+                    return index + newCount - oldCount;
+                };
+            }
+        }
+
+        if (remap != null) {
+            notifyLayoutChanged(remap);
+        }
+    }
+
+    /**
+     * 依目前的估計值重設尚未分頁章節的頁數
+     */
+    private void reestimate() {
+        List<EpubBook.SpineItem> spine = book.getSpine();
+        long knownBytes = 0;
+        int knownItems = 0;
+        for (EpubBook.SpineItem item : spine) {
+            if (item.getSize() > 0) {
+                knownBytes += item.getSize();
+                knownItems++;
+            }
+        }
+        long averageSize = knownItems > 0 ? knownBytes / knownItems : 0;
+
+        for (int i = 0; i < pageCounts.length; i++) {
+            if (layouts[i] != null) {
+                pageCounts[i] = layouts[i].length;
+            } else {
+                long size = spine.get(i).getSize() > 0 ? spine.get(i).getSize() : averageSize;
+                pageCounts[i] = (int) Math.max(1, Math.round(size / bytesPerPage));
+            }
+        }
+        pageStartsDirty = true;
+    }
+
+    /**
+     * 在背景從目前章節向外逐章分頁，每次只處理一章，讓章節預取可以穿插執行
+     */
+    private void startBackgroundPagination() {
+        int currentGeneration;
+        synchronized (this) {
+            if (backgroundRunning) {
+                return;
+            }
+            backgroundRunning = true;
+            currentGeneration = generation;
+        }
+        book.prefetch(() -> paginateNextChapter(currentGeneration));
+    }
+
+    private void paginateNextChapter(int expectedGeneration) {
+        int chapter;
+        EpubPaginator currentPaginator;
+        synchronized (this) {
+            if (generation != expectedGeneration) {
+                return;
+            }
+            chapter = nextUnpaginatedChapter();
+            if (chapter < 0) {
+                backgroundRunning = false;
+                return;
+            }
+            currentPaginator = paginator;
+        }
+
+        installLayout(chapter, paginateChapter(chapter, currentPaginator, true), expectedGeneration);
+        book.prefetch(() -> paginateNextChapter(expectedGeneration));
+    }
+
+    private int nextUnpaginatedChapter() {
+        for (int i = focusChapter; i < layouts.length; i++) {
+            if (layouts[i] == null) return i;
+        }
+        for (int i = focusChapter - 1; i >= 0; i--) {
+            if (layouts[i] == null) return i;
+        }
+        return -1;
+    }
+
+    private Image renderIfAbsent(int chapter, int localPage, long[] starts,
+                                 int expectedGeneration, EpubPaginator pagePaginator) {
+        long key = ((long) chapter << 32) | localPage;
+        synchronized (renderedPages) {
+            Image cached = renderedPages.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Image image = renderPage(book.getChapter(chapter), starts[localPage], imagesFor(chapter), pagePaginator);
+
+        synchronized (this) {
+            if (generation != expectedGeneration) {
+                return image;
+            }
+            synchronized (renderedPages) {
+                Image existing = renderedPages.putIfAbsent(key, image);
+                return existing != null ? existing : image;
+            }
+        }
+    }
+
+    private void prefetchNext(int chapter, int localPage, int chapterPages,
+                              int expectedGeneration, EpubPaginator pagePaginator) {
+        if (localPage + 1 < chapterPages) {
+            book.prefetch(() -> {
+                long[] starts = ensureLayout(chapter, expectedGeneration, pagePaginator);
+                if (localPage + 1 < starts.length) {
+                    renderIfAbsent(chapter, localPage + 1, starts, expectedGeneration, pagePaginator);
+                }
+            });
+        } else if (chapter + 1 < pageCounts.length) {
+            book.prefetch(() -> {
+                long[] starts = ensureLayout(chapter + 1, expectedGeneration, pagePaginator);
+                renderIfAbsent(chapter + 1, 0, starts, expectedGeneration, pagePaginator);
+            });
+        }
+    }
+
+    /**
+     * 渲染頁面，失敗時回傳錯誤頁面
+     */
+    private Image renderPage(EpubLoader.Chapter chapter, long pageStart,
+                             EpubPaginator.ImageProvider images, EpubPaginator pagePaginator) {
+        try {
+            if (chapter.getStyledText() == null) {
+                return SwingFXUtils.toFXImage(pagePaginator.renderMessage("無法載入章節: " + chapter.getTitle()), null);
+            }
+            return SwingFXUtils.toFXImage(pagePaginator.renderPage(chapter.getStyledText(), pageStart, images), null);
+        } catch (Exception e) {
+            System.err.println("無法渲染章節: " + chapter.getTitle() + " - " + e.getMessage());
+            return SwingFXUtils.toFXImage(pagePaginator.renderMessage("無法載入章節: " + chapter.getTitle()), null);
+        }
+    }
+
+    private EpubPaginator.ImageProvider imagesFor(int chapter) {
+        return imageCache.forChapter(book.getSpine().get(chapter).getPath());
+    }
+
+    private void notifyLayoutChanged(IntUnaryOperator remap) {
+        LayoutListener listener = layoutListener;
+        if (listener != null) {
+            listener.onLayoutChanged(remap);
+        }
+    }
+
+    private void updatePageStarts() {
+        if (!pageStartsDirty && pageStarts != null) {
+            return;
+        }
+        if (pageStarts == null || pageStarts.length != pageCounts.length + 1) {
+            pageStarts = new int[pageCounts.length + 1];
+        }
+        for (int i = 0; i < pageCounts.length; i++) {
+            pageStarts[i + 1] = pageStarts[i] + pageCounts[i];
+        }
+        pageStartsDirty = false;
+    }
+
+    private int[] snapshotPageStarts() {
+        updatePageStarts();
+        return pageStarts.clone();
+    }
+
+    private int chapterOf(int pageIndex) {
+        updatePageStarts();
+        int index = Arrays.binarySearch(pageStarts, 0, pageCounts.length, pageIndex);
+        if (index < 0) {
+            return -index - 2;
+        }
+        // 頁數不會為0，因此相同的起始頁碼只會出現一次
+        return index;
+    }
+
+    /**
+     * 建立依章節內相對位置換算頁碼的對應
+     *
+     * @param exactChapter 剛完成分頁的章節，與get()一致改為停在最後一頁而不按比例換算（-1表示無）
+     */
+    private static IntUnaryOperator proportionalRemap(int[] oldStarts, int[] newStarts, int exactChapter) {
+        int chapters = oldStarts.length - 1;
+        return index -> {
+            if (chapters <= 0) return 0;
+            int chapter = Arrays.binarySearch(oldStarts, 0, chapters, index);
+            if (chapter < 0) chapter = -chapter - 2;
+            chapter = Math.max(0, Math.min(chapters - 1, chapter));
+
+            int oldCount = oldStarts[chapter + 1] - oldStarts[chapter];
+            int newCount = newStarts[chapter + 1] - newStarts[chapter];
+            int local = Math.max(0, index - oldStarts[chapter]);
+            int mapped = chapter == exactChapter ? local
+                    : oldCount > 0 ? (int) ((long) local * newCount / oldCount) : 0;
+            return newStarts[chapter] + Math.min(mapped, newCount - 1);
+        };
+    }
+}
@@ -0,0 +1,491 @@
+package E_Reader.core;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * EPUB分頁器 - 以實際字型度量將章節的樣式文字切成固定大小的頁面
+ *
+ * 每頁只以起始位置表示（區塊索引與文字位移壓縮成一個long），
+ * 分頁與渲染共用同一套斷行邏輯，因此從任一頁的起始位置重新排版都會得到相同的結果
+ */
+public class EpubPaginator {
+
+    // 頁面版面設定
+    private static final String FONT_FAMILY = "Microsoft JhengHei";
+    private static final int MARGIN = 40;
+    private static final float LINE_SPACING = 1.55f;
+    private static final float PARAGRAPH_SPACING = 0.55f;
+    private static final float[] HEADING_SCALES = {1.5f, 1.33f, 1.17f, 1.0f, 1.0f, 1.0f};
+
+    /**
+     * 圖片來源 - 分頁時只查詢尺寸，渲染時才取得解碼後的圖片
+     */
+    public interface ImageProvider {
+        /**
+         * @param source 章節中的圖片參照
+         * @return 圖片原始尺寸，無法取得時回傳null
+         */
+        Dimension getImageSize(String source);
+
+        /**
+         * @param source 章節中的圖片參照
+         * @param width 顯示寬度
+         * @param height 顯示高度
+         * @return 解碼後的圖片，無法取得時回傳null
+         */
+        BufferedImage getImage(String source, int width, int height);
+    }
+
+    private final int fontSize;
+    private final int width;
+    private final int height;
+
+    // 依樣式旗標索引的正文字型與度量（PLAIN、BOLD、ITALIC、BOLD|ITALIC）
+    private final Font[] bodyFonts = new Font[4];
+    private final FontMetrics[] bodyMetrics = new FontMetrics[4];
+    // 依標題層級索引的標題字型與度量
+    private final Font[] headingFonts = new Font[HEADING_SCALES.length];
+    private final FontMetrics[] headingMetrics = new FontMetrics[HEADING_SCALES.length];
+
+    public EpubPaginator(int fontSize, int width, int height) {
+        this.fontSize = fontSize;
+        this.width = width;
+        this.height = height;
+
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = scratch.createGraphics();
+        try {
+            applyRenderingHints(g2d);
+            for (int style = 0; style < bodyFonts.length; style++) {
+                bodyFonts[style] = new Font(FONT_FAMILY, toAwtStyle(style), fontSize);
+                bodyMetrics[style] = g2d.getFontMetrics(bodyFonts[style]);
+            }
+            for (int level = 0; level < headingFonts.length; level++) {
+                headingFonts[level] = new Font(FONT_FAMILY, Font.BOLD, Math.round(fontSize * HEADING_SCALES[level]));
+                headingMetrics[level] = g2d.getFontMetrics(headingFonts[level]);
+            }
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * 將整個章節分頁
+     *
+     * @param styledText 章節樣式文字
+     * @param images 圖片來源
+     * @return 每頁的起始位置
+     */
+    public long[] paginate(StyledText styledText, ImageProvider images) {
+        List<Long> starts = new ArrayList<>();
+        long position = 0;
+        do {
+            starts.add(position);
+            position = layoutPage(styledText, position, images, null);
+        } while (position >= 0);
+
+        long[] result = new long[starts.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * 渲染指定頁面
+     *
+     * @param styledText 章節樣式文字
+     * @param pageStart 頁面起始位置（由paginate產生）
+     * @param images 圖片來源
+     * @return 渲染後的圖片
+     */
+    public BufferedImage renderPage(StyledText styledText, long pageStart, ImageProvider images) {
+        List<Line> lines = new ArrayList<>();
+        layoutPage(styledText, pageStart, images, lines);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            applyRenderingHints(g2d);
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, width, height);
+            g2d.setColor(Color.BLACK);
+
+            String text = styledText.getText();
+            for (Line line : lines) {
+                StyledText.Block block = styledText.getBlocks().get(line.blockIndex);
+                if (block.isImage()) {
+                    drawImage(g2d, block, line, images);
+                    continue;
+                }
+
+                int x = MARGIN;
+                if (block.isHeading()) {
+                    x += Math.max(0, (contentWidth() - line.width) / 2);
+                }
+
+                // 依樣式區段逐段繪製，寬度與排版時使用同一組度量
+                int position = line.start;
+                while (position < line.end) {
+                    int style = styleAt(block, position);
+                    int segmentEnd = Math.min(line.end, styleRunEnd(block, position));
+                    String segment = text.substring(position, segmentEnd);
+                    g2d.setFont(fontFor(block, style));
+                    g2d.drawString(segment, x, line.baseline);
+                    x += measure(metricsFor(block, style), text, position, segmentEnd);
+                    position = segmentEnd;
+                }
+            }
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * 繪製圖片區塊，圖片無法解碼時改為顯示替代文字
+     */
+    private void drawImage(Graphics2D g2d, StyledText.Block block, Line line, ImageProvider images) {
+        BufferedImage image = line.width > 0 ? images.getImage(block.getImageSource(), line.width, line.height) : null;
+        if (image != null) {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(image, MARGIN + (contentWidth() - line.width) / 2, line.baseline,
+                    line.width, line.height, null);
+            return;
+        }
+
+        String alt = block.getImageAlt() == null || block.getImageAlt().isEmpty() ? "" : " " + block.getImageAlt();
+        Color previous = g2d.getColor();
+        g2d.setColor(Color.GRAY);
+        g2d.setFont(bodyFonts[StyledText.STYLE_ITALIC]);
+        g2d.drawString("[圖片]" + alt, MARGIN, line.baseline + bodyMetrics[StyledText.STYLE_ITALIC].getAscent());
+        g2d.setColor(previous);
+    }
+
+    /**
+     * 渲染訊息頁面（錯誤章節等）
+     *
+     * @param message 訊息
+     * @return 渲染後的圖片
+     */
+    public BufferedImage renderMessage(String message) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            applyRenderingHints(g2d);
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, width, height);
+
+            g2d.setFont(new Font(FONT_FAMILY, Font.BOLD, 20));
+            g2d.setColor(Color.RED);
+            FontMetrics fm = g2d.getFontMetrics();
+            g2d.drawString(message, (width - fm.stringWidth(message)) / 2, height / 2);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * 從起始位置排一頁
+     *
+     * @param styledText 章節樣式文字
+     * @param pageStart 頁面起始位置
+     * @param images 圖片來源
+     * @param lines 收集行資訊，分頁時為null
+     * @return 下一頁的起始位置，若章節已結束則回傳-1
+     */
+    private long layoutPage(StyledText styledText, long pageStart, ImageProvider images, List<Line> lines) {
+        List<StyledText.Block> blocks = styledText.getBlocks();
+        String text = styledText.getText();
+        int blockIndex = blockOf(pageStart);
+        int position = offsetOf(pageStart);
+
+        int bottom = height - MARGIN;
+        int y = MARGIN;
+        boolean pageEmpty = true;
+
+        while (blockIndex < blocks.size()) {
+            StyledText.Block block = blocks.get(blockIndex);
+            if (block.isImage()) {
+                // 圖片縮小到可放入一頁的大小，目前頁面剩餘空間不足時移到下一頁
+                Dimension box = imageBox(images.getImageSize(block.getImageSource()));
+                int spacing = pageEmpty ? 0 : Math.round(fontSize * PARAGRAPH_SPACING);
+                if (!pageEmpty && y + spacing + box.height > bottom) {
+                    return pack(blockIndex, block.getStart());
+                }
+
+                y += spacing;
+                if (lines != null) {
+                    lines.add(new Line(blockIndex, block.getStart(), block.getStart(), y, box.width, box.height));
+                }
+                y += box.height;
+                pageEmpty = false;
+                blockIndex++;
+                continue;
+            }
+            if (block.getStart() >= block.getEnd()) {
+                blockIndex++;
+                continue;
+            }
+
+            position = Math.max(position, block.getStart());
+            if (position == block.getStart() && !pageEmpty) {
+                y += Math.round(fontSize * PARAGRAPH_SPACING);
+            }
+
+            FontMetrics lineMetrics = metricsFor(block, StyledText.STYLE_PLAIN);
+            int lineHeight = Math.round(lineMetrics.getFont().getSize() * LINE_SPACING);
+
+            while (position < block.getEnd()) {
+                if (!pageEmpty && y + lineHeight > bottom) {
+                    return pack(blockIndex, position);
+                }
+
+                int lineEnd = breakLine(block, text, position);
+                int nextStart = skipBreakingSpace(text, lineEnd, block.getEnd());
+                if (lines != null) {
+                    int visibleEnd = trimTrailingSpace(text, position, lineEnd);
+                    lines.add(new Line(blockIndex, position, visibleEnd, y + lineMetrics.getAscent(),
+                            measureStyled(block, text, position, visibleEnd), lineHeight));
+                }
+
+                y += lineHeight;
+                pageEmpty = false;
+                position = nextStart;
+            }
+
+            blockIndex++;
+        }
+
+        return -1;
+    }
+
+    /**
+     * 計算圖片在頁面上的顯示大小，無法取得尺寸時以一行高度的替代文字佔位（寬度為0）
+     */
+    private Dimension imageBox(Dimension size) {
+        if (size == null || size.width <= 0 || size.height <= 0) {
+            return new Dimension(0, Math.round(fontSize * LINE_SPACING));
+        }
+
+        double scale = Math.min(1.0, Math.min(contentWidth() / (double) size.width,
+                (height - 2.0 * MARGIN) / size.height));
+        return new Dimension(Math.max(1, (int) (size.width * scale)), Math.max(1, (int) (size.height * scale)));
+    }
+
+    /**
+     * 從指定位置找出一行的結尾：優先在空白或中日韓字元之間斷行，
+     * 單字過長時在字元間強制斷行
+     */
+    private int breakLine(StyledText.Block block, String text, int lineStart) {
+        int maxWidth = contentWidth();
+        int blockEnd = block.getEnd();
+        int lineWidth = 0;
+        int lastBreak = -1;
+
+        int runIndex = runIndexAt(block, lineStart);
+        int position = lineStart;
+        while (position < blockEnd) {
+            int codePoint = text.codePointAt(position);
+            if (codePoint == '\n') {
+                return position;
+            }
+
+            List<StyledText.Run> runs = block.getRuns();
+            while (runIndex < runs.size() && runs.get(runIndex).getEnd() <= position) {
+                runIndex++;
+            }
+            int style = runIndex < runs.size() && runs.get(runIndex).getStart() <= position
+                    ? runs.get(runIndex).getStyle() : StyledText.STYLE_PLAIN;
+
+            // 斷行點遵守避頭避尾規則（例如「。」不出現在行首）
+            if (position > lineStart && LineBreakRules.canBreakBetween(text.charAt(position - 1), text.charAt(position))) {
+                lastBreak = position;
+            }
+
+            int advance = metricsFor(block, style).charWidth(codePoint);
+            if (lineWidth + advance > maxWidth && position > lineStart && codePoint != ' ') {
+                return lastBreak > lineStart ? lastBreak : position;
+            }
+
+            lineWidth += advance;
+            position += Character.charCount(codePoint);
+        }
+        return blockEnd;
+    }
+
+    private static int skipBreakingSpace(String text, int position, int blockEnd) {
+        if (position < blockEnd && text.charAt(position) == '\n') {
+            return position + 1;
+        }
+        while (position < blockEnd && text.charAt(position) == ' ') {
+            position++;
+        }
+        return position;
+    }
+
+    private static int trimTrailingSpace(String text, int start, int end) {
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private int measureStyled(StyledText.Block block, String text, int start, int end) {
+        int total = 0;
+        int position = start;
+        while (position < end) {
+            int segmentEnd = Math.min(end, styleRunEnd(block, position));
+            total += measure(metricsFor(block, styleAt(block, position)), text, position, segmentEnd);
+            position = segmentEnd;
+        }
+        return total;
+    }
+
+    private static int measure(FontMetrics metrics, String text, int start, int end) {
+        int total = 0;
+        for (int i = start; i < end; ) {
+            int codePoint = text.codePointAt(i);
+            total += metrics.charWidth(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return total;
+    }
+
+    private static int runIndexAt(StyledText.Block block, int position) {
+        List<StyledText.Run> runs = block.getRuns();
+        int low = 0;
+        int high = runs.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (runs.get(mid).getEnd() <= position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int styleAt(StyledText.Block block, int position) {
+        List<StyledText.Run> runs = block.getRuns();
+        int index = runIndexAt(block, position);
+        if (index < runs.size() && runs.get(index).getStart() <= position) {
+            return runs.get(index).getStyle();
+        }
+        return StyledText.STYLE_PLAIN;
+    }
+
+    /**
+     * 從指定位置起相同樣式的結束位置
+     */
+    private static int styleRunEnd(StyledText.Block block, int position) {
+        List<StyledText.Run> runs = block.getRuns();
+        int index = runIndexAt(block, position);
+        if (index >= runs.size()) {
+            return block.getEnd();
+        }
+        StyledText.Run run = runs.get(index);
+        return run.getStart() <= position ? run.getEnd() : run.getStart();
+    }
+
+    private Font fontFor(StyledText.Block block, int style) {
+        if (block.isHeading()) {
+            return headingFonts[headingIndex(block)];
+        }
+        return bodyFonts[style & 3];
+    }
+
+    private FontMetrics metricsFor(StyledText.Block block, int style) {
+        if (block.isHeading()) {
+            return headingMetrics[headingIndex(block)];
+        }
+        return bodyMetrics[style & 3];
+    }
+
+    private int headingIndex(StyledText.Block block) {
+        return Math.max(0, Math.min(HEADING_SCALES.length - 1, block.getHeadingLevel() - 1));
+    }
+
+    private static int toAwtStyle(int style) {
+        int awtStyle = Font.PLAIN;
+        if ((style & StyledText.STYLE_BOLD) != 0) awtStyle |= Font.BOLD;
+        if ((style & StyledText.STYLE_ITALIC) != 0) awtStyle |= Font.ITALIC;
+        return awtStyle;
+    }
+
+    private static void applyRenderingHints(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+    }
+
+    private int contentWidth() {
+        return width - 2 * MARGIN;
+    }
+
+    private static long pack(int blockIndex, int offset) {
+        return ((long) blockIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int blockOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    /**
+     * 估計一頁可容納的原始位元組數，用於尚未分頁章節的頁數估計
+     * （XHTML標記與UTF-8編碼大約讓每個顯示字元佔用4個位元組）
+     */
+    public double estimateBytesPerPage() {
+        double charsPerLine = contentWidth() / (double) fontSize;
+        double linesPerPage = (height - 2.0 * MARGIN) / (fontSize * LINE_SPACING);
+        return Math.max(1.0, charsPerLine * linesPerPage * 4.0);
+    }
+
+    // Getter 方法
+    public int getFontSize() { return fontSize; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EpubPaginator)) return false;
+        EpubPaginator other = (EpubPaginator) o;
+        return fontSize == other.fontSize && width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return (fontSize * 31 + width) * 31 + height;
+    }
+
+    /**
+     * 排版後的一行（圖片區塊的baseline為圖片上緣）
+     */
+    private static class Line {
+        final int blockIndex;
+        final int start;
+        final int end;
+        final int baseline;
+        final int width;
+        final int height;
+
+        Line(int blockIndex, int start, int end, int baseline, int width, int height) {
+            this.blockIndex = blockIndex;
+            this.start = start;
+            this.end = end;
+            this.baseline = baseline;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
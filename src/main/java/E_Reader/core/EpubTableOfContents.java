@@ -0,0 +1,314 @@
+package E_Reader.core;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * EPUB目錄索引 - 解析EPUB3導覽文件（nav.xhtml）或EPUB2的NCX，
+ * 每個目錄項目對應到spine索引與章節內的錨點
+ */
+public class EpubTableOfContents {
+
+    private static final String NCX_MEDIA_TYPE = "application/x-dtbncx+xml";
+
+    private final List<Entry> entries;
+    private final List<Entry> flattened;
+
+    private EpubTableOfContents(List<Entry> entries) {
+        this.entries = Collections.unmodifiableList(entries);
+        List<Entry> all = new ArrayList<>();
+        flatten(entries, all);
+        this.flattened = Collections.unmodifiableList(all);
+    }
+
+    /**
+     * 解析EPUB的目錄，優先使用EPUB3導覽文件，失敗時改用NCX，
+     * 兩者都沒有時以spine順序建立目錄
+     *
+     * @param book EPUB會話
+     * @param ncxId spine元素toc屬性指定的NCX項目ID（可為空）
+     * @return 目錄索引
+     */
+    static EpubTableOfContents parse(EpubBook book, String ncxId) {
+        EpubBook.ManifestItem nav = null;
+        EpubBook.ManifestItem ncx = ncxId != null ? book.getManifest().get(ncxId) : null;
+        for (EpubBook.ManifestItem item : book.getManifest().values()) {
+            if (nav == null && item.getProperties() != null
+                    && Arrays.asList(item.getProperties().split("\\s+")).contains("nav")) {
+                nav = item;
+            }
+            if (ncx == null && NCX_MEDIA_TYPE.equals(item.getMediaType())) {
+                ncx = item;
+            }
+        }
+
+        List<Entry> entries = Collections.emptyList();
+        if (nav != null) {
+            entries = parseSafely(book, nav, true);
+        }
+        if (entries.isEmpty() && ncx != null) {
+            entries = parseSafely(book, ncx, false);
+        }
+        if (entries.isEmpty()) {
+            entries = fromSpine(book);
+        }
+        return new EpubTableOfContents(entries);
+    }
+
+    private static List<Entry> parseSafely(EpubBook book, EpubBook.ManifestItem item, boolean navDocument) {
+        try (InputStream is = book.openEntry(item.getPath())) {
+            XMLStreamReader reader = EpubBook.newStreamReader(is);
+            try {
+                return navDocument
+                        ? parseNavDocument(reader, book, item.getPath())
+                        : parseNcx(reader, book, item.getPath());
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            System.err.println("無法解析EPUB目錄 " + item.getPath() + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * 解析EPUB3導覽文件中epub:type="toc"的nav（沒有標示時使用第一個nav）
+     */
+    private static List<Entry> parseNavDocument(XMLStreamReader reader, EpubBook book, String documentPath)
+            throws Exception {
+        List<Entry> roots = new ArrayList<>();
+        Deque<Entry> open = new ArrayDeque<>();
+        int navDepth = 0;
+        boolean tocFound = false;
+        StringBuilder label = null;
+        String href = null;
+        // 標籤從<a>（沒有連結的標題為<span>）開始，到對應的結束標籤為止，中間可能有同名的巢狀元素
+        String labelElement = null;
+        int labelDepth = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("nav".equals(name)) {
+                    if (navDepth > 0) {
+                        navDepth++;
+                    } else if (!tocFound && (isTocNav(reader) || roots.isEmpty())) {
+                        // 先前非toc的nav產生的項目捨棄，以toc為準
+                        if (isTocNav(reader)) {
+                            tocFound = true;
+                            roots.clear();
+                        }
+                        navDepth = 1;
+                    }
+                } else if (navDepth == 0) {
+                    continue;
+                } else if ("li".equals(name)) {
+                    open.push(new Entry(open.size()));
+                } else if (label != null) {
+                    if (name.equals(labelElement)) {
+                        labelDepth++;
+                    }
+                } else if (("a".equals(name) || "span".equals(name)) && !open.isEmpty()) {
+                    label = new StringBuilder();
+                    href = "a".equals(name) ? attribute(reader, "href") : null;
+                    labelElement = name;
+                    labelDepth = 1;
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (label != null) {
+                    label.append(reader.getText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && navDepth > 0) {
+                String name = reader.getLocalName();
+                if ("nav".equals(name)) {
+                    navDepth--;
+                    if (navDepth == 0 && tocFound) {
+                        break;
+                    }
+                } else if (label != null) {
+                    if (name.equals(labelElement) && --labelDepth == 0) {
+                        open.peek().setTarget(collapse(label), href, book, documentPath);
+                        label = null;
+                        href = null;
+                        labelElement = null;
+                    }
+                } else if ("li".equals(name) && !open.isEmpty()) {
+                    attach(open.pop(), open, roots);
+                }
+            }
+        }
+        return roots;
+    }
+
+    private static boolean isTocNav(XMLStreamReader reader) {
+        String type = attribute(reader, "type");
+        return Arrays.asList(type.split("\\s+")).contains("toc");
+    }
+
+    /**
+     * 解析EPUB2 NCX的navMap
+     */
+    private static List<Entry> parseNcx(XMLStreamReader reader, EpubBook book, String documentPath) throws Exception {
+        List<Entry> roots = new ArrayList<>();
+        Deque<Entry> open = new ArrayDeque<>();
+        StringBuilder label = null;
+        boolean inNavMap = false;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("navMap".equals(name)) {
+                    inNavMap = true;
+                } else if (!inNavMap) {
+                    continue;
+                } else if ("navPoint".equals(name)) {
+                    open.push(new Entry(open.size()));
+                } else if ("text".equals(name) && !open.isEmpty() && open.peek().title == null) {
+                    label = new StringBuilder();
+                } else if ("content".equals(name) && !open.isEmpty() && open.peek().spineIndex < 0) {
+                    Entry entry = open.peek();
+                    entry.setTarget(entry.title, attribute(reader, "src"), book, documentPath);
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                if (label != null) {
+                    label.append(reader.getText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && inNavMap) {
+                String name = reader.getLocalName();
+                if ("text".equals(name) && label != null) {
+                    open.peek().title = collapse(label);
+                    label = null;
+                } else if ("navPoint".equals(name) && !open.isEmpty()) {
+                    attach(open.pop(), open, roots);
+                } else if ("navMap".equals(name)) {
+                    break;
+                }
+            }
+        }
+        return roots;
+    }
+
+    private static void attach(Entry entry, Deque<Entry> open, List<Entry> roots) {
+        if (entry.title == null || entry.title.isEmpty()) {
+            // 沒有標題的項目：子項目上移一層
+            for (Entry child : entry.children) {
+                shiftLevel(child, entry.level - child.level);
+                if (open.isEmpty()) roots.add(child);
+                else open.peek().children.add(child);
+            }
+            return;
+        }
+        if (open.isEmpty()) {
+            roots.add(entry);
+        } else {
+            open.peek().children.add(entry);
+        }
+    }
+
+    /**
+     * 調整項目與所有子孫項目的層級
+     */
+    private static void shiftLevel(Entry entry, int delta) {
+        entry.level += delta;
+        for (Entry child : entry.children) {
+            shiftLevel(child, delta);
+        }
+    }
+
+    private static List<Entry> fromSpine(EpubBook book) {
+        List<Entry> entries = new ArrayList<>();
+        for (EpubBook.SpineItem item : book.getSpine()) {
+            Entry entry = new Entry(0);
+            entry.title = "第 " + (item.getIndex() + 1) + " 章";
+            entry.spineIndex = item.getIndex();
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static void flatten(List<Entry> entries, List<Entry> out) {
+        for (Entry entry : entries) {
+            out.add(entry);
+            flatten(entry.children, out);
+        }
+    }
+
+    private static String attribute(XMLStreamReader reader, String localName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (localName.equals(reader.getAttributeLocalName(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return "";
+    }
+
+    private static String collapse(CharSequence value) {
+        return value.toString().replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * 獲取頂層目錄項目
+     */
+    public List<Entry> getEntries() { return entries; }
+
+    /**
+     * 獲取依閱讀順序展開的所有目錄項目
+     */
+    public List<Entry> getAllEntries() { return flattened; }
+
+    public boolean isEmpty() { return entries.isEmpty(); }
+
+    /**
+     * 目錄項目
+     */
+    public static class Entry {
+        private String title;
+        private int spineIndex = -1;
+        private String fragment;
+        private int level;
+        private final List<Entry> children = new ArrayList<>();
+
+        Entry(int level) {
+            this.level = level;
+        }
+
+        private void setTarget(String title, String href, EpubBook book, String documentPath) {
+            this.title = title;
+            if (href == null || href.isEmpty()) {
+                return;
+            }
+
+            int hash = href.indexOf('#');
+            String filePart = hash >= 0 ? href.substring(0, hash) : href;
+            if (hash >= 0 && hash + 1 < href.length()) {
+                fragment = EpubBook.decodeHref(href.substring(hash + 1));
+            }
+            String path = filePart.isEmpty()
+                    ? documentPath : EpubBook.resolvePath(documentPath, EpubBook.decodeHref(filePart));
+            spineIndex = book.getSpineIndex(path);
+        }
+
+        public String getTitle() { return title; }
+
+        /**
+         * 對應的spine索引，不在spine中時為-1
+         */
+        public int getSpineIndex() { return spineIndex; }
+
+        /**
+         * 章節內的錨點ID，沒有時為null
+         */
+        public String getFragment() { return fragment; }
+
+        public int getLevel() { return level; }
+        public List<Entry> getChildren() { return Collections.unmodifiableList(children); }
+        public boolean hasTarget() { return spineIndex >= 0; }
+
+        @Override
+        public String toString() { return title; }
+    }
+}
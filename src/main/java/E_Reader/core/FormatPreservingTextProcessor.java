@@ -31,6 +31,9 @@ public class FormatPreservingTextProcessor {
     private static final Pattern BULLET_POINTS = Pattern.compile("^([•·-‧○●])\\s*(.*)$");
     private static final Pattern PARAGRAPH_HEADER = Pattern.compile("^(第[一二三四五六七八九十0-9]+[章節段]|[A-Z0-9]+[.)、])(.*)$");
 
+    // 頁面分析結果的快取數量
+    private static final int PAGE_CACHE_SIZE = 64;
+
     // 樣式設定
     private Color textColor = Color.web("#e0e0e0");
     private Color indentColor = Color.web("#888888");
@@ -41,6 +44,15 @@ public class FormatPreservingTextProcessor {
     private double fontSize = 18.0;
     private double lineHeight = 1.8;
 
+    // 以頁碼與文字雜湊為鍵的頁面分析結果。分析只取決於文字內容，
+    // 字型大小、縮排大小與主題只影響節點建立，改變時不需要重新分析
+    private final Map<Long, CachedPage> pageCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedPage> eldest) {
+            return size() > PAGE_CACHE_SIZE;
+        }
+    };
+
     public FormatPreservingTextProcessor() {
         initializeFonts();
     }
@@ -130,7 +142,8 @@ public class FormatPreservingTextProcessor {
     }
 
     /**
-     * 處理頁面文字，保持原有格式
+     * 處理頁面文字，保持原有格式。
+     * 同一頁相同的文字只分析一次，回傳的列表為唯讀
      */
     public List<FormattedLine> processPageText(TextExtractor.PageText pageText) {
         if (pageText == null) {
@@ -142,11 +155,32 @@ public class FormatPreservingTextProcessor {
             return new ArrayList<>();
         }
 
+        long key = ((long) pageText.getPageNumber() << 32) | (text.hashCode() & 0xFFFFFFFFL);
+        synchronized (pageCache) {
+            CachedPage cached = pageCache.get(key);
+            if (cached != null && cached.text.equals(text)) {
+                return cached.lines;
+            }
+        }
+
         // 按行分割，保持原有的換行結構
         String[] lines = text.split("\n", -1); // -1 保持空行
         List<String> lineList = Arrays.asList(lines);
 
-        return processLines(lineList);
+        List<FormattedLine> formattedLines = Collections.unmodifiableList(processLines(lineList));
+        synchronized (pageCache) {
+            pageCache.put(key, new CachedPage(text, formattedLines));
+        }
+        return formattedLines;
+    }
+
+    /**
+     * 清除頁面分析結果的快取
+     */
+    public void clearPageCache() {
+        synchronized (pageCache) {
+            pageCache.clear();
+        }
     }
 
     /**
@@ -503,6 +537,19 @@ public class FormatPreservingTextProcessor {
 
     // 內部類別定義
 
+    /**
+     * 快取的頁面分析結果，保留原文用來排除雜湊碰撞
+     */
+    private static class CachedPage {
+        final String text;
+        final List<FormattedLine> lines;
+
+        CachedPage(String text, List<FormattedLine> lines) {
+            this.text = text;
+            this.lines = lines;
+        }
+    }
+
     /**
      * 縮排信息類
      */
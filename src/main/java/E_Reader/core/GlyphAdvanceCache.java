@@ -0,0 +1,84 @@
+package E_Reader.core;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 字元寬度快取 - 每個字型與大小一張以char索引的float表，
+ * 字元第一次出現時以實際字型度量計算，之後直接查表
+ */
+public class GlyphAdvanceCache {
+
+    // 同時保留的字型設定數量
+    private static final int MAX_CACHED_FONTS = 8;
+    // 代表全形字寬的字元
+    private static final char WIDE_REFERENCE = '中';
+
+    private static final Map<String, GlyphAdvanceCache> CACHES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GlyphAdvanceCache> eldest) {
+            return size() > MAX_CACHED_FONTS;
+        }
+    };
+
+    private final Font font;
+    private final FontRenderContext renderContext = new FontRenderContext(null, true, true);
+    // 尚未量測的字元為NaN
+    private final float[] advances = new float[Character.MAX_VALUE + 1];
+    private final float wideAdvance;
+
+    private GlyphAdvanceCache(String family, int style, float size) {
+        this.font = new Font(family, style, 1).deriveFont(size);
+        Arrays.fill(advances, Float.NaN);
+        this.wideAdvance = advance(WIDE_REFERENCE);
+    }
+
+    /**
+     * 取得指定字型設定的寬度快取（相同設定共用同一張表）
+     *
+     * @param family 字型名稱
+     * @param style java.awt.Font的樣式旗標
+     * @param size 字型大小
+     */
+    public static GlyphAdvanceCache forFont(String family, int style, float size) {
+        String key = family + '|' + style + '|' + size;
+        synchronized (CACHES) {
+            return CACHES.computeIfAbsent(key, k -> new GlyphAdvanceCache(family, style, size));
+        }
+    }
+
+    /**
+     * 取得字元的前進寬度。補充平面字元的高代理項以全形寬度計算，低代理項寬度為0
+     */
+    public float advance(char c) {
+        float advance = advances[c];
+        if (advance == advance) {
+            return advance;
+        }
+
+        if (Character.isHighSurrogate(c)) {
+            advance = wideAdvance;
+        } else if (Character.isLowSurrogate(c) || Character.isISOControl(c)) {
+            advance = c == '\t' ? advance(' ') * 4 : 0f;
+        } else {
+            advance = (float) font.getStringBounds(new char[]{c}, 0, 1, renderContext).getWidth();
+        }
+        // 多執行緒同時寫入的值相同，不需要同步
+        advances[c] = advance;
+        return advance;
+    }
+
+    /**
+     * 全形字元（以「中」為準）的寬度
+     */
+    public float getWideAdvance() {
+        return wideAdvance;
+    }
+
+    public Font getFont() {
+        return font;
+    }
+}
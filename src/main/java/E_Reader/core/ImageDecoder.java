@@ -0,0 +1,232 @@
+package E_Reader.core;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 圖片解碼引擎 - 以ImageIO只解碼需要的區域與解析度。
+ * 超大的掃描圖先以取樣解碼產生概覽，放大時只解碼畫面中可見的區域；
+ * 多頁的TIFF每一頁各自解碼
+ */
+public class ImageDecoder {
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * 是否有可讀取此副檔名的ImageIO外掛（例如WebP需要額外的外掛）
+     */
+    public static boolean canRead(String extension) {
+        return ImageIO.getImageReadersBySuffix(extension).hasNext();
+    }
+
+    /**
+     * 讀取檔案中的頁數（TIFF可能有多頁），無法讀取時回傳0
+     */
+    public static int getPageCount(File file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = createReader(input);
+            if (reader == null) {
+                return 0;
+            }
+            try {
+                reader.setInput(input, false, true);
+                return Math.max(0, reader.getNumImages(true));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("無法讀取圖片頁數: " + file.getName() + " - " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 只讀取檔頭取得頁面的原始尺寸
+     *
+     * @return {寬, 高}，無法讀取時回傳null
+     */
+    public static int[] readSize(File file, int page) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            return readSize(input, page);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 從資料流只讀取檔頭取得頁面的原始尺寸（資料流由呼叫端關閉）
+     *
+     * @return {寬, 高}，無法讀取時回傳null
+     */
+    public static int[] readSize(ImageInputStream input, int page) {
+        try {
+            ImageReader reader = createReader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                reader.setInput(input, page == 0, true);
+                return new int[]{reader.getWidth(page), reader.getHeight(page)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解碼頁面的一個區域，以整數倍取樣讓結果不超過指定尺寸
+     *
+     * @param file 圖片檔案
+     * @param page 頁面索引
+     * @param region 原始像素座標中的區域，null表示整頁
+     * @param maxWidth 結果寬度上限
+     * @param maxHeight 結果高度上限
+     */
+    public static BufferedImage decode(File file, int page, Rectangle region, int maxWidth, int maxHeight)
+            throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            return decode(input, page, region, maxWidth, maxHeight);
+        }
+    }
+
+    /**
+     * 從資料流解碼頁面的一個區域（資料流由呼叫端關閉）
+     */
+    public static BufferedImage decode(ImageInputStream input, int page, Rectangle region, int maxWidth, int maxHeight)
+            throws IOException {
+        ImageReader reader = createReader(input);
+        if (reader == null) {
+            throw new IOException("不支援的圖片格式");
+        }
+        try {
+            reader.setInput(input, false, true);
+            Rectangle source = new Rectangle(0, 0, reader.getWidth(page), reader.getHeight(page));
+            if (region != null) {
+                source = source.intersection(region);
+                if (source.isEmpty()) {
+                    throw new IOException("解碼區域超出圖片範圍");
+                }
+            }
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(source);
+            int subsampling = subsamplingFor(source.width, source.height, maxWidth, maxHeight);
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return reader.read(page, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * 解碼並轉換為JavaFX圖片
+     */
+    public static Image decodeImage(File file, int page, Rectangle region, int maxWidth, int maxHeight)
+            throws IOException {
+        return toFxImage(decode(file, page, region, maxWidth, maxHeight));
+    }
+
+    /**
+     * 轉換為JavaFX圖片
+     */
+    public static Image toFxImage(BufferedImage image) throws IOException {
+        if (image == null) {
+            throw new IOException("無法解碼");
+        }
+        return SwingFXUtils.toFXImage(image, null);
+    }
+
+    /**
+     * 讓結果不超過上限的最小整數取樣倍數
+     */
+    static int subsamplingFor(int width, int height, int maxWidth, int maxHeight) {
+        int horizontal = (width + Math.max(1, maxWidth) - 1) / Math.max(1, maxWidth);
+        int vertical = (height + Math.max(1, maxHeight) - 1) / Math.max(1, maxHeight);
+        return Math.max(1, Math.max(horizontal, vertical));
+    }
+
+    private static ImageReader createReader(ImageInputStream input) {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    /**
+     * 以ImageIO解碼的頁面 - 可以解碼整頁的概覽或放大時的可見區域
+     */
+    public static class RegionPage implements ImagePageList.RegionSource {
+        private final File file;
+        private final int page;
+        private volatile int[] size;
+
+        public RegionPage(File file, int page) {
+            this.file = file;
+            this.page = page;
+        }
+
+        @Override
+        public String getName() {
+            return page == 0 ? file.getName() : file.getName() + " #" + (page + 1);
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        @Override
+        public int getSourceWidth() {
+            int[] known = getSize();
+            return known != null ? known[0] : 0;
+        }
+
+        @Override
+        public int getSourceHeight() {
+            int[] known = getSize();
+            return known != null ? known[1] : 0;
+        }
+
+        /**
+         * 原始尺寸只讀取一次檔頭
+         */
+        protected int[] getSize() {
+            int[] known = size;
+            if (known == null) {
+                known = readSize(file, page);
+                size = known;
+            }
+            return known;
+        }
+
+        @Override
+        public Image decode(int maxWidth, int maxHeight) throws IOException {
+            return decodeImage(file, page, null, maxWidth, maxHeight);
+        }
+
+        @Override
+        public Image decodeRegion(int x, int y, int width, int height, int maxWidth, int maxHeight)
+                throws IOException {
+            return decodeImage(file, page, new Rectangle(x, y, width, height), maxWidth, maxHeight);
+        }
+    }
+}
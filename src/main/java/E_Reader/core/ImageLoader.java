@@ -1,6 +1,8 @@
 package E_Reader.core;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -9,15 +11,34 @@ import java.util.List;
 import javafx.scene.image.Image;
 
 /**
- * 圖片載入器 - 負責從資料夾載入圖片檔案
+ * 圖片載入器 - 負責從資料夾載入圖片檔案。
+ * 載入時只列出檔案，圖片在顯示時才以顯示尺寸解碼；
+ * JavaFX無法解碼的格式（TIFF，安裝外掛時的WebP）與超大圖片改用ImageIO取樣解碼
  */
 public class ImageLoader {
 
-    // 支援的圖片格式
-    private static final String[] SUPPORTED_EXTENSIONS = {".jpg", ".jpeg", ".png", ".gif", ".bmp"};
+    // JavaFX可直接解碼的格式
+    private static final String[] JAVAFX_EXTENSIONS = {".jpg", ".jpeg", ".png", ".gif", ".bmp"};
+
+    // 支援的圖片格式，WebP只在有ImageIO外掛時支援
+    private static final String[] SUPPORTED_EXTENSIONS = ImageDecoder.canRead("webp")
+            ? new String[]{".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tif", ".tiff", ".webp"}
+            : new String[]{".jpg", ".jpeg", ".png", ".gif", ".bmp", ".tif", ".tiff"};
+
+    // 原始像素數超過解碼尺寸的這個倍數時，以ImageIO取樣解碼，避免先解碼完整圖片再縮小
+    private static final int SUBSAMPLE_THRESHOLD = 4;
+
+    // 預設解碼尺寸上限，由呼叫端依螢幕解析度設定
+    private static final int DEFAULT_DECODE_SIZE = 2560;
+
+    private int decodeWidth = DEFAULT_DECODE_SIZE;
+    private int decodeHeight = DEFAULT_DECODE_SIZE;
+
+    // 目前開啟的圖片頁面，開啟新的資料夾時釋放
+    private ImagePageList currentPages;
 
     /**
-     * 從資料夾載入所有支援的圖片檔案
+     * 從資料夾載入所有支援的圖片檔案，只列出檔案不解碼
      * 
      * @param folder 圖片資料夾
      * @return 圖片列表，按檔名排序
@@ -28,30 +49,113 @@ public class ImageLoader {
         }
 
         File[] files = folder.listFiles(this::isSupportedImageFile);
-        if (files == null) {
+        if (files == null || files.length == 0) {
             return new ArrayList<>();
         }
 
         // 按檔名排序
         Arrays.sort(files, Comparator.comparing(File::getName));
-        
-        List<Image> images = new ArrayList<>();
+
+        List<ImagePageList.PageSource> sources = new ArrayList<>(files.length);
         for (File file : files) {
-            try {
-                Image image = new Image(file.toURI().toString());
-                if (!image.isError()) {
-                    images.add(image);
-                } else {
-                    System.err.println("無法載入圖片: " + file.getName());
-                }
-            } catch (Exception e) {
-                System.err.println("載入圖片時發生錯誤: " + file.getName() + " - " + e.getMessage());
+            addPageSources(file, sources);
+        }
+        return openPages(sources);
+    }
+
+    /**
+     * 加入檔案的頁面，多頁TIFF的每一頁各為一個頁面
+     */
+    private void addPageSources(File file, List<ImagePageList.PageSource> sources) {
+        String fileName = file.getName().toLowerCase();
+        if (fileName.endsWith(".tif") || fileName.endsWith(".tiff")) {
+            int pageCount = ImageDecoder.getPageCount(file);
+            for (int page = 0; page < Math.max(1, pageCount); page++) {
+                sources.add(new ImageDecoder.RegionPage(file, page));
             }
+        } else if (isJavaFxFormat(fileName)) {
+            sources.add(new FilePageSource(file));
+        } else {
+            sources.add(new ImageDecoder.RegionPage(file, 0));
         }
-        
-        return images;
+    }
+
+    private static boolean isJavaFxFormat(String fileName) {
+        for (String extension : JAVAFX_EXTENSIONS) {
+            if (fileName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * 取得檔案在頁面列表中的第一頁索引，找不到時回傳-1
+     */
+    public static int indexOfFile(List<Image> pages, File file) {
+        if (!(pages instanceof ImagePageList)) {
+            return -1;
+        }
+        ImagePageList pageList = (ImagePageList) pages;
+        for (int i = 0; i < pageList.size(); i++) {
+            ImagePageList.PageSource source = pageList.getSource(i);
+            if (source instanceof ImageDecoder.RegionPage && ((ImageDecoder.RegionPage) source).getFile().equals(file)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 開啟漫畫壓縮檔（CBZ/ZIP），只讀取中央目錄，頁面顯示時才從壓縮檔解碼
+     *
+     * @param archiveFile 壓縮檔
+     * @return 圖片列表，按項目名稱自然排序
+     */
+    public List<Image> openArchive(File archiveFile) throws IOException {
+        ComicArchive archive = ComicArchive.open(archiveFile);
+        if (archive.getPages().isEmpty()) {
+            archive.close();
+            return new ArrayList<>();
+        }
+        return openPages(archive.getPages(), archive);
+    }
+
+    /**
+     * 以解碼來源建立頁面列表，取代目前開啟的頁面
+     */
+    private ImagePageList openPages(List<? extends ImagePageList.PageSource> sources) {
+        return openPages(sources, null);
+    }
+
+    private synchronized ImagePageList openPages(List<? extends ImagePageList.PageSource> sources,
+                                                 Closeable resource) {
+        closePages();
+        currentPages = new ImagePageList(sources, decodeWidth, decodeHeight, resource);
+        return currentPages;
+    }
+
+    /**
+     * 釋放目前開啟的圖片頁面
+     */
+    public synchronized void closePages() {
+        if (currentPages != null) {
+            currentPages.close();
+            currentPages = null;
+        }
+    }
+
+    /**
+     * 設定解碼尺寸上限（像素），通常為螢幕的實際解析度，之後開啟的圖片套用
+     */
+    public void setDecodeSize(int width, int height) {
+        this.decodeWidth = Math.max(1, width);
+        this.decodeHeight = Math.max(1, height);
+    }
+
+    public int getDecodeWidth() { return decodeWidth; }
+    public int getDecodeHeight() { return decodeHeight; }
+
     /**
      * 檢查檔案是否為支援的圖片格式
      * 
@@ -63,13 +167,7 @@ public class ImageLoader {
             return false;
         }
 
-        String fileName = file.getName().toLowerCase();
-        for (String extension : SUPPORTED_EXTENSIONS) {
-            if (fileName.endsWith(extension)) {
-                return true;
-            }
-        }
-        return false;
+        return isSupportedImageName(file.getName());
     }
 
     /**
@@ -81,6 +179,19 @@ public class ImageLoader {
         return SUPPORTED_EXTENSIONS.clone();
     }
 
+    /**
+     * 檔名是否為支援的圖片格式
+     */
+    public static boolean isSupportedImageName(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        for (String extension : SUPPORTED_EXTENSIONS) {
+            if (lowerName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 驗證資料夾是否包含圖片檔案
      * 
@@ -118,27 +229,50 @@ public class ImageLoader {
      * @return 包含該圖片的圖片列表
      */
     public List<Image> loadImage(File imageFile) {
-        List<Image> images = new ArrayList<>();
-        
         if (imageFile == null || !imageFile.exists() || !imageFile.isFile()) {
-            return images;
+            return new ArrayList<>();
         }
         
         if (!isSupportedImageFile(imageFile)) {
-            return images;
+            return new ArrayList<>();
         }
-        
-        try {
-            Image image = new Image(imageFile.toURI().toString());
-            if (!image.isError()) {
-                images.add(image);
-            } else {
-                System.err.println("無法載入圖片: " + imageFile.getName());
+
+        List<ImagePageList.PageSource> sources = new ArrayList<>();
+        addPageSources(imageFile, sources);
+        return openPages(sources);
+    }
+
+    /**
+     * 圖片檔案頁面 - 以JavaFX的縮放解碼直接產生顯示尺寸的圖片，
+     * 超大圖片改用ImageIO取樣解碼，放大時可只解碼可見區域
+     */
+    static class FilePageSource extends ImageDecoder.RegionPage {
+
+        FilePageSource(File file) {
+            super(file, 0);
+        }
+
+        @Override
+        public Image decode(int maxWidth, int maxHeight) throws IOException {
+            int[] size = getSize();
+            if (size != null && (long) size[0] * size[1] > (long) maxWidth * maxHeight * SUBSAMPLE_THRESHOLD) {
+                return super.decode(maxWidth, maxHeight);
             }
-        } catch (Exception e) {
-            System.err.println("載入圖片時發生錯誤: " + imageFile.getName() + " - " + e.getMessage());
+
+            // JavaFX會把圖片放大到要求的尺寸，原圖較小時以原尺寸解碼
+            double requestedWidth = 0;
+            double requestedHeight = 0;
+            if (size == null || size[0] > maxWidth || size[1] > maxHeight) {
+                requestedWidth = maxWidth;
+                requestedHeight = maxHeight;
+            }
+
+            // 已在解碼執行緒上，同步解碼讓寬高在回傳時就可使用
+            Image image = new Image(getFile().toURI().toString(), requestedWidth, requestedHeight, true, true, false);
+            if (image.isError()) {
+                throw new IOException(image.getException() != null ? image.getException().getMessage() : "無法解碼");
+            }
+            return image;
         }
-        
-        return images;
     }
 }
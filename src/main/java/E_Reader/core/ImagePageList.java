@@ -0,0 +1,284 @@
+package E_Reader.core;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 圖片頁面列表 - 每一頁只保存解碼方式，存取時才以顯示尺寸解碼。
+ * 存取某一頁時由共用的解碼執行緒預先解碼後面幾頁，
+ * 已解碼的頁面依最近使用順序保留，總像素記憶體不超過預算
+ */
+public class ImagePageList extends AbstractList<Image> {
+
+    /**
+     * 單一頁面的解碼來源
+     */
+    public interface PageSource {
+
+        /**
+         * 頁面名稱（檔名或壓縮檔中的項目名稱）
+         */
+        String getName();
+
+        /**
+         * 解碼頁面，結果不超過指定的寬高（保持比例，不放大）
+         */
+        Image decode(int maxWidth, int maxHeight) throws IOException;
+    }
+
+    /**
+     * 可以只解碼部分區域的頁面來源，放大檢視時用來取得比概覽更清晰的可見區域
+     */
+    public interface RegionSource extends PageSource {
+
+        /**
+         * 原始寬度（像素），未知時為0
+         */
+        int getSourceWidth();
+
+        /**
+         * 原始高度（像素），未知時為0
+         */
+        int getSourceHeight();
+
+        /**
+         * 解碼原始像素座標中的區域，結果不超過指定的寬高
+         */
+        Image decodeRegion(int x, int y, int width, int height, int maxWidth, int maxHeight) throws IOException;
+    }
+
+    // 預先解碼目前頁面之後與之前的頁數
+    private static final int PREFETCH_AHEAD = 4;
+    private static final int PREFETCH_BEHIND = 1;
+    // 已解碼頁面的記憶體預算上限，實際預算不超過最大堆積的四分之一
+    private static final long MAX_MEMORY_BUDGET = 512L * 1024 * 1024;
+
+    private static final AtomicInteger DECODER_COUNT = new AtomicInteger();
+    private static final ExecutorService DECODE_POOL = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1)), runnable -> {
+                Thread thread = new Thread(runnable, "image-decoder-" + DECODER_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+
+    private final List<? extends PageSource> sources;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final long memoryBudget;
+    // 頁面來源共用的資源（例如壓縮檔），關閉列表時一併關閉
+    private final Closeable resource;
+
+    // 以下欄位由this同步
+    private final LinkedHashMap<Integer, Image> decodedPages = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Future<Image>> pendingPages = new HashMap<>();
+    private long decodedBytes = 0;
+
+    private volatile int focusIndex = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * @param sources 各頁的解碼來源
+     * @param maxWidth 解碼寬度上限（像素）
+     * @param maxHeight 解碼高度上限（像素）
+     */
+    public ImagePageList(List<? extends PageSource> sources, int maxWidth, int maxHeight) {
+        this(sources, maxWidth, maxHeight, null);
+    }
+
+    /**
+     * @param resource 頁面來源共用的資源，關閉列表時一併關閉
+     */
+    public ImagePageList(List<? extends PageSource> sources, int maxWidth, int maxHeight, Closeable resource) {
+        this.sources = sources;
+        this.resource = resource;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.memoryBudget = Math.min(MAX_MEMORY_BUDGET, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    @Override
+    public Image get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("頁面索引超出範圍: " + index);
+        }
+        focusIndex = index;
+
+        Future<Image> pending;
+        synchronized (this) {
+            Image cached = decodedPages.get(index);
+            if (cached != null) {
+                prefetchAround(index);
+                return cached;
+            }
+            pending = pendingPages.get(index);
+        }
+
+        // 預先解碼中的頁面等待其完成，不重複解碼
+        Image image = null;
+        if (pending != null) {
+            try {
+                image = pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | CancellationException e) {
+                image = null;
+            }
+        }
+        if (image == null) {
+            image = decodePage(index);
+        }
+
+        synchronized (this) {
+            prefetchAround(index);
+        }
+        return image;
+    }
+
+    @Override
+    public int size() {
+        return sources.size();
+    }
+
+    /**
+     * 取得頁面的解碼來源
+     */
+    public PageSource getSource(int index) {
+        return sources.get(index);
+    }
+
+    /**
+     * 解碼並保留頁面，解碼失敗時回傳空白頁面，頁碼維持不變
+     */
+    private Image decodePage(int index) {
+        Image image;
+        try {
+            image = sources.get(index).decode(maxWidth, maxHeight);
+            if (image == null || image.isError()) {
+                throw new IOException(image != null && image.getException() != null
+                        ? image.getException().getMessage() : "無法解碼");
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("無法載入圖片: " + sources.get(index).getName() + " - " + e.getMessage());
+            image = new WritableImage(1, 1);
+        }
+
+        synchronized (this) {
+            if (!closed) {
+                Image previous = decodedPages.put(index, image);
+                if (previous != null) {
+                    decodedBytes -= estimateBytes(previous);
+                }
+                decodedBytes += estimateBytes(image);
+                trimToBudget();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 依最近使用順序移除頁面，直到總像素記憶體不超過預算（最近使用的一頁一定保留）
+     */
+    private void trimToBudget() {
+        Iterator<Map.Entry<Integer, Image>> iterator = decodedPages.entrySet().iterator();
+        while (decodedBytes > memoryBudget && decodedPages.size() > 1 && iterator.hasNext()) {
+            Image eldest = iterator.next().getValue();
+            iterator.remove();
+            decodedBytes -= estimateBytes(eldest);
+        }
+    }
+
+    private static long estimateBytes(Image image) {
+        return (long) Math.max(1, image.getWidth()) * (long) Math.max(1, image.getHeight()) * 4;
+    }
+
+    /**
+     * 排入目前頁面前後的預先解碼，呼叫時必須持有this
+     */
+    private void prefetchAround(int index) {
+        for (int offset = 1; offset <= PREFETCH_AHEAD; offset++) {
+            schedulePrefetch(index + offset);
+        }
+        for (int offset = 1; offset <= PREFETCH_BEHIND; offset++) {
+            schedulePrefetch(index - offset);
+        }
+    }
+
+    private void schedulePrefetch(int index) {
+        if (closed || index < 0 || index >= size()
+                || decodedPages.containsKey(index) || pendingPages.containsKey(index)) {
+            return;
+        }
+
+        FutureTask<Image> task = new FutureTask<>(() -> {
+            try {
+                // 執行前目前頁面已經移開時略過
+                int focus = focusIndex;
+                if (closed || index < focus - PREFETCH_BEHIND || index > focus + PREFETCH_AHEAD) {
+                    return null;
+                }
+                return decodePage(index);
+            } finally {
+                synchronized (this) {
+                    pendingPages.remove(index);
+                }
+            }
+        });
+        pendingPages.put(index, task);
+        DECODE_POOL.execute(task);
+    }
+
+    /**
+     * 目前已解碼頁面佔用的像素記憶體（位元組）
+     */
+    public synchronized long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    public synchronized int getDecodedPageCount() {
+        return decodedPages.size();
+    }
+
+    public long getMemoryBudget() { return memoryBudget; }
+    public int getMaxWidth() { return maxWidth; }
+    public int getMaxHeight() { return maxHeight; }
+
+    /**
+     * 停止預先解碼並釋放已解碼的頁面
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (Future<Image> pending : pendingPages.values()) {
+                pending.cancel(false);
+            }
+            pendingPages.clear();
+            decodedPages.clear();
+            decodedBytes = 0;
+        }
+
+        if (resource != null) {
+            try {
+                resource.close();
+            } catch (IOException e) {
+                System.err.println("關閉圖片來源時發生錯誤: " + e.getMessage());
+            }
+        }
+    }
+}
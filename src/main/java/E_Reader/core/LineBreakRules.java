@@ -0,0 +1,75 @@
+package E_Reader.core;
+
+/**
+ * 中日韓文斷行規則 - 句讀與閉括號不可出現在行首，開括號不可出現在行尾，
+ * CJK字元之間可以斷行，拉丁文字只在空白或連字號後斷行
+ */
+final class LineBreakRules {
+
+    // 不可出現在行首的字元（避頭）
+    private static final String NO_BREAK_BEFORE =
+            "。，、；：？！．…‥・ー～〜」』）》〉】〕］｝〙〗’”〞％‰°℃"
+            + "ぁぃぅぇぉっゃゅょゎァィゥェォッャュョヮヵヶ"
+            + ".,;:!?)]}>%'\"";
+
+    // 不可出現在行尾的字元（避尾）
+    private static final String NO_BREAK_AFTER =
+            "「『（《〈【〔［｛〘〖‘“〝＄￥＃"
+            + "([{<$";
+
+    private static final boolean[] NO_BREAK_BEFORE_TABLE = toTable(NO_BREAK_BEFORE);
+    private static final boolean[] NO_BREAK_AFTER_TABLE = toTable(NO_BREAK_AFTER);
+
+    private LineBreakRules() {
+    }
+
+    /**
+     * 判斷能否在兩個字元之間斷行
+     *
+     * @param before 斷行點前的字元
+     * @param after 斷行點後的字元
+     */
+    static boolean canBreakBetween(char before, char after) {
+        if (Character.isLowSurrogate(after) || after == ' ') {
+            return false;
+        }
+        if (NO_BREAK_BEFORE_TABLE[after] || NO_BREAK_AFTER_TABLE[before]) {
+            return false;
+        }
+        if (before == ' ' || before == '\t') {
+            return true;
+        }
+        if (isCjk(before) || isCjk(after)) {
+            return true;
+        }
+        return before == '-' && Character.isLetterOrDigit(after);
+    }
+
+    static boolean isNoBreakBefore(char c) {
+        return NO_BREAK_BEFORE_TABLE[c];
+    }
+
+    static boolean isNoBreakAfter(char c) {
+        return NO_BREAK_AFTER_TABLE[c];
+    }
+
+    /**
+     * 中日韓文字與全形符號（補充平面的字元以高代理項判斷）
+     */
+    static boolean isCjk(char c) {
+        return (c >= 0x2E80 && c <= 0x9FFF)
+                || (c >= 0xAC00 && c <= 0xD7AF)
+                || (c >= 0xF900 && c <= 0xFAFF)
+                || (c >= 0xFE30 && c <= 0xFE4F)
+                || (c >= 0xFF00 && c <= 0xFFEF)
+                || Character.isHighSurrogate(c);
+    }
+
+    private static boolean[] toTable(String characters) {
+        boolean[] table = new boolean[Character.MAX_VALUE + 1];
+        for (int i = 0; i < characters.length(); i++) {
+            table[characters.charAt(i)] = true;
+        }
+        return table;
+    }
+}
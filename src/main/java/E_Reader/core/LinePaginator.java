@@ -0,0 +1,103 @@
+package E_Reader.core;
+
+import java.io.IOException;
+
+/**
+ * 串流換行與分頁 - 以GlyphAdvanceCache的實際字寬與LineBreakRules的中日韓文斷行規則，
+ * 逐字元決定顯示行的起點，每滿一頁的行數就回報分頁位置。
+ * MappedTextDocument與DocxDocument共用，不需要把整份文件讀入記憶體
+ */
+final class LinePaginator {
+
+    /**
+     * 分頁位置的接收者，位移的意義由呼叫端決定（位元組位移或字元索引）
+     */
+    interface PageBreakListener {
+        void pageBreak(long offset) throws IOException;
+    }
+
+    private final GlyphAdvanceCache advances;
+    private final float lineWidth;
+    private final int linesPerPage;
+    private final PageBreakListener listener;
+
+    private int pageLines = 0;
+    // 目前顯示行的寬度與是否已有字元
+    private float width = 0;
+    private boolean hasContent = false;
+    private char previous = 0;
+    // 目前顯示行中最後一個可斷行位置，以及該位置之前的寬度
+    private long lastBreak = -1;
+    private float widthAtBreak = 0;
+
+    LinePaginator(MappedTextDocument.PageSettings settings, PageBreakListener listener) {
+        this.advances = settings.getAdvances();
+        this.lineWidth = settings.getLineWidth();
+        this.linesPerPage = settings.getLinesPerPage();
+        this.listener = listener;
+    }
+
+    /**
+     * 開始新的段落（原文的一行），段落的第一個顯示行從這裡開始
+     */
+    void startLine(long offset) throws IOException {
+        width = 0;
+        hasContent = false;
+        previous = 0;
+        lastBreak = -1;
+        startDisplayLine(offset);
+    }
+
+    /**
+     * 加入一個字元。超出行寬時在最後一個可斷行位置換行，
+     * 找不到可斷行位置（例如很長的英文單字）時在此字元前換行
+     *
+     * @param codePoint 字元（補充平面字元以完整的碼點傳入）
+     * @param offset 字元起點的位移
+     */
+    void append(int codePoint, long offset) throws IOException {
+        // 補充平面字元以高代理項判斷寬度與斷行規則
+        char c = codePoint > Character.MAX_VALUE ? Character.highSurrogate(codePoint) : (char) codePoint;
+
+        if (hasContent && LineBreakRules.canBreakBetween(previous, c)) {
+            lastBreak = offset;
+            widthAtBreak = width;
+        }
+
+        float advance = advances.advance(c);
+        if (hasContent && c != ' ' && width + advance > lineWidth) {
+            if (lastBreak >= 0) {
+                // 斷行點之後的字元移到下一行
+                startDisplayLine(lastBreak);
+                width -= widthAtBreak;
+                lastBreak = -1;
+                if (width > 0 && width + advance > lineWidth) {
+                    startDisplayLine(offset);
+                    width = 0;
+                }
+            } else {
+                startDisplayLine(offset);
+                width = 0;
+            }
+        }
+
+        width += advance;
+        hasContent = true;
+        previous = c;
+    }
+
+    /**
+     * 由文件本身的分頁（例如DOCX的分頁符號）開始新頁後重新計算行數
+     */
+    void resetPage() {
+        pageLines = 0;
+    }
+
+    private void startDisplayLine(long offset) throws IOException {
+        if (pageLines >= linesPerPage) {
+            listener.pageBreak(offset);
+            pageLines = 0;
+        }
+        pageLines++;
+    }
+}
@@ -0,0 +1,756 @@
+package E_Reader.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 記憶體映射的文字文件 - 以FileChannel.map映射TXT檔案，
+ * 背景執行緒一次掃描建立行與分頁的位元組位移索引（long陣列），
+ * 顯示時只解碼目前頁面的位元組範圍，開啟時間與記憶體用量與檔案大小無關。
+ * 編碼由CharsetDetector取樣偵測，掃描時依編碼的位元組結構判斷字元邊界
+ */
+public class MappedTextDocument implements PagedTextDocument {
+
+    // 每個映射區段的大小（單一MappedByteBuffer最大為2GB）
+    private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+    // 掃描時每次讀取的位元組數
+    private static final int SCAN_CHUNK_SIZE = 1024 * 1024;
+    // 行索引每隔多少行記錄一次位移
+    private static final int LINE_INDEX_STRIDE = 64;
+    // 掃描進度通知間隔（毫秒）
+    private static final long PROGRESS_INTERVAL_MS = 200;
+    // 已解碼頁面的快取數量
+    private static final int DECODED_PAGE_CACHE_SIZE = 8;
+
+    /**
+     * 分頁設定 - 閱讀畫面字型的字寬表、每行可用寬度（像素）與每頁行數，
+     * 換行位置依實際字寬與中日韓文斷行規則計算
+     */
+    public static class PageSettings {
+        private final GlyphAdvanceCache advances;
+        private final float lineWidth;
+        private final int linesPerPage;
+
+        public PageSettings(GlyphAdvanceCache advances, float lineWidth, int linesPerPage) {
+            this.advances = advances;
+            // 每行至少容納一個全形字
+            this.lineWidth = Math.max(advances.getWideAdvance(), lineWidth);
+            this.linesPerPage = Math.max(1, linesPerPage);
+        }
+
+        /**
+         * 以字型名稱與大小建立分頁設定（相同字型共用字寬表）
+         */
+        public static PageSettings forFont(String fontFamily, float fontSize, float lineWidth, int linesPerPage) {
+            return new PageSettings(GlyphAdvanceCache.forFont(fontFamily, java.awt.Font.PLAIN, fontSize),
+                    lineWidth, linesPerPage);
+        }
+
+        public GlyphAdvanceCache getAdvances() { return advances; }
+        public float getLineWidth() { return lineWidth; }
+        public int getLinesPerPage() { return linesPerPage; }
+
+        /**
+         * 字寬表（相同字型共用同一個）、行寬與每頁行數都相同時分頁結果相同
+         */
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof PageSettings)) {
+                return false;
+            }
+            PageSettings settings = (PageSettings) other;
+            return advances == settings.advances && lineWidth == settings.lineWidth
+                    && linesPerPage == settings.linesPerPage;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(advances) * 31 + Float.hashCode(lineWidth)) * 31 + linesPerPage;
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final Charset charset;
+    private final long contentStart;
+    private final PageSettings pageSettings;
+    private final MappedByteBuffer[] segments;
+
+    // 分頁起點的位元組位移，pageStarts[i]為第i頁的起點
+    private volatile long[] pageStarts = new long[1024];
+    private volatile int pageStartCount = 0;
+    // 每LINE_INDEX_STRIDE行記錄一次行起點
+    private volatile long[] lineCheckpoints = new long[1024];
+    private volatile int lineCheckpointCount = 0;
+    private volatile long lineCount = 0;
+
+    private volatile long scannedBytes = 0;
+    private volatile boolean scanFinished = false;
+    private volatile boolean closed = false;
+    private volatile ScanListener scanListener;
+    private Thread scanThread;
+    // 上一次字元位置換算成位元組位移的結果，掃描中重複查詢同一個位置時不再從頭換算
+    private long convertedTextOffset = -1;
+    private long convertedByteOffset = -1;
+    private final Object firstPageLock = new Object();
+
+    private final Map<Integer, String> decodedPages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > DECODED_PAGE_CACHE_SIZE;
+        }
+    };
+
+    private MappedTextDocument(File file, FileChannel channel, PageSettings pageSettings) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.fileSize = channel.size();
+        this.pageSettings = pageSettings;
+        this.segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+
+        CharsetDetector.Result detected = CharsetDetector.detect(channel);
+        this.charset = detected.getCharset();
+        this.contentStart = detected.getBomLength();
+    }
+
+    /**
+     * 開啟文字檔案並開始背景掃描，等到第一頁可用（或掃描結束）後返回
+     *
+     * @param file TXT檔案
+     * @param pageSettings 分頁設定
+     * @return 文字文件
+     */
+    public static MappedTextDocument open(File file, PageSettings pageSettings) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        MappedTextDocument document;
+        try {
+            document = new MappedTextDocument(file, channel, pageSettings);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        document.startScan();
+        document.awaitFirstPage();
+        return document;
+    }
+
+    private void startScan() {
+        addPageStart(contentStart);
+        scanThread = new Thread(this::scan, "text-index-scan");
+        scanThread.setDaemon(true);
+        scanThread.setPriority(Thread.NORM_PRIORITY - 1);
+        scanThread.start();
+    }
+
+    private void awaitFirstPage() {
+        synchronized (firstPageLock) {
+            while (!scanFinished && pageStartCount < 2 && !closed) {
+                try {
+                    firstPageLock.wait(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 單次掃描整個檔案：記錄行起點，並以LinePaginator依實際字寬換行、決定分頁位置。
+     * 分頁落在顯示行的起點，與閱讀畫面的換行一致
+     */
+    private void scan() {
+        LinePaginator paginator = new LinePaginator(pageSettings, this::addPageStart);
+        CharStepper stepper = CharStepper.forCharset(charset);
+        byte[] chunk = new byte[SCAN_CHUNK_SIZE];
+        long lineStart = contentStart;
+        // 目前的行是否已交給paginator（行尾的換行與檔案結尾不另外開始新行）
+        boolean lineStarted = false;
+        long lastProgress = System.currentTimeMillis();
+
+        addLineStart(contentStart);
+
+        try {
+            long position = contentStart;
+            while (position < fileSize && !closed) {
+                int length = (int) Math.min(chunk.length, fileSize - position);
+                read(position, chunk, length);
+
+                for (int i = 0; i < length; i++) {
+                    int c = stepper.step(chunk[i] & 0xFF);
+                    if (c == CharStepper.CONTINUATION || c == '\r') {
+                        continue;
+                    }
+                    if (!lineStarted) {
+                        paginator.startLine(lineStart);
+                        lineStarted = true;
+                    }
+                    if (c == '\n') {
+                        lineStart = position + i + 1;
+                        lineStarted = false;
+                        addLineStart(lineStart);
+                    } else {
+                        paginator.append(c, position + i - stepper.length() + 1);
+                    }
+                }
+
+                position += length;
+                scannedBytes = position;
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                    lastProgress = now;
+                    notifyProgress(false);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("文字檔案索引失敗 " + file.getName() + ": " + e.getMessage());
+            }
+        } finally {
+            scannedBytes = fileSize;
+            scanFinished = true;
+            synchronized (firstPageLock) {
+                firstPageLock.notifyAll();
+            }
+            notifyProgress(true);
+        }
+    }
+
+    private void addPageStart(long offset) {
+        long[] starts = pageStarts;
+        if (pageStartCount == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+            pageStarts = starts;
+        }
+        starts[pageStartCount] = offset;
+        pageStartCount++;
+
+        if (pageStartCount == 2) {
+            synchronized (firstPageLock) {
+                firstPageLock.notifyAll();
+            }
+        }
+    }
+
+    private void addLineStart(long offset) {
+        if (lineCount % LINE_INDEX_STRIDE == 0) {
+            long[] checkpoints = lineCheckpoints;
+            if (lineCheckpointCount == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+                lineCheckpoints = checkpoints;
+            }
+            checkpoints[lineCheckpointCount] = offset;
+            lineCheckpointCount++;
+        }
+        lineCount++;
+    }
+
+    private void notifyProgress(boolean finished) {
+        ScanListener listener = scanListener;
+        if (listener != null && !closed) {
+            listener.onScanProgress(getPageCount(), getScanProgress(), finished);
+        }
+    }
+
+    /**
+     * 取得已完成分頁的頁數，掃描中會隨進度增加
+     */
+    @Override
+    public int getPageCount() {
+        int count = pageStartCount;
+        return scanFinished ? count : Math.max(0, count - 1);
+    }
+
+    /**
+     * 取得指定頁面的文字，只解碼該頁的位元組範圍
+     *
+     * @param pageIndex 頁面索引
+     * @return 頁面文字
+     */
+    @Override
+    public String getPageText(int pageIndex) {
+        int count = getPageCount();
+        if (pageIndex < 0 || pageIndex >= count) {
+            return "";
+        }
+
+        synchronized (decodedPages) {
+            String cached = decodedPages.get(pageIndex);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long[] starts = pageStarts;
+        long start = starts[pageIndex];
+        long end = pageIndex + 1 < pageStartCount ? starts[pageIndex + 1] : fileSize;
+        String text;
+        try {
+            text = decode(start, end);
+        } catch (IOException e) {
+            System.err.println("無法讀取文字頁面 " + (pageIndex + 1) + ": " + e.getMessage());
+            return "";
+        }
+
+        synchronized (decodedPages) {
+            decodedPages.put(pageIndex, text);
+        }
+        return text;
+    }
+
+    /**
+     * 取得指定位元組位移所在的頁面
+     */
+    public int getPageForOffset(long offset) {
+        // 先讀取頁數再讀取陣列，陣列只會換成較大的複本，一定涵蓋已讀到的頁數
+        int count = getPageCount();
+        long[] starts = pageStarts;
+        if (count == 0) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(starts, 0, count, offset);
+        return index >= 0 ? index : Math.max(0, -index - 2);
+    }
+
+    /**
+     * 取得整份文件文字中第textOffset個字元所在的頁面。
+     * 先從檔案開頭逐字元換算成位元組位移（與頁面文字相同，不計入'\r'），再以分頁起點找出頁面
+     *
+     * @return 頁碼，該位置尚未完成分頁或超出檔案時回傳-1
+     */
+    @Override
+    public int getPageForTextOffset(long textOffset) {
+        return getPageForPosition(toByteOffset(textOffset));
+    }
+
+    /**
+     * 取得位元組位移所在的頁面，掃描中只回傳已完整分頁的頁面
+     *
+     * @return 頁碼，該位置尚未完成分頁時回傳-1
+     */
+    @Override
+    public int getPageForPosition(long offset) {
+        if (offset < 0) {
+            return -1;
+        }
+        int count = getPageCount();
+        // 掃描中最後一個分頁起點之後的內容還沒有完整的頁面
+        if (!scanFinished && (count == 0 || offset >= pageStarts[count])) {
+            return -1;
+        }
+        return getPageForOffset(offset);
+    }
+
+    private synchronized long toByteOffset(long textOffset) {
+        if (textOffset < 0) {
+            return -1;
+        }
+        if (textOffset == convertedTextOffset) {
+            return convertedByteOffset;
+        }
+
+        CharStepper stepper = CharStepper.forCharset(charset);
+        byte[] chunk = new byte[SCAN_CHUNK_SIZE];
+        long chars = 0;
+        long position = contentStart;
+        try {
+            while (position < fileSize && !closed) {
+                int length = (int) Math.min(chunk.length, fileSize - position);
+                read(position, chunk, length);
+                for (int i = 0; i < length; i++) {
+                    int c = stepper.step(chunk[i] & 0xFF);
+                    if (c == CharStepper.CONTINUATION || c == '\r') {
+                        continue;
+                    }
+                    chars += Character.charCount(c);
+                    if (chars > textOffset) {
+                        convertedTextOffset = textOffset;
+                        convertedByteOffset = position + i - stepper.length() + 1;
+                        return convertedByteOffset;
+                    }
+                }
+                position += length;
+            }
+        } catch (IOException e) {
+            System.err.println("無法換算文字位置: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    @Override
+    public long getPagePosition(int pageIndex) {
+        return getPageOffset(pageIndex);
+    }
+
+    /**
+     * 取得指定頁面起點的位元組位移
+     */
+    public long getPageOffset(int pageIndex) {
+        int count = getPageCount();
+        if (count == 0) {
+            return contentStart;
+        }
+        return pageStarts[Math.max(0, Math.min(pageIndex, count - 1))];
+    }
+
+    /**
+     * 取得指定行起點的位元組位移，自最近的行索引點向後尋找
+     *
+     * @param lineNumber 行號（從0開始）
+     * @return 位元組位移，該行尚未掃描到時回傳-1
+     */
+    public long getLineOffset(long lineNumber) {
+        if (lineNumber < 0 || lineNumber >= lineCount) {
+            return -1;
+        }
+
+        long position = lineCheckpoints[(int) (lineNumber / LINE_INDEX_STRIDE)];
+        long remaining = lineNumber % LINE_INDEX_STRIDE;
+        CharStepper stepper = CharStepper.forCharset(charset);
+        byte[] chunk = new byte[8192];
+        try {
+            while (remaining > 0 && position < fileSize) {
+                int length = (int) Math.min(chunk.length, fileSize - position);
+                read(position, chunk, length);
+                for (int i = 0; i < length; i++) {
+                    if (stepper.step(chunk[i] & 0xFF) == '\n' && --remaining == 0) {
+                        return position + i + 1;
+                    }
+                }
+                position += length;
+            }
+        } catch (IOException e) {
+            System.err.println("無法讀取行位移: " + e.getMessage());
+            return -1;
+        }
+        return position;
+    }
+
+    private String decode(long start, long end) throws IOException {
+        int length = (int) (end - start);
+        byte[] bytes = new byte[length];
+        read(start, bytes, length);
+
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer chars = decoder.decode(ByteBuffer.wrap(bytes));
+            StringBuilder text = new StringBuilder(chars.length());
+            for (int i = 0; i < chars.length(); i++) {
+                char c = chars.get(i);
+                if (c != '\r') {
+                    text.append(c);
+                }
+            }
+            return text.toString();
+        } catch (CharacterCodingException e) {
+            throw new IOException("文字解碼失敗", e);
+        }
+    }
+
+    /**
+     * 從映射區段讀取位元組，可跨越區段邊界
+     */
+    private void read(long position, byte[] destination, int length) throws IOException {
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            int segmentIndex = (int) (current / SEGMENT_SIZE);
+            int offset = (int) (current % SEGMENT_SIZE);
+            MappedByteBuffer segment = segment(segmentIndex);
+            int count = Math.min(length - copied, segment.limit() - offset);
+            segment.get(offset, destination, copied, count);
+            copied += count;
+        }
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException {
+        synchronized (segments) {
+            if (closed) {
+                throw new IOException("文件已關閉");
+            }
+            MappedByteBuffer segment = segments[index];
+            if (segment == null) {
+                long start = index * SEGMENT_SIZE;
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+                segments[index] = segment;
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * 逐位元組解碼字元的狀態機。
+     * step回傳CONTINUATION表示字元尚未結束，其餘為解碼出的字元碼點（含換行），
+     * 無法解碼的位元組回傳U+FFFD
+     */
+    private abstract static class CharStepper {
+        static final int CONTINUATION = -1;
+        static final int REPLACEMENT = 0xFFFD;
+
+        abstract int step(int b);
+
+        /**
+         * 最近一個完成的字元所佔的位元組數，用來回推字元起點
+         */
+        abstract int length();
+
+        static CharStepper forCharset(Charset charset) {
+            if (StandardCharsets.UTF_16LE.equals(charset)) {
+                return new Utf16Stepper(false);
+            }
+            if (StandardCharsets.UTF_16BE.equals(charset)) {
+                return new Utf16Stepper(true);
+            }
+            if (StandardCharsets.UTF_8.equals(charset)) {
+                return new Utf8Stepper();
+            }
+            return new DoubleByteStepper(charset);
+        }
+    }
+
+    /**
+     * UTF-8：依首位元組決定字元長度，延續位元組累積碼點
+     */
+    private static class Utf8Stepper extends CharStepper {
+        private int codePoint = 0;
+        private int remaining = 0;
+        private int length = 0;
+
+        @Override
+        int step(int b) {
+            if (remaining > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    codePoint = (codePoint << 6) | (b & 0x3F);
+                    length++;
+                    if (--remaining > 0) {
+                        return CONTINUATION;
+                    }
+                    return codePoint <= Character.MAX_CODE_POINT ? codePoint : REPLACEMENT;
+                }
+                // 不完整的字元，從這個位元組重新開始
+                remaining = 0;
+            }
+
+            length = 1;
+            if (b < 0x80) return b;
+            if (b < 0xC0 || b >= 0xF8) return REPLACEMENT;
+            if (b >= 0xF0) {
+                codePoint = b & 0x07;
+                remaining = 3;
+            } else if (b >= 0xE0) {
+                codePoint = b & 0x0F;
+                remaining = 2;
+            } else {
+                codePoint = b & 0x1F;
+                remaining = 1;
+            }
+            return CONTINUATION;
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+    }
+
+    /**
+     * Big5／GBK／GB18030：0x81以上為雙位元組字元的首位元組，
+     * GB18030第二位元組為數字時為四位元組字元。
+     * 雙位元組字元以每個編碼共用的對照表解碼，第一次出現時才以CharsetDecoder計算
+     */
+    private static class DoubleByteStepper extends CharStepper {
+        private static final Map<String, char[]> DECODE_TABLES = new HashMap<>();
+
+        private final Charset charset;
+        private final boolean fourByteSequences;
+        private final char[] table;
+        private final byte[] bytes = new byte[4];
+        private int count = 0;
+        // 目前字元的位元組數，0表示不在字元中
+        private int expected = 0;
+
+        DoubleByteStepper(Charset charset) {
+            this.charset = charset;
+            this.fourByteSequences = charset.name().startsWith("GB");
+            synchronized (DECODE_TABLES) {
+                this.table = DECODE_TABLES.computeIfAbsent(charset.name(), name -> new char[65536]);
+            }
+        }
+
+        @Override
+        int step(int b) {
+            if (expected > 0) {
+                bytes[count++] = (byte) b;
+                if (count == 2 && fourByteSequences && b >= 0x30 && b <= 0x39) {
+                    expected = 4;
+                    return CONTINUATION;
+                }
+                if (count < expected) {
+                    return CONTINUATION;
+                }
+                expected = 0;
+                return count == 2 ? lookup(((bytes[0] & 0xFF) << 8) | b) : decodeSequence();
+            }
+
+            count = 1;
+            if (b < 0x80) return b;
+            if (b == 0x80 || b == 0xFF) return REPLACEMENT;
+            bytes[0] = (byte) b;
+            expected = 2;
+            return CONTINUATION;
+        }
+
+        @Override
+        int length() {
+            return count;
+        }
+
+        private int lookup(int index) {
+            char c = table[index];
+            if (c == 0) {
+                int decoded = decodeSequence();
+                c = decoded <= Character.MAX_VALUE ? (char) decoded : REPLACEMENT;
+                // 多執行緒同時寫入的值相同，不需要同步
+                table[index] = c;
+            }
+            return c;
+        }
+
+        private int decodeSequence() {
+            String text = new String(bytes, 0, count, charset);
+            return text.isEmpty() ? REPLACEMENT : text.codePointAt(0);
+        }
+    }
+
+    /**
+     * UTF-16：每兩個位元組一個碼元，代理對組合為補充平面字元
+     */
+    private static class Utf16Stepper extends CharStepper {
+        private final boolean bigEndian;
+        private int first = -1;
+        private int highSurrogate = -1;
+        private int length = 2;
+
+        Utf16Stepper(boolean bigEndian) {
+            this.bigEndian = bigEndian;
+        }
+
+        @Override
+        int step(int b) {
+            if (first < 0) {
+                first = b;
+                return CONTINUATION;
+            }
+            char unit = (char) (bigEndian ? (first << 8) | b : (b << 8) | first);
+            first = -1;
+
+            if (Character.isHighSurrogate(unit)) {
+                highSurrogate = unit;
+                return CONTINUATION;
+            }
+            if (Character.isLowSurrogate(unit) && highSurrogate >= 0) {
+                int codePoint = Character.toCodePoint((char) highSurrogate, unit);
+                highSurrogate = -1;
+                length = 4;
+                return codePoint;
+            }
+            highSurrogate = -1;
+            length = 2;
+            return Character.isLowSurrogate(unit) ? REPLACEMENT : unit;
+        }
+
+        @Override
+        int length() {
+            return length;
+        }
+    }
+
+    /**
+     * 以頁面清單的形式提供文件內容，清單大小隨掃描進度增加
+     */
+    @Override
+    public List<TextExtractor.PageText> getPages() {
+        return new PageList();
+    }
+
+    private class PageList extends AbstractList<TextExtractor.PageText> {
+        @Override
+        public TextExtractor.PageText get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("頁面索引超出範圍: " + index);
+            }
+            TextExtractor.PageText page = new TextExtractor.PageText();
+            page.setPageNumber(index);
+            page.setOriginalText(getPageText(index));
+            page.setTextSource(TextExtractor.TextSource.NATIVE);
+            return page;
+        }
+
+        @Override
+        public int size() {
+            return getPageCount();
+        }
+    }
+
+    @Override
+    public void setScanListener(ScanListener scanListener) {
+        this.scanListener = scanListener;
+        if (scanListener != null && scanFinished) {
+            scanListener.onScanProgress(getPageCount(), 1.0, true);
+        }
+    }
+
+    @Override
+    public double getScanProgress() {
+        return fileSize == 0 ? 1.0 : (double) scannedBytes / fileSize;
+    }
+
+    @Override
+    public boolean isScanFinished() { return scanFinished; }
+    public long getLineCount() { return lineCount; }
+    public long getFileSize() { return fileSize; }
+    public Charset getCharset() { return charset; }
+    @Override
+    public File getFile() { return file; }
+    @Override
+    public PageSettings getPageSettings() { return pageSettings; }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (segments) {
+            Arrays.fill(segments, null);
+        }
+        synchronized (decodedPages) {
+            decodedPages.clear();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("關閉文字檔案失敗: " + e.getMessage());
+        }
+    }
+}
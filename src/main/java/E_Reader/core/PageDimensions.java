@@ -0,0 +1,18 @@
+package E_Reader.core;
+
+/**
+ * 頁面尺寸來源 - 不需要解碼頁面就能取得每一頁的像素尺寸，
+ * 連續捲動模式用來事先計算所有頁面的高度
+ */
+public interface PageDimensions {
+
+    /**
+     * 取得頁面解碼後的寬度（像素）
+     */
+    double getPageWidth(int index);
+
+    /**
+     * 取得頁面解碼後的高度（像素）
+     */
+    double getPageHeight(int index);
+}
@@ -0,0 +1,75 @@
+package E_Reader.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.List;
+
+/**
+ * 分頁文字文件 - 背景掃描建立分頁索引，頁數隨掃描進度增加，
+ * 顯示時才取出單一頁面的文字（TXT與DOCX共用的閱讀模型）
+ */
+public interface PagedTextDocument extends Closeable {
+
+    /**
+     * 掃描進度監聽器，於掃描執行緒呼叫
+     */
+    interface ScanListener {
+        void onScanProgress(int pageCount, double progress, boolean finished);
+    }
+
+    /**
+     * 以頁面清單的形式提供文件內容，清單大小隨掃描進度增加
+     */
+    List<TextExtractor.PageText> getPages();
+
+    /**
+     * 取得已完成分頁的頁數，掃描中會隨進度增加
+     */
+    int getPageCount();
+
+    /**
+     * 取得指定頁面的文字
+     */
+    String getPageText(int pageIndex);
+
+    /**
+     * 取得整份文件文字（各頁文字依序相接）中第textOffset個字元所在的頁面，
+     * 用於把與版面無關的位置（例如全文搜尋的結果）換算成目前版面的頁碼。
+     * 掃描進度更新時會重複呼叫，實作不可讀回已分頁的頁面文字
+     *
+     * @return 頁碼，該位置尚未完成分頁或超出文件時回傳-1
+     */
+    int getPageForTextOffset(long textOffset);
+
+    /**
+     * 取得指定頁面起點與版面無關的位置（TXT為檔案的位元組位移，DOCX為文件文字的字元位置），
+     * 以其他分頁設定重新開啟同一份文件後，用getPageForPosition找回同一個閱讀位置
+     */
+    long getPagePosition(int pageIndex);
+
+    /**
+     * 取得getPagePosition所回傳的位置所在的頁面
+     *
+     * @return 頁碼，該位置尚未完成分頁或超出文件時回傳-1
+     */
+    int getPageForPosition(long position);
+
+    /**
+     * 取得開啟文件時使用的分頁設定
+     */
+    MappedTextDocument.PageSettings getPageSettings();
+
+    /**
+     * 設定掃描進度監聽器，掃描已結束時立即通知一次
+     */
+    void setScanListener(ScanListener scanListener);
+
+    double getScanProgress();
+
+    boolean isScanFinished();
+
+    File getFile();
+
+    @Override
+    void close();
+}
@@ -23,6 +23,9 @@ public class PdfLoader {
     private static final float DEFAULT_DPI = 150f;
     private static final float HIGH_QUALITY_DPI = 300f;
 
+    // 目前開啟的PDF頁面列表
+    private PdfPageList currentDocument;
+
     // 進度回調介面
     public interface ProgressCallback {
         void updateProgress(int currentPage, int totalPages, String message);
@@ -139,6 +142,46 @@ public class PdfLoader {
         return images;
     }
 
+    /**
+     * 開啟PDF檔案為按需渲染的頁面列表，只讀取頁面尺寸，不渲染任何頁面。
+     * 先前開啟的PDF會被關閉
+     *
+     * @param pdfFile PDF檔案
+     * @return 頁面列表
+     * @throws IOException 如果無法讀取PDF檔案
+     */
+    public synchronized PdfPageList openPdfPages(File pdfFile) throws IOException {
+        if (pdfFile == null || !pdfFile.exists() || !pdfFile.isFile()) {
+            throw new IOException("PDF檔案不存在或無法讀取: " + pdfFile);
+        }
+
+        closeDocument();
+        PdfPageList pages;
+        try {
+            pages = new PdfPageList(pdfFile, DEFAULT_DPI);
+        } catch (IOException e) {
+            throw new IOException("無法載入PDF檔案: " + e.getMessage(), e);
+        }
+        if (pages.isEmpty()) {
+            pages.close();
+            throw new IOException("PDF檔案中沒有可讀取的頁面");
+        }
+
+        System.out.println("PDF已開啟: " + pdfFile.getName() + "，總頁數: " + pages.size());
+        currentDocument = pages;
+        return pages;
+    }
+
+    /**
+     * 關閉目前開啟的PDF頁面列表
+     */
+    public synchronized void closeDocument() {
+        if (currentDocument != null) {
+            currentDocument.close();
+            currentDocument = null;
+        }
+    }
+
     /**
      * 載入PDF檔案的指定頁面範圍
      *
@@ -0,0 +1,150 @@
+package E_Reader.core;
+
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * PDF頁面列表 - 開啟時只讀取每頁的裁切框計算頁面尺寸，
+ * 頁面在存取時才渲染，只保留最近使用的少數頁面
+ */
+public class PdfPageList extends AbstractList<Image> implements PageDimensions {
+
+    // 已渲染頁面的快取數量
+    private static final int RENDERED_PAGE_CACHE_SIZE = 6;
+
+    private final File file;
+    private final float dpi;
+    private final PDDocument document;
+    private final PDFRenderer renderer;
+    private final int[] widths;
+    private final int[] heights;
+
+    private final Map<Integer, Image> renderedPages =
+            new LinkedHashMap<>(8, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Image> eldest) {
+                    return size() > RENDERED_PAGE_CACHE_SIZE;
+                }
+            };
+
+    private boolean closed = false;
+
+    PdfPageList(File file, float dpi) throws IOException {
+        this.file = file;
+        this.dpi = dpi;
+        this.document = PDDocument.load(file);
+        this.renderer = new PDFRenderer(document);
+
+        int pageCount = document.getNumberOfPages();
+        this.widths = new int[pageCount];
+        this.heights = new int[pageCount];
+
+        // 與PDFRenderer相同的方式換算像素尺寸，旋轉90或270度的頁面寬高互換。
+        // 以迭代器依序走訪頁面樹，getPage(i)每次都會從根節點搜尋
+        float scale = dpi / 72f;
+        int i = 0;
+        for (PDPage page : document.getPages()) {
+            if (i >= pageCount) break;
+            PDRectangle cropBox = page.getCropBox();
+            int width = (int) Math.max(Math.floor(cropBox.getWidth() * scale), 1);
+            int height = (int) Math.max(Math.floor(cropBox.getHeight() * scale), 1);
+            if (page.getRotation() % 180 != 0) {
+                widths[i] = height;
+                heights[i] = width;
+            } else {
+                widths[i] = width;
+                heights[i] = height;
+            }
+            i++;
+        }
+    }
+
+    @Override
+    public Image get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("頁面索引超出範圍: " + index);
+        }
+
+        synchronized (renderedPages) {
+            Image cached = renderedPages.get(index);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Image image = render(index);
+        synchronized (renderedPages) {
+            renderedPages.put(index, image);
+        }
+        return image;
+    }
+
+    @Override
+    public int size() {
+        return widths.length;
+    }
+
+    @Override
+    public double getPageWidth(int index) {
+        return widths[index];
+    }
+
+    @Override
+    public double getPageHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * 渲染單一頁面，PDFRenderer不可同時使用，渲染依序進行。
+     * 渲染失敗時回傳同尺寸的空白頁面，頁碼維持不變
+     */
+    private Image render(int index) {
+        synchronized (renderer) {
+            if (!closed) {
+                try {
+                    BufferedImage bufferedImage = renderer.renderImageWithDPI(index, dpi, ImageType.RGB);
+                    return SwingFXUtils.toFXImage(bufferedImage, null);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("第 " + (index + 1) + " 頁渲染失敗: " + e.getMessage());
+                }
+            }
+        }
+        return new WritableImage(widths[index], heights[index]);
+    }
+
+    public File getFile() { return file; }
+    public float getDpi() { return dpi; }
+
+    /**
+     * 關閉PDF文件並釋放已渲染的頁面
+     */
+    public void close() {
+        synchronized (renderer) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                document.close();
+            } catch (IOException e) {
+                System.err.println("關閉PDF檔案時發生錯誤: " + e.getMessage());
+            }
+        }
+        synchronized (renderedPages) {
+            renderedPages.clear();
+        }
+    }
+}
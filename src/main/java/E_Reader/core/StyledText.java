@@ -0,0 +1,139 @@
+package E_Reader.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 帶樣式的章節文字 - 所有段落共用一個文字緩衝區，
+ * 段落與樣式區段只記錄在緩衝區中的位置
+ */
+public class StyledText {
+
+    // 樣式旗標
+    public static final int STYLE_PLAIN = 0;
+    public static final int STYLE_BOLD = 1;
+    public static final int STYLE_ITALIC = 2;
+
+    /**
+     * 區塊類型
+     */
+    public enum BlockType {
+        PARAGRAPH,
+        HEADING,
+        IMAGE
+    }
+
+    private final String text;
+    private final String title;
+    private final List<Block> blocks;
+    private final Map<String, Integer> anchors;
+
+    public StyledText(String text, String title, List<Block> blocks) {
+        this(text, title, blocks, Collections.emptyMap());
+    }
+
+    public StyledText(String text, String title, List<Block> blocks, Map<String, Integer> anchors) {
+        this.text = text;
+        this.title = title;
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.anchors = anchors;
+    }
+
+    /**
+     * 獲取完整文字，段落之間以空行分隔
+     */
+    public String getText() { return text; }
+
+    /**
+     * 獲取章節標題（第一個標題區塊，否則為&lt;title&gt;內容）
+     */
+    public String getTitle() { return title; }
+
+    public List<Block> getBlocks() { return blocks; }
+
+    /**
+     * 獲取錨點（元素id）所在的區塊索引
+     *
+     * @param id 錨點ID（不含'#'）
+     * @return 區塊索引，找不到時回傳-1
+     */
+    public int getAnchorBlock(String id) {
+        Integer block = id != null ? anchors.get(id) : null;
+        if (block == null) {
+            return -1;
+        }
+        return Math.min(block, Math.max(0, blocks.size() - 1));
+    }
+
+    /**
+     * 獲取區塊的文字內容
+     */
+    public String getBlockText(Block block) {
+        return text.substring(block.getStart(), block.getEnd());
+    }
+
+    /**
+     * 區塊 - 段落、標題或圖片
+     */
+    public static class Block {
+        private final BlockType type;
+        private final int headingLevel;
+        private final int start;
+        private final int end;
+        private final List<Run> runs;
+        private final String imageSource;
+        private final String imageAlt;
+
+        Block(BlockType type, int headingLevel, int start, int end, List<Run> runs) {
+            this(type, headingLevel, start, end, runs, null, null);
+        }
+
+        Block(BlockType type, int headingLevel, int start, int end, List<Run> runs,
+              String imageSource, String imageAlt) {
+            this.type = type;
+            this.headingLevel = headingLevel;
+            this.start = start;
+            this.end = end;
+            this.runs = runs;
+            this.imageSource = imageSource;
+            this.imageAlt = imageAlt;
+        }
+
+        static Block image(int position, String source, String alt) {
+            return new Block(BlockType.IMAGE, 0, position, position, new ArrayList<>(), source, alt);
+        }
+
+        public BlockType getType() { return type; }
+        public int getHeadingLevel() { return headingLevel; }
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public List<Run> getRuns() { return runs; }
+        public String getImageSource() { return imageSource; }
+        public String getImageAlt() { return imageAlt; }
+        public boolean isHeading() { return type == BlockType.HEADING; }
+        public boolean isImage() { return type == BlockType.IMAGE; }
+    }
+
+    /**
+     * 樣式區段 - 區塊內一段相同樣式的文字
+     */
+    public static class Run {
+        private final int start;
+        private final int end;
+        private final int style;
+
+        Run(int start, int end, int style) {
+            this.start = start;
+            this.end = end;
+            this.style = style;
+        }
+
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public int getStyle() { return style; }
+        public boolean isBold() { return (style & STYLE_BOLD) != 0; }
+        public boolean isItalic() { return (style & STYLE_ITALIC) != 0; }
+    }
+}
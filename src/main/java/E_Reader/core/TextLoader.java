@@ -1,248 +1,92 @@
 package E_Reader.core;
 
-import E_Reader.settings.SettingsManager;
-import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextAlignment;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
-
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
 
 /**
- * 文字檔案載入器 - 將TXT檔案轉換為圖片供閱讀器顯示
+ * 文字檔案載入器 - 以記憶體映射的分頁文字模型開啟TXT檔案、以串流解析開啟DOCX檔案
  */
 public class TextLoader {
     
-    private static final int DEFAULT_PAGE_WIDTH = 800;
-    private static final int DEFAULT_PAGE_HEIGHT = 1000;
-    private static final int DEFAULT_MARGIN = 50;
-    private static final int DEFAULT_LINE_SPACING = 20;
-    private static final int DEFAULT_FONT_SIZE = 16;
-    
-    private final SettingsManager settingsManager;
-    
-    public TextLoader(SettingsManager settingsManager) {
-        this.settingsManager = settingsManager;
-    }
+    private PagedTextDocument currentDocument;
     
     /**
-     * 從TXT檔案載入圖片
+     * 以記憶體映射開啟TXT檔案，分頁索引在背景建立，
+     * 頁面內容在顯示時才解碼（取代整份讀入記憶體）
      */
-    public List<Image> loadImagesFromText(File file) throws IOException {
-        List<Image> images = new ArrayList<>();
-        
-        // 讀取TXT檔案內容
-        String content = readTextFile(file);
-        
-        // 分割內容為頁面
-        List<String> pages = splitIntoPages(content);
-        
-        // 為每頁創建圖片
-        for (String pageContent : pages) {
-            Image pageImage = createPageImage(pageContent);
-            images.add(pageImage);
-        }
-        
-        return images;
+    public MappedTextDocument openTextDocument(File file, MappedTextDocument.PageSettings pageSettings)
+            throws IOException {
+        closeDocument();
+        MappedTextDocument document = MappedTextDocument.open(file, pageSettings);
+        currentDocument = document;
+        return document;
     }
     
     /**
-     * 讀取TXT檔案內容
+     * 以串流解析開啟DOCX檔案，段落文字在背景取出並分頁（取代把壓縮檔當成文字讀取）
      */
-    private String readTextFile(File file) throws IOException {
-        StringBuilder content = new StringBuilder();
-        
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-        }
-        
-        return content.toString();
+    public DocxDocument openDocxDocument(File file, MappedTextDocument.PageSettings pageSettings)
+            throws IOException {
+        closeDocument();
+        DocxDocument document = DocxDocument.open(file, pageSettings);
+        currentDocument = document;
+        return document;
     }
     
     /**
-     * 將內容分割為頁面
+     * 依副檔名以對應的分頁文字模型開啟文件
+     *
+     * @param file 文件
+     * @param pageSettings 與閱讀畫面一致的分頁設定
      */
-    private List<String> splitIntoPages(String content) {
-        List<String> pages = new ArrayList<>();
-        
-        // 計算每頁可容納的字元數
-        int charsPerPage = calculateCharsPerPage();
-        
-        // 分割內容
-        int startIndex = 0;
-        while (startIndex < content.length()) {
-            int endIndex = Math.min(startIndex + charsPerPage, content.length());
-            
-            // 嘗試在句號或換行處分割
-            if (endIndex < content.length()) {
-                int lastPeriod = content.lastIndexOf('。', endIndex);
-                int lastNewline = content.lastIndexOf('\n', endIndex);
-                int splitPoint = Math.max(lastPeriod, lastNewline);
-                
-                if (splitPoint > startIndex) {
-                    endIndex = splitPoint + 1;
-                }
-            }
-            
-            String pageContent = content.substring(startIndex, endIndex).trim();
-            if (!pageContent.isEmpty()) {
-                pages.add(pageContent);
-            }
-            
-            startIndex = endIndex;
-        }
-        
-        // 如果沒有內容，創建一個空頁面
-        if (pages.isEmpty()) {
-            pages.add("檔案為空或無法讀取");
-        }
-        
-        return pages;
+    public PagedTextDocument openDocument(File file, MappedTextDocument.PageSettings pageSettings)
+            throws IOException {
+        closeDocument();
+        PagedTextDocument document = open(file, pageSettings);
+        currentDocument = document;
+        return document;
     }
-    
-    /**
-     * 計算每頁可容納的字元數
-     */
-    private int calculateCharsPerPage() {
-        int availableWidth = DEFAULT_PAGE_WIDTH - (DEFAULT_MARGIN * 2);
-        int availableHeight = DEFAULT_PAGE_HEIGHT - (DEFAULT_MARGIN * 2);
-        
-        // 估算每行字元數（假設平均每個字元寬度為字體大小的一半）
-        int charsPerLine = availableWidth / (DEFAULT_FONT_SIZE / 2);
-        
-        // 估算行數
-        int linesPerPage = availableHeight / (DEFAULT_FONT_SIZE + DEFAULT_LINE_SPACING);
-        
-        return charsPerLine * linesPerPage;
-    }
-    
+
     /**
-     * 創建頁面圖片
+     * 以新的分頁設定另外開啟一份文件，不影響目前的文件（字型或版面改變時重新分頁），
+     * 準備好後以replaceDocument換成目前的文件
      */
-    private Image createPageImage(String pageContent) {
-        Canvas canvas = new Canvas(DEFAULT_PAGE_WIDTH, DEFAULT_PAGE_HEIGHT);
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-        
-        // 設定背景色
-        Color backgroundColor = getBackgroundColor();
-        gc.setFill(backgroundColor);
-        gc.fillRect(0, 0, DEFAULT_PAGE_WIDTH, DEFAULT_PAGE_HEIGHT);
-        
-        // 設定文字顏色
-        Color textColor = getTextColor();
-        gc.setFill(textColor);
-        
-        // 設定字體
-        Font font = Font.font("Microsoft YaHei", DEFAULT_FONT_SIZE);
-        gc.setFont(font);
-        
-        // 設定文字對齊
-        gc.setTextAlign(TextAlignment.LEFT);
-        
-        // 繪製文字
-        drawText(gc, pageContent);
-        
-        // 轉換為圖片
-        return canvas.snapshot(null, null);
+    public PagedTextDocument reopenDocument(File file, MappedTextDocument.PageSettings pageSettings)
+            throws IOException {
+        return open(file, pageSettings);
     }
-    
+
     /**
-     * 繪製文字到畫布
+     * 把重新分頁的文件設為目前的文件並關閉原本的文件
      */
-    private void drawText(GraphicsContext gc, String text) {
-        String[] lines = text.split("\n");
-        int y = DEFAULT_MARGIN + DEFAULT_FONT_SIZE;
-        
-        for (String line : lines) {
-            if (y + DEFAULT_FONT_SIZE > DEFAULT_PAGE_HEIGHT - DEFAULT_MARGIN) {
-                break; // 超出頁面範圍
-            }
-            
-            // 處理長行自動換行
-            List<String> wrappedLines = wrapText(line, DEFAULT_PAGE_WIDTH - (DEFAULT_MARGIN * 2));
-            
-            for (String wrappedLine : wrappedLines) {
-                if (y + DEFAULT_FONT_SIZE > DEFAULT_PAGE_HEIGHT - DEFAULT_MARGIN) {
-                    break;
-                }
-                
-                gc.fillText(wrappedLine, DEFAULT_MARGIN, y);
-                y += DEFAULT_FONT_SIZE + DEFAULT_LINE_SPACING;
-            }
-        }
+    public void replaceDocument(PagedTextDocument document) {
+        closeDocument();
+        currentDocument = document;
     }
-    
-    /**
-     * 文字自動換行
-     */
-    private List<String> wrapText(String text, int maxWidth) {
-        List<String> lines = new ArrayList<>();
-        
-        if (text.isEmpty()) {
-            lines.add("");
-            return lines;
-        }
-        
-        String[] words = text.split(" ");
-        StringBuilder currentLine = new StringBuilder();
-        
-        for (String word : words) {
-            String testLine = currentLine.toString() + (currentLine.length() > 0 ? " " : "") + word;
-            
-            // 估算文字寬度（簡化計算）
-            int estimatedWidth = testLine.length() * (DEFAULT_FONT_SIZE / 2);
-            
-            if (estimatedWidth > maxWidth && currentLine.length() > 0) {
-                lines.add(currentLine.toString());
-                currentLine = new StringBuilder(word);
-            } else {
-                if (currentLine.length() > 0) {
-                    currentLine.append(" ");
-                }
-                currentLine.append(word);
-            }
+
+    private static PagedTextDocument open(File file, MappedTextDocument.PageSettings pageSettings)
+            throws IOException {
+        String fileName = file.getName().toLowerCase();
+        if (DocxDocument.isDocxName(fileName)) {
+            return DocxDocument.open(file, pageSettings);
         }
-        
-        if (currentLine.length() > 0) {
-            lines.add(currentLine.toString());
+        if (fileName.endsWith(".doc")) {
+            throw new IOException("不支援舊版Word格式（.doc），請另存為.docx後再開啟");
         }
-        
-        return lines;
+        return MappedTextDocument.open(file, pageSettings);
     }
     
     /**
-     * 獲取背景色
+     * 關閉目前開啟的文字文件
      */
-    private Color getBackgroundColor() {
-        SettingsManager.ThemeMode theme = settingsManager.getThemeMode();
-        String colorHex = theme.getBackgroundColor();
-        return Color.web(colorHex);
-    }
-    
-    /**
-     * 獲取文字色
-     */
-    private Color getTextColor() {
-        SettingsManager.ThemeMode theme = settingsManager.getThemeMode();
-        String colorHex = theme.getTextColor();
-        return Color.web(colorHex);
+    public void closeDocument() {
+        if (currentDocument != null) {
+            currentDocument.close();
+            currentDocument = null;
+        }
     }
     
-    /**
-     * 載入文字檔案 - 新增缺少的方法
-     */
-    public String loadTextFile(File file) throws IOException {
-        return readTextFile(file);
+    public PagedTextDocument getCurrentDocument() {
+        return currentDocument;
     }
-}
\ No newline at end of file
+}
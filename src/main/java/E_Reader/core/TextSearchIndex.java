@@ -0,0 +1,703 @@
+package E_Reader.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文件全文搜尋索引 - 拉丁文字以單字為詞，中日韓文字以重疊的雙字為詞（每段連續文字的最後一字另記為單字），
+ * 每個詞的出現位置以「頁碼 << 32 | 詞序」存放在排序的long陣列中。
+ *
+ * 索引在背景執行緒逐頁建立，頁面列表增長時（例如文字檔仍在掃描）繼續建立。
+ * 片語查詢以各詞的詞序是否相鄰判斷，最後一個詞視為前綴，可以邊輸入邊查詢；
+ * 尚未建立索引的頁面直接掃描文字，因此任何時候的查詢結果都涵蓋整份文件
+ */
+public class TextSearchIndex {
+
+    // 索引的出現位置數量上限（約佔用 12 位元組 / 位置），超過後其餘頁面在查詢時掃描文字
+    private static final int MAX_POSTINGS = 8_000_000;
+    // 頁面列表沒有增長時，背景執行緒重新檢查的間隔
+    private static final long IDLE_WAIT_MS = 1000;
+    // 掃描未建立索引的頁面時，每隔多少頁回報一次新的命中
+    private static final int SCAN_REPORT_PAGES = 50;
+
+    private static final int SEPARATOR = 0;
+    private static final int LATIN = 1;
+    private static final int CJK = 2;
+
+    private final List<TextExtractor.PageText> pages;
+
+    // 以下欄位由this同步
+    private final Map<String, Postings> terms = new HashMap<>();
+    // 中日韓單字查詢時，以第一個字找出所有以它開頭的雙字詞
+    private final Map<Character, List<String>> bigramsByFirstChar = new HashMap<>();
+    // 排序後的拉丁單字（前綴查詢用），新增單字後重建
+    private String[] sortedWords;
+    // 每頁每個詞在頁面文字中的起始位置
+    private final List<int[]> pageTokenStarts = new ArrayList<>();
+    private long postingCount = 0;
+    private boolean budgetExceeded = false;
+
+    private final Object buildLock = new Object();
+    private volatile boolean closed = false;
+
+    /**
+     * 頁面搜尋時可以中途停止的檢查
+     */
+    @FunctionalInterface
+    public interface CancelCheck {
+        boolean isCancelled();
+    }
+
+    /**
+     * 搜尋過程中收到新的命中位置，在搜尋執行緒上呼叫
+     */
+    @FunctionalInterface
+    public interface HitListener {
+        /**
+         * @param result 目前的搜尋結果
+         * @param from 新命中的起始索引
+         * @param to 新命中的結束索引（不含）
+         */
+        void onHits(SearchResult result, int from, int to);
+    }
+
+    public TextSearchIndex(List<TextExtractor.PageText> pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * 開始在背景建立索引
+     */
+    public void start() {
+        Thread thread = new Thread(this::build, "text-search-index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        thread.start();
+    }
+
+    /**
+     * 頁面列表增加了頁面，喚醒背景執行緒繼續建立索引
+     */
+    public void pagesAdded() {
+        synchronized (buildLock) {
+            buildLock.notifyAll();
+        }
+    }
+
+    /**
+     * 停止建立索引
+     */
+    public void close() {
+        closed = true;
+        pagesAdded();
+    }
+
+    private void build() {
+        int next = 0;
+        while (!closed && !isBudgetExceeded()) {
+            int size;
+            try {
+                size = pages.size();
+            } catch (RuntimeException e) {
+                System.err.println("讀取頁面數量時發生錯誤: " + e.getMessage());
+                return;
+            }
+
+            if (next < size) {
+                addPage(next, readPageText(next));
+                next++;
+                continue;
+            }
+
+            synchronized (buildLock) {
+                try {
+                    buildLock.wait(IDLE_WAIT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private String readPageText(int page) {
+        try {
+            String text = pages.get(page).getBestText();
+            return text != null ? text : "";
+        } catch (RuntimeException e) {
+            System.err.println("讀取第 " + (page + 1) + " 頁文字時發生錯誤: " + e.getMessage());
+            return "";
+        }
+    }
+
+    /**
+     * 將一頁加入索引，頁面必須依序加入
+     */
+    synchronized void addPage(int page, String text) {
+        if (page != pageTokenStarts.size()) {
+            throw new IllegalStateException("頁面必須依序加入索引: " + page);
+        }
+
+        char[] normalized = normalize(text);
+        IntList starts = new IntList(Math.max(16, normalized.length / 4));
+        long pageKey = (long) page << 32;
+        forEachTerm(normalized, (term, start) -> {
+            addPosting(term, pageKey | starts.size(), charType(term.charAt(0)));
+            starts.add(start);
+        });
+
+        pageTokenStarts.add(starts.toArray());
+        if (postingCount > MAX_POSTINGS) {
+            budgetExceeded = true;
+            System.out.println("搜尋索引已達上限，第 " + (page + 2) + " 頁之後改為直接搜尋文字");
+        }
+    }
+
+    /**
+     * 詞與其在文字中的起始位置的接收者
+     */
+    @FunctionalInterface
+    public interface TermConsumer {
+        void accept(String term, int start);
+    }
+
+    /**
+     * 依索引的規則切詞：拉丁文字以單字為詞，中日韓文字以重疊的雙字為詞，每段連續文字的最後一字另記為單字
+     *
+     * @param normalized 以normalize正規化的文字
+     */
+    public static void forEachTerm(char[] normalized, TermConsumer consumer) {
+        int i = 0;
+        int length = normalized.length;
+        while (i < length) {
+            int type = charType(normalized[i]);
+            if (type == SEPARATOR) {
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            while (end < length && charType(normalized[end]) == type) {
+                end++;
+            }
+
+            if (type == LATIN) {
+                consumer.accept(new String(normalized, i, end - i), i);
+            } else {
+                for (int k = i; k < end - 1; k++) {
+                    consumer.accept(new String(normalized, k, 2), k);
+                }
+                consumer.accept(String.valueOf(normalized[end - 1]), end - 1);
+            }
+            i = end;
+        }
+    }
+
+    private void addPosting(String term, long posting, int type) {
+        Postings postings = terms.get(term);
+        if (postings == null) {
+            postings = new Postings();
+            terms.put(term, postings);
+            if (type == LATIN) {
+                sortedWords = null;
+            } else if (term.length() == 2) {
+                bigramsByFirstChar.computeIfAbsent(term.charAt(0), c -> new ArrayList<>()).add(term);
+            }
+        }
+        postings.add(posting);
+        postingCount++;
+    }
+
+    /**
+     * 搜尋片語，回傳所有命中位置（依頁碼與位置排序）
+     *
+     * @param query 查詢文字，最後一個詞可以只輸入開頭
+     * @return 搜尋結果
+     */
+    public SearchResult search(String query) {
+        return search(query, () -> false);
+    }
+
+    /**
+     * 搜尋片語，可以在掃描未建立索引的頁面時中途取消（取消時回傳目前的部分結果）
+     */
+    public SearchResult search(String query, CancelCheck cancelCheck) {
+        return search(query, cancelCheck, null);
+    }
+
+    /**
+     * 搜尋片語，已建立索引的頁面一次回報，其餘頁面在掃描過程中分批回報
+     */
+    public SearchResult search(String query, CancelCheck cancelCheck, HitListener listener) {
+        String trimmed = query != null ? query.trim() : "";
+        SearchResult result = new SearchResult(trimmed);
+        if (trimmed.isEmpty()) {
+            return result;
+        }
+
+        List<QueryToken> tokens = tokenizeQuery(normalize(trimmed));
+        if (tokens.isEmpty()) {
+            return result;
+        }
+
+        int indexedPages = searchIndexed(tokens, result);
+        if (listener != null && result.getCount() > 0) {
+            listener.onHits(result, 0, result.getCount());
+        }
+        scanPages(squeeze(trimmed), indexedPages, result, cancelCheck, listener);
+        return result;
+    }
+
+    /**
+     * 以索引搜尋已建立索引的頁面
+     *
+     * @return 已建立索引的頁數
+     */
+    private synchronized int searchIndexed(List<QueryToken> tokens, SearchResult result) {
+        int tokenCount = tokens.size();
+        long[][] lists = new long[tokenCount][];
+        int[] sizes = new int[tokenCount];
+        int driver = 0;
+        for (int j = 0; j < tokenCount; j++) {
+            long[] list = postingsFor(tokens.get(j));
+            if (list == null) {
+                return pageTokenStarts.size();
+            }
+            lists[j] = list;
+            sizes[j] = postingsSize(tokens.get(j), list);
+            if (sizes[j] < sizes[driver]) {
+                driver = j;
+            }
+        }
+
+        // 以出現次數最少的詞為準，檢查其他詞是否出現在相鄰的詞序
+        int lastLength = tokens.get(tokenCount - 1).term.length();
+        long[] driverList = lists[driver];
+        for (int n = 0; n < sizes[driver]; n++) {
+            long posting = driverList[n];
+            int page = (int) (posting >>> 32);
+            int base = (int) posting - driver;
+            if (base < 0) {
+                continue;
+            }
+
+            boolean matched = true;
+            for (int j = 0; j < tokenCount && matched; j++) {
+                if (j != driver) {
+                    long key = ((long) page << 32) | (base + j);
+                    matched = Arrays.binarySearch(lists[j], 0, sizes[j], key) >= 0;
+                }
+            }
+            if (matched) {
+                int[] starts = pageTokenStarts.get(page);
+                result.add(page, starts[base], starts[base + tokenCount - 1] + lastLength);
+            }
+        }
+        return pageTokenStarts.size();
+    }
+
+    private int postingsSize(QueryToken token, long[] list) {
+        if (token.prefix) {
+            return list.length;
+        }
+        return terms.get(token.term).size;
+    }
+
+    /**
+     * 取得查詢詞的出現位置。前綴詞合併所有符合的詞後重新排序
+     */
+    private long[] postingsFor(QueryToken token) {
+        if (!token.prefix) {
+            Postings postings = terms.get(token.term);
+            return postings != null ? postings.values : null;
+        }
+
+        List<String> matches = new ArrayList<>();
+        if (charType(token.term.charAt(0)) == CJK) {
+            if (terms.containsKey(token.term)) {
+                matches.add(token.term);
+            }
+            matches.addAll(bigramsByFirstChar.getOrDefault(token.term.charAt(0), List.of()));
+        } else {
+            String[] words = getSortedWords();
+            int from = Arrays.binarySearch(words, token.term);
+            if (from < 0) {
+                from = -from - 1;
+            }
+            for (int k = from; k < words.length && words[k].startsWith(token.term); k++) {
+                matches.add(words[k]);
+            }
+        }
+        if (matches.isEmpty()) {
+            return null;
+        }
+
+        int total = 0;
+        for (String term : matches) {
+            total += terms.get(term).size;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (String term : matches) {
+            Postings postings = terms.get(term);
+            System.arraycopy(postings.values, 0, merged, offset, postings.size);
+            offset += postings.size;
+        }
+        if (matches.size() > 1) {
+            Arrays.sort(merged);
+        }
+        return merged;
+    }
+
+    private String[] getSortedWords() {
+        if (sortedWords == null) {
+            List<String> words = new ArrayList<>();
+            for (String term : terms.keySet()) {
+                if (charType(term.charAt(0)) == LATIN) {
+                    words.add(term);
+                }
+            }
+            sortedWords = words.toArray(new String[0]);
+            Arrays.sort(sortedWords);
+        }
+        return sortedWords;
+    }
+
+    /**
+     * 未建立索引的頁面以findPhrase比對，與索引的詞相鄰比對結果一致
+     */
+    private void scanPages(String squeezedQuery, int fromPage, SearchResult result, CancelCheck cancelCheck,
+                           HitListener listener) {
+        int size = pages.size();
+        int reported = result.getCount();
+        for (int page = fromPage; page < size; page++) {
+            if (cancelCheck.isCancelled()) {
+                result.complete = false;
+                return;
+            }
+            if (listener != null && result.getCount() > reported && (page - fromPage) % SCAN_REPORT_PAGES == 0) {
+                listener.onHits(result, reported, result.getCount());
+                reported = result.getCount();
+            }
+            for (int[] range : findPhrase(readPageText(page), squeezedQuery, Integer.MAX_VALUE)) {
+                result.add(page, range[0], range[1]);
+            }
+        }
+        if (listener != null && result.getCount() > reported) {
+            listener.onHits(result, reported, result.getCount());
+        }
+    }
+
+    /**
+     * 將查詢切成詞。最後一段中日韓文字不加上結尾單字（文件中該段可能還有後續文字），
+     * 最後一個詞以前綴比對
+     */
+    public static List<QueryToken> tokenizeQuery(char[] query) {
+        List<QueryToken> tokens = new ArrayList<>();
+        int length = query.length;
+        int i = 0;
+        while (i < length) {
+            int type = charType(query[i]);
+            if (type == SEPARATOR) {
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            while (end < length && charType(query[end]) == type) {
+                end++;
+            }
+            boolean last = true;
+            for (int k = end; k < length; k++) {
+                if (charType(query[k]) != SEPARATOR) {
+                    last = false;
+                    break;
+                }
+            }
+
+            if (type == LATIN) {
+                tokens.add(new QueryToken(new String(query, i, end - i), last));
+            } else if (end - i == 1) {
+                // 單一中日韓字：在結尾時可以是任何以它開頭的雙字詞，否則必須是段落的最後一字
+                tokens.add(new QueryToken(String.valueOf(query[i]), last));
+            } else {
+                for (int k = i; k < end - 1; k++) {
+                    tokens.add(new QueryToken(new String(query, k, 2), false));
+                }
+                if (!last) {
+                    tokens.add(new QueryToken(String.valueOf(query[end - 1]), false));
+                }
+            }
+            i = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * 在頁面文字中找出查詢。頁面與查詢都先去除分隔字元（只在兩個拉丁單字之間保留一個空白），
+     * 比對結果與依序比對查詢詞相同，只是中日韓文字之間的標點不影響比對
+     *
+     * @param squeezedQuery 以squeeze處理過的查詢
+     * @param maxMatches 最多找出幾個命中
+     * @return 依序排列、互不重疊的命中在原文中的起訖位置
+     */
+    public static List<int[]> findPhrase(String text, String squeezedQuery, int maxMatches) {
+        List<int[]> ranges = new ArrayList<>();
+        if (squeezedQuery.isEmpty()) {
+            return ranges;
+        }
+        char[] normalized = normalize(text);
+        char[] squeezed = new char[normalized.length];
+        int[] positions = new int[normalized.length];
+        int length = squeeze(normalized, squeezed, positions);
+        String content = new String(squeezed, 0, length);
+
+        boolean wordStart = isLatin(squeezedQuery.charAt(0));
+        int index = content.indexOf(squeezedQuery);
+        while (index >= 0 && ranges.size() < maxMatches) {
+            // 拉丁單字必須從單字的開頭比對
+            if (wordStart && index > 0 && isLatin(squeezed[index - 1])) {
+                index = content.indexOf(squeezedQuery, index + 1);
+                continue;
+            }
+            ranges.add(new int[]{positions[index], positions[index + squeezedQuery.length() - 1] + 1});
+            index = content.indexOf(squeezedQuery, index + squeezedQuery.length());
+        }
+        return ranges;
+    }
+
+    /**
+     * 正規化後去除分隔字元，兩個拉丁單字之間保留一個空白（findPhrase的查詢格式）
+     */
+    public static String squeeze(String text) {
+        char[] normalized = normalize(text);
+        char[] output = new char[normalized.length];
+        return new String(output, 0, squeeze(normalized, output, null));
+    }
+
+    /**
+     * 去除正規化文字中的分隔字元，兩個拉丁單字之間保留一個空白
+     *
+     * @param positions 每個輸出字元在原文中的位置，可為null
+     * @return 輸出的長度
+     */
+    private static int squeeze(char[] normalized, char[] output, int[] positions) {
+        int length = 0;
+        boolean separated = false;
+        boolean previousLatin = false;
+        for (int i = 0; i < normalized.length; i++) {
+            char c = normalized[i];
+            boolean latin;
+            if (c < 0x80) {
+                // 正規化後的ASCII只有小寫字母與數字是詞的一部分
+                latin = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+                if (!latin) {
+                    separated = true;
+                    continue;
+                }
+            } else if (!isTermChar(c)) {
+                separated = true;
+                continue;
+            } else {
+                latin = !isCjkChar(c);
+            }
+
+            if (separated && previousLatin && latin) {
+                if (positions != null) {
+                    positions[length] = i - 1;
+                }
+                output[length++] = ' ';
+            }
+            separated = false;
+            previousLatin = latin;
+            if (positions != null) {
+                positions[length] = i;
+            }
+            output[length++] = c;
+        }
+        return length;
+    }
+
+    private static boolean isLatin(char c) {
+        return charType(c) == LATIN;
+    }
+
+    /**
+     * 正規化：全形英數轉半形並轉為小寫，長度與原文相同，位置可以直接對應
+     */
+    public static char[] normalize(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            if (c >= 0xFF01 && c <= 0xFF5E) {
+                c = (char) (c - 0xFEE0);
+            }
+            chars[i] = Character.toLowerCase(c);
+        }
+        return chars;
+    }
+
+    /**
+     * 是否為詞的一部分（字母、數字或中日韓文字），其餘字元視為分隔
+     */
+    public static boolean isTermChar(char c) {
+        return charType(c) != SEPARATOR;
+    }
+
+    /**
+     * 是否為以雙字切詞的中日韓文字
+     */
+    public static boolean isCjkChar(char c) {
+        return charType(c) == CJK;
+    }
+
+    private static int charType(char c) {
+        if (!Character.isLetterOrDigit(c)) {
+            return SEPARATOR;
+        }
+        return LineBreakRules.isCjk(c) ? CJK : LATIN;
+    }
+
+    /**
+     * 取得命中位置前後的文字片段
+     *
+     * @param result 搜尋結果
+     * @param hit 命中索引
+     * @param context 前後各保留的字數
+     */
+    public String getSnippet(SearchResult result, int hit, int context) {
+        String text = readPageText(result.getPage(hit));
+        int start = Math.min(result.getStart(hit), text.length());
+        int end = Math.min(result.getEnd(hit), text.length());
+        int from = Math.max(0, start - context);
+        int to = Math.min(text.length(), end + context);
+        String snippet = text.substring(from, to).replace('\n', ' ').replace('\r', ' ');
+        return (from > 0 ? "…" : "") + snippet + (to < text.length() ? "…" : "");
+    }
+
+    public synchronized int getIndexedPageCount() { return pageTokenStarts.size(); }
+    public synchronized int getTermCount() { return terms.size(); }
+    public synchronized long getPostingCount() { return postingCount; }
+    public synchronized boolean isBudgetExceeded() { return budgetExceeded; }
+
+    /**
+     * 是否所有頁面都已建立索引
+     */
+    public synchronized boolean isComplete() {
+        return !budgetExceeded && pageTokenStarts.size() >= pages.size();
+    }
+
+    /**
+     * 查詢詞
+     */
+    public static class QueryToken {
+        final String term;
+        final boolean prefix;
+
+        QueryToken(String term, boolean prefix) {
+            this.term = term;
+            this.prefix = prefix;
+        }
+
+        public String getTerm() { return term; }
+        /**
+         * 是否以前綴比對（查詢的最後一個詞）
+         */
+        public boolean isPrefix() { return prefix; }
+    }
+
+    /**
+     * 單一詞的出現位置，依加入順序（頁碼、詞序）遞增
+     */
+    private static class Postings {
+        long[] values = new long[2];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * 搜尋結果 - 命中位置依頁碼與頁面內位置排序，以基本型別陣列保存
+     */
+    public static class SearchResult {
+        private final String query;
+        private final IntList pages = new IntList(16);
+        private final IntList starts = new IntList(16);
+        private final IntList ends = new IntList(16);
+        private boolean complete = true;
+
+        SearchResult(String query) {
+            this.query = query;
+        }
+
+        void add(int page, int start, int end) {
+            pages.add(page);
+            starts.add(start);
+            ends.add(end);
+        }
+
+        public String getQuery() { return query; }
+        public int getCount() { return pages.size(); }
+        public int getPage(int hit) { return pages.get(hit); }
+        public int getStart(int hit) { return starts.get(hit); }
+        public int getEnd(int hit) { return ends.get(hit); }
+
+        /**
+         * 搜尋是否涵蓋所有頁面（中途取消時為false）
+         */
+        public boolean isComplete() { return complete; }
+
+        /**
+         * 第一個位於指定頁或之後的命中索引，沒有時為-1
+         */
+        public int firstHitAtOrAfter(int page) {
+            int low = 0;
+            int high = pages.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (pages.get(mid) < page) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low < pages.size() ? low : -1;
+        }
+
+        public boolean hasHitsOnPage(int page) {
+            int hit = firstHitAtOrAfter(page);
+            return hit >= 0 && pages.get(hit) == page;
+        }
+    }
+
+    /**
+     * 可增長的int陣列
+     */
+    private static class IntList {
+        private int[] values;
+        private int size;
+
+        IntList(int capacity) {
+            values = new int[Math.max(1, capacity)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) { return values[index]; }
+        int size() { return size; }
+        int[] toArray() { return Arrays.copyOf(values, size); }
+    }
+}
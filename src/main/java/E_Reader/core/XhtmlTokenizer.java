@@ -0,0 +1,711 @@
+package E_Reader.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * XHTML串流分詞器 - 單次掃描章節內容，直接輸出段落、標題、圖片與粗體/斜體區段
+ * 所有文字寫入同一個緩衝區，HTML實體（具名與數字）在掃描時即解碼
+ */
+public class XhtmlTokenizer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_ENTITY_LENGTH = 32;
+
+    // 會結束目前段落的區塊元素
+    private static final Set<String> BLOCK_ELEMENTS = Set.of(
+            "p", "div", "li", "ul", "ol", "dl", "dt", "dd", "blockquote", "section", "article",
+            "aside", "header", "footer", "nav", "main", "figure", "figcaption", "table", "tr",
+            "td", "th", "pre", "hr", "body", "address", "center");
+
+    // 內容不應顯示的元素
+    private static final Set<String> SKIPPED_ELEMENTS = Set.of("script", "style", "head");
+
+    private static final Map<String, Integer> NAMED_ENTITIES = createEntityTable();
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    private final StringBuilder text;
+    private final StringBuilder titleText = new StringBuilder();
+    private final StringBuilder entityBuffer = new StringBuilder(MAX_ENTITY_LENGTH);
+    private final List<StyledText.Block> blocks = new ArrayList<>();
+    private final Map<String, Integer> anchors = new HashMap<>();
+
+    // 目前段落狀態
+    private StyledText.BlockType blockType = StyledText.BlockType.PARAGRAPH;
+    private int headingLevel = 0;
+    private int blockStart = -1;
+    private List<StyledText.Run> runs = new ArrayList<>();
+    private int runStart = -1;
+    private int runStyle = StyledText.STYLE_PLAIN;
+    private boolean pendingSpace = false;
+
+    // 巢狀元素深度
+    private int boldDepth = 0;
+    private int italicDepth = 0;
+    private int preDepth = 0;
+    private int skipDepth = 0;
+    private boolean inTitle = false;
+    private String firstHeading;
+
+    // 最近一次解析的標籤屬性
+    private String attrSource;
+    private String attrAlt;
+    private String attrId;
+
+    private XhtmlTokenizer(Reader reader, int expectedLength) {
+        this.reader = reader;
+        this.text = new StringBuilder(Math.max(16, expectedLength));
+    }
+
+    /**
+     * 解析XHTML字串
+     *
+     * @param html XHTML內容
+     * @return 帶樣式的文字
+     */
+    public static StyledText tokenize(String html) {
+        try {
+            return new XhtmlTokenizer(new StringReader(html), html.length() / 2).run();
+        } catch (IOException e) {
+            // StringReader不會拋出IOException
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 以串流方式解析XHTML
+     *
+     * @param reader XHTML內容來源
+     * @param expectedLength 預估的文字長度（用於配置輸出緩衝區）
+     * @return 帶樣式的文字
+     * @throws IOException 讀取錯誤
+     */
+    public static StyledText tokenize(Reader reader, int expectedLength) throws IOException {
+        return new XhtmlTokenizer(reader, expectedLength).run();
+    }
+
+    private StyledText run() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '<') {
+                readMarkup();
+            } else if (c == '&') {
+                appendEntity();
+            } else {
+                appendCharacter((char) c);
+            }
+        }
+        closeBlock();
+
+        String title = firstHeading != null ? firstHeading : collapse(titleText);
+        return new StyledText(text.toString(), title, blocks, anchors);
+    }
+
+    // ===== 字元輸入 =====
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        position = 0;
+        limit = Math.max(count, 0);
+        return count > 0;
+    }
+
+    // ===== 文字輸出 =====
+
+    private void appendCharacter(char c) {
+        if (inTitle) {
+            titleText.append(c);
+            return;
+        }
+        if (skipDepth > 0) {
+            return;
+        }
+
+        if (preDepth == 0 && isWhitespace(c)) {
+            if (blockStart >= 0) {
+                pendingSpace = true;
+            }
+            return;
+        }
+        if (c == '\r') {
+            return;
+        }
+        appendVisible(c);
+    }
+
+    private void appendEntity() throws IOException {
+        int decoded = readEntity(entityBuffer);
+        if (decoded >= 0) {
+            appendVisible(decoded);
+            return;
+        }
+
+        // 無法辨識的實體保留原文
+        appendVisible('&');
+        for (int i = 0; i < entityBuffer.length(); i++) {
+            appendCharacter(entityBuffer.charAt(i));
+        }
+    }
+
+    private void appendVisible(int codePoint) {
+        if (inTitle) {
+            titleText.appendCodePoint(codePoint);
+            return;
+        }
+        if (skipDepth > 0) {
+            return;
+        }
+
+        startBlockIfNeeded();
+        if (pendingSpace) {
+            text.append(' ');
+            pendingSpace = false;
+        }
+        updateRun();
+        text.appendCodePoint(codePoint);
+    }
+
+    private void startBlockIfNeeded() {
+        if (blockStart >= 0) {
+            return;
+        }
+        if (text.length() > 0) {
+            text.append("\n\n");
+        }
+        blockStart = text.length();
+        pendingSpace = false;
+    }
+
+    private void updateRun() {
+        int style = currentStyle();
+        if (runStart >= 0 && style == runStyle) {
+            return;
+        }
+        closeRun();
+        runStart = text.length();
+        runStyle = style;
+    }
+
+    private void closeRun() {
+        if (runStart >= 0 && text.length() > runStart) {
+            runs.add(new StyledText.Run(runStart, text.length(), runStyle));
+        }
+        runStart = -1;
+    }
+
+    private int currentStyle() {
+        int style = StyledText.STYLE_PLAIN;
+        if (boldDepth > 0) style |= StyledText.STYLE_BOLD;
+        if (italicDepth > 0) style |= StyledText.STYLE_ITALIC;
+        return style;
+    }
+
+    private void lineBreak() {
+        if (skipDepth > 0 || inTitle || blockStart < 0) {
+            return;
+        }
+        pendingSpace = false;
+        trimTrailingSpaces();
+        updateRun();
+        text.append('\n');
+    }
+
+    private void closeBlock() {
+        if (blockStart >= 0) {
+            trimTrailingSpaces();
+            closeRun();
+            if (text.length() > blockStart) {
+                blocks.add(new StyledText.Block(blockType, headingLevel, blockStart, text.length(), runs));
+                if (blockType == StyledText.BlockType.HEADING && firstHeading == null) {
+                    firstHeading = text.substring(blockStart).replace('\n', ' ').trim();
+                }
+            } else {
+                // 空段落：移除預先加入的分隔符號
+                text.setLength(Math.max(0, blockStart - 2));
+            }
+            runs = new ArrayList<>();
+        }
+        blockStart = -1;
+        runStart = -1;
+        pendingSpace = false;
+        blockType = StyledText.BlockType.PARAGRAPH;
+        headingLevel = 0;
+    }
+
+    private void trimTrailingSpaces() {
+        int length = text.length();
+        while (length > blockStart && (text.charAt(length - 1) == ' ' || text.charAt(length - 1) == '\n')) {
+            length--;
+        }
+        text.setLength(length);
+        if (runStart > length) {
+            runStart = length;
+        }
+    }
+
+    // ===== 標記解析 =====
+
+    private void readMarkup() throws IOException {
+        int c = peek();
+        if (c == '/') {
+            read();
+            handleEndTag(readName());
+            skipPast('>');
+        } else if (c == '!') {
+            read();
+            readDeclaration();
+        } else if (c == '?') {
+            skipPast('>');
+        } else if (Character.isLetter(c)) {
+            readStartTag();
+        } else {
+            // 不是標籤，視為一般文字
+            appendVisible('<');
+        }
+    }
+
+    private void readDeclaration() throws IOException {
+        if (peek() == '-') {
+            read();
+            if (peek() == '-') {
+                read();
+                skipPastSequence("-->");
+                return;
+            }
+        } else if (peek() == '[') {
+            String marker = readUntil('[', 8);
+            if (marker.equals("[CDATA")) {
+                readCharacterData();
+                return;
+            }
+        }
+        skipPast('>');
+    }
+
+    private void readCharacterData() throws IOException {
+        int brackets = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == ']') {
+                brackets++;
+                continue;
+            }
+            if (c == '>' && brackets >= 2) {
+                for (int i = 0; i < brackets - 2; i++) appendCharacter(']');
+                return;
+            }
+            for (int i = 0; i < brackets; i++) appendCharacter(']');
+            brackets = 0;
+            appendCharacter((char) c);
+        }
+    }
+
+    private void readStartTag() throws IOException {
+        String name = readName();
+        attrSource = null;
+        attrAlt = null;
+        attrId = null;
+        boolean selfClosing = readAttributes(name);
+        handleStartTag(name, selfClosing);
+
+        // 錨點指向元素內容所在的區塊（開始標籤已處理，區塊若需要切換已完成）
+        if (attrId != null && !attrId.isEmpty() && skipDepth == 0) {
+            anchors.putIfAbsent(attrId, blocks.size());
+        }
+    }
+
+    private void handleStartTag(String name, boolean selfClosing) throws IOException {
+        if (SKIPPED_ELEMENTS.contains(name)) {
+            if (!selfClosing) {
+                if ("head".equals(name)) {
+                    skipDepth++;
+                } else {
+                    // script與style的內容不是標記，直接跳到結束標籤
+                    skipPastSequence("</" + name);
+                    skipPast('>');
+                }
+            }
+            return;
+        }
+
+        switch (name) {
+            case "title":
+                inTitle = !selfClosing;
+                return;
+            case "br":
+                lineBreak();
+                return;
+            case "img":
+            case "image":
+                addImage();
+                return;
+            case "b":
+            case "strong":
+                if (!selfClosing) boldDepth++;
+                return;
+            case "i":
+            case "em":
+            case "cite":
+            case "var":
+                if (!selfClosing) italicDepth++;
+                return;
+            default:
+                break;
+        }
+
+        int level = headingLevel(name);
+        if (level > 0) {
+            closeBlock();
+            blockType = StyledText.BlockType.HEADING;
+            headingLevel = level;
+            if (!selfClosing) boldDepth++;
+        } else if (BLOCK_ELEMENTS.contains(name)) {
+            closeBlock();
+            if ("pre".equals(name) && !selfClosing) preDepth++;
+        }
+    }
+
+    private void handleEndTag(String name) {
+        if ("head".equals(name)) {
+            skipDepth = Math.max(0, skipDepth - 1);
+            return;
+        }
+
+        switch (name) {
+            case "title":
+                inTitle = false;
+                return;
+            case "b":
+            case "strong":
+                boldDepth = Math.max(0, boldDepth - 1);
+                return;
+            case "i":
+            case "em":
+            case "cite":
+            case "var":
+                italicDepth = Math.max(0, italicDepth - 1);
+                return;
+            default:
+                break;
+        }
+
+        if (headingLevel(name) > 0) {
+            boldDepth = Math.max(0, boldDepth - 1);
+            closeBlock();
+        } else if (BLOCK_ELEMENTS.contains(name)) {
+            if ("pre".equals(name)) preDepth = Math.max(0, preDepth - 1);
+            closeBlock();
+        }
+    }
+
+    private void addImage() {
+        if (skipDepth > 0 || attrSource == null || attrSource.isEmpty()) {
+            return;
+        }
+        closeBlock();
+        blocks.add(StyledText.Block.image(text.length(), attrSource, attrAlt));
+    }
+
+    private static int headingLevel(String name) {
+        if (name.length() == 2 && name.charAt(0) == 'h') {
+            char digit = name.charAt(1);
+            if (digit >= '1' && digit <= '6') {
+                return digit - '0';
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 讀取標籤名稱，去除命名空間前綴並轉為小寫
+     */
+    private String readName() throws IOException {
+        StringBuilder name = new StringBuilder(12);
+        int c;
+        while ((c = peek()) != -1 && !isWhitespace((char) c) && c != '>' && c != '/') {
+            read();
+            if (c == ':') {
+                name.setLength(0);
+            } else {
+                name.append((char) c);
+            }
+        }
+        return name.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 讀取屬性直到標籤結束，只保留圖片需要的屬性與錨點ID
+     *
+     * @return 是否為自我結束標籤
+     */
+    private boolean readAttributes(String tagName) throws IOException {
+        boolean wantAttributes = "img".equals(tagName) || "image".equals(tagName);
+        boolean namedAnchor = "a".equals(tagName);
+        boolean selfClosing = false;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '>') {
+                return selfClosing;
+            }
+            if (c == '/') {
+                selfClosing = true;
+                continue;
+            }
+            if (isWhitespace((char) c)) {
+                continue;
+            }
+
+            selfClosing = false;
+            StringBuilder attrName = new StringBuilder();
+            attrName.append((char) c);
+            while ((c = peek()) != -1 && c != '=' && c != '>' && c != '/' && !isWhitespace((char) c)) {
+                attrName.append((char) read());
+            }
+            while ((c = peek()) != -1 && isWhitespace((char) c)) {
+                read();
+            }
+            if (peek() != '=') {
+                continue;
+            }
+            read();
+            while ((c = peek()) != -1 && isWhitespace((char) c)) {
+                read();
+            }
+
+            String name = attrName.toString().toLowerCase(Locale.ROOT);
+            boolean anchorAttribute = name.equals("id") || name.endsWith(":id") || (namedAnchor && name.equals("name"));
+            String value = readAttributeValue(wantAttributes || anchorAttribute);
+            if (anchorAttribute) {
+                attrId = value;
+            } else if (wantAttributes) {
+                storeAttribute(name, value);
+            }
+        }
+        return selfClosing;
+    }
+
+    private String readAttributeValue(boolean keep) throws IOException {
+        int quote = peek();
+        StringBuilder value = keep ? new StringBuilder() : null;
+        int c;
+        if (quote == '"' || quote == '\'') {
+            read();
+            while ((c = read()) != -1 && c != quote) {
+                if (keep) {
+                    if (c == '&') {
+                        int decoded = readEntity(entityBuffer);
+                        if (decoded >= 0) value.appendCodePoint(decoded);
+                        else value.append('&').append(entityBuffer);
+                    } else {
+                        value.append((char) c);
+                    }
+                }
+            }
+        } else {
+            while ((c = peek()) != -1 && c != '>' && !isWhitespace((char) c)) {
+                read();
+                if (keep) value.append((char) c);
+            }
+        }
+        return keep ? value.toString() : null;
+    }
+
+    private void storeAttribute(String name, String value) {
+        if (name.equals("src") || name.equals("href") || name.endsWith(":href")) {
+            attrSource = value;
+        } else if (name.equals("alt")) {
+            attrAlt = value;
+        }
+    }
+
+    // ===== 實體解碼 =====
+
+    /**
+     * 解碼'&'之後的實體
+     *
+     * @param raw 無法解碼時，用來存放已讀取的原始文字（不含'&'）
+     * @return 解碼後的字元碼位，無法辨識時回傳-1
+     */
+    private int readEntity(StringBuilder raw) throws IOException {
+        raw.setLength(0);
+        int c;
+        while (raw.length() < MAX_ENTITY_LENGTH && (c = peek()) != -1) {
+            if (c == ';') {
+                read();
+                int decoded = decodeEntity(raw);
+                if (decoded >= 0) {
+                    return decoded;
+                }
+                raw.append(';');
+                return -1;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '#') {
+                break;
+            }
+            raw.append((char) read());
+        }
+        return -1;
+    }
+
+    private static int decodeEntity(CharSequence name) {
+        if (name.length() > 1 && name.charAt(0) == '#') {
+            try {
+                int codePoint;
+                if (name.charAt(1) == 'x' || name.charAt(1) == 'X') {
+                    codePoint = Integer.parseInt(name, 2, name.length(), 16);
+                } else {
+                    codePoint = Integer.parseInt(name, 1, name.length(), 10);
+                }
+                return Character.isValidCodePoint(codePoint) ? codePoint : 0xFFFD;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        Integer named = NAMED_ENTITIES.get(name.toString());
+        return named != null ? named : -1;
+    }
+
+    // ===== 工具方法 =====
+
+    private void skipPast(char target) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != target) {
+            // 略過
+        }
+    }
+
+    private void skipPastSequence(String sequence) throws IOException {
+        int matched = 0;
+        int c;
+        while ((c = read()) != -1) {
+            char expected = sequence.charAt(matched);
+            if (Character.toLowerCase((char) c) == expected) {
+                matched++;
+                if (matched == sequence.length()) {
+                    return;
+                }
+            } else {
+                matched = Character.toLowerCase((char) c) == sequence.charAt(0) ? 1 : 0;
+            }
+        }
+    }
+
+    private String readUntil(char terminator, int maxLength) throws IOException {
+        StringBuilder result = new StringBuilder();
+        int c;
+        while (result.length() < maxLength && (c = read()) != -1) {
+            if (c == terminator && result.length() > 0) {
+                break;
+            }
+            result.append((char) c);
+        }
+        return result.toString();
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    private static String collapse(CharSequence value) {
+        StringBuilder result = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isWhitespace(c)) {
+                space = result.length() > 0;
+            } else {
+                if (space) result.append(' ');
+                result.append(c);
+                space = false;
+            }
+        }
+        return result.toString();
+    }
+
+    private static Map<String, Integer> createEntityTable() {
+        Map<String, Integer> table = new HashMap<>(512);
+        table.put("quot", 34);
+        table.put("amp", 38);
+        table.put("apos", 39);
+        table.put("lt", 60);
+        table.put("gt", 62);
+
+        // Latin-1 (U+00A0 - U+00FF) 依碼位順序排列
+        String[] latin1 = {
+                "nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar", "sect",
+                "uml", "copy", "ordf", "laquo", "not", "shy", "reg", "macr",
+                "deg", "plusmn", "sup2", "sup3", "acute", "micro", "para", "middot",
+                "cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34", "iquest",
+                "Agrave", "Aacute", "Acirc", "Atilde", "Auml", "Aring", "AElig", "Ccedil",
+                "Egrave", "Eacute", "Ecirc", "Euml", "Igrave", "Iacute", "Icirc", "Iuml",
+                "ETH", "Ntilde", "Ograve", "Oacute", "Ocirc", "Otilde", "Ouml", "times",
+                "Oslash", "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN", "szlig",
+                "agrave", "aacute", "acirc", "atilde", "auml", "aring", "aelig", "ccedil",
+                "egrave", "eacute", "ecirc", "euml", "igrave", "iacute", "icirc", "iuml",
+                "eth", "ntilde", "ograve", "oacute", "ocirc", "otilde", "ouml", "divide",
+                "oslash", "ugrave", "uacute", "ucirc", "uuml", "yacute", "thorn", "yuml"
+        };
+        for (int i = 0; i < latin1.length; i++) {
+            table.put(latin1[i], 0xA0 + i);
+        }
+
+        // 希臘字母
+        String[] greek = {
+                "Alpha", "Beta", "Gamma", "Delta", "Epsilon", "Zeta", "Eta", "Theta", "Iota",
+                "Kappa", "Lambda", "Mu", "Nu", "Xi", "Omicron", "Pi", "Rho", null, "Sigma",
+                "Tau", "Upsilon", "Phi", "Chi", "Psi", "Omega"
+        };
+        for (int i = 0; i < greek.length; i++) {
+            if (greek[i] != null) {
+                table.put(greek[i], 0x391 + i);
+                table.put(greek[i].toLowerCase(Locale.ROOT), 0x3B1 + i);
+            }
+        }
+        table.put("sigmaf", 0x3C2);
+
+        Object[][] others = {
+                {"OElig", 338}, {"oelig", 339}, {"Scaron", 352}, {"scaron", 353}, {"Yuml", 376},
+                {"fnof", 402}, {"circ", 710}, {"tilde", 732},
+                {"ensp", 8194}, {"emsp", 8195}, {"thinsp", 8201}, {"zwnj", 8204}, {"zwj", 8205},
+                {"lrm", 8206}, {"rlm", 8207}, {"ndash", 8211}, {"mdash", 8212}, {"lsquo", 8216},
+                {"rsquo", 8217}, {"sbquo", 8218}, {"ldquo", 8220}, {"rdquo", 8221}, {"bdquo", 8222},
+                {"dagger", 8224}, {"Dagger", 8225}, {"bull", 8226}, {"hellip", 8230}, {"permil", 8240},
+                {"prime", 8242}, {"Prime", 8243}, {"lsaquo", 8249}, {"rsaquo", 8250}, {"oline", 8254},
+                {"frasl", 8260}, {"euro", 8364}, {"trade", 8482}, {"larr", 8592}, {"uarr", 8593},
+                {"rarr", 8594}, {"darr", 8595}, {"harr", 8596}, {"minus", 8722}, {"infin", 8734},
+                {"ne", 8800}, {"le", 8804}, {"ge", 8805}, {"hearts", 9829}
+        };
+        for (Object[] entry : others) {
+            table.put((String) entry[0], (Integer) entry[1]);
+        }
+        return table;
+    }
+}
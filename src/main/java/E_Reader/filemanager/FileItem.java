@@ -1,6 +1,11 @@
 package E_Reader.filemanager;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 檔案項目類別
@@ -11,23 +16,30 @@ public class FileItem {
     private String filePath;
     private String extension;
     private long size;
-    private LocalDateTime lastModified;
+    // 檔案的修改時間（epoch毫秒），比對變動與保存索引都使用原始值，顯示時才轉換為當地時間
+    private long lastModifiedMillis;
     private boolean favorite;
     private String folderId;
     private String thumbnailPath;
+    // 從檔案內容擷取的中繼資料（例如標題、作者），保存在檔案庫索引中，第一次寫入時才建立
+    private Map<String, String> metadata;
     
-    public FileItem(String id, String name, String filePath, String extension, long size, LocalDateTime lastModified, String folderId) {
+    public FileItem(String id, String name, String filePath, String extension, long size, long lastModifiedMillis, String folderId) {
         this.id = id;
         this.name = name;
         this.filePath = filePath;
         this.extension = extension;
         this.size = size;
-        this.lastModified = lastModified;
+        this.lastModifiedMillis = lastModifiedMillis;
         this.favorite = false;
         this.folderId = folderId;
         this.thumbnailPath = null;
     }
     
+    public FileItem(String id, String name, String filePath, String extension, long size, LocalDateTime lastModified, String folderId) {
+        this(id, name, filePath, extension, size, toEpochMillis(lastModified), folderId);
+    }
+    
     // 舊的建構函數，保持向後相容
     public FileItem(String path, String name, String type, long size, LocalDateTime lastModified) {
         this.id = java.util.UUID.randomUUID().toString();
@@ -35,7 +47,7 @@ public class FileItem {
         this.filePath = path;
         this.extension = type;
         this.size = size;
-        this.lastModified = lastModified;
+        this.lastModifiedMillis = toEpochMillis(lastModified);
         this.favorite = false;
         this.folderId = "ALL";
         this.thumbnailPath = null;
@@ -65,8 +77,14 @@ public class FileItem {
     public long getSize() { return size; }
     public void setSize(long size) { this.size = size; }
     
-    public LocalDateTime getLastModified() { return lastModified; }
-    public void setLastModified(LocalDateTime lastModified) { this.lastModified = lastModified; }
+    public long getLastModifiedMillis() { return lastModifiedMillis; }
+    public void setLastModifiedMillis(long lastModifiedMillis) { this.lastModifiedMillis = lastModifiedMillis; }
+    
+    // 顯示用的當地時間
+    public LocalDateTime getLastModified() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(lastModifiedMillis), ZoneId.systemDefault());
+    }
+    public void setLastModified(LocalDateTime lastModified) { this.lastModifiedMillis = toEpochMillis(lastModified); }
     
     public boolean isFavorite() { return favorite; }
     public void setFavorite(boolean favorite) { this.favorite = favorite; }
@@ -77,6 +95,23 @@ public class FileItem {
     public String getThumbnailPath() { return thumbnailPath; }
     public void setThumbnailPath(String thumbnailPath) { this.thumbnailPath = thumbnailPath; }
     
+    public synchronized Map<String, String> getMetadata() {
+        return metadata == null || metadata.isEmpty() ? Collections.emptyMap() : new LinkedHashMap<>(metadata);
+    }
+    public synchronized String getMetadata(String key) { return metadata != null ? metadata.get(key) : null; }
+    public synchronized void putMetadata(String key, String value) {
+        if (value == null) {
+            if (metadata != null) {
+                metadata.remove(key);
+            }
+        } else {
+            if (metadata == null) {
+                metadata = new LinkedHashMap<>();
+            }
+            metadata.put(key, value);
+        }
+    }
+    
     public boolean hasThumbnail() {
         return thumbnailPath != null && !thumbnailPath.isEmpty();
     }
@@ -85,4 +120,8 @@ public class FileItem {
     public String toString() {
         return name;
     }
-}
\ No newline at end of file
+    
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime == null ? 0L : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -4,7 +4,9 @@ import E_Reader.ui.MainController;
 import E_Reader.settings.SettingsManager;
 import E_Reader.core.TextExtractor;
 import E_Reader.utils.AlertHelper;
+import E_Reader.utils.FileManagerConfig;
 import javafx.animation.KeyFrame;
+import javafx.animation.PauseTransition;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -42,15 +44,27 @@ public class FileManagerController {
     // 單例模式
     private static FileManagerController instance;
 
+    // 搜尋的延遲（毫秒）與最多顯示的結果數
+    private static final int SEARCH_DELAY_MS = 150;
+    private static final int SEARCH_RESULT_LIMIT = 500;
+    // 全文搜尋最多列出的書籍數
+    private static final int FULL_TEXT_RESULT_LIMIT = 100;
+
     private final Stage primaryStage;
     private final Path libraryPath;
     private final FileManagerData fileManagerData;
+    private LibraryWatcher libraryWatcher;
+    private final FileManagerConfig fileManagerConfig;
+    private final ThumbnailService thumbnailService;
+    private final LibrarySearchIndex searchIndex;
+    private final LibraryTextIndex textIndex;
+    // 停止輸入後才搜尋，連續輸入只查詢一次
+    private PauseTransition searchDelay;
 
     // UI 組件
     private BorderPane mainLayout;
     private VBox folderPanel;
-    private ScrollPane fileViewScrollPane;
-    private GridPane fileGrid;
+    private LibraryItemView itemView;
     private Label statusLabel;
     private TextField searchField;
     private ComboBox<String> sortComboBox;
@@ -59,9 +73,9 @@ public class FileManagerController {
 
     // 當前狀態
     private String currentFolderId = "root";
+    private String displayedFolderId;
     private List<FileItem> currentFiles = new ArrayList<>();
     private List<FolderItem> currentFolders = new ArrayList<>();
-    private boolean isGridView = true; // 檢視模式：true=網格，false=清單
     private TreeView<FolderTreeItem> folderTreeView; // 資料夾樹狀檢視
 
     // 控制樹狀檢視刷新
@@ -76,6 +90,16 @@ public class FileManagerController {
 
     public interface FileOpenCallback {
         void onFileOpen(File file);
+
+        /**
+         * 開啟檔案並跳到指定位置（全文搜尋的結果），預設只開啟檔案
+         *
+         * @param page 頁碼（PDF為頁、EPUB為章節）
+         * @param textOffset TXT與DOCX中符合文字的字元位置，-1表示使用page
+         */
+        default void onFileOpen(File file, int page, long textOffset) {
+            onFileOpen(file);
+        }
     }
 
     public FileManagerController() {
@@ -104,6 +128,13 @@ public class FileManagerController {
 
         this.libraryPath = chosenPath;
         this.fileManagerData = new FileManagerData(libraryPath);
+
+        this.fileManagerConfig = FileManagerConfig.getInstance();
+        int[] thumbnailSize = fileManagerConfig.getThumbnailSize();
+        this.thumbnailService = new ThumbnailService(fileManagerData.getDataDirectory(),
+                thumbnailSize[0], thumbnailSize[1], fileManagerConfig.getThumbnailCacheMaxSize());
+        this.searchIndex = new LibrarySearchIndex(fileManagerData);
+        this.textIndex = new LibraryTextIndex(fileManagerData);
         
         // 設定管理器將從MainController傳入
     }
@@ -123,7 +154,41 @@ public class FileManagerController {
         // 創建測試資料夾
         createTestFoldersIfNeeded();
 
+        startLibraryWatcher();
         loadCurrentFolder();
+        // 先在背景建立搜尋索引，第一次搜尋不需要等待
+        searchIndex.updateAsync();
+        // 全文索引在背景低優先權建立，之後隨檔案庫變動增量更新
+        textIndex.start();
+    }
+
+    /**
+     * 監看檔案庫目錄，其他程式造成的變動直接更新目前的檢視
+     */
+    private void startLibraryWatcher() {
+        if (libraryWatcher != null) {
+            return;
+        }
+        fileManagerData.setLibraryListener(change -> Platform.runLater(() -> onLibraryChanged(change)));
+        try {
+            libraryWatcher = LibraryWatcher.start(fileManagerData);
+        } catch (IOException e) {
+            System.err.println("無法啟動檔案庫監看: " + e.getMessage());
+        }
+    }
+
+    private void onLibraryChanged(FileManagerData.LibraryChange change) {
+        if (change.getRemovedFolderIds().contains(currentFolderId)) {
+            currentFolderId = "root";
+        }
+        if (change.isStructureChanged()) {
+            refreshFolderPanel();
+        }
+        if (change.isStructureChanged() || change.getChangedFolderIds().contains(currentFolderId)) {
+            loadCurrentFolder();
+            // 既有項目的大小、修改時間或名稱可能在原處更新
+            itemView.refreshItems();
+        }
     }
 
     private void createTestFoldersIfNeeded() {
@@ -177,16 +242,29 @@ public class FileManagerController {
         mainLayout.setLeft(folderScrollPane);
 
         // 中央檔案檢視區域
-        fileGrid = new GridPane();
-        fileGrid.setHgap(15);
-        fileGrid.setVgap(15);
-        fileGrid.setPadding(new Insets(20));
+        itemView = new LibraryItemView(fileManagerData, thumbnailService, fileManagerConfig,
+                new LibraryItemView.ItemActions() {
+                    @Override
+                    public void openFolder(FolderItem folder) {
+                        navigateToFolder(folder.getId());
+                    }
 
-        fileViewScrollPane = new ScrollPane(fileGrid);
-        fileViewScrollPane.setFitToWidth(true);
-        fileViewScrollPane.setFitToHeight(true);
-        fileViewScrollPane.setStyle("-fx-background-color: white;");
-        mainLayout.setCenter(fileViewScrollPane);
+                    @Override
+                    public void openFile(FileItem file) {
+                        FileManagerController.this.openFile(file);
+                    }
+
+                    @Override
+                    public void showFolderMenu(javafx.scene.Node source, FolderItem folder, double screenX, double screenY) {
+                        showFolderContextMenu(source, folder.getId(), screenX, screenY);
+                    }
+
+                    @Override
+                    public void showFileMenu(javafx.scene.Node source, FileItem file, double screenX, double screenY) {
+                        showFileContextMenu(source, file, screenX, screenY);
+                    }
+                });
+        mainLayout.setCenter(itemView.getNode());
 
         // 底部狀態欄
         HBox bottomBar = createBottomBar();
@@ -280,7 +358,24 @@ public class FileManagerController {
         searchField = new TextField();
         searchField.setPromptText("搜尋檔案或資料夾...");
         searchField.setPrefWidth(200);
-        searchField.textProperty().addListener((obs, oldText, newText) -> filterFiles(newText));
+        searchDelay = new PauseTransition(Duration.millis(SEARCH_DELAY_MS));
+        searchDelay.setOnFinished(e -> runSearch());
+        searchField.textProperty().addListener((obs, oldText, newText) -> {
+            if (isSearching()) {
+                searchDelay.playFromStart();
+            } else {
+                searchDelay.stop();
+                searchIndex.cancel();
+                refreshFileView();
+                statusLabel.setText("已載入 " + currentFiles.size() + " 個檔案，" + currentFolders.size() + " 個資料夾");
+            }
+        });
+
+        // 全文搜尋按鈕
+        Button fullTextBtn = new Button("📖 全文搜尋");
+        fullTextBtn.setStyle("-fx-background-color: #17a2b8; -fx-text-fill: white; -fx-padding: 8 16;");
+        fullTextBtn.setOnAction(e -> showFullTextSearchDialog());
+        fullTextBtn.setTooltip(new Tooltip("搜尋整個檔案庫中所有書籍的內文"));
 
         // 排序選項
         sortComboBox = new ComboBox<>();
@@ -298,18 +393,16 @@ public class FileManagerController {
 
         // 檢視模式切換事件
         gridViewBtn.setOnAction(e -> {
-            isGridView = true;
-            refreshFileView();
+            itemView.setGridMode(true);
         });
         listViewBtn.setOnAction(e -> {
-            isGridView = false;
-            refreshFileView();
+            itemView.setGridMode(false);
         });
 
         toolbar.getChildren().addAll(
                 importFileBtn, importFolderBtn, quickImportBtn,
                 new Separator(), newFolderBtn, refreshBtn,
-                new Separator(), searchField, sortComboBox,
+                new Separator(), searchField, fullTextBtn, sortComboBox,
                 new Separator(), gridViewBtn, listViewBtn
         );
 
@@ -486,14 +579,14 @@ public class FileManagerController {
 
     private void setupEventHandlers() {
         // 拖拽支持（簡化版本）
-        fileGrid.setOnDragOver(e -> {
+        itemView.getNode().setOnDragOver(e -> {
             if (e.getDragboard().hasFiles()) {
                 e.acceptTransferModes(javafx.scene.input.TransferMode.COPY);
             }
             e.consume();
         });
 
-        fileGrid.setOnDragDropped(e -> {
+        itemView.getNode().setOnDragDropped(e -> {
             if (e.getDragboard().hasFiles()) {
                 List<File> files = e.getDragboard().getFiles();
                 importFiles(files);
@@ -516,8 +609,13 @@ public class FileManagerController {
             // 更新路徑顯示
             updatePathLabel();
 
-            // 重新整理檢視
+            // 重新整理檢視，切換資料夾時取消前一個資料夾尚未開始的縮圖並捲回頂端
             refreshFileView();
+            if (!currentFolderId.equals(displayedFolderId)) {
+                displayedFolderId = currentFolderId;
+                thumbnailService.cancelPending();
+                itemView.scrollToTop();
+            }
 
             // 只在必要時重新整理資料夾面板
             if (folderTreeView.getRoot().getChildren().isEmpty()) {
@@ -527,7 +625,9 @@ public class FileManagerController {
                 updateTreeSelection();
             }
 
-            statusLabel.setText("已載入 " + currentFiles.size() + " 個檔案，" + currentFolders.size() + " 個資料夾");
+            if (!isSearching()) {
+                statusLabel.setText("已載入 " + currentFiles.size() + " 個檔案，" + currentFolders.size() + " 個資料夾");
+            }
         });
     }
 
@@ -554,297 +654,18 @@ public class FileManagerController {
     }
 
     private void refreshFileView() {
-        fileGrid.getChildren().clear();
-
-        if (isGridView) {
-            refreshGridView();
+        if (isSearching()) {
+            // 搜尋中顯示的是搜尋結果，重新查詢以反映變動
+            runSearch();
         } else {
-            refreshListView();
+            itemView.setItems(currentFolders, currentFiles);
         }
     }
 
-    private void refreshGridView() {
-        int column = 0;
-        int row = 0;
-        int maxColumns = 5; // 每行最多5個項目
-
-        // 先顯示資料夾
-        for (FolderItem folder : currentFolders) {
-            VBox folderCard = createFolderCard(folder);
-            fileGrid.add(folderCard, column, row);
-
-            column++;
-            if (column >= maxColumns) {
-                column = 0;
-                row++;
-            }
-        }
-
-        // 再顯示檔案
-        for (FileItem file : currentFiles) {
-            VBox fileCard = createFileCard(file);
-            fileGrid.add(fileCard, column, row);
-
-            column++;
-            if (column >= maxColumns) {
-                column = 0;
-                row++;
-            }
-        }
-    }
-
-    private void refreshListView() {
-        fileGrid.setHgap(0);
-        fileGrid.setVgap(2);
-
-        int row = 0;
-
-        // 先顯示資料夾
-        for (FolderItem folder : currentFolders) {
-            HBox folderRow = createFolderListItem(folder);
-            fileGrid.add(folderRow, 0, row);
-            row++;
-        }
-
-        // 再顯示檔案
-        for (FileItem file : currentFiles) {
-            HBox fileRow = createFileListItem(file);
-            fileGrid.add(fileRow, 0, row);
-            row++;
-        }
-
-        // 重置間距設定
-        fileGrid.setHgap(15);
-        fileGrid.setVgap(15);
-    }
-
-    private VBox createFolderCard(FolderItem folder) {
-        VBox card = new VBox(10);
-        card.setPrefSize(160, 140);
-        card.setAlignment(Pos.CENTER);
-        card.setStyle("-fx-background-color: white; -fx-border-color: #e0e0e0; -fx-border-radius: 8px; " +
-                "-fx-background-radius: 8px; -fx-padding: 15; -fx-cursor: hand; " +
-                "-fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.1), 5, 0, 0, 2);");
-
-        // 資料夾圖示
-        Label iconLabel = new Label("📁");
-        iconLabel.setStyle("-fx-font-size: 48px;");
-
-        // 資料夾名稱
-        Label nameLabel = new Label(folder.getName());
-        nameLabel.setStyle("-fx-font-size: 12px; -fx-font-weight: bold; -fx-text-alignment: center;");
-        nameLabel.setWrapText(true);
-        nameLabel.setMaxWidth(130);
-
-        // 檔案數量
-        int fileCount = fileManagerData.getFileCount(folder.getId());
-        Label countLabel = new Label(fileCount + " 個項目");
-        countLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #666666;");
-
-        card.getChildren().addAll(iconLabel, nameLabel, countLabel);
-
-        // 懸停效果
-        card.setOnMouseEntered(e -> card.setStyle(card.getStyle() + "; -fx-background-color: #f8f9fa;"));
-        card.setOnMouseExited(e -> card.setStyle(card.getStyle().replace("; -fx-background-color: #f8f9fa", "")));
-
-        // 點擊事件
-        card.setOnMouseClicked(e -> {
-            if (e.getButton() == MouseButton.PRIMARY) {
-                if (e.getClickCount() == 2) {
-                    navigateToFolder(folder.getId());
-                }
-            } else if (e.getButton() == MouseButton.SECONDARY) {
-                showFolderContextMenu(card, folder.getId(), e.getScreenX(), e.getScreenY());
-            }
-        });
-
-        return card;
-    }
-
-    private HBox createFolderListItem(FolderItem folder) {
-        HBox row = new HBox(10);
-        row.setPrefWidth(600);
-        row.setAlignment(Pos.CENTER_LEFT);
-        row.setPadding(new Insets(8));
-        row.setStyle("-fx-background-color: white; -fx-border-color: #e0e0e0; -fx-border-width: 0 0 1 0; -fx-cursor: hand;");
-
-        // 資料夾圖示
-        Label iconLabel = new Label("📁");
-        iconLabel.setStyle("-fx-font-size: 20px;");
-        iconLabel.setPrefWidth(30);
-
-        // 資料夾名稱
-        Label nameLabel = new Label(folder.getName());
-        nameLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold;");
-        nameLabel.setPrefWidth(200);
-
-        // 檔案數量
-        int fileCount = fileManagerData.getFileCount(folder.getId());
-        Label countLabel = new Label(fileCount + " 個項目");
-        countLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #666666;");
-        countLabel.setPrefWidth(100);
-
-        // 創建日期
-        Label dateLabel = new Label(folder.getCreatedDate().format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm")));
-        dateLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #666666;");
-
-        row.getChildren().addAll(iconLabel, nameLabel, countLabel, dateLabel);
-
-        // 懸停效果
-        row.setOnMouseEntered(e -> row.setStyle(row.getStyle() + "; -fx-background-color: #f8f9fa;"));
-        row.setOnMouseExited(e -> row.setStyle(row.getStyle().replace("; -fx-background-color: #f8f9fa", "")));
-
-        // 點擊事件
-        row.setOnMouseClicked(e -> {
-            if (e.getButton() == MouseButton.PRIMARY) {
-                if (e.getClickCount() == 2) {
-                    navigateToFolder(folder.getId());
-                }
-            } else if (e.getButton() == MouseButton.SECONDARY) {
-                showFolderContextMenu(row, folder.getId(), e.getScreenX(), e.getScreenY());
-            }
-        });
-
-        return row;
-    }
-
-    private HBox createFileListItem(FileItem file) {
-        HBox row = new HBox(10);
-        row.setPrefWidth(600);
-        row.setAlignment(Pos.CENTER_LEFT);
-        row.setPadding(new Insets(8));
-        row.setStyle("-fx-background-color: white; -fx-border-color: #e0e0e0; -fx-border-width: 0 0 1 0; -fx-cursor: hand;");
-
-        // 檔案圖示
-        Label iconLabel = new Label(getFileIcon(file.getExtension()));
-        iconLabel.setStyle("-fx-font-size: 20px;");
-        iconLabel.setPrefWidth(30);
-
-        // 檔案名稱
-        Label nameLabel = new Label(file.getName());
-        nameLabel.setStyle("-fx-font-size: 14px;");
-        nameLabel.setPrefWidth(250);
-
-        // 檔案大小
-        Label sizeLabel = new Label(formatFileSize(file.getSize()));
-        sizeLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #666666;");
-        sizeLabel.setPrefWidth(80);
-
-        // 修改日期
-        Label dateLabel = new Label(file.getLastModified().format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm")));
-        dateLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #666666;");
-
-        row.getChildren().addAll(iconLabel, nameLabel, sizeLabel, dateLabel);
-
-        // 懸停效果
-        row.setOnMouseEntered(e -> row.setStyle(row.getStyle() + "; -fx-background-color: #f8f9fa;"));
-        row.setOnMouseExited(e -> row.setStyle(row.getStyle().replace("; -fx-background-color: #f8f9fa", "")));
-
-        // 點擊事件
-        row.setOnMouseClicked(e -> {
-            if (e.getButton() == MouseButton.PRIMARY) {
-                if (e.getClickCount() == 2) {
-                    openFile(file);
-                }
-            } else if (e.getButton() == MouseButton.SECONDARY) {
-                showFileContextMenu(row, file, e.getScreenX(), e.getScreenY());
-            }
-        });
-
-        return row;
-    }
-
-    private VBox createFileCard(FileItem file) {
-        VBox card = new VBox(10);
-        card.setPrefSize(160, 140);
-        card.setAlignment(Pos.CENTER);
-        card.setStyle("-fx-background-color: white; -fx-border-color: #e0e0e0; -fx-border-radius: 8px; " +
-                "-fx-background-radius: 8px; -fx-padding: 15; -fx-cursor: hand; " +
-                "-fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.1), 5, 0, 0, 2);");
-
-        // 檔案縮圖或圖示
-        VBox thumbnailContainer = new VBox();
-        thumbnailContainer.setAlignment(Pos.CENTER);
-        thumbnailContainer.setPrefSize(80, 60);
-
-        if (file.hasThumbnail()) {
-            try {
-                ImageView thumbnail = new ImageView(new Image(file.getThumbnailPath()));
-                thumbnail.setFitWidth(80);
-                thumbnail.setFitHeight(60);
-                thumbnail.setPreserveRatio(true);
-                thumbnail.setSmooth(true);
-                thumbnailContainer.getChildren().add(thumbnail);
-            } catch (Exception e) {
-                Label iconLabel = new Label(getFileIcon(file.getExtension()));
-                iconLabel.setStyle("-fx-font-size: 36px;");
-                thumbnailContainer.getChildren().add(iconLabel);
-            }
-        } else {
-            Label iconLabel = new Label(getFileIcon(file.getExtension()));
-            iconLabel.setStyle("-fx-font-size: 36px;");
-            thumbnailContainer.getChildren().add(iconLabel);
-        }
-
-        // 檔案名稱
-        Label nameLabel = new Label(file.getName());
-        nameLabel.setStyle("-fx-font-size: 12px; -fx-font-weight: bold; -fx-text-alignment: center;");
-        nameLabel.setWrapText(true);
-        nameLabel.setMaxWidth(130);
-
-        // 檔案大小和日期
-        String sizeText = formatFileSize(file.getSize());
-        String dateText = file.getLastModified().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-        Label infoLabel = new Label(sizeText + " • " + dateText);
-        infoLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #666666;");
-
-        card.getChildren().addAll(thumbnailContainer, nameLabel, infoLabel);
-
-        // 懸停效果
-        card.setOnMouseEntered(e -> card.setStyle(card.getStyle() + "; -fx-background-color: #f8f9fa;"));
-        card.setOnMouseExited(e -> card.setStyle(card.getStyle().replace("; -fx-background-color: #f8f9fa", "")));
-
-        // 點擊事件
-        card.setOnMouseClicked(e -> {
-            if (e.getButton() == MouseButton.PRIMARY) {
-                if (e.getClickCount() == 2) {
-                    openFile(file);
-                }
-            } else if (e.getButton() == MouseButton.SECONDARY) {
-                showFileContextMenu(card, file, e.getScreenX(), e.getScreenY());
-            }
-        });
-
-        return card;
-    }
-
-    private String getFileIcon(String extension) {
-        switch (extension.toLowerCase()) {
-            case "pdf": return "📄";
-            case "epub": return "📚";
-            case "jpg":
-            case "jpeg":
-            case "png":
-            case "gif":
-            case "bmp": return "🖼️";
-            case "txt": return "📝";
-            case "doc":
-            case "docx": return "📘";
-            case "zip":
-            case "rar": return "📦";
-            default: return "📎";
-        }
-    }
-
-    private String formatFileSize(long bytes) {
-        if (bytes < 1024) return bytes + " B";
-        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
-        if (bytes < 1024 * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
-        return String.format("%.1f GB", bytes / (1024.0 * 1024.0 * 1024.0));
-    }
-
     private void navigateToFolder(String folderId) {
         currentFolderId = folderId;
+        // 從搜尋結果開啟資料夾時回到一般檢視
+        searchField.clear();
         loadCurrentFolder();
     }
 
@@ -941,10 +762,11 @@ public class FileManagerController {
             FileChooser fileChooser = new FileChooser();
             fileChooser.setTitle("選擇要匯入的檔案");
             fileChooser.getExtensionFilters().addAll(
-                    new FileChooser.ExtensionFilter("所有支援的檔案", "*.pdf", "*.epub", "*.jpg", "*.jpeg", "*.png", "*.gif", "*.bmp", "*.tiff", "*.webp", "*.txt", "*.doc", "*.docx"),
+                    new FileChooser.ExtensionFilter("所有支援的檔案", "*.pdf", "*.epub", "*.jpg", "*.jpeg", "*.png", "*.gif", "*.bmp", "*.tiff", "*.webp", "*.cbz", "*.zip", "*.txt", "*.doc", "*.docx"),
                     new FileChooser.ExtensionFilter("PDF 檔案", "*.pdf"),
                     new FileChooser.ExtensionFilter("EPUB 檔案", "*.epub"),
                     new FileChooser.ExtensionFilter("圖片檔案", "*.jpg", "*.jpeg", "*.png", "*.gif", "*.bmp", "*.tiff", "*.webp"),
+                    new FileChooser.ExtensionFilter("漫畫壓縮檔", "*.cbz", "*.zip"),
                     new FileChooser.ExtensionFilter("文字檔案", "*.txt", "*.doc", "*.docx"),
                     new FileChooser.ExtensionFilter("所有檔案", "*.*")
             );
@@ -1628,7 +1450,7 @@ public class FileManagerController {
 
     private void hideImportProgress() {
         importProgressBar = null;
-        mainLayout.setCenter(fileViewScrollPane);
+        mainLayout.setCenter(itemView.getNode());
     }
 
     private void importFiles(List<File> files) {
@@ -1747,6 +1569,7 @@ public class FileManagerController {
 
             if (fileManagerData.renameFolder(folderId, newName)) {
                 loadCurrentFolder();
+                itemView.refreshItems();
                 statusLabel.setText("已重新命名資料夾: " + newName);
             } else {
                 showError("重新命名失敗", "無法重新命名資料夾，可能名稱已存在或包含無效字符");
@@ -1795,6 +1618,7 @@ public class FileManagerController {
 
             if (fileManagerData.renameFile(file.getId(), newName)) {
                 loadCurrentFolder();
+                itemView.refreshItems();
                 statusLabel.setText("已重新命名檔案: " + newName);
             } else {
                 showError("重新命名失敗", "無法重新命名檔案，可能名稱已存在或包含無效字符");
@@ -1871,12 +1695,23 @@ public class FileManagerController {
     }
 
     private void openFile(FileItem file) {
+        openFile(file, null);
+    }
+
+    /**
+     * @param hit 全文搜尋的結果，不為null時開啟後跳到符合的位置
+     */
+    private void openFile(FileItem file, LibraryTextIndex.Hit hit) {
         if (fileOpenCallback != null) {
             File physicalFile = new File(file.getFilePath());
             if (physicalFile.exists()) {
                 // 檢查是否為E_Reader支援的檔案格式
                 if (isSupportedByEReader(file)) {
-                    fileOpenCallback.onFileOpen(physicalFile);
+                    if (hit != null) {
+                        fileOpenCallback.onFileOpen(physicalFile, hit.getPage(), hit.getTextOffset());
+                    } else {
+                        fileOpenCallback.onFileOpen(physicalFile);
+                    }
                     // 隱藏檔案管理器視窗，不關閉以便未來可以再次開啟
                     primaryStage.hide();
                 } else {
@@ -1897,7 +1732,10 @@ public class FileManagerController {
         return extension.equals("pdf") || 
                extension.equals("epub") || 
                isImageExtension(extension) ||
-                extension.equals("txt");
+               extension.equals("cbz") ||
+               extension.equals("zip") ||
+                extension.equals("txt") ||
+                extension.equals("docx");
     }
 
 
@@ -1910,7 +1748,7 @@ public class FileManagerController {
         warningAlert.setHeaderText("即將開啟PDF檔案");
 
         // 獲取檔案大小資訊
-        String fileSizeText = formatFileSize(fileItem.getSize());
+        String fileSizeText = LibraryItemView.formatFileSize(fileItem.getSize());
 
         StringBuilder content = new StringBuilder();
         content.append("檔案: ").append(fileItem.getName()).append("\n");
@@ -2048,94 +1886,128 @@ public class FileManagerController {
         }
     }
 
-    private void filterFiles(String searchText) {
-        if (searchText == null || searchText.trim().isEmpty()) {
-            // 顯示所有檔案
-            refreshFileView();
-            return;
-        }
-
-        String lowerSearchText = searchText.toLowerCase();
-
-        // 過濾資料夾
-        List<FolderItem> filteredFolders = currentFolders.stream()
-                .filter(folder -> folder.getName().toLowerCase().contains(lowerSearchText))
-                .collect(Collectors.toList());
-
-        // 過濾檔案
-        List<FileItem> filteredFiles = currentFiles.stream()
-                .filter(file -> file.getName().toLowerCase().contains(lowerSearchText))
-                .collect(Collectors.toList());
-
-        // 更新檢視
-        displayFilteredItems(filteredFolders, filteredFiles);
-
-        statusLabel.setText("找到 " + filteredFiles.size() + " 個檔案，" + filteredFolders.size() + " 個資料夾");
+    private boolean isSearching() {
+        return searchField != null && !searchField.getText().trim().isEmpty();
     }
 
-    private void displayFilteredItems(List<FolderItem> folders, List<FileItem> files) {
-        fileGrid.getChildren().clear();
-
-        if (isGridView) {
-            displayFilteredItemsGrid(folders, files);
-        } else {
-            displayFilteredItemsList(folders, files);
+    /**
+     * 在背景搜尋整個檔案庫，取代尚未完成的前一次搜尋
+     */
+    private void runSearch() {
+        if (!isSearching()) {
+            return;
         }
+        statusLabel.setText("搜尋中...");
+        searchIndex.searchAsync(searchField.getText(), SEARCH_RESULT_LIMIT,
+                fileManagerConfig.isSearchFuzzyEnabled(), fileManagerConfig.isSearchCaseSensitive(),
+                currentFolderId, (query, results) -> Platform.runLater(() -> showSearchResults(query, results)));
     }
 
-    private void displayFilteredItemsGrid(List<FolderItem> folders, List<FileItem> files) {
-        int column = 0;
-        int row = 0;
-        int maxColumns = 5;
-
-        // 顯示過濾後的資料夾
-        for (FolderItem folder : folders) {
-            VBox folderCard = createFolderCard(folder);
-            fileGrid.add(folderCard, column, row);
-
-            column++;
-            if (column >= maxColumns) {
-                column = 0;
-                row++;
-            }
+    private void showSearchResults(String query, LibrarySearchIndex.Results results) {
+        // 結果回來前搜尋框已經改變
+        if (!query.equals(searchField.getText())) {
+            return;
         }
+        itemView.setItems(results.getFolders(), results.getFiles());
+        itemView.scrollToTop();
 
-        // 顯示過濾後的檔案
-        for (FileItem file : files) {
-            VBox fileCard = createFileCard(file);
-            fileGrid.add(fileCard, column, row);
-
-            column++;
-            if (column >= maxColumns) {
-                column = 0;
-                row++;
-            }
+        int shown = results.getFolders().size() + results.getFiles().size();
+        String status = "在整個檔案庫找到 " + results.getMatchCount() + " 個項目";
+        if (results.getMatchCount() > shown) {
+            status += "，顯示最相關的 " + shown + " 個";
         }
+        statusLabel.setText(status);
     }
 
-    private void displayFilteredItemsList(List<FolderItem> folders, List<FileItem> files) {
-        fileGrid.setHgap(0);
-        fileGrid.setVgap(2);
+    /**
+     * 顯示全文搜尋對話框，輸入時在背景查詢，連按兩下結果開啟書籍並跳到符合的頁面
+     */
+    private void showFullTextSearchDialog() {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("全文搜尋");
+        dialog.setHeaderText("搜尋整個檔案庫中PDF、EPUB、TXT與DOCX的內文");
+        dialog.initOwner(primaryStage);
+        dialog.initModality(Modality.NONE);
+        dialog.setResizable(true);
+
+        TextField queryField = new TextField();
+        queryField.setPromptText("輸入要搜尋的文字...");
+
+        Label resultLabel = new Label(textIndexStatus());
+        resultLabel.setStyle("-fx-text-fill: #666666; -fx-font-size: 12px;");
+
+        ListView<LibraryTextIndex.Hit> resultList = new ListView<>();
+        resultList.setPrefSize(640, 420);
+        resultList.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(LibraryTextIndex.Hit hit, boolean empty) {
+                super.updateItem(hit, empty);
+                if (empty || hit == null) {
+                    setText(null);
+                    return;
+                }
+                setText(LibraryItemView.getFileIcon(hit.getFile().getExtension()) + " "
+                        + hit.getFile().getName() + "　" + hit.getLocation() + "\n" + hit.getSnippet());
+            }
+        });
+        resultList.setOnMouseClicked(e -> {
+            LibraryTextIndex.Hit hit = resultList.getSelectionModel().getSelectedItem();
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2 && hit != null) {
+                openFile(hit.getFile(), hit);
+            }
+        });
 
-        int row = 0;
+        PauseTransition queryDelay = new PauseTransition(Duration.millis(SEARCH_DELAY_MS));
+        queryDelay.setOnFinished(e -> {
+            String query = queryField.getText();
+            if (query.trim().isEmpty()) {
+                resultList.getItems().clear();
+                resultLabel.setText(textIndexStatus());
+                return;
+            }
+            textIndex.searchAsync(query, FULL_TEXT_RESULT_LIMIT, (searched, results) -> Platform.runLater(() -> {
+                // 結果回來前搜尋框已經改變
+                if (!searched.equals(queryField.getText())) {
+                    return;
+                }
+                resultList.getItems().setAll(results.getHits());
+                resultList.scrollTo(0);
+                String status = String.format("找到 %d 本書（%.1f ms）", results.getBookCount(),
+                        results.getElapsedNanos() / 1e6);
+                if (textIndex.isIndexing()) {
+                    status += "，" + textIndexStatus();
+                }
+                resultLabel.setText(status);
+            }));
+        });
+        queryField.textProperty().addListener((obs, oldText, newText) -> queryDelay.playFromStart());
 
-        // 顯示過濾後的資料夾
-        for (FolderItem folder : folders) {
-            HBox folderRow = createFolderListItem(folder);
-            fileGrid.add(folderRow, 0, row);
-            row++;
-        }
+        VBox content = new VBox(10, queryField, resultLabel, resultList);
+        content.setPadding(new Insets(10));
+        VBox.setVgrow(resultList, Priority.ALWAYS);
+        dialog.getDialogPane().setContent(content);
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        dialog.setOnHidden(e -> {
+            queryDelay.stop();
+            textIndex.cancel();
+        });
+        dialog.show();
+        Platform.runLater(queryField::requestFocus);
+    }
 
-        // 顯示過濾後的檔案
-        for (FileItem file : files) {
-            HBox fileRow = createFileListItem(file);
-            fileGrid.add(fileRow, 0, row);
-            row++;
+    private String textIndexStatus() {
+        String status = "已建立索引 " + textIndex.getIndexedBookCount() + " 本書";
+        if (textIndex.isIndexing()) {
+            status += "，正在建立索引（尚有 " + textIndex.getPendingCount() + " 本）";
         }
+        return status;
+    }
 
-        // 重置間距設定
-        fileGrid.setHgap(15);
-        fileGrid.setVgap(15);
+    /**
+     * 取得檔案庫全文索引（閱讀時OCR辨識出的文字透過它保存）
+     */
+    public LibraryTextIndex getLibraryTextIndex() {
+        return textIndex;
     }
 
     private void sortAndRefreshFiles() {
@@ -2151,11 +2023,11 @@ public class FileManagerController {
                 currentFolders.sort(Comparator.comparing(FolderItem::getName).reversed());
                 break;
             case "修改時間 (新到舊)":
-                currentFiles.sort(Comparator.comparing(FileItem::getLastModified).reversed());
+                currentFiles.sort(Comparator.comparingLong(FileItem::getLastModifiedMillis).reversed());
                 currentFolders.sort(Comparator.comparing(FolderItem::getCreatedDate).reversed());
                 break;
             case "修改時間 (舊到新)":
-                currentFiles.sort(Comparator.comparing(FileItem::getLastModified));
+                currentFiles.sort(Comparator.comparingLong(FileItem::getLastModifiedMillis));
                 currentFolders.sort(Comparator.comparing(FolderItem::getCreatedDate));
                 break;
             case "檔案大小":
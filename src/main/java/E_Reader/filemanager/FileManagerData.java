@@ -6,104 +6,614 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
- * 檔案管理資料類別
+ * 檔案管理資料類別 - 資料夾與檔案項目保存在檔案庫索引中，ID在重新啟動後保持不變。
+ * 啟動時載入索引，只重新列出修改時間有變動的資料夾；沒有索引時才完整掃描
  */
 public class FileManagerData {
+    // 變動後延遲寫入索引的時間（毫秒），連續變動只寫入一次
+    private static final long SAVE_DELAY_MS = 500;
+
+    private static final ScheduledExecutorService INDEX_WRITER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "library-index-writer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+
+    private static final Map<String, String> EXTENSIONS = new ConcurrentHashMap<>();
+
     private final Path libraryPath;
     private final Map<String, FolderItem> folders;
     private final Map<String, FileItem> files;
+    private final LibraryIndex libraryIndex;
+    // 資料夾ID（包含root）對應上次列出時的目錄修改時間
+    private final Map<String, Long> directoryTimes;
+    private final AtomicBoolean savePending = new AtomicBoolean();
+    // 每次變動遞增，搜尋索引據此判斷是否需要更新
+    private final AtomicLong modificationCount = new AtomicLong();
+    private volatile LibraryListener libraryListener;
     
     public FileManagerData(Path libraryPath) {
+        this(libraryPath, new LibraryScanner());
+    }
+    
+    /**
+     * @param initialScanner 沒有索引需要完整掃描時使用的掃描器，
+     *                       呼叫端可以先設定進度監聽器，並從其他執行緒取消掃描，載入後會被關閉
+     */
+    public FileManagerData(Path libraryPath, LibraryScanner initialScanner) {
         this.libraryPath = libraryPath;
-        this.folders = new HashMap<>();
-        this.files = new HashMap<>();
-        initializeData();
+        this.libraryIndex = new LibraryIndex(libraryPath);
+        long start = System.currentTimeMillis();
+        LibraryIndex.Snapshot snapshot = libraryIndex.load();
+        // 依索引的項目數預先配置，避免載入時反覆擴充
+        this.folders = new ConcurrentHashMap<>(snapshot != null ? snapshot.getFolders().size() + 16 : 16);
+        this.files = new ConcurrentHashMap<>(snapshot != null ? snapshot.getFiles().size() + 16 : 16);
+        this.directoryTimes = new ConcurrentHashMap<>(snapshot != null ? snapshot.getFolders().size() + 16 : 16);
+        initializeData(snapshot, initialScanner, start);
     }
     
-    private void initializeData() {
+    private void initializeData(LibraryIndex.Snapshot snapshot, LibraryScanner initialScanner, long start) {
         // 確保庫目錄存在
         try {
             Files.createDirectories(libraryPath);
+            // 先建立資料目錄，之後寫入索引不會再改變根目錄的修改時間
+            Files.createDirectories(libraryIndex.getDataDirectory());
         } catch (IOException e) {
             System.err.println("無法創建資料庫目錄: " + e.getMessage());
         }
         // 載入現有的檔案和資料夾
-        loadExistingData();
+        loadExistingData(snapshot, initialScanner, start);
     }
     
-    private void loadExistingData() {
+    private void loadExistingData(LibraryIndex.Snapshot snapshot, LibraryScanner initialScanner, long start) {
         try {
-            System.out.println("Starting to load existing data from: " + libraryPath.toString());
-            scanDirectory(libraryPath.toFile(), "root");
-            System.out.println("Loaded " + folders.size() + " folders and " + files.size() + " files");
-            
-            // 打印所有資料夾結構
-            System.out.println("Folder structure:");
-            for (FolderItem folder : folders.values()) {
-                System.out.println("  Folder: " + folder.getName() + " (ID: " + folder.getId() + ", Parent: " + folder.getParentId() + ")");
+            if (snapshot == null) {
+                System.out.println("Scanning library: " + libraryPath.toString());
+                boolean complete;
+                try {
+                    complete = scanDirectory(initialScanner, libraryPath, "root", null, null);
+                } finally {
+                    initialScanner.close();
+                }
+                if (!complete) {
+                    // 未列完的資料夾沒有記錄修改時間，下次啟動時會重新列出
+                    System.out.println("Library scan cancelled");
+                }
+                saveIndex();
+            } else {
+                for (FolderItem folder : snapshot.getFolders()) {
+                    folders.put(folder.getId(), folder);
+                }
+                for (FileItem file : snapshot.getFiles()) {
+                    files.put(file.getId(), file);
+                }
+                directoryTimes.putAll(snapshot.getDirectoryTimes());
+                
+                LibraryChange change = reconcile(Collections.singleton("root"), true, false);
+                if (change.hasChanges()) {
+                    System.out.println("Updated " + change.getChangedFolderIds().size() + " changed folders");
+                    scheduleSave();
+                }
             }
+            
+            System.out.println("Loaded " + folders.size() + " folders and " + files.size() + " files in "
+                    + (System.currentTimeMillis() - start) + " ms");
         } catch (Exception e) {
             System.err.println("載入資料時發生錯誤: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
-    private void scanDirectory(File directory, String parentId) {
-        if (!directory.exists() || !directory.isDirectory()) {
-            return;
+    /**
+     * 平行掃描目錄與其下所有子目錄，資料夾在列完項目後才記錄修改時間
+     *
+     * @param added 不為null時，檔案先收集起來（比對是否為移動或重新命名的檔案），不直接加入
+     * @param addedDirectories 不為null時記錄新增的目錄
+     * @return 是否完整掃描（未被取消）
+     */
+    private boolean scanDirectory(LibraryScanner scanner, Path directory, String folderId,
+                                  List<PendingFile> added, List<Path> addedDirectories) {
+        return scanner.scan(directory, folderId, new LibraryScanner.Visitor() {
+            @Override
+            public String directoryFound(Path subdirectory, BasicFileAttributes attributes, String parentId) {
+                if (addedDirectories != null) {
+                    addedDirectories.add(subdirectory);
+                }
+                return addFolderEntry(subdirectory, attributes, parentId).getId();
+            }
+            
+            @Override
+            public void fileFound(Path file, BasicFileAttributes attributes, String parentId) {
+                if (added != null) {
+                    added.add(new PendingFile(file, attributes, parentId));
+                } else {
+                    addFileEntry(file, attributes.size(), attributes.lastModifiedTime().toMillis(), parentId);
+                }
+            }
+            
+            @Override
+            public void directoryListed(String listedId, BasicFileAttributes attributes) {
+                directoryTimes.put(listedId, attributes.lastModifiedTime().toMillis());
+            }
+        });
+    }
+    
+    private FolderItem addFolderEntry(Path directory, BasicFileAttributes attributes, String parentId) {
+        String folderId = UUID.randomUUID().toString();
+        FolderItem folderItem = new FolderItem(folderId, directory.getFileName().toString(), parentId,
+                LibraryIndex.toDateTime(attributes.lastModifiedTime().toMillis()));
+        folders.put(folderId, folderItem);
+        return folderItem;
+    }
+    
+    private FileItem addFileEntry(Path file, long size, long modified, String folderId) {
+        String fileId = UUID.randomUUID().toString();
+        String name = file.getFileName().toString();
+        FileItem fileItem = new FileItem(
+            fileId,
+            name,
+            file.toAbsolutePath().toString(),
+            getFileExtension(name),
+            size,
+            modified,
+            folderId
+        );
+        this.files.put(fileId, fileItem);
+        return fileItem;
+    }
+    
+    /**
+     * 與磁碟比對指定的資料夾，只重新列出修改時間有變動的資料夾。
+     * 新增、刪除或重新命名項目會改變所在資料夾的修改時間；
+     * 就地改寫的檔案不會，其大小與時間在所在資料夾下次變動時更新。
+     * 消失的檔案與新出現的檔案大小、修改時間都相同時視為移動或重新命名，保留原本的ID
+     *
+     * @param startFolderIds 要比對的資料夾
+     * @param recursive 是否一併比對其下所有已知的資料夾
+     * @param force 是否不論修改時間都重新列出startFolderIds
+     * @return 比對結果
+     */
+    private synchronized LibraryChange reconcile(Collection<String> startFolderIds, boolean recursive, boolean force) {
+        Map<String, List<FolderItem>> childFolders = groupFoldersByParent();
+        Map<String, List<FileItem>> childFiles = null;
+        Set<String> removedFolders = new HashSet<>();
+        Set<String> changedFolders = new HashSet<>();
+        List<PendingFile> added = new ArrayList<>();
+        List<Path> addedDirectories = new ArrayList<>();
+        Map<String, Deque<FileItem>> vanished = new HashMap<>();
+        
+        Set<String> forced = force ? new HashSet<>(startFolderIds) : Collections.emptySet();
+        Deque<String> pending = new ArrayDeque<>(startFolderIds);
+        Set<String> visited = new HashSet<>();
+        // 整次比對共用一個掃描器（與其執行緒池）掃描新增的子資料夾
+        try (LibraryScanner scanner = new LibraryScanner()) {
+            while (!pending.isEmpty()) {
+                String folderId = pending.pop();
+                if (removedFolders.contains(folderId) || !visited.add(folderId)
+                        || !("root".equals(folderId) || folders.containsKey(folderId))) {
+                    continue;
+                }
+            
+                Path directory = getPhysicalPath(folderId);
+                long modified = directoryModified(directory);
+                if (modified < 0 && !"root".equals(folderId)) {
+                    collectSubtree(folderId, childFolders, removedFolders);
+                    changedFolders.add(folders.get(folderId).getParentId());
+                    continue;
+                }
+            
+                if (forced.contains(folderId) || modified != directoryTimes.getOrDefault(folderId, -1L)) {
+                    if (childFiles == null) {
+                        childFiles = files.values().stream().collect(Collectors.groupingBy(FileItem::getFolderId));
+                    }
+                    RelistResult result = relistDirectory(folderId, directory,
+                            childFolders.getOrDefault(folderId, Collections.emptyList()),
+                            childFiles.getOrDefault(folderId, Collections.emptyList()),
+                            childFolders, removedFolders, added, addedDirectories, vanished, scanner);
+                    if (result != RelistResult.UNCHANGED) {
+                        changedFolders.add(folderId);
+                    }
+                    // 列出失敗時不記錄修改時間，下次比對會再列出一次
+                    if (result != RelistResult.FAILED) {
+                        directoryTimes.put(folderId, modified);
+                    }
+                }
+            
+                if (recursive) {
+                    for (FolderItem child : childFolders.getOrDefault(folderId, Collections.emptyList())) {
+                        pending.push(child.getId());
+                    }
+                }
+            }
         }
         
-        File[] files = directory.listFiles();
-        if (files == null) return;
+        // 移除的資料夾中的檔案也可能是被移動到別處
+        if (!removedFolders.isEmpty()) {
+            for (FileItem file : files.values()) {
+                if (removedFolders.contains(file.getFolderId())) {
+                    vanished.computeIfAbsent(moveKey(file.getSize(), file.getLastModifiedMillis()),
+                            key -> new ArrayDeque<>()).add(file);
+                }
+            }
+            for (String folderId : removedFolders) {
+                folders.remove(folderId);
+                directoryTimes.remove(folderId);
+            }
+        }
         
-        for (File file : files) {
-            if (file.isDirectory()) {
-                // 創建資料夾項目
-                String folderId = UUID.randomUUID().toString();
-                FolderItem folderItem = new FolderItem(
-                    folderId,
-                    file.getName(),
-                    parentId,
-                    LocalDateTime.ofInstant(
-                        java.time.Instant.ofEpochMilli(file.lastModified()),
-                        ZoneId.systemDefault()
-                    )
-                );
-                folders.put(folderId, folderItem);
-                
-                // 遞迴掃描子目錄
-                scanDirectory(file, folderId);
+        for (PendingFile pendingFile : added) {
+            Deque<FileItem> candidates = vanished.get(moveKey(pendingFile.size, pendingFile.modified));
+            FileItem moved = candidates != null ? candidates.poll() : null;
+            if (moved != null) {
+                String name = pendingFile.path.getFileName().toString();
+                changedFolders.add(moved.getFolderId());
+                moved.setName(name);
+                moved.setFilePath(pendingFile.path.toAbsolutePath().toString());
+                moved.setExtension(getFileExtension(name));
+                moved.setFolderId(pendingFile.folderId);
             } else {
-                // 創建檔案項目
-                String fileId = UUID.randomUUID().toString();
-                String extension = getFileExtension(file.getName());
-                
-                FileItem fileItem = new FileItem(
-                    fileId,
-                    file.getName(),
-                    file.getAbsolutePath(),
-                    extension,
-                    file.length(),
-                    LocalDateTime.ofInstant(
-                        java.time.Instant.ofEpochMilli(file.lastModified()),
-                        ZoneId.systemDefault()
-                    ),
-                    parentId
-                );
-                this.files.put(fileId, fileItem);
+                addFileEntry(pendingFile.path, pendingFile.size, pendingFile.modified, pendingFile.folderId);
+            }
+        }
+        for (Deque<FileItem> remaining : vanished.values()) {
+            for (FileItem gone : remaining) {
+                files.remove(gone.getId());
             }
         }
+        
+        boolean structureChanged = !removedFolders.isEmpty() || !addedDirectories.isEmpty();
+        changedFolders.removeAll(removedFolders);
+        return new LibraryChange(changedFolders, removedFolders, addedDirectories, structureChanged);
+    }
+    
+    /**
+     * relistDirectory的結果
+     */
+    private enum RelistResult {
+        UNCHANGED,
+        CHANGED,
+        // 無法列出或只列出部分項目，已列出的新增與變更仍會套用
+        FAILED
+    }
+    
+    /**
+     * 重新列出一個資料夾：依名稱保留既有項目的ID，新增的子資料夾完整掃描，
+     * 新出現的檔案與消失的檔案先收集起來，由呼叫端比對移動與重新命名
+     *
+     * @return 內容是否有變動，或列出失敗
+     */
+    private RelistResult relistDirectory(String folderId, Path directory, List<FolderItem> knownFolders,
+                                    List<FileItem> knownFiles, Map<String, List<FolderItem>> childFolders,
+                                    Set<String> removedFolders, List<PendingFile> added,
+                                    List<Path> addedDirectories, Map<String, Deque<FileItem>> vanished,
+                                    LibraryScanner scanner) {
+        Map<String, FolderItem> remainingFolders = new HashMap<>();
+        for (FolderItem folder : knownFolders) {
+            if (!removedFolders.contains(folder.getId())) {
+                remainingFolders.put(folder.getName(), folder);
+            }
+        }
+        Map<String, FileItem> remainingFiles = new HashMap<>();
+        for (FileItem file : knownFiles) {
+            remainingFiles.put(file.getName(), file);
+        }
+        
+        List<Path> newDirectories = new ArrayList<>();
+        boolean[] changed = {false};
+        try {
+            boolean listed = LibraryScanner.list(directory, (entry, attributes) -> {
+                String name = entry.getFileName().toString();
+                if (LibraryIndex.isDataDirectoryName(name)) {
+                    return true;
+                }
+                if (attributes.isDirectory()) {
+                    if (remainingFolders.remove(name) == null) {
+                        newDirectories.add(entry);
+                    }
+                } else {
+                    FileItem known = remainingFiles.remove(name);
+                    long modified = attributes.lastModifiedTime().toMillis();
+                    if (known == null) {
+                        added.add(new PendingFile(entry, attributes, folderId));
+                        changed[0] = true;
+                    } else if (known.getSize() != attributes.size()
+                            || known.getLastModifiedMillis() != modified) {
+                        known.setSize(attributes.size());
+                        known.setLastModifiedMillis(modified);
+                        changed[0] = true;
+                    }
+                }
+                return true;
+            });
+            if (!listed) {
+                return RelistResult.FAILED;
+            }
+        } catch (IOException e) {
+            System.err.println("無法列出目錄 " + directory + ": " + e.getMessage());
+            return RelistResult.FAILED;
+        }
+        
+        // 新增的子資料夾完整掃描，收集的結果會由掃描執行緒同時加入
+        if (!newDirectories.isEmpty()) {
+            List<PendingFile> scannedFiles = Collections.synchronizedList(new ArrayList<>());
+            List<Path> scannedDirectories = Collections.synchronizedList(new ArrayList<>());
+            for (Path newDirectory : newDirectories) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(newDirectory, BasicFileAttributes.class);
+                    FolderItem folderItem = addFolderEntry(newDirectory, attributes, folderId);
+                    addedDirectories.add(newDirectory);
+                    scanDirectory(scanner, newDirectory, folderItem.getId(), scannedFiles, scannedDirectories);
+                } catch (IOException e) {
+                    System.err.println("無法讀取目錄 " + newDirectory + ": " + e.getMessage());
+                }
+            }
+            added.addAll(scannedFiles);
+            addedDirectories.addAll(scannedDirectories);
+            changed[0] = true;
+        }
+        
+        for (FolderItem gone : remainingFolders.values()) {
+            collectSubtree(gone.getId(), childFolders, removedFolders);
+            changed[0] = true;
+        }
+        for (FileItem gone : remainingFiles.values()) {
+            vanished.computeIfAbsent(moveKey(gone.getSize(), gone.getLastModifiedMillis()),
+                    key -> new ArrayDeque<>()).add(gone);
+            changed[0] = true;
+        }
+        return changed[0] ? RelistResult.CHANGED : RelistResult.UNCHANGED;
+    }
+    
+    private static String moveKey(long size, long modified) {
+        return size + ":" + modified;
     }
     
-    private String getFileExtension(String fileName) {
+    private Map<String, List<FolderItem>> groupFoldersByParent() {
+        Map<String, List<FolderItem>> result = new HashMap<>();
+        for (FolderItem folder : folders.values()) {
+            result.computeIfAbsent(folder.getParentId(), key -> new ArrayList<>()).add(folder);
+        }
+        return result;
+    }
+    
+    private void collectSubtree(String folderId, Map<String, List<FolderItem>> childFolders, Set<String> result) {
+        if (result.add(folderId)) {
+            for (FolderItem child : childFolders.getOrDefault(folderId, Collections.emptyList())) {
+                collectSubtree(child.getId(), childFolders, result);
+            }
+        }
+    }
+    
+    /**
+     * 重新列出指定的資料夾（由檔案監看器在收到變動事件後呼叫），通知變動監聽器
+     *
+     * @param folderIds 有變動事件的資料夾
+     * @param recursive 是否一併比對其下所有資料夾（事件溢出時使用，只比對修改時間有變動的資料夾）
+     * @return 比對結果
+     */
+    public LibraryChange refreshFolders(Collection<String> folderIds, boolean recursive) {
+        LibraryChange change = reconcile(folderIds, recursive, true);
+        if (change.hasChanges()) {
+            scheduleSave();
+            LibraryListener listener = libraryListener;
+            if (listener != null) {
+                listener.onLibraryChanged(change);
+            }
+        }
+        return change;
+    }
+    
+    /**
+     * 依實體目錄找出對應的資料夾ID，不在檔案庫中或尚未載入時回傳null
+     */
+    public String findFolderId(Path directory) {
+        Path relative;
+        try {
+            relative = libraryPath.toAbsolutePath().relativize(directory.toAbsolutePath());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (relative.toString().isEmpty()) {
+            return "root";
+        }
+        if (relative.startsWith("..")) {
+            return null;
+        }
+        
+        String currentId = "root";
+        for (Path part : relative) {
+            String name = part.toString();
+            String nextId = null;
+            for (FolderItem folder : folders.values()) {
+                if (folder.getParentId().equals(currentId) && folder.getName().equals(name)) {
+                    nextId = folder.getId();
+                    break;
+                }
+            }
+            if (nextId == null) {
+                return null;
+            }
+            currentId = nextId;
+        }
+        return currentId;
+    }
+    
+    public void setLibraryListener(LibraryListener libraryListener) {
+        this.libraryListener = libraryListener;
+    }
+    
+    /**
+     * 檔案庫內容變動的監聽器，於比對的執行緒呼叫
+     */
+    public interface LibraryListener {
+        void onLibraryChanged(LibraryChange change);
+    }
+    
+    /**
+     * 一次比對的結果
+     */
+    public static class LibraryChange {
+        private final Set<String> changedFolderIds;
+        private final Set<String> removedFolderIds;
+        private final List<Path> addedDirectories;
+        private final boolean structureChanged;
+        
+        LibraryChange(Set<String> changedFolderIds, Set<String> removedFolderIds,
+                      List<Path> addedDirectories, boolean structureChanged) {
+            this.changedFolderIds = changedFolderIds;
+            this.removedFolderIds = removedFolderIds;
+            this.addedDirectories = addedDirectories;
+            this.structureChanged = structureChanged;
+        }
+        
+        /**
+         * 內容（檔案或子資料夾）有變動的資料夾
+         */
+        public Set<String> getChangedFolderIds() { return changedFolderIds; }
+        public Set<String> getRemovedFolderIds() { return removedFolderIds; }
+        /**
+         * 新增的實體目錄（監看器需要註冊）
+         */
+        public List<Path> getAddedDirectories() { return addedDirectories; }
+        /**
+         * 是否有新增或移除資料夾
+         */
+        public boolean isStructureChanged() { return structureChanged; }
+        
+        public boolean hasChanges() {
+            return structureChanged || !changedFolderIds.isEmpty();
+        }
+    }
+    
+    private static class PendingFile {
+        final Path path;
+        final long size;
+        final long modified;
+        final String folderId;
+        
+        PendingFile(Path path, BasicFileAttributes attributes, String folderId) {
+            this.path = path;
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime().toMillis();
+            this.folderId = folderId;
+        }
+    }
+    
+    /**
+     * 目錄的修改時間（毫秒），不存在時回傳-1
+     */
+    private static long directoryModified(Path directory) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+            return attributes.isDirectory() ? attributes.lastModifiedTime().toMillis() : -1L;
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+    
+    /**
+     * 重新記錄資料夾目前的修改時間（由本類別變動內容後呼叫，下次啟動不需重新列出）
+     */
+    private void touchDirectory(String folderId) {
+        if ("root".equals(folderId) || folders.containsKey(folderId)) {
+            directoryTimes.put(folderId, directoryModified(getPhysicalPath(folderId)));
+        }
+    }
+    
+    /**
+     * 排定寫入檔案庫索引，短時間內的多次變動只寫入一次
+     */
+    private void scheduleSave() {
+        modificationCount.incrementAndGet();
+        if (savePending.compareAndSet(false, true)) {
+            INDEX_WRITER.schedule(() -> {
+                savePending.set(false);
+                saveIndex();
+            }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * 立即寫入檔案庫索引
+     */
+    public void saveIndex() {
+        synchronized (libraryIndex) {
+            try {
+                libraryIndex.save(folders.values(), files.values(), directoryTimes);
+            } catch (IOException e) {
+                System.err.println("無法寫入檔案庫索引: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 檔案項目的收藏、縮圖或中繼資料變動後呼叫，排定寫入索引
+     */
+    public void fileItemChanged(FileItem file) {
+        if (file != null && files.containsKey(file.getId())) {
+            scheduleSave();
+        }
+    }
+    
+    static String getFileExtension(String fileName) {
         int lastDot = fileName.lastIndexOf('.');
-        return lastDot > 0 ? fileName.substring(lastDot + 1).toLowerCase() : "";
+        if (lastDot <= 0) {
+            return "";
+        }
+        // 副檔名種類很少，共用同一個字串
+        String extension = fileName.substring(lastDot + 1).toLowerCase();
+        String shared = EXTENSIONS.putIfAbsent(extension, extension);
+        return shared != null ? shared : extension;
+    }
+    
+    // 獲取檔案
+    public FileItem getFile(String fileId) {
+        return files.get(fileId);
+    }
+    
+    public Path getLibraryPath() {
+        return libraryPath;
+    }
+    
+    /**
+     * 檔案庫中保存索引與快取的資料目錄
+     */
+    public Path getDataDirectory() {
+        return libraryIndex.getDataDirectory();
+    }
+    
+    /**
+     * 檔案庫中所有的檔案（唯讀，會反映之後的變動）
+     */
+    public Collection<FileItem> getAllFiles() {
+        return Collections.unmodifiableCollection(files.values());
+    }
+    
+    /**
+     * 檔案庫中所有的資料夾（唯讀，會反映之後的變動）
+     */
+    public Collection<FolderItem> getAllFolders() {
+        return Collections.unmodifiableCollection(folders.values());
+    }
+    
+    /**
+     * 變動計數，檔案或資料夾新增、移除、改名、移動或中繼資料變動後遞增
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
     }
     
     // 獲取資料夾列表
@@ -139,6 +649,17 @@ public class FileManagerData {
                 .count();
     }
     
+    /**
+     * 一次計算所有資料夾的檔案數量（顯示多個資料夾時不需要逐一走訪所有檔案）
+     */
+    public Map<String, Integer> getFileCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (FileItem file : files.values()) {
+            counts.merge(file.getFolderId(), 1, Integer::sum);
+        }
+        return counts;
+    }
+    
     // 獲取資料夾路徑
     public String getFolderPath(String folderId) {
         if ("root".equals(folderId)) {
@@ -165,7 +686,7 @@ public class FileManagerData {
     }
     
     // 創建資料夾
-    public boolean createFolder(String name, String parentId) {
+    public synchronized boolean createFolder(String name, String parentId) {
         try {
             // 檢查是否已存在同名資料夾
             boolean exists = folders.values().stream()
@@ -187,6 +708,9 @@ public class FileManagerData {
                 folderId, name, parentId, LocalDateTime.now()
             );
             folders.put(folderId, folderItem);
+            touchDirectory(parentId);
+            touchDirectory(folderId);
+            scheduleSave();
             
             return true;
         } catch (Exception e) {
@@ -196,7 +720,7 @@ public class FileManagerData {
     }
     
     // 重新命名資料夾
-    public boolean renameFolder(String folderId, String newName) {
+    public synchronized boolean renameFolder(String folderId, String newName) {
         try {
             FolderItem folder = folders.get(folderId);
             if (folder == null) return false;
@@ -216,6 +740,8 @@ public class FileManagerData {
             
             // 更新資料夾項目
             folder.setName(newName);
+            touchDirectory(folder.getParentId());
+            scheduleSave();
             
             return true;
         } catch (Exception e) {
@@ -225,7 +751,7 @@ public class FileManagerData {
     }
     
     // 刪除資料夾
-    public boolean deleteFolder(String folderId) {
+    public synchronized boolean deleteFolder(String folderId) {
         try {
             FolderItem folder = folders.get(folderId);
             if (folder == null) return false;
@@ -236,6 +762,9 @@ public class FileManagerData {
             
             // 刪除資料庫中的記錄
             folders.remove(folderId);
+            directoryTimes.remove(folderId);
+            touchDirectory(folder.getParentId());
+            scheduleSave();
             
             // 刪除子資料夾和檔案
             List<String> subFolderIds = folders.values().stream()
@@ -273,7 +802,7 @@ public class FileManagerData {
     }
     
     // 匯入檔案
-    public boolean importFile(File sourceFile, String folderId) throws IOException {
+    public synchronized boolean importFile(File sourceFile, String folderId) throws IOException {
         Path targetDir = getPhysicalPath(folderId);
         Path targetFile = targetDir.resolve(sourceFile.getName());
         
@@ -308,16 +837,18 @@ public class FileManagerData {
             targetFile.toString(),
             fileExtension,
             Files.size(targetFile),
-            LocalDateTime.now(),
+            Files.getLastModifiedTime(targetFile).toMillis(),
             folderId
         );
         
         files.put(fileId, fileItem);
+        touchDirectory(folderId);
+        scheduleSave();
         return true;
     }
     
     // 重新命名檔案
-    public boolean renameFile(String fileId, String newName) {
+    public synchronized boolean renameFile(String fileId, String newName) {
         try {
             FileItem file = files.get(fileId);
             if (file == null) return false;
@@ -334,6 +865,8 @@ public class FileManagerData {
             // 更新檔案項目
             file.setName(newName);
             file.setFilePath(newPath.toString());
+            touchDirectory(file.getFolderId());
+            scheduleSave();
             
             return true;
         } catch (Exception e) {
@@ -343,7 +876,7 @@ public class FileManagerData {
     }
     
     // 移動檔案
-    public boolean moveFile(String fileId, String targetFolderId) {
+    public synchronized boolean moveFile(String fileId, String targetFolderId) {
         try {
             FileItem file = files.get(fileId);
             if (file == null) return false;
@@ -376,8 +909,12 @@ public class FileManagerData {
             Files.move(oldPath, newPath);
             
             // 更新檔案項目
+            String sourceFolderId = file.getFolderId();
             file.setFolderId(targetFolderId);
             file.setFilePath(newPath.toString());
+            touchDirectory(sourceFolderId);
+            touchDirectory(targetFolderId);
+            scheduleSave();
             
             return true;
         } catch (Exception e) {
@@ -387,7 +924,7 @@ public class FileManagerData {
     }
     
     // 刪除檔案
-    public boolean deleteFile(String fileId) {
+    public synchronized boolean deleteFile(String fileId) {
         try {
             FileItem file = files.get(fileId);
             if (file == null) return false;
@@ -398,6 +935,8 @@ public class FileManagerData {
             
             // 刪除檔案項目
             files.remove(fileId);
+            touchDirectory(file.getFolderId());
+            scheduleSave();
             
             return true;
         } catch (Exception e) {
@@ -0,0 +1,499 @@
+package E_Reader.filemanager;
+
+import E_Reader.core.TextSearchIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 全文索引的區段 - 一批書籍的詞典、每個詞出現的頁面，以及壓縮後的頁面文字，寫入後不再修改。
+ * 檔案依序為：標頭、各詞的出現頁面、各頁的壓縮文字、書籍表、詞典，
+ * 最後的結尾記錄書籍表與詞典的位置。書籍表另記錄各頁在整本書文字中的起始字元位置。讀取時以記憶體映射開啟，只有書籍表與詞典載入記憶體，
+ * 出現頁面與頁面文字在查詢時才從映射中讀取
+ */
+class FullTextSegment {
+
+    static final String FILE_SUFFIX = ".seg";
+    private static final int MAGIC = 0x45524654;
+    private static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // 結尾：書籍表位置、詞典位置、MAGIC
+    private static final int FOOTER_SIZE = 12;
+    // 過長的拉丁單字（例如編碼後的資料）不索引
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private final String name;
+    private final MappedByteBuffer buffer;
+    private final String[] fileIds;
+    // 每本書各頁壓縮文字的邊界（頁數+1個位置）
+    private final int[][] pageBoundaries;
+    // 每本書各頁在整本書文字中的起始字元位置
+    private final long[][] pageTextStarts;
+    private final String[] terms;
+    // 每個詞出現頁面的起點（詞數+1個位置）
+    private final int[] postingOffsets;
+    private final int[] postingCounts;
+    private final long textLength;
+
+    private FullTextSegment(String name, MappedByteBuffer buffer, String[] fileIds, int[][] pageBoundaries,
+                            long[][] pageTextStarts, String[] terms, int[] postingOffsets, int[] postingCounts,
+                            long textLength) {
+        this.name = name;
+        this.buffer = buffer;
+        this.fileIds = fileIds;
+        this.pageBoundaries = pageBoundaries;
+        this.pageTextStarts = pageTextStarts;
+        this.terms = terms;
+        this.postingOffsets = postingOffsets;
+        this.postingCounts = postingCounts;
+        this.textLength = textLength;
+    }
+
+    /**
+     * 開啟區段檔
+     */
+    static FullTextSegment open(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String name = fileName.substring(0, fileName.length() - FILE_SUFFIX.length());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 8 + FOOTER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("全文索引區段大小不符: " + fileName);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int) size;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(end - 4) != MAGIC) {
+                throw new IOException("全文索引區段格式不符: " + fileName);
+            }
+
+            ByteBuffer input = buffer.duplicate();
+            input.position(buffer.getInt(end - FOOTER_SIZE));
+            int documentCount = input.getInt();
+            String[] fileIds = new String[documentCount];
+            int[][] pageBoundaries = new int[documentCount][];
+            long[][] pageTextStarts = new long[documentCount][];
+            for (int doc = 0; doc < documentCount; doc++) {
+                fileIds[doc] = readString(input);
+                int[] boundaries = new int[input.getInt() + 1];
+                for (int page = 0; page < boundaries.length; page++) {
+                    boundaries[page] = input.getInt();
+                }
+                pageBoundaries[doc] = boundaries;
+                long[] textStarts = new long[boundaries.length - 1];
+                for (int page = 0; page < textStarts.length; page++) {
+                    textStarts[page] = input.getLong();
+                }
+                pageTextStarts[doc] = textStarts;
+            }
+
+            input.position(buffer.getInt(end - FOOTER_SIZE + 4));
+            int termCount = input.getInt();
+            String[] terms = new String[termCount];
+            int[] postingOffsets = new int[termCount + 1];
+            int[] postingCounts = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                terms[i] = readString(input);
+                postingOffsets[i] = input.getInt();
+                postingCounts[i] = input.getInt();
+            }
+            postingOffsets[termCount] = input.getInt();
+            long textLength = input.getLong();
+            return new FullTextSegment(name, buffer, fileIds, pageBoundaries, pageTextStarts, terms,
+                    postingOffsets, postingCounts, textLength);
+        } catch (RuntimeException e) {
+            throw new IOException("全文索引區段已損毀: " + fileName + " - " + e.getMessage(), e);
+        }
+    }
+
+    String getName() { return name; }
+    int getDocumentCount() { return fileIds.length; }
+    String getFileId(int doc) { return fileIds[doc]; }
+    int getPageCount(int doc) { return pageBoundaries[doc].length - 1; }
+    /**
+     * 頁面在整本書文字（各頁文字依序相接）中的起始字元位置
+     */
+    long getPageTextStart(int doc, int page) { return pageTextStarts[doc][page]; }
+    int getTermCount() { return terms.length; }
+    /**
+     * 區段中所有頁面文字的總字數
+     */
+    long getTextLength() { return textLength; }
+
+    /**
+     * 取得詞出現的頁面（書籍序號 << 32 | 頁碼，遞增排列）
+     *
+     * @param prefix 是否包含所有以term開頭的詞
+     * @return 出現的頁面，沒有出現時回傳null
+     */
+    long[] postings(String term, boolean prefix) {
+        int from = Arrays.binarySearch(terms, term);
+        if (!prefix) {
+            return from >= 0 ? decode(from) : null;
+        }
+
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = from;
+        while (to < terms.length && terms[to].startsWith(term)) {
+            to++;
+        }
+        if (to == from) {
+            return null;
+        }
+        if (to == from + 1) {
+            return decode(from);
+        }
+        // 合併多個詞的出現頁面並去除重複
+        long[][] lists = new long[to - from][];
+        int total = 0;
+        for (int i = from; i < to; i++) {
+            lists[i - from] = decode(i);
+            total += lists[i - from].length;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (long[] list : lists) {
+            System.arraycopy(list, 0, merged, offset, list.length);
+            offset += list.length;
+        }
+        Arrays.sort(merged);
+        int size = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (size == 0 || merged[size - 1] != merged[i]) {
+                merged[size++] = merged[i];
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * 出現頁面以可變長度整數編碼：書籍序號的差值，同一本書時接著頁碼的差值，否則接著頁碼
+     */
+    private long[] decode(int termIndex) {
+        long[] result = new long[postingCounts[termIndex]];
+        int position = postingOffsets[termIndex];
+        int doc = 0;
+        int page = 0;
+        for (int i = 0; i < result.length; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int docDelta = value;
+
+            value = 0;
+            shift = 0;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            if (docDelta == 0) {
+                page += value;
+            } else {
+                doc += docDelta;
+                page = value;
+            }
+            result[i] = ((long) doc << 32) | page;
+        }
+        return result;
+    }
+
+    /**
+     * 讀取並解壓縮一頁的文字
+     */
+    String getPageText(int doc, int page) {
+        int[] boundaries = pageBoundaries[doc];
+        int start = boundaries[page];
+        byte[] compressed = new byte[boundaries[page + 1] - start];
+        buffer.duplicate().position(start).get(compressed);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 3);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                output.write(chunk, 0, count);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            System.err.println("全文索引區段 " + name + " 的頁面文字已損毀: " + e.getMessage());
+            return "";
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 依索引規則列出一頁中的詞（不重複）
+     */
+    static Set<String> pageTerms(String text) {
+        Set<String> terms = new HashSet<>();
+        TextSearchIndex.forEachTerm(TextSearchIndex.normalize(text), (term, start) -> {
+            if (term.length() <= MAX_TERM_LENGTH) {
+                terms.add(term);
+            }
+        });
+        return terms;
+    }
+
+    /**
+     * 在記憶體中累積一批書籍，再一次寫成區段檔
+     */
+    static class Builder {
+        private final List<String> fileIds = new ArrayList<>();
+        // 每本書各頁壓縮文字在文字區中的邊界
+        private final List<int[]> pageBoundaries = new ArrayList<>();
+        private final List<long[]> pageTextStarts = new ArrayList<>();
+        private final ByteArrayOutputStream storedText = new ByteArrayOutputStream();
+        private final Map<String, PostingList> postings = new HashMap<>();
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final byte[] chunk = new byte[8192];
+        private long textLength = 0;
+        // 逐頁加入中的書籍
+        private String currentFileId;
+        private int[] currentBoundaries;
+        private long[] currentTextStarts;
+        private int currentPageCount;
+        private long currentTextStart;
+
+        /**
+         * 加入一本書
+         *
+         * @return 書籍在區段中的序號
+         */
+        int addDocument(String fileId, List<String> pages) {
+            startDocument(fileId);
+            for (String text : pages) {
+                addPage(text);
+            }
+            return endDocument();
+        }
+
+        /**
+         * 開始逐頁加入一本書，之後呼叫addPage加入各頁並以endDocument結束，不必先取出整本書的文字
+         */
+        void startDocument(String fileId) {
+            if (currentFileId != null) {
+                throw new IllegalStateException("上一本書尚未結束: " + currentFileId);
+            }
+            currentFileId = fileId;
+            currentBoundaries = new int[16];
+            currentTextStarts = new long[16];
+            currentPageCount = 0;
+            currentTextStart = 0;
+        }
+
+        /**
+         * 加入目前這本書的下一頁
+         */
+        void addPage(String text) {
+            if (currentFileId == null) {
+                throw new IllegalStateException("尚未開始加入書籍");
+            }
+            text = text != null ? text : "";
+            int page = currentPageCount;
+            if (page == currentTextStarts.length) {
+                currentBoundaries = Arrays.copyOf(currentBoundaries, page * 2);
+                currentTextStarts = Arrays.copyOf(currentTextStarts, page * 2);
+            }
+            currentBoundaries[page] = storedText.size();
+            currentTextStarts[page] = currentTextStart;
+            currentTextStart += text.length();
+            compress(text);
+            textLength += text.length();
+
+            long key = ((long) fileIds.size() << 32) | page;
+            for (String term : pageTerms(text)) {
+                postings.computeIfAbsent(term, t -> new PostingList()).add(key);
+            }
+            currentPageCount++;
+        }
+
+        /**
+         * 結束目前這本書
+         *
+         * @return 書籍在區段中的序號
+         */
+        int endDocument() {
+            if (currentFileId == null) {
+                throw new IllegalStateException("尚未開始加入書籍");
+            }
+            int[] boundaries = Arrays.copyOf(currentBoundaries, currentPageCount + 1);
+            boundaries[currentPageCount] = storedText.size();
+            int doc = fileIds.size();
+            fileIds.add(currentFileId);
+            pageBoundaries.add(boundaries);
+            pageTextStarts.add(Arrays.copyOf(currentTextStarts, currentPageCount));
+            currentFileId = null;
+            currentBoundaries = null;
+            currentTextStarts = null;
+            return doc;
+        }
+
+        private void compress(String text) {
+            deflater.reset();
+            deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            while (!deflater.finished()) {
+                int count = deflater.deflate(chunk);
+                storedText.write(chunk, 0, count);
+            }
+        }
+
+        int getDocumentCount() { return fileIds.size(); }
+        long getTextLength() { return textLength; }
+        /**
+         * 目前累積的資料量（位元組，估計值）
+         */
+        long getSize() { return storedText.size() + postings.size() * 48L; }
+
+        /**
+         * 寫成區段檔並開啟
+         */
+        FullTextSegment write(Path directory, String name) throws IOException {
+            deflater.end();
+            Path file = directory.resolve(name + FILE_SUFFIX);
+            Path tempFile = directory.resolve(name + FILE_SUFFIX + ".tmp");
+            String[] sortedTerms = postings.keySet().toArray(new String[0]);
+            Arrays.sort(sortedTerms);
+            int[] offsets = new int[sortedTerms.length + 1];
+
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+
+                for (int i = 0; i < sortedTerms.length; i++) {
+                    offsets[i] = output.size();
+                    PostingList list = postings.get(sortedTerms[i]);
+                    int doc = 0;
+                    int page = 0;
+                    for (int n = 0; n < list.size; n++) {
+                        int postingDoc = (int) (list.values[n] >>> 32);
+                        int postingPage = (int) list.values[n];
+                        if (postingDoc == doc) {
+                            writeVarint(output, 0);
+                            writeVarint(output, postingPage - page);
+                        } else {
+                            writeVarint(output, postingDoc - doc);
+                            writeVarint(output, postingPage);
+                        }
+                        doc = postingDoc;
+                        page = postingPage;
+                    }
+                }
+                offsets[sortedTerms.length] = output.size();
+
+                int storedStart = output.size();
+                storedText.writeTo(output);
+
+                int documentTable = output.size();
+                output.writeInt(fileIds.size());
+                for (int doc = 0; doc < fileIds.size(); doc++) {
+                    writeString(output, fileIds.get(doc));
+                    int[] boundaries = pageBoundaries.get(doc);
+                    output.writeInt(boundaries.length - 1);
+                    for (int boundary : boundaries) {
+                        output.writeInt(storedStart + boundary);
+                    }
+                    for (long textStart : pageTextStarts.get(doc)) {
+                        output.writeLong(textStart);
+                    }
+                }
+
+                int dictionary = output.size();
+                output.writeInt(sortedTerms.length);
+                for (int i = 0; i < sortedTerms.length; i++) {
+                    writeString(output, sortedTerms[i]);
+                    output.writeInt(offsets[i]);
+                    output.writeInt(postings.get(sortedTerms[i]).size);
+                }
+                output.writeInt(offsets[sortedTerms.length]);
+                output.writeLong(textLength);
+
+                output.writeInt(documentTable);
+                output.writeInt(dictionary);
+                output.writeInt(MAGIC);
+                if (output.size() == Integer.MAX_VALUE) {
+                    throw new IOException("全文索引區段過大");
+                }
+            }
+
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return open(file);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * 字串以兩個位元組的長度加上UTF-8內容儲存
+     */
+    private static void writeString(DataOutputStream output, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("字串過長: " + text.substring(0, 32));
+        }
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer input) {
+        byte[] bytes = new byte[Short.toUnsignedInt(input.getShort())];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 可增長的long陣列
+     */
+    private static class PostingList {
+        long[] values = new long[2];
+        int size = 0;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
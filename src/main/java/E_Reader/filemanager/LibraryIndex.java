@@ -0,0 +1,297 @@
+package E_Reader.filemanager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 檔案庫索引檔 - 以精簡的二進位格式保存資料夾與檔案項目
+ * （固定ID、名稱、所屬資料夾、大小、修改時間、收藏、縮圖與擷取的中繼資料），
+ * 以及每個資料夾上次列出時的修改時間，啟動時據此只重新列出有變動的資料夾。
+ * 索引放在檔案庫中的資料目錄，寫入索引不會改變檔案庫根目錄的修改時間
+ */
+public class LibraryIndex {
+
+    /**
+     * 檔案庫中保存索引與快取的資料目錄，掃描檔案庫時略過
+     */
+    public static final String DATA_DIRECTORY_NAME = ".e_reader";
+    private static final String INDEX_FILE_NAME = "library.idx";
+
+    private static final int MAGIC = 0x45524C49;
+    private static final int VERSION = 1;
+    // ID的儲存方式：UUID以兩個long儲存，其餘以字串儲存
+    private static final byte ID_UUID = 1;
+    private static final byte ID_TEXT = 0;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final Path libraryPath;
+    private final Path dataDirectory;
+    private final Path indexFile;
+
+    public LibraryIndex(Path libraryPath) {
+        this.libraryPath = libraryPath;
+        this.dataDirectory = libraryPath.resolve(DATA_DIRECTORY_NAME);
+        this.indexFile = dataDirectory.resolve(INDEX_FILE_NAME);
+    }
+
+    /**
+     * 是否為檔案庫的資料目錄
+     */
+    public static boolean isDataDirectoryName(String fileName) {
+        return DATA_DIRECTORY_NAME.equals(fileName);
+    }
+
+    /**
+     * 索引檔的內容
+     */
+    public static class Snapshot {
+        private final List<FolderItem> folders;
+        private final List<FileItem> files;
+        // 資料夾ID（包含root）對應上次列出時的目錄修改時間
+        private final Map<String, Long> directoryTimes;
+
+        public Snapshot(List<FolderItem> folders, List<FileItem> files, Map<String, Long> directoryTimes) {
+            this.folders = folders;
+            this.files = files;
+            this.directoryTimes = directoryTimes;
+        }
+
+        public List<FolderItem> getFolders() { return folders; }
+        public List<FileItem> getFiles() { return files; }
+        public Map<String, Long> getDirectoryTimes() { return directoryTimes; }
+    }
+
+    /**
+     * 讀取索引檔，不存在或格式不符時回傳null（改為完整掃描）
+     */
+    public Snapshot load() {
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+
+        try {
+            // 一次讀入整個索引再解析，避免逐欄位的串流呼叫
+            ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+            if (input.getInt() != MAGIC || input.getInt() != VERSION) {
+                System.err.println("檔案庫索引版本不符，將重新掃描");
+                return null;
+            }
+
+            ZoneId zone = ZoneId.systemDefault();
+            Map<String, Long> directoryTimes = new HashMap<>();
+            directoryTimes.put("root", input.getLong());
+
+            // 檔案以資料夾的序號參照所屬資料夾，-1為root
+            int folderCount = input.getInt();
+            List<FolderItem> folders = new ArrayList<>(folderCount);
+            String[] folderPaths = new String[folderCount];
+            String rootPath = libraryPath.toAbsolutePath().toString();
+            for (int i = 0; i < folderCount; i++) {
+                String id = readId(input);
+                String name = readString(input);
+                int parent = input.getInt();
+                LocalDateTime created = toDateTime(input.getLong(), zone);
+                directoryTimes.put(id, input.getLong());
+
+                // 資料夾依父資料夾在前的順序寫入
+                String parentId = parent < 0 ? "root" : folders.get(parent).getId();
+                folderPaths[i] = (parent < 0 ? rootPath : folderPaths[parent]) + File.separator + name;
+                folders.add(new FolderItem(id, name, parentId, created));
+            }
+
+            int fileCount = input.getInt();
+            List<FileItem> files = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                String id = readId(input);
+                String name = readString(input);
+                int folder = input.getInt();
+                long size = input.getLong();
+                long modified = input.getLong();
+                boolean favorite = (input.get() != 0);
+                String thumbnailPath = (input.get() != 0) ? readString(input) : null;
+                int metadataCount = Short.toUnsignedInt(input.getShort());
+
+                String folderId = folder < 0 ? "root" : folders.get(folder).getId();
+                String folderPath = folder < 0 ? rootPath : folderPaths[folder];
+                FileItem file = new FileItem(id, name, folderPath + File.separator + name,
+                        FileManagerData.getFileExtension(name), size, modified, folderId);
+                file.setFavorite(favorite);
+                file.setThumbnailPath(thumbnailPath);
+                for (int m = 0; m < metadataCount; m++) {
+                    file.putMetadata(readString(input), readString(input));
+                }
+                files.add(file);
+            }
+            return new Snapshot(folders, files, directoryTimes);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("無法讀取檔案庫索引，將重新掃描: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 寫入索引檔，先寫到暫存檔再取代，寫入中斷時保留舊的索引
+     *
+     * @param folders 資料夾項目
+     * @param files 檔案項目
+     * @param directoryTimes 資料夾ID對應的目錄修改時間
+     */
+    public void save(Collection<FolderItem> folders, Collection<FileItem> files,
+                     Map<String, Long> directoryTimes) throws IOException {
+        List<FolderItem> ordered = orderParentsFirst(folders);
+        Map<String, Integer> ordinals = new HashMap<>(ordered.size() * 2);
+        for (int i = 0; i < ordered.size(); i++) {
+            ordinals.put(ordered.get(i).getId(), i);
+        }
+        Files.createDirectories(dataDirectory);
+        Path tempFile = dataDirectory.resolve(INDEX_FILE_NAME + ".tmp");
+
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(directoryTimes.getOrDefault("root", 0L));
+
+            output.writeInt(ordered.size());
+            for (FolderItem folder : ordered) {
+                writeId(output, folder.getId());
+                writeString(output, folder.getName());
+                output.writeInt(ordinals.getOrDefault(folder.getParentId(), -1));
+                output.writeLong(toEpochMillis(folder.getCreatedDate()));
+                output.writeLong(directoryTimes.getOrDefault(folder.getId(), 0L));
+            }
+
+            // 所屬資料夾已不存在的檔案不寫入
+            List<FileItem> fileList = new ArrayList<>(files.size());
+            for (FileItem file : files) {
+                if ("root".equals(file.getFolderId()) || ordinals.containsKey(file.getFolderId())) {
+                    fileList.add(file);
+                }
+            }
+            output.writeInt(fileList.size());
+            for (FileItem file : fileList) {
+                writeId(output, file.getId());
+                writeString(output, file.getName());
+                output.writeInt(ordinals.getOrDefault(file.getFolderId(), -1));
+                output.writeLong(file.getSize());
+                output.writeLong(file.getLastModifiedMillis());
+                output.writeBoolean(file.isFavorite());
+                output.writeBoolean(file.hasThumbnail());
+                if (file.hasThumbnail()) {
+                    writeString(output, file.getThumbnailPath());
+                }
+                Map<String, String> metadata = file.getMetadata();
+                output.writeShort(metadata.size());
+                for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                    writeString(output, entry.getKey());
+                    writeString(output, entry.getValue());
+                }
+            }
+        }
+
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 依父資料夾在前的順序排列，讀取時可以依序組出資料夾路徑
+     */
+    private static List<FolderItem> orderParentsFirst(Collection<FolderItem> folders) {
+        Map<String, List<FolderItem>> children = new HashMap<>();
+        for (FolderItem folder : folders) {
+            children.computeIfAbsent(folder.getParentId(), key -> new ArrayList<>()).add(folder);
+        }
+
+        List<FolderItem> ordered = new ArrayList<>(folders.size());
+        List<String> pending = new ArrayList<>();
+        pending.add("root");
+        for (int i = 0; i < pending.size(); i++) {
+            for (FolderItem child : children.getOrDefault(pending.get(i), List.of())) {
+                ordered.add(child);
+                pending.add(child.getId());
+            }
+        }
+        return ordered;
+    }
+
+    private static void writeId(DataOutputStream output, String id) throws IOException {
+        UUID uuid = parseUuid(id);
+        if (uuid != null) {
+            output.writeByte(ID_UUID);
+            output.writeLong(uuid.getMostSignificantBits());
+            output.writeLong(uuid.getLeastSignificantBits());
+        } else {
+            output.writeByte(ID_TEXT);
+            writeString(output, id);
+        }
+    }
+
+    private static String readId(ByteBuffer input) {
+        if (input.get() == ID_UUID) {
+            return new UUID(input.getLong(), input.getLong()).toString();
+        }
+        return readString(input);
+    }
+
+    /**
+     * 字串以兩個位元組的長度加上UTF-8內容儲存
+     */
+    private static void writeString(DataOutputStream output, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("字串過長: " + text.substring(0, 32));
+        }
+        output.writeShort(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer input) {
+        int length = Short.toUnsignedInt(input.getShort());
+        String text = new String(input.array(), input.position(), length, StandardCharsets.UTF_8);
+        input.position(input.position() + length);
+        return text;
+    }
+
+    private static UUID parseUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            // 只接受標準格式，確保讀回的字串與原本相同
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime == null ? 0L : dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static LocalDateTime toDateTime(long epochMillis) {
+        return toDateTime(epochMillis, ZoneId.systemDefault());
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis, ZoneId zone) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+    }
+
+    public Path getIndexFile() { return indexFile; }
+    public Path getDataDirectory() { return dataDirectory; }
+}
@@ -0,0 +1,506 @@
+package E_Reader.filemanager;
+
+import E_Reader.utils.FileManagerConfig;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
+
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 虛擬化的檔案檢視 - 網格模式下ListView的每一列放置一排磚塊，清單模式下每一列一個項目。
+ * 只有可見的列會建立節點，捲動時重複使用並重新繫結資料；
+ * 排序、篩選與切換檢視只重新分列，不重新建立卡片。
+ * 縮圖在格子繫結到檔案時才要求，格子改繫結其他檔案時取消尚未開始的要求
+ */
+public class LibraryItemView {
+
+    private static final double TILE_WIDTH = 160;
+    private static final double TILE_HEIGHT = 140;
+    private static final double HGAP = 15;
+    private static final double VGAP = 15;
+    private static final double SIDE_PADDING = 20;
+    // 預留垂直捲軸的寬度，避免捲軸出現時最後一欄被擠出
+    private static final double SCROLLBAR_ALLOWANCE = 18;
+    private static final double LIST_ROW_HEIGHT = 44;
+    // 記憶體中保留的縮圖數量，捲回來時不需要重新從磁碟載入
+    private static final int IMAGE_CACHE_SIZE = 512;
+
+    private static final DateTimeFormatter CARD_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+    private static final DateTimeFormatter LIST_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+
+    private static final String CELL_STYLE = "-fx-background-color: transparent; -fx-padding: 0 "
+            + SIDE_PADDING + " " + VGAP + " " + SIDE_PADDING + ";";
+    private static final String LIST_CELL_STYLE = "-fx-background-color: transparent; -fx-padding: 0 "
+            + SIDE_PADDING + " 2 " + SIDE_PADDING + ";";
+    private static final String CARD_STYLE = "-fx-background-color: white; -fx-border-color: #e0e0e0; -fx-border-radius: 8px; " +
+            "-fx-background-radius: 8px; -fx-padding: 15; -fx-cursor: hand; " +
+            "-fx-effect: dropshadow(three-pass-box, rgba(0,0,0,0.1), 5, 0, 0, 2);";
+    private static final String ROW_STYLE = "-fx-background-color: white; -fx-border-color: #e0e0e0; -fx-border-width: 0 0 1 0; -fx-cursor: hand;";
+    private static final String HOVER_STYLE = "; -fx-background-color: #f8f9fa;";
+
+    /**
+     * 項目的操作，由檔案管理控制器處理
+     */
+    public interface ItemActions {
+        void openFolder(FolderItem folder);
+        void openFile(FileItem file);
+        void showFolderMenu(Node source, FolderItem folder, double screenX, double screenY);
+        void showFileMenu(Node source, FileItem file, double screenX, double screenY);
+    }
+
+    private final FileManagerData fileManagerData;
+    private final ThumbnailService thumbnailService;
+    private final FileManagerConfig config;
+    private final ItemActions actions;
+    private final ListView<List<Object>> listView = new ListView<>();
+    // ListView建立的列，內容在原處變動時重新繫結（列被捨棄後自動移除）
+    private final Set<RowCell> cells = Collections.newSetFromMap(new WeakHashMap<>());
+
+    // 資料夾在前、檔案在後的所有項目
+    private List<Object> items = Collections.emptyList();
+    private Map<String, Integer> folderFileCounts = Collections.emptyMap();
+    private boolean gridMode = true;
+    private int columns = 1;
+
+    private final Map<String, Image> imageCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Image> eldest) {
+            return size() > IMAGE_CACHE_SIZE;
+        }
+    };
+
+    public LibraryItemView(FileManagerData fileManagerData, ThumbnailService thumbnailService,
+                           FileManagerConfig config, ItemActions actions) {
+        this.fileManagerData = fileManagerData;
+        this.thumbnailService = thumbnailService;
+        this.config = config;
+        this.actions = actions;
+
+        listView.setCellFactory(view -> {
+            RowCell cell = new RowCell();
+            cells.add(cell);
+            return cell;
+        });
+        listView.setFixedCellSize(TILE_HEIGHT + VGAP);
+        listView.setPlaceholder(new Label(""));
+        listView.setStyle("-fx-background-color: white; -fx-background-insets: 0; -fx-padding: "
+                + SIDE_PADDING + " 0 0 0;");
+        listView.widthProperty().addListener((obs, oldWidth, newWidth) -> updateColumns());
+    }
+
+    public ListView<List<Object>> getNode() {
+        return listView;
+    }
+
+    /**
+     * 顯示資料夾與檔案（依傳入的順序），捲動位置保持不變
+     */
+    public void setItems(List<FolderItem> folders, List<FileItem> files) {
+        List<Object> combined = new ArrayList<>(folders.size() + files.size());
+        combined.addAll(folders);
+        combined.addAll(files);
+        items = combined;
+        folderFileCounts = folders.isEmpty() ? Collections.emptyMap() : fileManagerData.getFileCounts();
+        rebuildRows();
+    }
+
+    public void setGridMode(boolean gridMode) {
+        if (this.gridMode == gridMode) {
+            return;
+        }
+        this.gridMode = gridMode;
+        listView.setFixedCellSize(gridMode ? TILE_HEIGHT + VGAP : LIST_ROW_HEIGHT);
+        columns = computeColumns();
+        rebuildRows();
+        // 只有一欄時分列結果與清單模式相同，列不會更新，需要換成另一種檢視的節點
+        rebindCells();
+    }
+
+    /**
+     * 項目內容在原處變動後（例如重新命名或檔案大小改變）重新繫結可見的格子。
+     * 內容相同的列不會觸發更新，其他情況（排序、篩選、分欄）只需setItems
+     */
+    public void refreshItems() {
+        rebindCells();
+    }
+
+    private void rebindCells() {
+        for (RowCell cell : cells) {
+            cell.rebind();
+        }
+    }
+
+    public boolean isGridMode() {
+        return gridMode;
+    }
+
+    public void scrollToTop() {
+        if (!listView.getItems().isEmpty()) {
+            listView.scrollTo(0);
+        }
+    }
+
+    private void updateColumns() {
+        int newColumns = computeColumns();
+        if (newColumns != columns) {
+            columns = newColumns;
+            rebuildRows();
+        }
+    }
+
+    private int computeColumns() {
+        if (!gridMode) {
+            return 1;
+        }
+        double available = listView.getWidth() - SIDE_PADDING * 2 - SCROLLBAR_ALLOWANCE + HGAP;
+        return Math.max(1, (int) (available / (TILE_WIDTH + HGAP)));
+    }
+
+    /**
+     * 依目前的欄數把項目分列；每一列只是項目清單的子清單，不複製項目
+     */
+    private void rebuildRows() {
+        List<List<Object>> rows = new ArrayList<>((items.size() + columns - 1) / columns);
+        for (int start = 0; start < items.size(); start += columns) {
+            rows.add(items.subList(start, Math.min(start + columns, items.size())));
+        }
+        // 重複使用既有的格子，內容改變的列在updateItem中重新繫結
+        listView.getItems().setAll(rows);
+    }
+
+    /**
+     * 一列 - 網格模式下重複使用一排磚塊，清單模式下使用一個清單列
+     */
+    private class RowCell extends ListCell<List<Object>> {
+        private final HBox tileRow = new HBox(HGAP);
+        private final List<GridTile> gridTiles = new ArrayList<>();
+        private ListRow listRow;
+
+        RowCell() {
+            tileRow.setAlignment(Pos.CENTER_LEFT);
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(List<Object> row, boolean empty) {
+            super.updateItem(row, empty);
+            bindRow(row, empty);
+        }
+
+        void rebind() {
+            if (!isEmpty() && getItem() != null) {
+                bindRow(getItem(), false);
+            }
+        }
+
+        private void bindRow(List<Object> row, boolean empty) {
+            if (empty || row == null) {
+                unbindGrid(0);
+                if (listRow != null) {
+                    listRow.unbind();
+                }
+                setGraphic(null);
+                return;
+            }
+
+            if (gridMode) {
+                setStyle(CELL_STYLE);
+                while (gridTiles.size() < row.size()) {
+                    GridTile tile = new GridTile();
+                    gridTiles.add(tile);
+                    tileRow.getChildren().add(tile);
+                }
+                for (int i = 0; i < row.size(); i++) {
+                    GridTile tile = gridTiles.get(i);
+                    tile.setVisible(true);
+                    tile.bind(row.get(i));
+                }
+                unbindGrid(row.size());
+                if (listRow != null) {
+                    listRow.unbind();
+                }
+                setGraphic(tileRow);
+            } else {
+                setStyle(LIST_CELL_STYLE);
+                if (listRow == null) {
+                    listRow = new ListRow();
+                }
+                unbindGrid(0);
+                listRow.bind(row.get(0));
+                setGraphic(listRow);
+            }
+        }
+
+        private void unbindGrid(int from) {
+            for (int i = from; i < gridTiles.size(); i++) {
+                GridTile tile = gridTiles.get(i);
+                tile.unbind();
+                tile.setVisible(false);
+            }
+        }
+    }
+
+    /**
+     * 網格中的一個磚塊，可以繫結資料夾或檔案
+     */
+    private class GridTile extends VBox {
+        private final StackPane thumbnailContainer = new StackPane();
+        private final Label iconLabel = new Label();
+        private final ImageView imageView = new ImageView();
+        private final Label nameLabel = new Label();
+        private final Label infoLabel = new Label();
+        private Object item;
+
+        GridTile() {
+            super(10);
+            setMinSize(TILE_WIDTH, TILE_HEIGHT);
+            setPrefSize(TILE_WIDTH, TILE_HEIGHT);
+            setMaxSize(TILE_WIDTH, TILE_HEIGHT);
+            setAlignment(Pos.CENTER);
+            setStyle(CARD_STYLE);
+
+            int[] thumbnailSize = config.getThumbnailSize();
+            thumbnailContainer.setPrefSize(thumbnailSize[0], thumbnailSize[1]);
+            imageView.setFitWidth(thumbnailSize[0]);
+            imageView.setFitHeight(thumbnailSize[1]);
+            imageView.setPreserveRatio(true);
+            imageView.setSmooth(true);
+            thumbnailContainer.getChildren().addAll(iconLabel, imageView);
+
+            nameLabel.setStyle("-fx-font-size: 12px; -fx-font-weight: bold; -fx-text-alignment: center; -fx-text-fill: #333333;");
+            nameLabel.setWrapText(true);
+            nameLabel.setMaxWidth(130);
+            nameLabel.setMaxHeight(32);
+            infoLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #666666;");
+            getChildren().addAll(thumbnailContainer, nameLabel, infoLabel);
+
+            setOnMouseEntered(e -> setStyle(CARD_STYLE + HOVER_STYLE));
+            setOnMouseExited(e -> setStyle(CARD_STYLE));
+            setOnMouseClicked(e -> handleClick(this, item, e));
+        }
+
+        void bind(Object newItem) {
+            if (newItem == item) {
+                refreshLabels();
+                return;
+            }
+            unbind();
+            item = newItem;
+            refreshLabels();
+
+            if (item instanceof FolderItem) {
+                iconLabel.setText("📁");
+                iconLabel.setStyle("-fx-font-size: 48px;");
+                showIcon();
+            } else if (item instanceof FileItem) {
+                FileItem file = (FileItem) item;
+                iconLabel.setText(getFileIcon(file.getExtension()));
+                iconLabel.setStyle("-fx-font-size: 36px;");
+                bindThumbnail(file);
+            }
+        }
+
+        private void refreshLabels() {
+            if (item instanceof FolderItem) {
+                FolderItem folder = (FolderItem) item;
+                nameLabel.setText(folder.getName());
+                infoLabel.setText(folderFileCounts.getOrDefault(folder.getId(), 0) + " 個項目");
+            } else if (item instanceof FileItem) {
+                FileItem file = (FileItem) item;
+                nameLabel.setText(file.getName());
+                infoLabel.setText(formatFileSize(file.getSize()) + " • " + file.getLastModified().format(CARD_DATE_FORMAT));
+            }
+        }
+
+        private void bindThumbnail(FileItem file) {
+            Image cached = thumbnailService.isCurrent(file) ? imageCache.get(file.getThumbnailPath()) : null;
+            if (cached != null && !cached.isError()) {
+                showImage(cached);
+                return;
+            }
+            showIcon();
+            if (!config.isThumbnailEnabled() || !ThumbnailService.canCreate(file.getExtension())) {
+                return;
+            }
+            String previousPath = file.getThumbnailPath();
+            thumbnailService.request(file, config.isAutoGenerateThumbnail(), (requested, thumbnail) ->
+                    Platform.runLater(() -> thumbnailReady(requested, thumbnail, previousPath)));
+        }
+
+        private void thumbnailReady(FileItem file, Path thumbnail, String previousPath) {
+            if (thumbnail == null) {
+                return;
+            }
+            if (!Objects.equals(previousPath, file.getThumbnailPath())) {
+                fileManagerData.fileItemChanged(file);
+            }
+            String url = thumbnail.toUri().toString();
+            Image image = imageCache.get(url);
+            if (image == null || image.isError()) {
+                int[] thumbnailSize = config.getThumbnailSize();
+                image = new Image(url, thumbnailSize[0], thumbnailSize[1], true, true, true);
+                imageCache.put(url, image);
+            }
+            // 格子可能已經改繫結其他檔案
+            if (item == file) {
+                showImage(image);
+            }
+        }
+
+        private void showImage(Image image) {
+            imageView.setImage(image);
+            imageView.setVisible(true);
+            iconLabel.setVisible(false);
+            // 已載入完成的快取影像不再需要監聽，避免重複繫結時累積監聽器
+            if (image.getProgress() < 1) {
+                image.errorProperty().addListener((obs, oldValue, error) -> {
+                    if (error && imageView.getImage() == image) {
+                        showIcon();
+                    }
+                });
+            }
+        }
+
+        private void showIcon() {
+            imageView.setImage(null);
+            imageView.setVisible(false);
+            iconLabel.setVisible(true);
+        }
+
+        void unbind() {
+            if (item instanceof FileItem) {
+                thumbnailService.cancel((FileItem) item);
+            }
+            item = null;
+            showIcon();
+            setStyle(CARD_STYLE);
+        }
+    }
+
+    /**
+     * 清單中的一列，可以繫結資料夾或檔案
+     */
+    private class ListRow extends HBox {
+        private final Label iconLabel = new Label();
+        private final Label nameLabel = new Label();
+        private final Label detailLabel = new Label();
+        private final Label dateLabel = new Label();
+        private Object item;
+
+        ListRow() {
+            super(10);
+            setAlignment(Pos.CENTER_LEFT);
+            setPadding(new Insets(8));
+            setPrefHeight(LIST_ROW_HEIGHT - 2);
+            setMaxWidth(Double.MAX_VALUE);
+            setStyle(ROW_STYLE);
+
+            iconLabel.setStyle("-fx-font-size: 20px;");
+            iconLabel.setPrefWidth(30);
+            nameLabel.setPrefWidth(250);
+            nameLabel.setMinWidth(120);
+            HBox.setHgrow(nameLabel, Priority.SOMETIMES);
+            detailLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #666666;");
+            detailLabel.setPrefWidth(100);
+            detailLabel.setMinWidth(80);
+            dateLabel.setStyle("-fx-font-size: 12px; -fx-text-fill: #666666;");
+            dateLabel.setMinWidth(110);
+            getChildren().addAll(iconLabel, nameLabel, detailLabel, dateLabel);
+
+            setOnMouseEntered(e -> setStyle(ROW_STYLE + HOVER_STYLE));
+            setOnMouseExited(e -> setStyle(ROW_STYLE));
+            setOnMouseClicked(e -> handleClick(this, item, e));
+        }
+
+        void bind(Object newItem) {
+            item = newItem;
+            if (item instanceof FolderItem) {
+                FolderItem folder = (FolderItem) item;
+                iconLabel.setText("📁");
+                nameLabel.setText(folder.getName());
+                nameLabel.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-fill: #333333;");
+                detailLabel.setText(folderFileCounts.getOrDefault(folder.getId(), 0) + " 個項目");
+                dateLabel.setText(folder.getCreatedDate().format(LIST_DATE_FORMAT));
+            } else if (item instanceof FileItem) {
+                FileItem file = (FileItem) item;
+                iconLabel.setText(getFileIcon(file.getExtension()));
+                nameLabel.setText(file.getName());
+                nameLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #333333;");
+                detailLabel.setText(formatFileSize(file.getSize()));
+                dateLabel.setText(file.getLastModified().format(LIST_DATE_FORMAT));
+            }
+        }
+
+        void unbind() {
+            item = null;
+            setStyle(ROW_STYLE);
+        }
+    }
+
+    private void handleClick(Node source, Object item, MouseEvent e) {
+        if (item == null) {
+            return;
+        }
+        if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+            if (item instanceof FolderItem) {
+                actions.openFolder((FolderItem) item);
+            } else {
+                actions.openFile((FileItem) item);
+            }
+        } else if (e.getButton() == MouseButton.SECONDARY) {
+            if (item instanceof FolderItem) {
+                actions.showFolderMenu(source, (FolderItem) item, e.getScreenX(), e.getScreenY());
+            } else {
+                actions.showFileMenu(source, (FileItem) item, e.getScreenX(), e.getScreenY());
+            }
+        }
+    }
+
+    static String getFileIcon(String extension) {
+        switch (extension.toLowerCase()) {
+            case "pdf": return "📄";
+            case "epub": return "📚";
+            case "jpg":
+            case "jpeg":
+            case "png":
+            case "gif":
+            case "bmp": return "🖼️";
+            case "txt": return "📝";
+            case "doc":
+            case "docx": return "📘";
+            case "cbz":
+            case "zip":
+            case "rar": return "📦";
+            default: return "📎";
+        }
+    }
+
+    static String formatFileSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        if (bytes < 1024 * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+        return String.format("%.1f GB", bytes / (1024.0 * 1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,296 @@
+package E_Reader.filemanager;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 檔案庫掃描器 - 以ForkJoinPool平行掃描目錄樹，每個子目錄是一個工作，
+ * 閒置的執行緒會取走其他目錄的子目錄繼續掃描。
+ * 每個項目的類型、大小與修改時間以一次BasicFileAttributes讀取取得
+ * （Windows上直接使用列出目錄時取得的屬性），不再對每個檔案分別呼叫
+ * isDirectory、length與lastModified。
+ * 網路磁碟的延遲主要花在等待回應，執行緒數預設多於CPU核心數。
+ * 同一個掃描器的多次掃描共用一個執行緒池，用完後以close釋放
+ */
+public class LibraryScanner implements AutoCloseable {
+
+    private static final int DEFAULT_PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    // 進度回報的最短間隔（毫秒）
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    private final int parallelism;
+    private final AtomicInteger directoryCount = new AtomicInteger();
+    private final AtomicInteger fileCount = new AtomicInteger();
+    private final AtomicLong lastProgressTime = new AtomicLong();
+    private volatile ProgressListener progressListener;
+    private volatile boolean cancelled = false;
+    // 第一次掃描時建立，之後的掃描重複使用
+    private ForkJoinPool pool;
+
+    public LibraryScanner() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param parallelism 同時掃描的執行緒數
+     */
+    public LibraryScanner(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 掃描結果的接收者，會由多個執行緒同時呼叫，實作必須是執行緒安全的
+     */
+    public interface Visitor {
+        /**
+         * 找到子目錄
+         *
+         * @return 子目錄的資料夾ID，回傳null時略過該目錄
+         */
+        String directoryFound(Path directory, BasicFileAttributes attributes, String parentId);
+
+        void fileFound(Path file, BasicFileAttributes attributes, String folderId);
+
+        /**
+         * 目錄的項目已全部列出（子目錄可能尚未掃描），列出失敗或被取消時不呼叫
+         *
+         * @param attributes 列出之前讀取的目錄屬性
+         */
+        default void directoryListed(String folderId, BasicFileAttributes attributes) {
+        }
+    }
+
+    /**
+     * 掃描進度的監聽器，於掃描的執行緒呼叫
+     */
+    public interface ProgressListener {
+        void onProgress(int directories, int files, boolean finished);
+    }
+
+    /**
+     * 掃描目錄與其下所有子目錄，完成或取消後才返回
+     *
+     * @param directory 要掃描的目錄
+     * @param folderId 目錄對應的資料夾ID
+     * @param visitor 掃描結果的接收者
+     * @return 是否完整掃描（未被取消）
+     */
+    public boolean scan(Path directory, String folderId, Visitor visitor) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+        } catch (IOException e) {
+            System.err.println("無法讀取目錄 " + directory + ": " + e.getMessage());
+            return !cancelled;
+        }
+        if (!attributes.isDirectory()) {
+            return !cancelled;
+        }
+
+        getPool().invoke(new ScanTask(directory, attributes, folderId, visitor));
+
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onProgress(directoryCount.get(), fileCount.get(), true);
+        }
+        return !cancelled;
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism, LibraryScanner::newWorkerThread, null, false);
+        }
+        return pool;
+    }
+
+    /**
+     * 關閉掃描用的執行緒池，之後再掃描會建立新的執行緒池
+     */
+    @Override
+    public synchronized void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private static ForkJoinWorkerThread newWorkerThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("library-scan-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    }
+
+    /**
+     * 掃描一個目錄：列出項目後把子目錄分成子工作平行掃描
+     */
+    private class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        private final String folderId;
+        private final Visitor visitor;
+
+        ScanTask(Path directory, BasicFileAttributes attributes, String folderId, Visitor visitor) {
+            this.directory = directory;
+            this.attributes = attributes;
+            this.folderId = folderId;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+
+            List<ScanTask> subtasks = new ArrayList<>();
+            int[] files = new int[1];
+            boolean listed;
+            try {
+                listed = list(directory, (entry, entryAttributes) -> {
+                    if (cancelled) {
+                        return false;
+                    }
+                    if (LibraryIndex.isDataDirectoryName(entry.getFileName().toString())) {
+                        return true;
+                    }
+                    if (entryAttributes.isDirectory()) {
+                        String childId = visitor.directoryFound(entry, entryAttributes, folderId);
+                        if (childId != null) {
+                            subtasks.add(new ScanTask(entry, entryAttributes, childId, visitor));
+                        }
+                    } else {
+                        visitor.fileFound(entry, entryAttributes, folderId);
+                        files[0]++;
+                    }
+                    return true;
+                });
+            } catch (IOException e) {
+                System.err.println("無法列出目錄 " + directory + ": " + e.getMessage());
+                listed = false;
+            }
+
+            if (listed && !cancelled) {
+                visitor.directoryListed(folderId, attributes);
+            }
+            directoryCount.incrementAndGet();
+            fileCount.addAndGet(files[0]);
+            reportProgress();
+
+            if (!subtasks.isEmpty()) {
+                invokeAll(subtasks);
+            }
+        }
+    }
+
+    private void reportProgress() {
+        ProgressListener listener = progressListener;
+        if (listener == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long last = lastProgressTime.get();
+        if (now - last >= PROGRESS_INTERVAL_MS && lastProgressTime.compareAndSet(last, now)) {
+            listener.onProgress(directoryCount.get(), fileCount.get(), false);
+        }
+    }
+
+    /**
+     * 目錄項目的接收者
+     */
+    interface EntryHandler {
+        /**
+         * @return 是否繼續列出
+         */
+        boolean accept(Path entry, BasicFileAttributes attributes);
+    }
+
+    /**
+     * 列出一個目錄的項目與其屬性。以深度1的walkFileTree列出，
+     * 子目錄與檔案都經由visitFile取得屬性，不會進入子目錄
+     *
+     * @return 目錄是否成功列出（中途停止也視為成功）
+     */
+    static boolean list(Path directory, EntryHandler handler) throws IOException {
+        boolean[] listed = {false};
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                listed[0] = true;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.equals(directory)) {
+                    // 起點本身不是目錄
+                    return FileVisitResult.TERMINATE;
+                }
+                return handler.accept(file, attrs) ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                if (file.equals(directory)) {
+                    System.err.println("無法列出目錄 " + directory + ": " + e.getMessage());
+                    return FileVisitResult.TERMINATE;
+                }
+                // 無法讀取屬性的項目（例如失效的連結）略過
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                if (e != null) {
+                    listed[0] = false;
+                    System.err.println("列出目錄 " + directory + " 時發生錯誤: " + e.getMessage());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return listed[0];
+    }
+
+    /**
+     * 要求停止掃描，進行中的目錄列完目前的項目後停止
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public int getDirectoryCount() {
+        return directoryCount.get();
+    }
+
+    public int getFileCount() {
+        return fileCount.get();
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+}
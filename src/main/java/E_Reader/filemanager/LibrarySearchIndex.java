@@ -0,0 +1,661 @@
+package E_Reader.filemanager;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * 檔案庫搜尋索引 - 以二字元組與三字元組（bigram、trigram）索引整個檔案庫的檔案名稱、資料夾名稱與檔案中繼資料。
+ * 子字串查詢先取各字元組的文件清單交集再逐一確認（中文名稱常以兩個字查詢，因此也索引二字元組）；
+ * 模糊查詢把查詢切成「允許的編輯次數+1」段，符合的項目至少完整包含其中一段，
+ * 以各段的候選項目聯集縮小範圍，再以Myers位元平行演算法計算有限的編輯距離。
+ * 檔案庫變動後，下一次查詢前只比對並重新索引有變動的項目，移除的項目先標記，累積過多時才重建。
+ * 非同步查詢在單一背景執行緒執行，新的查詢會取消尚未完成的舊查詢
+ */
+public class LibrarySearchIndex implements Closeable {
+
+    // 納入搜尋的中繼資料欄位
+    private static final String[] SEARCHABLE_METADATA = {"title", "author", "subject", "keywords"};
+    // 每處理這麼多個項目檢查一次查詢是否已被取消
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    // 模糊比對的查詢長度上限（位元遮罩的位數）
+    private static final int MAX_FUZZY_LENGTH = 63;
+    // 已移除項目超過這個數量且超過存活項目的一半時重建索引
+    private static final int MIN_COMPACT_SIZE = 1024;
+
+    private static final int SCORE_EXACT = 1000;
+    private static final int SCORE_PREFIX = 800;
+    private static final int SCORE_WORD_START = 600;
+    private static final int SCORE_NAME = 400;
+    private static final int SCORE_METADATA = 200;
+    private static final int SCORE_FUZZY_NAME = 150;
+    private static final int SCORE_FUZZY_METADATA = 60;
+    private static final int FUZZY_PENALTY = 40;
+    private static final int PREFERRED_FOLDER_BONUS = 50;
+
+    private final FileManagerData fileManagerData;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+
+    // 索引內容，只在持有this的鎖時存取
+    private Object[] items = new Object[0];
+    private String[] names = new String[0];
+    private String[] lowerNames = new String[0];
+    private String[] metadataTexts = new String[0];
+    private String[] lowerMetadataTexts = new String[0];
+    private int documentCount = 0;
+    private int removedCount = 0;
+    private final Map<String, Integer> documentIds = new HashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private long indexedModificationCount = -1;
+
+    public LibrarySearchIndex(FileManagerData fileManagerData) {
+        this.fileManagerData = fileManagerData;
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "library-search");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * 查詢結果，依相關程度由高到低排列
+     */
+    public static class Results {
+        private final List<FolderItem> folders;
+        private final List<FileItem> files;
+        private final int matchCount;
+        private final long elapsedNanos;
+
+        Results(List<FolderItem> folders, List<FileItem> files, int matchCount, long elapsedNanos) {
+            this.folders = folders;
+            this.files = files;
+            this.matchCount = matchCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<FolderItem> getFolders() { return folders; }
+        public List<FileItem> getFiles() { return files; }
+        /**
+         * 符合的項目總數（可能多於傳回的數量）
+         */
+        public int getMatchCount() { return matchCount; }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+
+    /**
+     * 非同步查詢的回呼，於搜尋執行緒呼叫；查詢被較新的查詢取消時不呼叫
+     */
+    public interface SearchCallback {
+        void onResults(String query, Results results);
+    }
+
+    /**
+     * 在背景執行查詢，並取消尚未完成的前一個查詢
+     *
+     * @param preferredFolderId 優先排列的資料夾（通常是目前的資料夾），可為null
+     */
+    public void searchAsync(String query, int limit, boolean fuzzy, boolean caseSensitive,
+                            String preferredFolderId, SearchCallback callback) {
+        int queryGeneration = generation.incrementAndGet();
+        executor.execute(() -> {
+            if (generation.get() != queryGeneration) {
+                return;
+            }
+            Results results = search(query, limit, fuzzy, caseSensitive, preferredFolderId, queryGeneration);
+            if (results != null && generation.get() == queryGeneration) {
+                callback.onResults(query, results);
+            }
+        });
+    }
+
+    /**
+     * 取消進行中與排隊中的查詢
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * 同步查詢（於呼叫端的執行緒執行）
+     */
+    public Results search(String query, int limit, boolean fuzzy, boolean caseSensitive, String preferredFolderId) {
+        return search(query, limit, fuzzy, caseSensitive, preferredFolderId, generation.get());
+    }
+
+    private synchronized Results search(String query, int limit, boolean fuzzy, boolean caseSensitive,
+                                        String preferredFolderId, int queryGeneration) {
+        long start = System.nanoTime();
+        update();
+        String text = query == null ? "" : query.trim();
+        if (text.isEmpty() || limit <= 0) {
+            return new Results(Collections.emptyList(), Collections.emptyList(), 0, System.nanoTime() - start);
+        }
+
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        String pattern = caseSensitive ? text : lowerText;
+        PriorityQueue<Match> top = new PriorityQueue<>(Math.min(limit, 1024), Match.WORST_FIRST);
+        boolean[] matched = new boolean[documentCount];
+        int matchCount = 0;
+
+        // 子字串比對：以字元組縮小範圍，只有一個字的查詢才逐一比對
+        int[] candidates = lowerText.length() >= 2 ? substringCandidates(lowerText) : null;
+        int candidateCount = candidates != null ? candidates.length : documentCount;
+        for (int i = 0; i < candidateCount; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && generation.get() != queryGeneration) {
+                return null;
+            }
+            int id = candidates != null ? candidates[i] : i;
+            if (items[id] == null) {
+                continue;
+            }
+            int score = substringScore(id, pattern, caseSensitive);
+            if (score > 0) {
+                matched[id] = true;
+                matchCount++;
+                offer(top, limit, new Match(id, score + folderBonus(id, preferredFolderId), names[id]));
+            }
+        }
+
+        // 模糊比對：子字串結果已經填滿時，模糊結果的分數不可能進入前幾名
+        int maxDistance = maxDistance(pattern.length());
+        if (fuzzy && maxDistance > 0 && matchCount < limit) {
+            int fuzzyMatches = fuzzySearch(pattern, lowerText, maxDistance, caseSensitive, matched,
+                    top, limit, preferredFolderId, queryGeneration);
+            if (fuzzyMatches < 0) {
+                return null;
+            }
+            matchCount += fuzzyMatches;
+        }
+
+        List<Match> ranked = new ArrayList<>(top);
+        ranked.sort(Match.WORST_FIRST.reversed());
+        List<FolderItem> folders = new ArrayList<>();
+        List<FileItem> files = new ArrayList<>();
+        for (Match match : ranked) {
+            Object item = items[match.id];
+            if (item instanceof FolderItem) {
+                folders.add((FolderItem) item);
+            } else {
+                files.add((FileItem) item);
+            }
+        }
+        return new Results(folders, files, matchCount, System.nanoTime() - start);
+    }
+
+    /**
+     * 子字串比對的分數，不符合時回傳0
+     */
+    private int substringScore(int id, String pattern, boolean caseSensitive) {
+        String name = caseSensitive ? names[id] : lowerNames[id];
+        int index = name.indexOf(pattern);
+        if (index == 0) {
+            return name.length() == pattern.length() ? SCORE_EXACT : SCORE_PREFIX;
+        }
+        if (index > 0) {
+            // 從單字開頭開始符合的排在中間符合的前面
+            do {
+                if (!Character.isLetterOrDigit(name.charAt(index - 1))) {
+                    return SCORE_WORD_START;
+                }
+                index = name.indexOf(pattern, index + 1);
+            } while (index > 0);
+            return SCORE_NAME;
+        }
+        String metadata = caseSensitive ? metadataTexts[id] : lowerMetadataTexts[id];
+        return metadata != null && metadata.contains(pattern) ? SCORE_METADATA : 0;
+    }
+
+    /**
+     * 取得包含查詢所有字元組的項目（查詢至少兩個字），由最短的文件清單開始取交集
+     */
+    private int[] substringCandidates(String lowerText) {
+        long[] grams = lowerText.length() == 2 ? new long[]{bigram(lowerText, 0)} : distinctTrigrams(lowerText);
+        IntList[] lists = new IntList[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists[0].values, lists[0].size);
+        int resultSize = result.length;
+        for (int i = 1; i < lists.length && resultSize > 0; i++) {
+            resultSize = intersect(result, resultSize, lists[i]);
+        }
+        return Arrays.copyOf(result, resultSize);
+    }
+
+    /**
+     * 把result與已排序的清單取交集，結果寫回result
+     *
+     * @return 交集的大小
+     */
+    private static int intersect(int[] result, int resultSize, IntList list) {
+        int size = 0;
+        int position = 0;
+        for (int i = 0; i < resultSize; i++) {
+            int value = result[i];
+            position = seek(list.values, position, list.size, value);
+            if (position >= list.size) {
+                break;
+            }
+            if (list.values[position] == value) {
+                result[size++] = value;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 從from開始以倍增再二分搜尋找出第一個不小於target的位置
+     */
+    private static int seek(int[] values, int from, int size, int target) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < size && values[high] < target) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        if (high > size) {
+            high = size;
+        }
+        int index = Arrays.binarySearch(values, low, high, target);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * 模糊比對尚未符合的項目，符合的加入結果
+     *
+     * @return 符合的數量，查詢被取消時回傳-1
+     */
+    private int fuzzySearch(String pattern, String lowerText, int maxDistance, boolean caseSensitive, boolean[] matched,
+                            PriorityQueue<Match> top, int limit, String preferredFolderId, int queryGeneration) {
+        if (pattern.length() > MAX_FUZZY_LENGTH) {
+            pattern = pattern.substring(0, MAX_FUZZY_LENGTH);
+            lowerText = lowerText.substring(0, MAX_FUZZY_LENGTH);
+        }
+        FuzzyPattern fuzzyPattern = new FuzzyPattern(pattern);
+
+        int[] candidates = fuzzyCandidates(lowerText, maxDistance);
+
+        int matches = 0;
+        int candidateCount = candidates != null ? candidates.length : documentCount;
+        for (int i = 0; i < candidateCount; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && generation.get() != queryGeneration) {
+                return -1;
+            }
+            int id = candidates != null ? candidates[i] : i;
+            if (items[id] == null || matched[id]) {
+                continue;
+            }
+            int score = 0;
+            int distance = fuzzyPattern.distance(caseSensitive ? names[id] : lowerNames[id], maxDistance);
+            if (distance >= 0) {
+                score = SCORE_FUZZY_NAME - distance * FUZZY_PENALTY;
+            } else if (metadataTexts[id] != null) {
+                distance = fuzzyPattern.distance(caseSensitive ? metadataTexts[id] : lowerMetadataTexts[id], maxDistance);
+                if (distance >= 0) {
+                    score = SCORE_FUZZY_METADATA - distance * FUZZY_PENALTY / 2;
+                }
+            }
+            if (score > 0) {
+                matches++;
+                offer(top, limit, new Match(id, score + folderBonus(id, preferredFolderId), names[id]));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * 模糊比對的候選項目：查詢切成maxDistance+1段，d次編輯最多破壞d段，
+     * 符合的項目至少完整包含其中一段
+     *
+     * @return 候選項目，有一段短於兩個字而無法使用索引時回傳null（逐一比對）
+     */
+    private int[] fuzzyCandidates(String lowerText, int maxDistance) {
+        int pieces = maxDistance + 1;
+        int length = lowerText.length();
+        boolean[] selected = new boolean[documentCount];
+        IntList candidates = new IntList();
+        for (int piece = 0; piece < pieces; piece++) {
+            String part = lowerText.substring(piece * length / pieces, (piece + 1) * length / pieces);
+            if (part.length() < 2) {
+                return null;
+            }
+            for (int id : substringCandidates(part)) {
+                if (!selected[id]) {
+                    selected[id] = true;
+                    candidates.add(id);
+                }
+            }
+        }
+        return Arrays.copyOf(candidates.values, candidates.size);
+    }
+
+    /**
+     * 查詢長度允許的編輯距離，短的查詢不做模糊比對以免結果過多
+     */
+    private static int maxDistance(int length) {
+        if (length <= 3) {
+            return 0;
+        }
+        return length <= 6 ? 1 : 2;
+    }
+
+    private int folderBonus(int id, String preferredFolderId) {
+        if (preferredFolderId == null) {
+            return 0;
+        }
+        Object item = items[id];
+        String folderId = item instanceof FileItem ? ((FileItem) item).getFolderId() : ((FolderItem) item).getParentId();
+        return preferredFolderId.equals(folderId) ? PREFERRED_FOLDER_BONUS : 0;
+    }
+
+    private static void offer(PriorityQueue<Match> top, int limit, Match match) {
+        if (top.size() < limit) {
+            top.add(match);
+        } else if (Match.WORST_FIRST.compare(match, top.peek()) > 0) {
+            top.poll();
+            top.add(match);
+        }
+    }
+
+    /**
+     * 在搜尋執行緒更新索引（例如啟動後預先建立）
+     */
+    public void updateAsync() {
+        executor.execute(this::update);
+    }
+
+    /**
+     * 使索引與檔案庫一致：只有變動過的項目重新索引
+     */
+    public synchronized void update() {
+        long modificationCount = fileManagerData.getModificationCount();
+        if (modificationCount == indexedModificationCount) {
+            return;
+        }
+        indexedModificationCount = modificationCount;
+
+        boolean[] present = new boolean[documentCount];
+        for (FolderItem folder : fileManagerData.getAllFolders()) {
+            present = updateDocument(folder.getId(), folder, folder.getName(), null, present);
+        }
+        for (FileItem file : fileManagerData.getAllFiles()) {
+            present = updateDocument(file.getId(), file, file.getName(), metadataText(file), present);
+        }
+        for (int id = 0; id < documentCount; id++) {
+            if (!present[id] && items[id] != null) {
+                removeDocument(id);
+            }
+        }
+
+        if (removedCount > MIN_COMPACT_SIZE && removedCount > (documentCount - removedCount) / 2) {
+            rebuild();
+        }
+    }
+
+    /**
+     * @return 標記仍存在之項目的陣列（新增項目後可能換成較大的陣列）
+     */
+    private boolean[] updateDocument(String key, Object item, String name, String metadata, boolean[] present) {
+        Integer existing = documentIds.get(key);
+        if (existing != null) {
+            int id = existing;
+            if (items[id] == item && name.equals(names[id]) && Objects.equals(metadata, metadataTexts[id])) {
+                present[id] = true;
+                return present;
+            }
+            removeDocument(id);
+        }
+        int id = addDocument(key, item, name, metadata);
+        if (id >= present.length) {
+            present = Arrays.copyOf(present, Math.max(id + 1, present.length * 2));
+        }
+        present[id] = true;
+        return present;
+    }
+
+    private int addDocument(String key, Object item, String name, String metadata) {
+        if (documentCount == items.length) {
+            int capacity = Math.max(1024, items.length * 2);
+            items = Arrays.copyOf(items, capacity);
+            names = Arrays.copyOf(names, capacity);
+            lowerNames = Arrays.copyOf(lowerNames, capacity);
+            metadataTexts = Arrays.copyOf(metadataTexts, capacity);
+            lowerMetadataTexts = Arrays.copyOf(lowerMetadataTexts, capacity);
+        }
+        int id = documentCount++;
+        items[id] = item;
+        names[id] = name;
+        lowerNames[id] = name.toLowerCase(Locale.ROOT);
+        metadataTexts[id] = metadata;
+        lowerMetadataTexts[id] = metadata != null ? metadata.toLowerCase(Locale.ROOT) : null;
+        documentIds.put(key, id);
+
+        // 新項目的編號一定最大，直接附加在文件清單尾端即保持排序
+        addGrams(id, lowerNames[id]);
+        if (metadata != null) {
+            addGrams(id, lowerMetadataTexts[id]);
+        }
+        return id;
+    }
+
+    private void addGrams(int id, String text) {
+        for (int i = 0; i + 2 <= text.length(); i++) {
+            addPosting(bigram(text, i), id);
+            if (i + 3 <= text.length()) {
+                addPosting(trigram(text, i), id);
+            }
+        }
+    }
+
+    private void addPosting(long gram, int id) {
+        IntList list = postings.computeIfAbsent(gram, k -> new IntList());
+        if (list.size == 0 || list.values[list.size - 1] != id) {
+            list.add(id);
+        }
+    }
+
+    /**
+     * 標記項目已移除，文件清單中的編號留到重建時才清除
+     */
+    private void removeDocument(int id) {
+        items[id] = null;
+        names[id] = null;
+        lowerNames[id] = null;
+        metadataTexts[id] = null;
+        lowerMetadataTexts[id] = null;
+        removedCount++;
+    }
+
+    private void rebuild() {
+        items = new Object[0];
+        names = new String[0];
+        lowerNames = new String[0];
+        metadataTexts = new String[0];
+        lowerMetadataTexts = new String[0];
+        documentCount = 0;
+        removedCount = 0;
+        documentIds.clear();
+        postings.clear();
+        indexedModificationCount = -1;
+        update();
+    }
+
+    private static String metadataText(FileItem file) {
+        StringBuilder text = null;
+        for (String key : SEARCHABLE_METADATA) {
+            String value = file.getMetadata(key);
+            if (value != null && !value.isEmpty()) {
+                if (text == null) {
+                    text = new StringBuilder(value);
+                } else {
+                    text.append('\n').append(value);
+                }
+            }
+        }
+        return text != null ? text.toString() : null;
+    }
+
+    /**
+     * 二字元組的鍵值，以第48位元與三字元組區分
+     */
+    private static long bigram(String text, int index) {
+        return (1L << 48) | ((long) text.charAt(index) << 16) | text.charAt(index + 1);
+    }
+
+    private static long trigram(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private static long[] distinctTrigrams(String text) {
+        return IntStream.rangeClosed(0, text.length() - 3)
+                .mapToLong(i -> trigram(text, i))
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * 目前索引的項目數量
+     */
+    public synchronized int size() {
+        return documentCount - removedCount;
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 以Myers位元平行演算法計算查詢與文字中任一子字串的最小編輯距離
+     */
+    private static class FuzzyPattern {
+        // ASCII字元直接查表，其他字元（例如中文）逐一比對查詢中的非ASCII字元
+        private final long[] asciiMasks = new long[128];
+        private final char[] characters;
+        private final long[] masks;
+        private final int length;
+
+        FuzzyPattern(String pattern) {
+            length = pattern.length();
+            Map<Character, Long> masksByCharacter = new LinkedHashMap<>();
+            for (int i = 0; i < length; i++) {
+                char c = pattern.charAt(i);
+                if (c < 128) {
+                    asciiMasks[c] |= 1L << i;
+                } else {
+                    masksByCharacter.merge(c, 1L << i, (a, b) -> a | b);
+                }
+            }
+            characters = new char[masksByCharacter.size()];
+            masks = new long[masksByCharacter.size()];
+            int index = 0;
+            for (Map.Entry<Character, Long> entry : masksByCharacter.entrySet()) {
+                characters[index] = entry.getKey();
+                masks[index++] = entry.getValue();
+            }
+        }
+
+        /**
+         * @return 最小編輯距離，超過maxDistance時回傳-1
+         */
+        int distance(String text, int maxDistance) {
+            long positive = -1L;
+            long negative = 0;
+            long lastBit = 1L << (length - 1);
+            int score = length;
+            int best = length;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                long equal = 0;
+                if (c < 128) {
+                    equal = asciiMasks[c];
+                } else {
+                    for (int j = 0; j < characters.length; j++) {
+                        if (characters[j] == c) {
+                            equal = masks[j];
+                            break;
+                        }
+                    }
+                }
+                long vertical = equal | negative;
+                long horizontal = (((equal & positive) + positive) ^ positive) | equal;
+                long horizontalPositive = negative | ~(horizontal | positive);
+                long horizontalNegative = positive & horizontal;
+                if ((horizontalPositive & lastBit) != 0) {
+                    score++;
+                } else if ((horizontalNegative & lastBit) != 0) {
+                    score--;
+                }
+                // 文字中的任何位置都可以是比對的起點，左移時不補1
+                horizontalPositive <<= 1;
+                horizontalNegative <<= 1;
+                positive = horizontalNegative | ~(vertical | horizontalPositive);
+                negative = horizontalPositive & vertical;
+                if (score < best) {
+                    best = score;
+                    if (best == 0) {
+                        break;
+                    }
+                }
+            }
+            return best <= maxDistance ? best : -1;
+        }
+    }
+
+    private static class Match {
+        // 分數低的在前；同分時名稱較長、字母順序較後的在前
+        static final Comparator<Match> WORST_FIRST = Comparator.<Match>comparingInt(match -> match.score)
+                .thenComparing(Comparator.<Match>comparingInt(match -> match.name.length()).reversed())
+                .thenComparing(Comparator.<Match, String>comparing(match -> match.name).reversed());
+
+        final int id;
+        final int score;
+        final String name;
+
+        Match(int id, int score, String name) {
+            this.id = id;
+            this.score = score;
+            this.name = name;
+        }
+    }
+
+    /**
+     * 可增長的int陣列，用於文件清單
+     */
+    private static class IntList {
+        int[] values = new int[4];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,1100 @@
+package E_Reader.filemanager;
+
+import E_Reader.core.DocxDocument;
+import E_Reader.core.EpubBook;
+import E_Reader.core.EpubLoader;
+import E_Reader.core.MappedTextDocument;
+import E_Reader.core.PagedTextDocument;
+import E_Reader.core.TextExtractor;
+import E_Reader.core.TextSearchIndex;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 檔案庫全文索引 - 在背景取出整個檔案庫中PDF、EPUB、TXT與DOCX的文字，寫成磁碟上的索引區段，
+ * 查詢時不需要開啟任何文件即可列出符合的書籍、頁面與前後文。
+ * 區段寫入後不再修改：新增或變更的書籍寫入新的區段，移除或過時的書籍只從清單中移除，
+ * 區段累積過多或失效內容過半時，在背景合併成新的區段。
+ * PDF沒有文字的頁面改用閱讀時OCR辨識後保存的文字。
+ * 同時取出PDF文件資訊與EPUB OPF中的標題、作者、主題與關鍵字寫入檔案項目的中繼資料，供檔案庫搜尋使用。
+ * 建立索引與查詢分別在各自的背景執行緒執行，建立索引時不會延遲查詢
+ */
+public class LibraryTextIndex implements Closeable {
+
+    static final String DIRECTORY_NAME = "fulltext";
+    private static final String MANIFEST_FILE = "manifest.dat";
+    private static final String OCR_DIRECTORY = "ocr";
+    private static final int MANIFEST_MAGIC = 0x4552464D;
+    private static final int MANIFEST_VERSION = 1;
+    private static final int OCR_MAGIC = 0x45524F43;
+    private static final int OCR_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> INDEXED_EXTENSIONS = Set.of("pdf", "epub", "txt", "docx");
+    // 取出書籍資訊的格式與寫入的中繼資料鍵（LibrarySearchIndex搜尋這些鍵）
+    private static final Set<String> METADATA_EXTENSIONS = Set.of("pdf", "epub");
+    private static final String[] METADATA_KEYS = {"title", "author", "subject", "keywords"};
+    // FileItem中繼資料：取出書籍資訊時檔案的大小與修改時間，相符時不再讀取
+    static final String METADATA_SOURCE_KEY = "metadata.source";
+    // 檢查檔案庫是否變動的間隔（秒）
+    private static final long POLL_INTERVAL_SECONDS = 5;
+    private static final long INITIAL_DELAY_SECONDS = 3;
+    // 累積的資料量或書籍數達到時寫成一個區段
+    private static final long SEGMENT_FLUSH_SIZE = 32L * 1024 * 1024;
+    private static final int SEGMENT_FLUSH_DOCUMENTS = 256;
+    // 區段數超過時合併最小的區段
+    private static final int MAX_SEGMENTS = 8;
+    // TXT與DOCX以閱讀畫面的預設字型與版面分頁，頁碼與閱讀時的預設版面相近
+    private static final String TEXT_FONT_FAMILY = "Microsoft JhengHei";
+    private static final float TEXT_FONT_SIZE = 18;
+    private static final float TEXT_LINE_WIDTH = 580;
+    private static final int TEXT_LINES_PER_PAGE = 25;
+    // 等待TXT與DOCX分頁掃描的上限（分鐘）
+    private static final long TEXT_SCAN_TIMEOUT_MINUTES = 5;
+    // 每本書最多列出的命中頁面
+    private static final int HITS_PER_BOOK = 3;
+    private static final int SNIPPET_CONTEXT = 30;
+
+    private final FileManagerData fileManagerData;
+    private final Path directory;
+    private final Path ocrDirectory;
+    private final ScheduledExecutorService executor;
+    private final ThreadPoolExecutor searchExecutor;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // 目前可查詢的狀態，只由索引執行緒替換
+    private volatile Snapshot snapshot = new Snapshot(List.of(), Map.of());
+    private int nextSegment = 0;
+    private boolean loaded = false;
+    private long syncedModificationCount = -1;
+    private volatile boolean updateRequested = true;
+    private volatile boolean closed = false;
+    private volatile boolean indexing = false;
+    private volatile int pendingCount = 0;
+
+    public LibraryTextIndex(FileManagerData fileManagerData) {
+        this.fileManagerData = fileManagerData;
+        this.directory = fileManagerData.getDataDirectory().resolve(DIRECTORY_NAME);
+        this.ocrDirectory = directory.resolve(OCR_DIRECTORY);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "library-text-index");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.searchExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "library-text-search");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * 一本書在索引中的位置與建立索引時的檔案狀態
+     */
+    private static class Entry {
+        // 沒有文字可索引的書籍為null，避免每次都重新取出
+        final String segment;
+        final int document;
+        final long size;
+        final long lastModified;
+        final long ocrStamp;
+
+        Entry(String segment, int document, long size, long lastModified, long ocrStamp) {
+            this.segment = segment;
+            this.document = document;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.ocrStamp = ocrStamp;
+        }
+
+        boolean isSameFile(long size, long lastModified, long ocrStamp) {
+            return this.size == size && this.lastModified == lastModified && this.ocrStamp == ocrStamp;
+        }
+    }
+
+    /**
+     * 不可變的查詢狀態：區段清單、書籍清單，以及各區段中仍有效的書籍
+     */
+    private static class Snapshot {
+        final List<FullTextSegment> segments;
+        final Map<String, Entry> entries;
+        final boolean[][] live;
+
+        Snapshot(List<FullTextSegment> segments, Map<String, Entry> entries) {
+            this.segments = segments;
+            this.entries = entries;
+            this.live = new boolean[segments.size()][];
+            for (int s = 0; s < segments.size(); s++) {
+                FullTextSegment segment = segments.get(s);
+                live[s] = new boolean[segment.getDocumentCount()];
+                for (int doc = 0; doc < live[s].length; doc++) {
+                    Entry entry = entries.get(segment.getFileId(doc));
+                    live[s][doc] = entry != null && segment.getName().equals(entry.segment) && entry.document == doc;
+                }
+            }
+        }
+
+        int liveCount(int segmentIndex) {
+            int count = 0;
+            for (boolean value : live[segmentIndex]) {
+                if (value) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 一個命中的頁面
+     */
+    public static class Hit {
+        private final FileItem file;
+        private final int page;
+        private final long textOffset;
+        private final String location;
+        private final String snippet;
+        private final int matchingPageCount;
+
+        Hit(FileItem file, int page, long textOffset, String location, String snippet, int matchingPageCount) {
+            this.file = file;
+            this.page = page;
+            this.textOffset = textOffset;
+            this.location = location;
+            this.snippet = snippet;
+            this.matchingPageCount = matchingPageCount;
+        }
+
+        public FileItem getFile() { return file; }
+        /**
+         * 頁碼（從0開始；EPUB為章節）
+         */
+        public int getPage() { return page; }
+        /**
+         * TXT與DOCX中符合文字在整本書文字中的字元位置（-1表示其他格式）。
+         * 這兩種格式的頁碼取決於閱讀畫面的版面，開啟後以此位置換算實際的頁面
+         */
+        public long getTextOffset() { return textOffset; }
+        /**
+         * 顯示用的位置，例如「第 3 頁」
+         */
+        public String getLocation() { return location; }
+        public String getSnippet() { return snippet; }
+        /**
+         * 這本書中可能符合的頁數（以索引判斷，未逐頁確認）
+         */
+        public int getMatchingPageCount() { return matchingPageCount; }
+    }
+
+    /**
+     * 查詢結果，依書籍的相關程度排列，同一本書的頁面依頁碼排列
+     */
+    public static class Results {
+        private final List<Hit> hits;
+        private final int bookCount;
+        private final long elapsedNanos;
+
+        Results(List<Hit> hits, int bookCount, long elapsedNanos) {
+            this.hits = hits;
+            this.bookCount = bookCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<Hit> getHits() { return hits; }
+        /**
+         * 符合的書籍數（可能多於傳回的數量）
+         */
+        public int getBookCount() { return bookCount; }
+        public long getElapsedNanos() { return elapsedNanos; }
+    }
+
+    /**
+     * 非同步查詢的回呼，於搜尋執行緒呼叫；查詢被較新的查詢取消時不呼叫
+     */
+    public interface SearchCallback {
+        void onResults(String query, Results results);
+    }
+
+    /**
+     * 載入既有的索引並開始在背景更新
+     */
+    public void start() {
+        executor.execute(this::load);
+        executor.scheduleWithFixedDelay(this::syncIfNeeded, INITIAL_DELAY_SECONDS, POLL_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * 要求在下一次檢查時更新索引（例如匯入檔案或保存OCR文字之後）
+     */
+    public void requestUpdate() {
+        updateRequested = true;
+    }
+
+    /**
+     * 立即在背景更新索引
+     */
+    public void updateAsync() {
+        updateRequested = true;
+        executor.execute(this::syncIfNeeded);
+    }
+
+    /**
+     * 在呼叫端的執行緒載入並更新索引（效能測試使用，不可與start同時使用）
+     */
+    public void update() {
+        if (!loaded) {
+            load();
+        }
+        updateRequested = true;
+        syncIfNeeded();
+    }
+
+    public boolean isIndexing() { return indexing; }
+    /**
+     * 尚未建立索引的書籍數
+     */
+    public int getPendingCount() { return pendingCount; }
+    /**
+     * 已建立索引的書籍數
+     */
+    public int getIndexedBookCount() {
+        Snapshot current = snapshot;
+        int count = 0;
+        for (int s = 0; s < current.segments.size(); s++) {
+            count += current.liveCount(s);
+        }
+        return count;
+    }
+    public int getSegmentCount() { return snapshot.segments.size(); }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        searchExecutor.shutdownNow();
+    }
+
+    // ---- 查詢 ----
+
+    /**
+     * 在背景執行查詢，並略過尚未開始的前一個查詢
+     */
+    public void searchAsync(String query, int limit, SearchCallback callback) {
+        int queryGeneration = generation.incrementAndGet();
+        searchExecutor.execute(() -> {
+            if (generation.get() != queryGeneration) {
+                return;
+            }
+            Results results = search(query, limit);
+            if (generation.get() == queryGeneration) {
+                callback.onResults(query, results);
+            }
+        });
+    }
+
+    /**
+     * 取消排隊中的查詢，進行中的查詢不再回報結果
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * 搜尋整個檔案庫的文字。查詢的切詞方式與書內搜尋相同，最後一個詞以前綴比對
+     *
+     * @param limit 最多傳回的書籍數
+     */
+    public Results search(String query, int limit) {
+        long start = System.nanoTime();
+        String trimmed = query != null ? query.trim() : "";
+        List<TextSearchIndex.QueryToken> tokens = trimmed.isEmpty()
+                ? List.of() : TextSearchIndex.tokenizeQuery(TextSearchIndex.normalize(trimmed));
+        if (tokens.isEmpty()) {
+            return new Results(List.of(), 0, System.nanoTime() - start);
+        }
+
+        String squeezedQuery = TextSearchIndex.squeeze(trimmed);
+        Snapshot current = snapshot;
+        List<BookCandidate> books = new ArrayList<>();
+        for (int s = 0; s < current.segments.size(); s++) {
+            long[] pages = candidatePages(current.segments.get(s), tokens);
+            if (pages == null) {
+                continue;
+            }
+            boolean[] live = current.live[s];
+            int n = 0;
+            while (n < pages.length) {
+                int doc = (int) (pages[n] >>> 32);
+                int end = n;
+                while (end < pages.length && (int) (pages[end] >>> 32) == doc) {
+                    end++;
+                }
+                if (live[doc]) {
+                    books.add(new BookCandidate(current.segments.get(s), doc, pages, n, end));
+                }
+                n = end;
+            }
+        }
+        books.sort(BookCandidate.MOST_PAGES_FIRST);
+
+        // 依序確認候選頁面確實包含連續的查詢詞，湊滿limit本書為止
+        List<Hit> hits = new ArrayList<>();
+        int bookCount = 0;
+        int verifiedBooks = 0;
+        for (int i = 0; i < books.size(); i++) {
+            if (verifiedBooks >= limit) {
+                // 其餘的書籍未逐頁確認，以候選書籍數估計
+                bookCount = verifiedBooks + books.size() - i;
+                break;
+            }
+            BookCandidate book = books.get(i);
+            FileItem file = fileManagerData.getFile(book.segment.getFileId(book.document));
+            if (file == null) {
+                continue;
+            }
+            List<Hit> bookHits = verify(book, file, squeezedQuery);
+            if (!bookHits.isEmpty()) {
+                hits.addAll(bookHits);
+                verifiedBooks++;
+            }
+            bookCount = verifiedBooks;
+        }
+        return new Results(hits, bookCount, System.nanoTime() - start);
+    }
+
+    /**
+     * 一本書的候選頁面（pages[from, to)）
+     */
+    private static class BookCandidate {
+        static final Comparator<BookCandidate> MOST_PAGES_FIRST =
+                Comparator.comparingInt((BookCandidate book) -> book.to - book.from).reversed();
+
+        final FullTextSegment segment;
+        final int document;
+        final long[] pages;
+        final int from;
+        final int to;
+
+        BookCandidate(FullTextSegment segment, int document, long[] pages, int from, int to) {
+            this.segment = segment;
+            this.document = document;
+            this.pages = pages;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * 取各查詢詞出現頁面的交集
+     */
+    private static long[] candidatePages(FullTextSegment segment, List<TextSearchIndex.QueryToken> tokens) {
+        long[] result = null;
+        for (TextSearchIndex.QueryToken token : tokens) {
+            long[] pages = segment.postings(token.getTerm(), token.isPrefix());
+            if (pages == null) {
+                return null;
+            }
+            if (result == null) {
+                result = pages;
+                continue;
+            }
+            long[] smaller = result.length <= pages.length ? result : pages;
+            long[] larger = smaller == result ? pages : result;
+            int size = 0;
+            for (long page : smaller) {
+                if (Arrays.binarySearch(larger, page) >= 0) {
+                    smaller[size++] = page;
+                }
+            }
+            if (size == 0) {
+                return null;
+            }
+            result = Arrays.copyOf(smaller, size);
+        }
+        return result;
+    }
+
+    private List<Hit> verify(BookCandidate book, FileItem file, String squeezedQuery) {
+        String extension = file.getExtension().toLowerCase();
+        boolean chapters = "epub".equals(extension);
+        // TXT與DOCX以索引的預設版面分頁，頁碼只是約略的位置
+        boolean reflowed = !chapters && !"pdf".equals(extension);
+        List<Hit> hits = new ArrayList<>(HITS_PER_BOOK);
+        for (int n = book.from; n < book.to && hits.size() < HITS_PER_BOOK; n++) {
+            int page = (int) book.pages[n];
+            String text = book.segment.getPageText(book.document, page);
+            List<int[]> ranges = TextSearchIndex.findPhrase(text, squeezedQuery, 1);
+            if (!ranges.isEmpty()) {
+                int[] range = ranges.get(0);
+                String location = chapters ? "第 " + (page + 1) + " 章"
+                        : (reflowed ? "約第 " : "第 ") + (page + 1) + " 頁";
+                long textOffset = reflowed ? book.segment.getPageTextStart(book.document, page) + range[0] : -1;
+                hits.add(new Hit(file, page, textOffset, location, snippet(text, range[0], range[1]),
+                        book.to - book.from));
+            }
+        }
+        return hits;
+    }
+
+    private static String snippet(String text, int start, int end) {
+        int from = Math.max(0, start - SNIPPET_CONTEXT);
+        int to = Math.min(text.length(), end + SNIPPET_CONTEXT);
+        String snippet = text.substring(from, to).replace('\n', ' ').replace('\r', ' ');
+        return (from > 0 ? "…" : "") + snippet + (to < text.length() ? "…" : "");
+    }
+
+    // ---- OCR文字 ----
+
+    /**
+     * 保存閱讀時OCR辨識出的文字，之後建立索引時用於沒有原生文字的頁面
+     *
+     * @param file  PDF檔案
+     * @param pages TextExtractor取出的頁面，只保存OCR或混合來源的頁面
+     */
+    public void storeOcrText(File file, List<TextExtractor.PageText> pages) {
+        if (file == null || pages == null) {
+            return;
+        }
+        Map<Integer, String> ocrPages = new LinkedHashMap<>();
+        for (TextExtractor.PageText page : pages) {
+            if (page.getTextSource() != TextExtractor.TextSource.NATIVE) {
+                String text = page.getBestText();
+                if (text != null && !text.isBlank()) {
+                    ocrPages.put(page.getPageNumber(), text);
+                }
+            }
+        }
+        if (ocrPages.isEmpty()) {
+            return;
+        }
+
+        executor.execute(() -> {
+            FileItem item = findFile(file);
+            if (item == null) {
+                return;
+            }
+            try {
+                writeOcrText(item.getId(), ocrPages);
+                requestUpdate();
+            } catch (IOException e) {
+                System.err.println("無法保存OCR文字: " + e.getMessage());
+            }
+        });
+    }
+
+    private FileItem findFile(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        for (FileItem item : fileManagerData.getAllFiles()) {
+            if (item.getFilePath() != null
+                    && Path.of(item.getFilePath()).toAbsolutePath().normalize().equals(path)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private void writeOcrText(String fileId, Map<Integer, String> pages) throws IOException {
+        Files.createDirectories(ocrDirectory);
+        Path file = ocrDirectory.resolve(fileId);
+        Path tempFile = ocrDirectory.resolve(fileId + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+            output.writeInt(OCR_MAGIC);
+            output.writeInt(OCR_VERSION);
+            output.writeInt(pages.size());
+            for (Map.Entry<Integer, String> page : pages.entrySet()) {
+                byte[] bytes = page.getValue().getBytes(StandardCharsets.UTF_8);
+                output.writeInt(page.getKey());
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Map<Integer, String> readOcrText(String fileId) {
+        Path file = ocrDirectory.resolve(fileId);
+        if (!Files.exists(file)) {
+            return Map.of();
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (input.readInt() != OCR_MAGIC || input.readInt() != OCR_VERSION) {
+                return Map.of();
+            }
+            int count = input.readInt();
+            Map<Integer, String> pages = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                int page = input.readInt();
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                pages.put(page, new String(bytes, StandardCharsets.UTF_8));
+            }
+            return pages;
+        } catch (IOException e) {
+            System.err.println("無法讀取OCR文字: " + e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private long ocrStamp(String fileId) {
+        try {
+            return Files.getLastModifiedTime(ocrDirectory.resolve(fileId)).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // ---- 建立索引 ----
+
+    /**
+     * 載入清單與區段，刪除不在清單中的區段（例如寫入中斷或合併後未能刪除的檔案）
+     */
+    private void load() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            System.err.println("無法建立全文索引目錄: " + e.getMessage());
+            return;
+        }
+
+        List<FullTextSegment> segments = new ArrayList<>();
+        Map<String, Entry> entries = new HashMap<>();
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        if (Files.exists(manifest)) {
+            try (DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(manifest), BUFFER_SIZE))) {
+                if (input.readInt() != MANIFEST_MAGIC || input.readInt() != MANIFEST_VERSION) {
+                    throw new IOException("全文索引清單格式不符");
+                }
+                int next = input.readInt();
+                int segmentCount = input.readInt();
+                for (int i = 0; i < segmentCount; i++) {
+                    segments.add(FullTextSegment.open(directory.resolve(input.readUTF() + FullTextSegment.FILE_SUFFIX)));
+                }
+                int entryCount = input.readInt();
+                for (int i = 0; i < entryCount; i++) {
+                    String fileId = input.readUTF();
+                    String segment = input.readBoolean() ? input.readUTF() : null;
+                    entries.put(fileId, new Entry(segment, input.readInt(), input.readLong(), input.readLong(),
+                            input.readLong()));
+                }
+                nextSegment = next;
+            } catch (IOException e) {
+                // 清單或區段損毀時重新建立整個索引
+                System.err.println("無法載入全文索引，將重新建立: " + e.getMessage());
+                segments.clear();
+                entries.clear();
+            }
+        }
+
+        Set<String> listed = new HashSet<>();
+        for (FullTextSegment segment : segments) {
+            listed.add(segment.getName() + FullTextSegment.FILE_SUFFIX);
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if ((name.endsWith(FullTextSegment.FILE_SUFFIX) || name.endsWith(".tmp")) && !listed.contains(name)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("無法清理全文索引目錄: " + e.getMessage());
+        }
+
+        loaded = true;
+        snapshot = new Snapshot(Collections.unmodifiableList(segments), Collections.unmodifiableMap(entries));
+        System.out.println("全文索引已載入: " + getIndexedBookCount() + " 本書，" + segments.size() + " 個區段");
+    }
+
+    private void syncIfNeeded() {
+        long modificationCount = fileManagerData.getModificationCount();
+        if (closed || (!updateRequested && modificationCount == syncedModificationCount)) {
+            return;
+        }
+        updateRequested = false;
+        indexing = true;
+        try {
+            sync();
+            syncedModificationCount = modificationCount;
+            merge();
+        } catch (IOException e) {
+            System.err.println("全文索引更新失敗: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("全文索引更新時發生錯誤: " + e);
+        } finally {
+            indexing = false;
+            pendingCount = 0;
+        }
+    }
+
+    /**
+     * 比對檔案庫與索引，取出新增或變更的書籍，移除已不存在的書籍
+     */
+    private void sync() throws IOException {
+        Snapshot current = snapshot;
+        Map<String, Entry> entries = new HashMap<>(current.entries);
+        Set<String> present = new HashSet<>();
+        List<FileItem> changed = new ArrayList<>();
+        List<FileItem> staleMetadata = new ArrayList<>();
+        for (FileItem file : fileManagerData.getAllFiles()) {
+            if (file.getExtension() == null || !INDEXED_EXTENSIONS.contains(file.getExtension().toLowerCase())) {
+                continue;
+            }
+            present.add(file.getId());
+            Entry entry = entries.get(file.getId());
+            BasicFileAttributes attributes = attributes(file);
+            if (attributes == null) {
+                continue;
+            }
+            if (entry == null || !entry.isSameFile(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    ocrStamp(file.getId()))) {
+                changed.add(file);
+            } else if (needsMetadata(file, attributes)) {
+                staleMetadata.add(file);
+            }
+        }
+
+        boolean removed = entries.keySet().retainAll(present);
+        if (removed) {
+            publish(current.segments, entries);
+        }
+        // 已有全文索引但還沒有書籍資訊的檔案（例如較早版本建立的索引）只讀取書籍資訊
+        for (FileItem file : staleMetadata) {
+            if (closed) {
+                return;
+            }
+            Map<String, String> metadata = new HashMap<>();
+            readMetadata(file, metadata);
+            storeMetadata(file, attributes(file), metadata);
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        pendingCount = changed.size();
+        FullTextSegment.Builder builder = new FullTextSegment.Builder();
+        Map<String, Entry> building = new HashMap<>();
+        int indexed = 0;
+        for (FileItem file : changed) {
+            if (closed) {
+                return;
+            }
+            BasicFileAttributes attributes = attributes(file);
+            if (attributes == null) {
+                pendingCount--;
+                continue;
+            }
+            long ocrStamp = ocrStamp(file.getId());
+            Map<String, String> metadata = needsMetadata(file, attributes) ? new HashMap<>() : null;
+            DocumentPages pages = new DocumentPages(builder, file.getId());
+            extractPages(file, metadata, pages);
+            if (metadata != null) {
+                storeMetadata(file, attributes, metadata);
+            }
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            int doc = pages.finish();
+            if (doc < 0) {
+                entries.put(file.getId(), new Entry(null, -1, size, lastModified, ocrStamp));
+            } else {
+                building.put(file.getId(), new Entry(null, doc, size, lastModified, ocrStamp));
+                indexed++;
+            }
+            pendingCount--;
+
+            if (builder.getSize() >= SEGMENT_FLUSH_SIZE || builder.getDocumentCount() >= SEGMENT_FLUSH_DOCUMENTS) {
+                flush(builder, building, entries);
+                builder = new FullTextSegment.Builder();
+                building.clear();
+            }
+        }
+        if (builder.getDocumentCount() > 0) {
+            flush(builder, building, entries);
+        } else {
+            publish(snapshot.segments, entries);
+        }
+        System.out.println("全文索引已更新 " + indexed + " 本書，耗時 " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void flush(FullTextSegment.Builder builder, Map<String, Entry> building, Map<String, Entry> entries)
+            throws IOException {
+        FullTextSegment segment = builder.write(directory, "s" + nextSegment++);
+        for (Map.Entry<String, Entry> built : building.entrySet()) {
+            Entry entry = built.getValue();
+            entries.put(built.getKey(), new Entry(segment.getName(), entry.document, entry.size,
+                    entry.lastModified, entry.ocrStamp));
+        }
+        List<FullTextSegment> segments = new ArrayList<>(snapshot.segments);
+        segments.add(segment);
+        publish(segments, entries);
+    }
+
+    /**
+     * 保存清單並替換查詢狀態，刪除已沒有有效書籍的區段
+     */
+    private void publish(List<FullTextSegment> segments, Map<String, Entry> entries) throws IOException {
+        Snapshot next = new Snapshot(List.copyOf(segments), Map.copyOf(entries));
+        List<FullTextSegment> kept = new ArrayList<>();
+        List<FullTextSegment> dropped = new ArrayList<>();
+        for (int s = 0; s < next.segments.size(); s++) {
+            (next.liveCount(s) > 0 ? kept : dropped).add(next.segments.get(s));
+        }
+        if (!dropped.isEmpty()) {
+            next = new Snapshot(List.copyOf(kept), next.entries);
+        }
+        writeManifest(next);
+        snapshot = next;
+        deleteSegments(dropped);
+    }
+
+    /**
+     * 區段數過多時合併最小的區段，失效書籍過半的區段也一併重寫
+     */
+    private void merge() throws IOException {
+        Snapshot current = snapshot;
+        List<FullTextSegment> selected = new ArrayList<>();
+        List<Integer> order = new ArrayList<>();
+        for (int s = 0; s < current.segments.size(); s++) {
+            order.add(s);
+            if (current.liveCount(s) * 2 < current.segments.get(s).getDocumentCount()) {
+                selected.add(current.segments.get(s));
+            }
+        }
+        if (current.segments.size() > MAX_SEGMENTS) {
+            order.sort(Comparator.comparingLong(s -> current.segments.get(s).getTextLength()));
+            int excess = current.segments.size() - MAX_SEGMENTS + 1;
+            for (int i = 0; i < order.size() && excess > 0; i++) {
+                FullTextSegment segment = current.segments.get(order.get(i));
+                if (!selected.contains(segment)) {
+                    selected.add(segment);
+                }
+                excess--;
+            }
+        }
+        if (selected.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        FullTextSegment.Builder builder = new FullTextSegment.Builder();
+        Map<String, Integer> merged = new HashMap<>();
+        for (FullTextSegment segment : selected) {
+            boolean[] live = current.live[current.segments.indexOf(segment)];
+            for (int doc = 0; doc < live.length; doc++) {
+                if (closed) {
+                    return;
+                }
+                if (!live[doc]) {
+                    continue;
+                }
+                List<String> pages = new ArrayList<>(segment.getPageCount(doc));
+                for (int page = 0; page < segment.getPageCount(doc); page++) {
+                    pages.add(segment.getPageText(doc, page));
+                }
+                merged.put(segment.getFileId(doc), builder.addDocument(segment.getFileId(doc), pages));
+            }
+        }
+
+        List<FullTextSegment> segments = new ArrayList<>(current.segments);
+        segments.removeAll(selected);
+        Map<String, Entry> entries = new HashMap<>(current.entries);
+        if (builder.getDocumentCount() > 0) {
+            FullTextSegment segment = builder.write(directory, "s" + nextSegment++);
+            for (Map.Entry<String, Integer> doc : merged.entrySet()) {
+                Entry entry = entries.get(doc.getKey());
+                entries.put(doc.getKey(), new Entry(segment.getName(), doc.getValue(), entry.size,
+                        entry.lastModified, entry.ocrStamp));
+            }
+            segments.add(segment);
+        }
+        publish(segments, entries);
+        deleteSegments(selected);
+        System.out.println("全文索引已合併 " + selected.size() + " 個區段，耗時 "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void deleteSegments(List<FullTextSegment> segments) {
+        for (FullTextSegment segment : segments) {
+            try {
+                Files.deleteIfExists(directory.resolve(segment.getName() + FullTextSegment.FILE_SUFFIX));
+            } catch (IOException e) {
+                // 仍被映射的檔案在部分系統上無法刪除，下次啟動時清理
+                System.err.println("無法刪除全文索引區段 " + segment.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeManifest(Snapshot state) throws IOException {
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        Path tempFile = directory.resolve(MANIFEST_FILE + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeInt(MANIFEST_VERSION);
+            output.writeInt(nextSegment);
+            output.writeInt(state.segments.size());
+            for (FullTextSegment segment : state.segments) {
+                output.writeUTF(segment.getName());
+            }
+            output.writeInt(state.entries.size());
+            for (Map.Entry<String, Entry> item : state.entries.entrySet()) {
+                Entry entry = item.getValue();
+                output.writeUTF(item.getKey());
+                output.writeBoolean(entry.segment != null);
+                if (entry.segment != null) {
+                    output.writeUTF(entry.segment);
+                }
+                output.writeInt(entry.document);
+                output.writeLong(entry.size);
+                output.writeLong(entry.lastModified);
+                output.writeLong(entry.ocrStamp);
+            }
+        }
+        Files.move(tempFile, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static BasicFileAttributes attributes(FileItem file) {
+        try {
+            return Files.readAttributes(Path.of(file.getFilePath()), BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("無法讀取檔案屬性: " + file.getName() + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ---- 取出文字 ----
+
+    /**
+     * 逐頁取出一本書的文字放入pages，讀取失敗時保留已取出的頁面
+     *
+     * @param metadata 不為null時一併放入PDF與EPUB的書籍資訊
+     */
+    private void extractPages(FileItem file, Map<String, String> metadata, DocumentPages pages) {
+        File physical = new File(file.getFilePath());
+        String extension = file.getExtension().toLowerCase();
+        try {
+            switch (extension) {
+                case "pdf":
+                    extractPdf(physical, readOcrText(file.getId()), metadata, pages);
+                    break;
+                case "epub":
+                    extractEpub(physical, metadata, pages);
+                    break;
+                default:
+                    extractPagedText(physical, extension, pages);
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("無法取出文字建立全文索引: " + file.getName() + " - " + e.getMessage());
+        }
+    }
+
+    private static void extractPdf(File file, Map<Integer, String> ocrPages, Map<String, String> metadata,
+                                   DocumentPages pages) throws IOException {
+        try (PDDocument document = PDDocument.load(file)) {
+            if (metadata != null) {
+                readPdfMetadata(document, metadata);
+            }
+            PDFTextStripper stripper = new PDFTextStripper();
+            int pageCount = document.getNumberOfPages();
+            for (int i = 0; i < pageCount; i++) {
+                stripper.setStartPage(i + 1);
+                stripper.setEndPage(i + 1);
+                String text = stripper.getText(document).trim();
+                if (text.isEmpty()) {
+                    text = ocrPages.getOrDefault(i, "");
+                }
+                pages.add(text);
+            }
+        }
+    }
+
+    private static void extractEpub(File file, Map<String, String> metadata, DocumentPages pages)
+            throws IOException {
+        EpubLoader loader = new EpubLoader();
+        try {
+            for (TextExtractor.PageText chapter : loader.extractTextFromEpub(file)) {
+                pages.add(chapter.getBestText() != null ? chapter.getBestText() : "");
+            }
+            if (metadata != null) {
+                // 同一個檔案沿用剛才開啟的EPUB會話
+                readEpubMetadata(loader.openBook(file), metadata);
+            }
+        } finally {
+            loader.closeBook();
+        }
+    }
+
+    // ---- 書籍資訊 ----
+
+    private static boolean needsMetadata(FileItem file, BasicFileAttributes attributes) {
+        return METADATA_EXTENSIONS.contains(file.getExtension().toLowerCase())
+                && !metadataSource(attributes).equals(file.getMetadata(METADATA_SOURCE_KEY));
+    }
+
+    private static String metadataSource(BasicFileAttributes attributes) {
+        return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * 只開啟文件讀取書籍資訊（PDF不取出文字，EPUB只解析OPF）
+     */
+    private static void readMetadata(FileItem file, Map<String, String> metadata) {
+        File physical = new File(file.getFilePath());
+        try {
+            if ("pdf".equals(file.getExtension().toLowerCase())) {
+                try (PDDocument document = PDDocument.load(physical)) {
+                    readPdfMetadata(document, metadata);
+                }
+            } else {
+                try (EpubBook book = EpubBook.open(physical, null)) {
+                    readEpubMetadata(book, metadata);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("無法讀取書籍資訊: " + file.getName() + " - " + e.getMessage());
+        }
+    }
+
+    private static void readPdfMetadata(PDDocument document, Map<String, String> metadata) {
+        PDDocumentInformation information = document.getDocumentInformation();
+        if (information != null) {
+            metadata.put("title", information.getTitle());
+            metadata.put("author", information.getAuthor());
+            metadata.put("subject", information.getSubject());
+            metadata.put("keywords", information.getKeywords());
+        }
+    }
+
+    private static void readEpubMetadata(EpubBook book, Map<String, String> metadata) {
+        metadata.put("title", book.getTitle());
+        metadata.put("author", book.getCreators().isEmpty() ? null : String.join(", ", book.getCreators()));
+        metadata.put("subject", book.getSubjects().isEmpty() ? null : String.join(", ", book.getSubjects()));
+    }
+
+    /**
+     * 寫入檔案項目的書籍資訊並排定保存檔案庫索引（讀取失敗時也記錄來源，不再重試）
+     */
+    private void storeMetadata(FileItem file, BasicFileAttributes attributes, Map<String, String> metadata) {
+        if (attributes == null) {
+            return;
+        }
+        for (String key : METADATA_KEYS) {
+            String value = metadata.get(key);
+            file.putMetadata(key, value != null && !value.isBlank() ? value.trim() : null);
+        }
+        file.putMetadata(METADATA_SOURCE_KEY, metadataSource(attributes));
+        fileManagerData.fileItemChanged(file);
+    }
+
+    /**
+     * 以分頁文字模型取出TXT與DOCX的頁面，等待背景分頁掃描結束後逐頁讀出
+     */
+    private static void extractPagedText(File file, String extension, DocumentPages pages) throws IOException {
+        MappedTextDocument.PageSettings settings =
+                MappedTextDocument.PageSettings.forFont(TEXT_FONT_FAMILY, TEXT_FONT_SIZE, TEXT_LINE_WIDTH,
+                        TEXT_LINES_PER_PAGE);
+        PagedTextDocument document = "docx".equals(extension)
+                ? DocxDocument.open(file, settings) : MappedTextDocument.open(file, settings);
+        try {
+            CountDownLatch finished = new CountDownLatch(1);
+            document.setScanListener((pageCount, progress, done) -> {
+                if (done) {
+                    finished.countDown();
+                }
+            });
+            if (!finished.await(TEXT_SCAN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new IOException("分頁掃描逾時");
+            }
+            for (int i = 0; i < document.getPageCount(); i++) {
+                pages.add(document.getPageText(i));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("取出文字時被中斷");
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * 把取出的頁面逐頁寫入區段建立器；開頭的空白頁先暫存，整本書都沒有文字時不加入區段
+     */
+    private static class DocumentPages {
+        private final FullTextSegment.Builder builder;
+        private final String fileId;
+        private final List<String> leadingBlankPages = new ArrayList<>();
+        private boolean started;
+
+        DocumentPages(FullTextSegment.Builder builder, String fileId) {
+            this.builder = builder;
+            this.fileId = fileId;
+        }
+
+        void add(String text) {
+            text = text != null ? text : "";
+            if (!started) {
+                if (text.isBlank()) {
+                    leadingBlankPages.add(text);
+                    return;
+                }
+                builder.startDocument(fileId);
+                for (String blank : leadingBlankPages) {
+                    builder.addPage(blank);
+                }
+                leadingBlankPages.clear();
+                started = true;
+            }
+            builder.addPage(text);
+        }
+
+        /**
+         * @return 書籍在區段中的序號，整本書都沒有文字時回傳-1
+         */
+        int finish() {
+            return started ? builder.endDocument() : -1;
+        }
+    }
+}
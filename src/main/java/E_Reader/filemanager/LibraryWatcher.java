@@ -0,0 +1,231 @@
+package E_Reader.filemanager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 檔案庫監看器 - 以WatchService監看檔案庫中的所有目錄，
+ * 其他程式（例如同步軟體）新增、刪除、移動或重新命名的檔案會直接反映到檔案庫中。
+ * 連續的事件合併後只重新列出有事件的目錄；事件溢出時只比對該目錄以下
+ * 修改時間有變動的資料夾，不會完整重新掃描檔案庫
+ */
+public class LibraryWatcher implements Closeable {
+
+    // 最後一個事件後等待多久才套用（毫秒），合併連續的事件
+    private static final long QUIET_PERIOD_MS = 300;
+    // 事件持續不斷時最多延遲多久套用
+    private static final long MAX_DELAY_MS = 2000;
+
+    private final FileManagerData data;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private Thread watchThread;
+    private volatile boolean closed = false;
+    private volatile boolean registrationFailed = false;
+
+    private LibraryWatcher(FileManagerData data) throws IOException {
+        this.data = data;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * 註冊檔案庫中的所有目錄並開始監看
+     */
+    public static LibraryWatcher start(FileManagerData data) throws IOException {
+        LibraryWatcher watcher = new LibraryWatcher(data);
+        watcher.registerTree(data.getLibraryPath());
+        watcher.watchThread = new Thread(watcher::watch, "library-watcher");
+        watcher.watchThread.setDaemon(true);
+        watcher.watchThread.setPriority(Thread.NORM_PRIORITY - 1);
+        watcher.watchThread.start();
+        return watcher;
+    }
+
+    /**
+     * 註冊目錄與其下所有子目錄（略過檔案庫的資料目錄），已註冊的目錄重複註冊不會有影響
+     */
+    private void registerTree(Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                    if (!directory.equals(start) && directory.getFileName() != null
+                            && LibraryIndex.isDataDirectoryName(directory.getFileName().toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    register(directory);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("無法監看目錄 " + start + ": " + e.getMessage());
+        }
+    }
+
+    private void register(Path directory) {
+        if (closed || registrationFailed) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.put(key, directory);
+        } catch (IOException e) {
+            // 通常是超過系統的監看數量上限，其餘目錄的變動在下次啟動時比對
+            registrationFailed = true;
+            System.err.println("無法監看目錄 " + directory + "，停止註冊其餘目錄: " + e.getMessage());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> overflowed = new LinkedHashSet<>();
+                collect(key, changed, overflowed);
+
+                // 等到事件停止一段時間（或已延遲太久）才一次套用
+                long firstEvent = System.currentTimeMillis();
+                while (!closed && System.currentTimeMillis() - firstEvent < MAX_DELAY_MS) {
+                    key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    collect(key, changed, overflowed);
+                }
+
+                if (!closed) {
+                    apply(changed, overflowed);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 監看器已關閉
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed, Set<Path> overflowed) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed.add(directory);
+                continue;
+            }
+            Object context = event.context();
+            if (context instanceof Path && LibraryIndex.isDataDirectoryName(context.toString())) {
+                continue;
+            }
+            changed.add(directory);
+        }
+
+        if (!key.reset()) {
+            // 目錄已被刪除或無法存取，由上層目錄的事件移除
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * 把有事件的目錄對應到資料夾後重新列出，並註冊新出現的目錄
+     */
+    private void apply(Set<Path> changed, Set<Path> overflowed) {
+        Set<String> overflowedIds = new LinkedHashSet<>();
+        for (Path directory : overflowed) {
+            String folderId = findKnownFolder(directory);
+            if (folderId != null) {
+                overflowedIds.add(folderId);
+            }
+        }
+        Set<String> changedIds = new LinkedHashSet<>();
+        for (Path directory : changed) {
+            String folderId = findKnownFolder(directory);
+            if (folderId != null && !overflowedIds.contains(folderId)) {
+                changedIds.add(folderId);
+            }
+        }
+
+        try {
+            if (!overflowedIds.isEmpty()) {
+                registerAdded(data.refreshFolders(overflowedIds, true));
+                // 溢出時可能漏掉新目錄的建立事件，重新註冊該目錄以下的目錄
+                for (Path directory : overflowed) {
+                    if (Files.isDirectory(directory)) {
+                        registerTree(directory);
+                    }
+                }
+            }
+            if (!changedIds.isEmpty()) {
+                registerAdded(data.refreshFolders(changedIds, false));
+            }
+        } catch (RuntimeException e) {
+            System.err.println("更新檔案庫時發生錯誤: " + e.getMessage());
+        }
+    }
+
+    private void registerAdded(FileManagerData.LibraryChange change) {
+        for (Path directory : change.getAddedDirectories()) {
+            register(directory);
+        }
+    }
+
+    /**
+     * 找出目錄對應的資料夾；目錄本身尚未載入時（例如剛建立的目錄）改用最近的已知上層資料夾
+     */
+    private String findKnownFolder(Path directory) {
+        Path current = directory;
+        while (current != null) {
+            String folderId = data.findFolderId(current);
+            if (folderId != null) {
+                return folderId;
+            }
+            current = current.getParent();
+        }
+        return null;
+    }
+
+    public boolean isRunning() {
+        return !closed && watchThread != null && watchThread.isAlive();
+    }
+
+    public int getWatchedDirectoryCount() {
+        return watchedDirectories.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("關閉檔案庫監看器失敗: " + e.getMessage());
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+    }
+}
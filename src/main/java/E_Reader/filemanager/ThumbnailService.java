@@ -0,0 +1,503 @@
+package E_Reader.filemanager;
+
+import E_Reader.core.ComicArchive;
+import E_Reader.core.EpubBook;
+import E_Reader.core.ImageDecoder;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 縮圖服務 - 在低優先權的背景執行緒產生檔案縮圖：
+ * PDF以極低的解析度只繪製第一頁、EPUB取出OPF中標示的封面、
+ * 圖片與漫畫壓縮檔以取樣解碼到縮圖尺寸。
+ * 縮圖以檔案內容為鍵存放在檔案庫資料目錄的磁碟快取中（移動或重新命名後仍可使用，
+ * 內容相同的檔案共用一張縮圖），超過數量上限時刪除最久沒有使用的縮圖
+ */
+public class ThumbnailService implements Closeable {
+
+    private static final String CACHE_DIRECTORY_NAME = "thumbnails";
+    private static final String THUMBNAIL_EXTENSION = ".jpg";
+    // FileItem中繼資料：產生縮圖時檔案的大小、修改時間與縮圖尺寸，相符時直接使用既有的縮圖
+    static final String SOURCE_METADATA_KEY = "thumbnail.source";
+    // 內容鍵取檔案開頭與結尾各一段，不需要讀取整個檔案
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    // 先取樣解碼到縮圖的兩倍再平滑縮小，避免整數倍取樣的鋸齒
+    private static final int OVERSAMPLE = 2;
+    // 同一張縮圖在此間隔內再次使用時只調整記憶體中的使用順序，不重寫修改時間
+    private static final long TOUCH_INTERVAL_MS = 60_000;
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp", "tif", "tiff", "webp");
+    private static final Set<String> ARCHIVE_EXTENSIONS = Set.of("cbz", "zip");
+
+    private final Path cacheDirectory;
+    private final int width;
+    private final int height;
+    private final int maxEntries;
+    private final ThreadPoolExecutor executor;
+    // 內容鍵對應縮圖檔案，依使用順序排列
+    private final Map<String, Path> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // 內容鍵對應上次寫入修改時間的時間（受entries的鎖保護）
+    private final Map<String, Long> touchedAt = new HashMap<>();
+    // 檔案ID對應尚未開始的工作，重複要求同一個檔案時不再排入
+    private final Map<String, ThumbnailTask> pending = new ConcurrentHashMap<>();
+    // 本次執行中無法產生縮圖的檔案（路徑、大小與修改時間），不再重試
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 縮圖完成的回呼，於產生縮圖的執行緒呼叫
+     */
+    public interface ThumbnailCallback {
+        /**
+         * @param thumbnail 縮圖檔案，無法產生時為null
+         */
+        void onThumbnailReady(FileItem file, Path thumbnail);
+    }
+
+    /**
+     * @param dataDirectory 檔案庫的資料目錄，縮圖放在其中的thumbnails目錄
+     * @param width 縮圖最大寬度
+     * @param height 縮圖最大高度
+     * @param maxEntries 快取的縮圖數量上限
+     */
+    public ThumbnailService(Path dataDirectory, int width, int height, int maxEntries) {
+        this.cacheDirectory = dataDirectory.resolve(CACHE_DIRECTORY_NAME);
+        this.width = Math.max(1, width);
+        this.height = Math.max(1, height);
+        this.maxEntries = Math.max(1, maxEntries);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        loadEntries();
+    }
+
+    /**
+     * 是否能為此副檔名產生縮圖
+     */
+    public static boolean canCreate(String extension) {
+        String lower = extension == null ? "" : extension.toLowerCase();
+        return "pdf".equals(lower) || "epub".equals(lower)
+                || IMAGE_EXTENSIONS.contains(lower) || ARCHIVE_EXTENSIONS.contains(lower);
+    }
+
+    /**
+     * 依上次使用時間（檔案修改時間）載入快取中的縮圖
+     */
+    private void loadEntries() {
+        if (!Files.isDirectory(cacheDirectory)) {
+            return;
+        }
+        List<Path> thumbnails = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDirectory, "*" + THUMBNAIL_EXTENSION)) {
+            for (Path thumbnail : stream) {
+                thumbnails.add(thumbnail);
+            }
+        } catch (IOException e) {
+            System.err.println("無法讀取縮圖快取: " + e.getMessage());
+            return;
+        }
+        thumbnails.sort(Comparator.comparingLong(ThumbnailService::lastUsed));
+        synchronized (entries) {
+            for (Path thumbnail : thumbnails) {
+                String name = thumbnail.getFileName().toString();
+                entries.put(name.substring(0, name.length() - THUMBNAIL_EXTENSION.length()), thumbnail);
+            }
+            evict();
+        }
+    }
+
+    private static long lastUsed(Path thumbnail) {
+        try {
+            return Files.getLastModifiedTime(thumbnail).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 排入背景產生縮圖。檔案已有相符的縮圖時只確認縮圖仍在快取中
+     *
+     * @param file 檔案項目，完成後更新其縮圖路徑
+     * @param generate 沒有縮圖時是否產生（false時只使用已快取的縮圖）
+     * @param callback 完成的回呼
+     */
+    public void request(FileItem file, boolean generate, ThumbnailCallback callback) {
+        if (executor.isShutdown() || !canCreate(file.getExtension())) {
+            return;
+        }
+        ThumbnailTask task = new ThumbnailTask(file, generate, callback);
+        if (pending.putIfAbsent(file.getId(), task) == null) {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * 取消尚未開始的工作（例如切換資料夾或捲動後，畫面外的卡片不再需要縮圖）
+     */
+    public void cancelPending() {
+        executor.getQueue().clear();
+        pending.values().removeIf(task -> !task.started.get());
+    }
+
+    /**
+     * 取消一個檔案尚未開始的工作（例如顯示它的格子被重複使用於其他檔案）
+     */
+    public void cancel(FileItem file) {
+        ThumbnailTask task = pending.get(file.getId());
+        if (task != null && !task.started.get() && executor.remove(task)) {
+            pending.remove(file.getId(), task);
+        }
+    }
+
+    /**
+     * 檔案項目記錄的縮圖是否對應目前的檔案內容與縮圖尺寸，不讀取磁碟
+     */
+    public boolean isCurrent(FileItem file) {
+        return file.hasThumbnail() && sourceOf(file).equals(file.getMetadata(SOURCE_METADATA_KEY));
+    }
+
+    private String sourceOf(FileItem file) {
+        return file.getSize() + ":" + file.getLastModifiedMillis()
+                + ":" + width + "x" + height;
+    }
+
+    private class ThumbnailTask implements Runnable {
+        private final FileItem file;
+        private final boolean generate;
+        private final ThumbnailCallback callback;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        ThumbnailTask(FileItem file, boolean generate, ThumbnailCallback callback) {
+            this.file = file;
+            this.generate = generate;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            started.set(true);
+            Path thumbnail = null;
+            try {
+                thumbnail = getThumbnail(file, generate);
+            } finally {
+                pending.remove(file.getId(), this);
+            }
+            if (callback != null) {
+                callback.onThumbnailReady(file, thumbnail);
+            }
+        }
+    }
+
+    /**
+     * 取得檔案的縮圖，必要時產生，並更新檔案項目的縮圖路徑
+     *
+     * @return 縮圖檔案，無法產生時回傳null
+     */
+    public Path getThumbnail(FileItem file, boolean generate) {
+        String source = sourceOf(file);
+        Path existing = toPath(file.getThumbnailPath());
+        if (existing != null && source.equals(file.getMetadata(SOURCE_METADATA_KEY)) && touch(existing)) {
+            return existing;
+        }
+
+        String failureKey = file.getFilePath() + "|" + source;
+        if (failed.contains(failureKey)) {
+            return null;
+        }
+        try {
+            File physical = new File(file.getFilePath());
+            String key = contentKey(physical);
+            Path thumbnail;
+            synchronized (entries) {
+                thumbnail = entries.get(key);
+            }
+            if (thumbnail == null || !touch(thumbnail)) {
+                if (!generate) {
+                    return null;
+                }
+                thumbnail = create(physical, file.getExtension(), key);
+            }
+            file.putMetadata(SOURCE_METADATA_KEY, source);
+            file.setThumbnailPath(thumbnail.toUri().toString());
+            return thumbnail;
+        } catch (IOException | RuntimeException e) {
+            failed.add(failureKey);
+            System.err.println("無法產生縮圖: " + file.getName() + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 以檔案大小加上開頭與結尾的內容計算快取鍵
+     */
+    private String contentKey(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(16).putLong(size).putInt(width).putInt(height).flip());
+            ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+            readFully(channel, buffer, 0);
+            digest.update(buffer.flip());
+            if (size > SAMPLE_SIZE) {
+                buffer.clear();
+                readFully(channel, buffer, Math.max(SAMPLE_SIZE, size - SAMPLE_SIZE));
+                digest.update(buffer.flip());
+            }
+        }
+
+        StringBuilder key = new StringBuilder(40);
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 產生縮圖並寫入快取（先寫到暫存檔再取代）
+     */
+    private Path create(File file, String extension, String key) throws IOException {
+        BufferedImage image = render(file, extension.toLowerCase());
+        if (image == null) {
+            throw new IOException("沒有可用的縮圖內容");
+        }
+
+        Files.createDirectories(cacheDirectory);
+        Path thumbnail = cacheDirectory.resolve(key + THUMBNAIL_EXTENSION);
+        // 內容相同的檔案可能同時產生縮圖，各自使用不重複的暫存檔
+        Path tempFile = Files.createTempFile(cacheDirectory, key, ".tmp");
+        try {
+            if (!ImageIO.write(fit(image), "jpg", tempFile.toFile())) {
+                throw new IOException("無法寫入縮圖");
+            }
+            Files.move(tempFile, thumbnail, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        synchronized (entries) {
+            entries.put(key, thumbnail);
+            touchedAt.put(key, System.currentTimeMillis());
+            evict();
+        }
+        return thumbnail;
+    }
+
+    private BufferedImage render(File file, String extension) throws IOException {
+        int sampleWidth = width * OVERSAMPLE;
+        int sampleHeight = height * OVERSAMPLE;
+        switch (extension) {
+            case "pdf":
+                return renderPdf(file);
+            case "epub":
+                try (EpubBook book = EpubBook.open(file, null)) {
+                    String coverPath = book.getCoverPath();
+                    if (coverPath == null) {
+                        return null;
+                    }
+                    try (InputStream input = book.openEntry(coverPath);
+                         ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+                        return ImageDecoder.decode(imageInput, 0, null, sampleWidth, sampleHeight);
+                    }
+                }
+            case "cbz":
+            case "zip":
+                try (ComicArchive archive = ComicArchive.open(file)) {
+                    if (archive.getPages().isEmpty()) {
+                        return null;
+                    }
+                    return archive.getPages().get(0).decodeSampled(sampleWidth, sampleHeight);
+                }
+            default:
+                return ImageDecoder.decode(file, 0, null, sampleWidth, sampleHeight);
+        }
+    }
+
+    /**
+     * 以剛好符合縮圖尺寸的縮放比例繪製第一頁，嵌入的大圖允許取樣
+     */
+    private BufferedImage renderPdf(File file) throws IOException {
+        try (PDDocument document = PDDocument.load(file)) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDPage page = document.getPage(0);
+            PDRectangle box = page.getCropBox();
+            boolean rotated = page.getRotation() % 180 != 0;
+            float pageWidth = rotated ? box.getHeight() : box.getWidth();
+            float pageHeight = rotated ? box.getWidth() : box.getHeight();
+            float scale = Math.min(width / pageWidth, height / pageHeight);
+
+            PDFRenderer renderer = new PDFRenderer(document);
+            renderer.setSubsamplingAllowed(true);
+            return renderer.renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    /**
+     * 平滑縮小到縮圖尺寸內，並轉為不透明的RGB（JPEG不支援透明）
+     */
+    private BufferedImage fit(BufferedImage image) {
+        double scale = Math.min(1.0, Math.min((double) width / image.getWidth(), (double) height / image.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage result = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, targetWidth, targetHeight);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    /**
+     * 標記縮圖剛被使用，修改時間記錄使用順序，重新啟動後仍依此淘汰。
+     * 捲動時格子會反覆綁定同一批檔案，快取中的縮圖在TOUCH_INTERVAL_MS內已寫過修改時間時
+     * 只調整記憶體中的使用順序
+     *
+     * @return 縮圖是否仍存在
+     */
+    private boolean touch(Path thumbnail) {
+        String name = thumbnail.getFileName().toString();
+        String key = name.endsWith(THUMBNAIL_EXTENSION) && cacheDirectory.equals(thumbnail.getParent())
+                ? name.substring(0, name.length() - THUMBNAIL_EXTENSION.length()) : null;
+        long now = System.currentTimeMillis();
+        if (key != null) {
+            synchronized (entries) {
+                Long touched = touchedAt.get(key);
+                if (touched != null && now - touched < TOUCH_INTERVAL_MS && entries.get(key) != null) {
+                    return true;
+                }
+            }
+        }
+
+        try {
+            Files.setLastModifiedTime(thumbnail, FileTime.fromMillis(now));
+        } catch (IOException e) {
+            return false;
+        }
+        if (key != null) {
+            synchronized (entries) {
+                if (entries.get(key) == null) {
+                    entries.put(key, thumbnail);
+                    evict();
+                }
+                if (entries.containsKey(key)) {
+                    touchedAt.put(key, now);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 刪除最久沒有使用的縮圖直到不超過上限（呼叫端持有entries的鎖）
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Path>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Map.Entry<String, Path> entry = iterator.next();
+            Path eldest = entry.getValue();
+            iterator.remove();
+            touchedAt.remove(entry.getKey());
+            try {
+                Files.deleteIfExists(eldest);
+            } catch (IOException e) {
+                System.err.println("無法刪除縮圖快取: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Path toPath(String thumbnailPath) {
+        if (thumbnailPath == null || thumbnailPath.isEmpty()) {
+            return null;
+        }
+        try {
+            return thumbnailPath.startsWith("file:") ? Path.of(URI.create(thumbnailPath)) : Path.of(thumbnailPath);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public int getCachedCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        pending.clear();
+    }
+}
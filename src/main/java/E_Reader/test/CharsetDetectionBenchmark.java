@@ -0,0 +1,117 @@
+package E_Reader.test;
+
+import E_Reader.core.CharsetDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文字編碼偵測效能測試
+ * 以UTF-8、Big5、GB18030各產生一個數GB的測試檔，比較取樣偵測與完整解碼一次的耗時
+ *
+ * 執行方式: java E_Reader.test.CharsetDetectionBenchmark [每個檔案的MB數] [測試目錄] [--full]
+ * 加上 --full 時額外量測完整解碼一次檔案的時間作為對照
+ */
+public class CharsetDetectionBenchmark {
+
+    private static final String SAMPLE_PARAGRAPH =
+            "　　他說這個問題我們已經討論過很多次了，可是大家還是沒有辦法得到一致的結論。"
+            + "天色漸漸暗了下來，遠處的山頭只剩下一點點光，她回頭看了一眼，心裡想著明天要去的地方。\n"
+            + "第十二章　長夜\n"
+            + "　　門外傳來一陣腳步聲，有人在問：「現在幾點了？」沒有人回答。Chapter 12, page 345.\n";
+
+    private static final int DETECT_ROUNDS = 20;
+
+    public static void main(String[] args) throws IOException {
+        long sizeMb = args.length > 0 ? Long.parseLong(args[0]) : 2048;
+        File directory = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+        boolean fullDecode = args.length > 2 && "--full".equals(args[2]);
+
+        System.out.println("=== 文字編碼偵測效能測試 ===");
+        System.out.printf("測試檔大小: %,d MB%n%n", sizeMb);
+
+        Charset[] charsets = {StandardCharsets.UTF_8, CharsetDetector.BIG5, CharsetDetector.GB18030};
+        for (Charset charset : charsets) {
+            File file = new File(directory, "charset-benchmark-" + charset.name() + ".txt");
+            try {
+                long start = System.nanoTime();
+                createTestFile(file, charset, sizeMb * 1024 * 1024);
+                System.out.printf("%-14s 產生測試檔 %.1f 秒%n", charset.name(), (System.nanoTime() - start) / 1e9);
+
+                // 第一次偵測（檔案區塊可能不在系統快取中）
+                start = System.nanoTime();
+                CharsetDetector.Result result = CharsetDetector.detect(file);
+                double firstMs = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                for (int i = 0; i < DETECT_ROUNDS; i++) {
+                    result = CharsetDetector.detect(file);
+                }
+                double averageMs = (System.nanoTime() - start) / 1e6 / DETECT_ROUNDS;
+
+                System.out.printf("%-14s 偵測結果: %-14s %s  首次 %.2f ms，平均 %.2f ms%n",
+                        "", result, result.getCharset().equals(charset) ? "正確" : "錯誤", firstMs, averageMs);
+
+                if (fullDecode) {
+                    start = System.nanoTime();
+                    long chars = decodeFully(file, charset);
+                    System.out.printf("%-14s 完整解碼一次: %.1f 秒（%,d 字元）%n",
+                            "", (System.nanoTime() - start) / 1e9, chars);
+                }
+            } finally {
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * 重複寫入範例段落直到指定大小
+     */
+    private static void createTestFile(File file, Charset charset, long size) throws IOException {
+        StringBuilder block = new StringBuilder();
+        while (block.length() < 256 * 1024) {
+            block.append(SAMPLE_PARAGRAPH);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(block.toString().getBytes(charset));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            while (written < size) {
+                bytes.rewind();
+                written += channel.write(bytes);
+            }
+        }
+    }
+
+    private static long decodeFully(File file, Charset charset) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer input = ByteBuffer.allocate(1024 * 1024);
+        CharBuffer output = CharBuffer.allocate(1024 * 1024);
+        long chars = 0;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(input) >= 0) {
+                input.flip();
+                decoder.decode(input, output, false);
+                chars += output.position();
+                output.clear();
+                input.compact();
+            }
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,141 @@
+package E_Reader.test;
+
+import E_Reader.core.StyledText;
+import E_Reader.core.XhtmlTokenizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * EPUB章節清理效能比較
+ * 比較舊的正規表達式清理流程與串流分詞器在大型章節上的耗時與記憶體配置量
+ *
+ * 執行方式: java E_Reader.test.EpubCleaningBenchmark [段落數]
+ */
+public class EpubCleaningBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURE_ROUNDS = 30;
+
+    public static void main(String[] args) {
+        int paragraphs = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String chapter = createChapter(paragraphs);
+
+        System.out.println("=== EPUB章節清理效能比較 ===");
+        System.out.printf("章節大小: %,d 字元 (%d 段)%n%n", chapter.length(), paragraphs);
+
+        // 確認兩種流程的輸出一致（實體解碼差異除外）
+        String legacy = LegacyCleaner.extractAndCleanText(chapter);
+        StyledText styled = XhtmlTokenizer.tokenize(chapter);
+        System.out.printf("舊流程輸出: %,d 字元，分詞器輸出: %,d 字元，%d 個區塊%n%n",
+                legacy.length(), styled.getText().length(), styled.getBlocks().size());
+
+        Result legacyResult = measure("正規表達式清理", () -> LegacyCleaner.extractAndCleanText(chapter));
+        Result tokenizerResult = measure("串流分詞器", () -> XhtmlTokenizer.tokenize(chapter).getText());
+
+        System.out.println();
+        System.out.printf("速度提升: %.1fx，記憶體配置減少: %.1fx%n",
+                legacyResult.nanosPerOp / tokenizerResult.nanosPerOp,
+                (double) legacyResult.bytesPerOp / Math.max(1, tokenizerResult.bytesPerOp));
+    }
+
+    private static Result measure(String name, java.util.function.Supplier<String> operation) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += operation.get().length();
+        }
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            sink += operation.get().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Result result = new Result(elapsed / (double) MEASURE_ROUNDS, allocated / MEASURE_ROUNDS);
+        System.out.printf("%-16s %10.2f ms/次 %,14d bytes/次 (sink=%d)%n",
+                name, result.nanosPerOp / 1_000_000.0, result.bytesPerOp, sink);
+        return result;
+    }
+
+    private static String createChapter(int paragraphs) {
+        StringBuilder html = new StringBuilder(paragraphs * 200);
+        html.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n")
+                .append("<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>第一章</title></head><body>\n")
+                .append("<h1 class=\"chapter\">第一章　測試章節</h1>\n");
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<p class=\"text\">　　這是第").append(i)
+                    .append("段，包含<em>強調</em>與<b>粗體</b>文字&mdash;以及&ldquo;引號&rdquo;、")
+                    .append("&amp; 符號和 &#8230; 省略號。Some English words &nbsp; follow here.</p>\n");
+        }
+        html.append("</body></html>");
+        return html.toString();
+    }
+
+    private static class Result {
+        final double nanosPerOp;
+        final long bytesPerOp;
+
+        Result(double nanosPerOp, long bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    /**
+     * 舊版EpubLoader的正規表達式清理流程，保留作為比較基準
+     */
+    private static class LegacyCleaner {
+        private static final Pattern HTML_TAG_PATTERN = Pattern.compile("<[^>]+>");
+        private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+        private static final Pattern PARAGRAPH_PATTERN = Pattern.compile("<p[^>]*>(.*?)</p>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+
+        static String extractAndCleanText(String htmlContent) {
+            StringBuilder result = new StringBuilder();
+            Matcher paragraphMatcher = PARAGRAPH_PATTERN.matcher(htmlContent);
+            while (paragraphMatcher.find()) {
+                String cleanParagraph = cleanWhitespace(cleanHtmlTags(paragraphMatcher.group(1)));
+                if (!cleanParagraph.trim().isEmpty()) {
+                    result.append(cleanParagraph.trim()).append("\n\n");
+                }
+            }
+            return result.toString().trim();
+        }
+
+        static String cleanHtmlTags(String html) {
+            html = html.replaceAll("(?i)</(p|div|h[1-6]|br)>", "\n");
+            html = html.replaceAll("(?i)<br[^>]*>", "\n");
+            html = HTML_TAG_PATTERN.matcher(html).replaceAll("");
+            return decodeHtmlEntities(html);
+        }
+
+        static String cleanWhitespace(String text) {
+            text = WHITESPACE_PATTERN.matcher(text).replaceAll(" ");
+            text = text.replaceAll("(?m)^\\s+", "");
+            text = text.replaceAll("(?m)\\s+$", "");
+            return text.replaceAll("\n{3,}", "\n\n");
+        }
+
+        static String decodeHtmlEntities(String text) {
+            text = text.replace("&lt;", "<");
+            text = text.replace("&gt;", ">");
+            text = text.replace("&amp;", "&");
+            text = text.replace("&quot;", "\"");
+            text = text.replace("&apos;", "'");
+            text = text.replace("&nbsp;", " ");
+            text = text.replace("&#8212;", "—");
+            text = text.replace("&#8211;", "–");
+            text = text.replace("&#8220;", "\"");
+            text = text.replace("&#8221;", "\"");
+            text = text.replace("&#8216;", "\'");
+            text = text.replace("&#8217;", "\'");
+            return text;
+        }
+    }
+}
@@ -17,6 +17,7 @@ public class FormatPreservingTest {
         testFormatPreservation();
         demonstrateUsage();
         testThemeFormats();
+        testPageCache();
     }
 
     /**
@@ -314,4 +315,49 @@ public class FormatPreservingTest {
             }
         }
     }
+
+    /**
+     * 測試頁面分析快取：同一頁第二次處理直接取得快取結果，套用主題不影響快取
+     */
+    public static void testPageCache() {
+        System.out.println("\n=== 頁面分析快取測試 ===");
+
+        FormatPreservingTextProcessor processor = new FormatPreservingTextProcessor();
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            text.append("第").append(i % 10).append("章  標題\n")
+                .append("    縮排的段落文字，包含    多個空格。\n")
+                .append("名稱        年齡    職業\n")
+                .append("1. 編號項目\n\n");
+        }
+
+        TextExtractor.PageText page = new TextExtractor.PageText();
+        page.setPageNumber(0);
+        page.setOriginalText(text.toString());
+        page.setTextSource(TextExtractor.TextSource.NATIVE);
+
+        long start = System.nanoTime();
+        List<FormatPreservingTextProcessor.FormattedLine> first = processor.processPageText(page);
+        double firstMs = (System.nanoTime() - start) / 1e6;
+
+        processor.applyTheme(E_Reader.settings.SettingsManager.ThemeMode.SEPIA);
+        processor.setFontSize(24);
+
+        start = System.nanoTime();
+        List<FormatPreservingTextProcessor.FormattedLine> second = processor.processPageText(page);
+        double cachedMs = (System.nanoTime() - start) / 1e6;
+
+        // 內容相同但為不同字串物件時也應命中快取
+        page.setOriginalText(new String(text.toString()));
+        List<FormatPreservingTextProcessor.FormattedLine> third = processor.processPageText(page);
+
+        page.setOriginalText(text + "新增的一行");
+        List<FormatPreservingTextProcessor.FormattedLine> changed = processor.processPageText(page);
+
+        System.out.printf("首次分析 %d 行: %.2f ms，快取: %.3f ms%n", first.size(), firstMs, cachedMs);
+        System.out.println("主題與字型改變後命中快取: " + (first == second));
+        System.out.println("相同內容命中快取: " + (first == third));
+        System.out.println("內容改變後重新分析: " + (first != changed));
+    }
 }
@@ -0,0 +1,99 @@
+package E_Reader.test;
+
+import E_Reader.filemanager.FileItem;
+import E_Reader.filemanager.FileManagerData;
+import E_Reader.filemanager.FolderItem;
+import E_Reader.filemanager.LibraryIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 檔案庫索引效能測試
+ * 產生指定檔案數量的資料夾樹，量測第一次完整掃描、之後載入索引啟動，
+ * 以及部分資料夾變動後的啟動時間，並確認檔案ID在重新啟動後保持不變
+ *
+ * 執行方式: java E_Reader.test.LibraryIndexBenchmark [檔案數] [資料夾]
+ */
+public class LibraryIndexBenchmark {
+
+    private static final int FILES_PER_FOLDER = 100;
+    private static final int SUBFOLDERS = 10;
+
+    public static void main(String[] args) throws IOException {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Path root = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("e_reader-library");
+        boolean generated = args.length <= 1;
+
+        System.out.println("=== 檔案庫索引效能測試 ===");
+        System.out.printf("檔案數: %,d，位置: %s%n%n", fileCount, root);
+
+        if (generated) {
+            long start = System.nanoTime();
+            generateTree(root, fileCount);
+            System.out.printf("產生測試檔案: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        }
+
+        long start = System.nanoTime();
+        FileManagerData first = new FileManagerData(root);
+        System.out.printf("第一次啟動（完整掃描並寫入索引）: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        FileItem sample = firstFile(first);
+
+        start = System.nanoTime();
+        FileManagerData second = new FileManagerData(root);
+        System.out.printf("再次啟動（載入索引）: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        System.out.println("檔案ID保持不變: " + (sample != null && second.getFile(sample.getId()) != null));
+
+        // 在一個資料夾新增與刪除檔案，並新增一個資料夾
+        Path changed = root.resolve("shelf-0").resolve("box-0");
+        Files.createFile(changed.resolve("new-book.pdf"));
+        Files.deleteIfExists(changed.resolve("book-1.pdf"));
+        Path newFolder = Files.createDirectory(root.resolve("shelf-0").resolve("new-box"));
+        Files.createFile(newFolder.resolve("other.epub"));
+
+        start = System.nanoTime();
+        FileManagerData third = new FileManagerData(root);
+        System.out.printf("部分變動後啟動: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        System.out.println("檔案ID保持不變: " + (sample != null && third.getFile(sample.getId()) != null));
+        System.out.printf("索引大小: %,d KB%n", Files.size(new LibraryIndex(root).getIndexFile()) / 1024);
+
+        if (generated) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private static FileItem firstFile(FileManagerData data) {
+        for (FolderItem shelf : data.getFolders("root")) {
+            for (FolderItem box : data.getFolders(shelf.getId())) {
+                List<FileItem> files = data.getFiles(box.getId());
+                if (!files.isEmpty()) {
+                    return files.get(0);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 產生 shelf-N/box-M/book-K.pdf 結構的測試檔案
+     */
+    private static void generateTree(Path root, int fileCount) throws IOException {
+        int created = 0;
+        for (int shelf = 0; created < fileCount; shelf++) {
+            for (int box = 0; box < SUBFOLDERS && created < fileCount; box++) {
+                Path folder = Files.createDirectories(root.resolve("shelf-" + shelf).resolve("box-" + box));
+                for (int book = 0; book < FILES_PER_FOLDER && created < fileCount; book++) {
+                    Files.createFile(folder.resolve("book-" + book + ".pdf"));
+                    created++;
+                }
+            }
+        }
+    }
+}
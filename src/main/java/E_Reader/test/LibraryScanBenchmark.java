@@ -0,0 +1,167 @@
+package E_Reader.test;
+
+import E_Reader.filemanager.FileManagerData;
+import E_Reader.filemanager.LibraryIndex;
+import E_Reader.filemanager.LibraryScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 檔案庫掃描效能測試
+ * 比較原本以File.listFiles遞迴並逐一呼叫isDirectory、length、lastModified的掃描，
+ * 與LibraryScanner單執行緒及平行掃描的時間，並測試掃描中途取消。
+ * 網路磁碟上每次讀取屬性都要等待回應，差距會比本機磁碟明顯得多，
+ * 可以指定掛載在網路磁碟上的資料夾測試
+ *
+ * 執行方式: java E_Reader.test.LibraryScanBenchmark [檔案數] [資料夾]
+ */
+public class LibraryScanBenchmark {
+
+    private static final int FILES_PER_FOLDER = 100;
+    private static final int SUBFOLDERS = 10;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Path root = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("e_reader-scan");
+        boolean generated = args.length <= 1;
+
+        System.out.println("=== 檔案庫掃描效能測試 ===");
+        System.out.printf("檔案數: %,d，位置: %s，CPU核心數: %d%n%n",
+                fileCount, root, Runtime.getRuntime().availableProcessors());
+
+        if (generated) {
+            long start = System.nanoTime();
+            generateTree(root, fileCount);
+            System.out.printf("產生測試檔案: %.0f ms%n%n", (System.nanoTime() - start) / 1e6);
+        }
+
+        // 先掃描一次讓檔案系統快取與JIT進入穩定狀態
+        legacyScan(root.toFile(), new long[2]);
+        scanWith(new LibraryScanner(1), root);
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("第 " + round + " 輪");
+
+            long[] legacyCounts = new long[2];
+            long start = System.nanoTime();
+            legacyScan(root.toFile(), legacyCounts);
+            System.out.printf("  File.listFiles遞迴: %,d 個資料夾，%,d 個檔案，%.0f ms%n",
+                    legacyCounts[0], legacyCounts[1], (System.nanoTime() - start) / 1e6);
+
+            LibraryScanner single = new LibraryScanner(1);
+            start = System.nanoTime();
+            long total = scanWith(single, root);
+            System.out.printf("  LibraryScanner 1 執行緒: %,d 個資料夾，%,d 個檔案，%.0f ms（總大小 %,d）%n",
+                    single.getDirectoryCount(), single.getFileCount(), (System.nanoTime() - start) / 1e6, total);
+
+            LibraryScanner parallel = new LibraryScanner();
+            start = System.nanoTime();
+            scanWith(parallel, root);
+            System.out.printf("  LibraryScanner %d 執行緒: %,d 個資料夾，%,d 個檔案，%.0f ms%n",
+                    parallel.getParallelism(), parallel.getDirectoryCount(), parallel.getFileCount(),
+                    (System.nanoTime() - start) / 1e6);
+        }
+
+        // 沒有索引時建立檔案庫的完整掃描
+        Files.deleteIfExists(new LibraryIndex(root).getIndexFile());
+        long start = System.nanoTime();
+        System.out.println();
+        LibraryScanner initialScanner = new LibraryScanner();
+        initialScanner.setProgressListener((directories, files, finished) -> {
+            if (finished) {
+                System.out.printf("  掃描完成: %,d 個資料夾，%,d 個檔案%n", directories, files);
+            }
+        });
+        new FileManagerData(root, initialScanner);
+        System.out.printf("FileManagerData完整掃描並寫入索引: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+
+        // 掃描到四分之一時取消，其他執行緒正在列出的目錄列完目前的項目後停止
+        LibraryScanner cancelled = new LibraryScanner();
+        start = System.nanoTime();
+        scanWith(cancelled, root, fileCount / 4);
+        System.out.printf("掃描中途取消: 完成=%s，取消前後共掃描 %,d 個檔案，%.0f ms%n",
+                !cancelled.isCancelled(), cancelled.getFileCount(), (System.nanoTime() - start) / 1e6);
+
+        if (generated) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * 原本FileManagerData.scanDirectory的做法
+     */
+    private static void legacyScan(File directory, long[] counts) {
+        File[] entries = directory.listFiles();
+        if (entries == null) {
+            return;
+        }
+        counts[0]++;
+        for (File entry : entries) {
+            if (entry.isDirectory()) {
+                entry.lastModified();
+                legacyScan(entry, counts);
+            } else {
+                entry.length();
+                entry.lastModified();
+                counts[1]++;
+            }
+        }
+    }
+
+    private static long scanWith(LibraryScanner scanner, Path root) {
+        return scanWith(scanner, root, -1);
+    }
+
+    /**
+     * @param cancelAt 掃描到這個檔案數時取消，-1為不取消
+     * @return 所有檔案的總大小
+     */
+    private static long scanWith(LibraryScanner scanner, Path root, int cancelAt) {
+        AtomicInteger fileCount = new AtomicInteger();
+        AtomicLong totalSize = new AtomicLong();
+        AtomicInteger folderIds = new AtomicInteger();
+        scanner.scan(root, "root", new LibraryScanner.Visitor() {
+            @Override
+            public String directoryFound(Path directory, BasicFileAttributes attributes, String parentId) {
+                return "folder-" + folderIds.incrementAndGet();
+            }
+
+            @Override
+            public void fileFound(Path file, BasicFileAttributes attributes, String folderId) {
+                totalSize.addAndGet(attributes.size());
+                if (fileCount.incrementAndGet() == cancelAt) {
+                    scanner.cancel();
+                }
+            }
+        });
+        return totalSize.get();
+    }
+
+    /**
+     * 產生 shelf-N/box-M/book-K.pdf 結構的測試檔案
+     */
+    private static void generateTree(Path root, int fileCount) throws IOException {
+        byte[] content = new byte[16];
+        int created = 0;
+        for (int shelf = 0; created < fileCount; shelf++) {
+            for (int box = 0; box < SUBFOLDERS && created < fileCount; box++) {
+                Path folder = Files.createDirectories(root.resolve("shelf-" + shelf).resolve("box-" + box));
+                for (int book = 0; book < FILES_PER_FOLDER && created < fileCount; book++) {
+                    Files.write(folder.resolve("book-" + book + ".pdf"), content);
+                    created++;
+                }
+            }
+        }
+    }
+}
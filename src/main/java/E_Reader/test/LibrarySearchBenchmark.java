@@ -0,0 +1,130 @@
+package E_Reader.test;
+
+import E_Reader.filemanager.FileItem;
+import E_Reader.filemanager.FileManagerData;
+import E_Reader.filemanager.LibrarySearchIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 檔案庫搜尋效能測試
+ * 比較原本對每個名稱轉小寫後contains的篩選，與LibrarySearchIndex的子字串、短查詢與模糊查詢時間，
+ * 並測試檔案庫變動後索引的增量更新
+ *
+ * 執行方式: java E_Reader.test.LibrarySearchBenchmark [檔案數]
+ */
+public class LibrarySearchBenchmark {
+
+    private static final int FILES_PER_FOLDER = 200;
+    private static final int RUNS = 50;
+    private static final int LIMIT = 500;
+
+    private static final String[] WORDS = {
+            "dragon", "history", "ocean", "garden", "machine", "learning", "winter", "journey", "castle",
+            "physics", "kitchen", "silent", "empire", "river", "shadow", "poetry", "network", "finance",
+            "歷史", "數學", "小說", "物理", "經濟", "哲學", "旅行", "料理"
+    };
+    private static final String[] EXTENSIONS = {"pdf", "epub", "txt", "cbz", "png"};
+
+    public static void main(String[] args) throws IOException {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Path root = Files.createTempDirectory("e_reader-search");
+
+        System.out.println("=== 檔案庫搜尋效能測試 ===");
+        long start = System.nanoTime();
+        generateTree(root, fileCount);
+        System.out.printf("產生 %,d 個測試檔案: %.0f ms%n", fileCount, (System.nanoTime() - start) / 1e6);
+
+        FileManagerData data = new FileManagerData(root);
+        List<FileItem> allFiles = data.getAllFiles().stream().collect(Collectors.toList());
+        try (LibrarySearchIndex index = new LibrarySearchIndex(data)) {
+            start = System.nanoTime();
+            index.update();
+            System.out.printf("建立索引: %,d 個項目，%.0f ms%n%n", index.size(), (System.nanoTime() - start) / 1e6);
+
+            String[] queries = {"dragon", "ocean garden", "learning 42", "歷史", "ri", "drgon", "histroy", "zzzqx"};
+            for (String query : queries) {
+                double[] legacy = new double[RUNS];
+                double[] indexed = new double[RUNS];
+                int legacyMatches = 0;
+                LibrarySearchIndex.Results results = null;
+                for (int run = 0; run < RUNS; run++) {
+                    start = System.nanoTime();
+                    legacyMatches = legacyFilter(allFiles, query);
+                    legacy[run] = (System.nanoTime() - start) / 1e6;
+
+                    start = System.nanoTime();
+                    results = index.search(query, LIMIT, true, false, null);
+                    indexed[run] = (System.nanoTime() - start) / 1e6;
+                }
+                System.out.printf("「%s」%n", query);
+                System.out.printf("  轉小寫contains: %,d 個結果，中位數 %.2f ms%n", legacyMatches, median(legacy));
+                System.out.printf("  索引（含模糊）: %,d 個符合，傳回 %d 個，中位數 %.2f ms，最慢 %.2f ms，第一個: %s%n",
+                        results.getMatchCount(), results.getFiles().size() + results.getFolders().size(),
+                        median(indexed), Arrays.stream(indexed).max().orElse(0),
+                        results.getFiles().isEmpty() ? "-" : results.getFiles().get(0).getName());
+            }
+
+            // 改名檔案後的增量更新（第一次包含JIT編譯）
+            System.out.println();
+            for (int round = 1; round <= 3; round++) {
+                FileItem renamed = allFiles.get(allFiles.size() / 2 + round);
+                data.renameFile(renamed.getId(), "quaternion notes " + round + ".pdf");
+                start = System.nanoTime();
+                LibrarySearchIndex.Results results = index.search("quaternion", LIMIT, true, false, null);
+                System.out.printf("改名後第一次查詢（含增量更新）: %.2f ms，%d 個結果%n",
+                        (System.nanoTime() - start) / 1e6, results.getFiles().size());
+            }
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * 原本FileManagerController.filterFiles的做法（套用到整個檔案庫）
+     */
+    private static int legacyFilter(List<FileItem> files, String query) {
+        String lowerQuery = query.toLowerCase();
+        return (int) files.stream()
+                .filter(file -> file.getName().toLowerCase().contains(lowerQuery))
+                .count();
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    /**
+     * 產生 shelf-N/兩到三個單字加編號 的測試檔案
+     */
+    private static void generateTree(Path root, int fileCount) throws IOException {
+        Random random = new Random(42);
+        byte[] content = new byte[16];
+        Path folder = null;
+        for (int i = 0; i < fileCount; i++) {
+            if (i % FILES_PER_FOLDER == 0) {
+                folder = Files.createDirectories(root.resolve("shelf-" + i / FILES_PER_FOLDER));
+            }
+            StringBuilder name = new StringBuilder();
+            int words = 2 + random.nextInt(2);
+            for (int w = 0; w < words; w++) {
+                name.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            name.append(i).append('.').append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            Files.write(folder.resolve(name.toString()), content);
+        }
+    }
+}
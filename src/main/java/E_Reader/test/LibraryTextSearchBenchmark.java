@@ -0,0 +1,207 @@
+package E_Reader.test;
+
+import E_Reader.filemanager.FileItem;
+import E_Reader.filemanager.FileManagerData;
+import E_Reader.filemanager.FolderItem;
+import E_Reader.filemanager.LibraryTextIndex;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 檔案庫全文搜尋效能測試
+ * 產生TXT與PDF測試書籍，測量建立全文索引、重新載入索引、查詢，以及新增、修改、刪除書籍後增量更新的時間，
+ * 並與逐本開啟文件比對文字的做法比較
+ *
+ * 執行方式: java E_Reader.test.LibraryTextSearchBenchmark [TXT書籍數] [每本字數]
+ */
+public class LibraryTextSearchBenchmark {
+
+    private static final int PDF_COUNT = 20;
+    private static final int PDF_PAGES = 10;
+    private static final int RUNS = 30;
+    private static final int LIMIT = 50;
+
+    private static final String[] WORDS = {
+            "dragon", "history", "ocean", "garden", "machine", "learning", "winter", "journey", "castle",
+            "physics", "kitchen", "silent", "empire", "river", "shadow", "poetry", "network", "finance",
+            "the", "of", "and", "a", "in", "to", "was", "his", "that", "with"
+    };
+    private static final String[] CJK_WORDS = {
+            "歷史", "數學", "小說", "物理", "經濟", "哲學", "旅行", "料理", "城市", "海洋", "山脈", "時間"
+    };
+
+    public static void main(String[] args) throws IOException {
+        int bookCount = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int wordsPerBook = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Path root = Files.createTempDirectory("e_reader-fulltext");
+
+        System.out.println("=== 檔案庫全文搜尋效能測試 ===");
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        Path shelf = Files.createDirectories(root.resolve("books"));
+        for (int i = 0; i < bookCount; i++) {
+            Files.writeString(shelf.resolve("book-" + i + ".txt"), generateText(random, wordsPerBook, i),
+                    StandardCharsets.UTF_8);
+        }
+        for (int i = 0; i < PDF_COUNT; i++) {
+            writePdf(shelf.resolve("paper-" + i + ".pdf"), random, i);
+        }
+        System.out.printf("產生 %d 本TXT（每本約 %,d 字）與 %d 本PDF: %.0f ms%n",
+                bookCount, wordsPerBook, PDF_COUNT, (System.nanoTime() - start) / 1e6);
+
+        FileManagerData data = new FileManagerData(root);
+        try (LibraryTextIndex index = new LibraryTextIndex(data)) {
+            start = System.nanoTime();
+            index.update();
+            System.out.printf("建立全文索引: %d 本書，%d 個區段，%.0f ms，索引大小 %,d KB%n",
+                    index.getIndexedBookCount(), index.getSegmentCount(), (System.nanoTime() - start) / 1e6,
+                    directorySize(data.getDataDirectory()) / 1024);
+        }
+
+        try (LibraryTextIndex index = new LibraryTextIndex(data)) {
+            start = System.nanoTime();
+            index.update();
+            System.out.printf("重新開啟索引（沒有變動）: %.0f ms%n%n", (System.nanoTime() - start) / 1e6);
+
+            String[] queries = {"dragon", "machine learning", "marker 42", "歷史小說", "歷", "quantum entanglement",
+                    "silent riv", "zzzqx"};
+            for (String query : queries) {
+                double[] times = new double[RUNS];
+                LibraryTextIndex.Results results = null;
+                for (int run = 0; run < RUNS; run++) {
+                    start = System.nanoTime();
+                    results = index.search(query, LIMIT);
+                    times[run] = (System.nanoTime() - start) / 1e6;
+                }
+                System.out.printf("「%s」: %d 本書，傳回 %d 個頁面，中位數 %.2f ms，最慢 %.2f ms%n",
+                        query, results.getBookCount(), results.getHits().size(), median(times),
+                        Arrays.stream(times).max().orElse(0));
+                if (!results.getHits().isEmpty()) {
+                    LibraryTextIndex.Hit hit = results.getHits().get(0);
+                    System.out.printf("  %s %s: %s%n", hit.getFile().getName(), hit.getLocation(), hit.getSnippet());
+                }
+            }
+
+            start = System.nanoTime();
+            int scanned = scanFiles(data, "quantum entanglement");
+            System.out.printf("%n逐本讀取TXT比對「quantum entanglement」: %d 本書，%.0f ms%n",
+                    scanned, (System.nanoTime() - start) / 1e6);
+
+            // 增量更新：新增、修改與刪除書籍
+            System.out.println();
+            Files.writeString(shelf.resolve("added.txt"), "A new volume about xylophone orchestras.",
+                    StandardCharsets.UTF_8);
+            Files.writeString(shelf.resolve("book-1.txt"), "Rewritten entirely: zeppelin voyages.",
+                    StandardCharsets.UTF_8);
+            data.refreshFolders(data.getAllFolders().stream().map(FolderItem::getId)
+                    .collect(Collectors.toList()), true);
+            FileItem removed = data.getAllFiles().stream()
+                    .filter(file -> file.getName().equals("book-2.txt")).findFirst().orElse(null);
+            if (removed != null) {
+                data.deleteFile(removed.getId());
+            }
+            start = System.nanoTime();
+            index.update();
+            System.out.printf("增量更新（新增1本、修改1本、刪除1本）: %.0f ms，%d 個區段%n",
+                    (System.nanoTime() - start) / 1e6, index.getSegmentCount());
+            System.out.printf("  「xylophone」: %d 本，「zeppelin」: %d 本，book-1舊內容「marker 1 」: %d 本%n",
+                    index.search("xylophone", LIMIT).getBookCount(), index.search("zeppelin", LIMIT).getBookCount(),
+                    countBook(index.search("marker 1", LIMIT), "book-1.txt"));
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static int countBook(LibraryTextIndex.Results results, String name) {
+        return (int) results.getHits().stream().filter(hit -> hit.getFile().getName().equals(name))
+                .map(LibraryTextIndex.Hit::getFile).distinct().count();
+    }
+
+    /**
+     * 沒有全文索引時的做法：逐本讀入文字再比對
+     */
+    private static int scanFiles(FileManagerData data, String query) throws IOException {
+        int matches = 0;
+        for (FileItem file : data.getAllFiles()) {
+            if (file.getName().endsWith(".txt")
+                    && Files.readString(Path.of(file.getFilePath()), StandardCharsets.UTF_8).contains(query)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static String generateText(Random random, int words, int book) {
+        StringBuilder text = new StringBuilder(words * 7);
+        text.append("marker ").append(book).append(" begins here.\n");
+        for (int w = 0; w < words; w++) {
+            if (random.nextInt(4) == 0) {
+                text.append(CJK_WORDS[random.nextInt(CJK_WORDS.length)]);
+            } else {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            if (w % 15 == 14) {
+                text.append(random.nextInt(10) == 0 ? "\n\n" : ".\n");
+            }
+        }
+        if (book % 50 == 7) {
+            text.append("\nquantum entanglement appears only in a few books.\n");
+        }
+        return text.toString();
+    }
+
+    private static void writePdf(Path file, Random random, int number) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 0; p < PDF_PAGES; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 11);
+                    content.newLineAtOffset(50, 740);
+                    content.setLeading(14);
+                    for (int line = 0; line < 40; line++) {
+                        StringBuilder text = new StringBuilder();
+                        for (int w = 0; w < 10; w++) {
+                            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                        }
+                        if (line == 0) {
+                            text.append("paper ").append(number).append(" page ").append(p + 1);
+                        }
+                        content.showText(text.toString());
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,100 @@
+package E_Reader.test;
+
+import E_Reader.core.TextExtractor;
+import E_Reader.core.TextSearchIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 全文搜尋索引效能測試
+ * 產生指定頁數的中英混合文件，量測建立索引的時間與片語查詢的耗時，並與逐頁小寫比對的方式對照
+ *
+ * 執行方式: java E_Reader.test.TextSearchBenchmark [頁數]
+ */
+public class TextSearchBenchmark {
+
+    private static final String[] SAMPLE_PARAGRAPHS = {
+            "　　他說這個問題我們已經討論過很多次了，可是大家還是沒有辦法得到一致的結論。",
+            "天色漸漸暗了下來，遠處的山頭只剩下一點點光，她回頭看了一眼，心裡想著明天要去的地方。",
+            "門外傳來一陣腳步聲，有人在問：「現在幾點了？」沒有人回答。",
+            "The quick brown fox jumps over the lazy dog while the reader keeps turning pages.",
+            "Ｅ－Ｒｅａｄｅｒ 支援全形英數字，例如 ＰＤＦ 與 EPUB 文件的搜尋。"
+    };
+
+    private static final String[] QUERIES = {"討論過", "山頭", "lazy dog", "read", "pdf", "明", "找不到的句子"};
+
+    private static final int QUERY_ROUNDS = 20;
+
+    public static void main(String[] args) throws InterruptedException {
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        System.out.println("=== 全文搜尋索引效能測試 ===");
+        System.out.printf("頁數: %,d%n%n", pageCount);
+
+        List<TextExtractor.PageText> pages = createPages(pageCount);
+
+        long start = System.nanoTime();
+        TextSearchIndex index = new TextSearchIndex(pages);
+        index.start();
+        while (!index.isComplete() && !index.isBudgetExceeded()) {
+            Thread.sleep(5);
+        }
+        System.out.printf("建立索引: %.0f ms，詞數 %,d，位置數 %,d%n%n",
+                (System.nanoTime() - start) / 1e6, index.getTermCount(), index.getPostingCount());
+
+        for (String query : QUERIES) {
+            TextSearchIndex.SearchResult result = index.search(query);
+            start = System.nanoTime();
+            for (int i = 0; i < QUERY_ROUNDS; i++) {
+                result = index.search(query);
+            }
+            double indexedMs = (System.nanoTime() - start) / 1e6 / QUERY_ROUNDS;
+
+            start = System.nanoTime();
+            int scanned = countByScanning(pages, query);
+            double scanMs = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%-10s 命中 %,7d（逐頁比對 %,7d）  索引 %.2f ms，逐頁比對 %.1f ms%n",
+                    query, result.getCount(), scanned, indexedMs, scanMs);
+            if (result.getCount() > 0) {
+                System.out.println("           " + index.getSnippet(result, 0, 8));
+            }
+        }
+
+        index.close();
+    }
+
+    private static List<TextExtractor.PageText> createPages(int pageCount) {
+        List<TextExtractor.PageText> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int p = 0; p < 30; p++) {
+                text.append(SAMPLE_PARAGRAPHS[(i + p) % SAMPLE_PARAGRAPHS.length]).append('\n');
+            }
+            TextExtractor.PageText page = new TextExtractor.PageText();
+            page.setPageNumber(i);
+            page.setOriginalText(text.toString());
+            page.setTextSource(TextExtractor.TextSource.NATIVE);
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /**
+     * 原本的搜尋方式：每頁轉小寫後逐一比對（不處理全形字）
+     */
+    private static int countByScanning(List<TextExtractor.PageText> pages, String query) {
+        String lowerQuery = query.toLowerCase();
+        int count = 0;
+        for (TextExtractor.PageText page : pages) {
+            String text = page.getBestText().toLowerCase();
+            int index = text.indexOf(lowerQuery);
+            while (index >= 0) {
+                count++;
+                index = text.indexOf(lowerQuery, index + lowerQuery.length());
+            }
+        }
+        return count;
+    }
+}
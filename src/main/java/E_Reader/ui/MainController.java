@@ -24,6 +24,7 @@ import javafx.scene.image.Image;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -62,6 +63,11 @@ public class MainController {
     // 狀態管理
     private final StateManager stateManager;
     private final TimerManager timerManager;
+    // 從全文搜尋結果開啟檔案時要跳到的位置，檔案載入完成後套用
+    private volatile OpenTarget openTarget;
+    // TXT與DOCX最近一次要求的分頁設定與重新分頁的序號（只在UI執行緒使用）
+    private MappedTextDocument.PageSettings textPageSettings;
+    private int textReflowGeneration = 0;
 
     // UI 元素引用
     private Label pageLabel;
@@ -137,9 +143,14 @@ public class MainController {
         this.imageViewer = new ImageViewer();
         this.textRenderer = new TextRenderer();
         this.imageLoader = new ImageLoader();
+        // 圖片以螢幕的實際像素尺寸解碼，長邊不論直式或橫式頁面都足夠填滿畫面寬度
+        Rectangle2D screenBounds = Screen.getPrimary().getBounds();
+        int screenPixels = (int) Math.ceil(Math.max(screenBounds.getWidth() * Screen.getPrimary().getOutputScaleX(),
+                screenBounds.getHeight() * Screen.getPrimary().getOutputScaleY()));
+        this.imageLoader.setDecodeSize(screenPixels, screenPixels);
         this.pdfLoader = new PdfLoader();
         this.epubLoader = new EpubLoader();
-        this.textLoader = new TextLoader(settingsManager);
+        this.textLoader = new TextLoader();
         this.bookmarkManager = new BookmarkManager();
         this.noteManager = new NoteManager(settingsManager);
         this.textExtractor = new TextExtractor(settingsManager);
@@ -149,6 +160,7 @@ public class MainController {
         this.stateManager = new StateManager();
         this.timerManager = new TimerManager();
         this.controlsFactory = new UIControlsFactory();
+        this.textRenderer.setPageLayoutListener(this::reflowTextDocument);
 
         // 載入設定
         settingsManager.loadSettings();
@@ -325,7 +337,17 @@ public class MainController {
     private void initializeFileManager() {
         fileManagerController.setSettingsManager(settingsManager);
         fileManagerController.setTextExtractor(textExtractor);
-        fileManagerController.initialize(this::openFileFromManager);
+        fileManagerController.initialize(new FileManagerController.FileOpenCallback() {
+            @Override
+            public void onFileOpen(File file) {
+                openFileFromManager(file);
+            }
+
+            @Override
+            public void onFileOpen(File file, int page, long textOffset) {
+                openFileAt(file, page, textOffset);
+            }
+        });
     }
 
     /**
@@ -344,6 +366,76 @@ public class MainController {
         fileManagerController.show();
     }
 
+    /**
+     * 開啟檔案並在載入完成後跳到指定位置（全文搜尋的結果）
+     *
+     * @param page 頁碼（PDF為頁、EPUB為章節）
+     * @param textOffset TXT與DOCX中符合文字的字元位置，依目前的版面換算頁碼；-1表示使用page
+     */
+    public void openFileAt(File file, int page, long textOffset) {
+        openTarget = new OpenTarget(file.getAbsolutePath(), page, textOffset, -1, null);
+        openFileFromManager(file);
+    }
+
+    /**
+     * 取出此檔案的開啟位置；位置屬於其他檔案時捨棄
+     */
+    private OpenTarget takeOpenTarget(File file) {
+        OpenTarget target = openTarget;
+        if (target == null) {
+            return null;
+        }
+        openTarget = null;
+        return target.filePath.equals(file.getAbsolutePath()) ? target : null;
+    }
+
+    /**
+     * 圖片模式（PDF與EPUB）載入完成後跳到開啟位置，EPUB的章節換算為整本書的頁碼
+     */
+    private void goToOpenTarget(File file, List<Image> images) {
+        OpenTarget target = takeOpenTarget(file);
+        if (target == null) {
+            return;
+        }
+        int page = images instanceof EpubPageList
+                ? ((EpubPageList) images).getPageForLocation(target.page, null) : target.page;
+        if (page > 0 && page < images.size()) {
+            goToPage(page);
+        }
+    }
+
+    /**
+     * 以目前的分頁換算文字模式（TXT與DOCX）的開啟位置，於背景或掃描執行緒呼叫。
+     * 目標位置還沒分頁完成時保留開啟位置，等下一次掃描進度再換算
+     *
+     * @return 頁碼，沒有開啟位置或尚未分頁到該位置時回傳-1
+     */
+    private int resolveTextOpenTarget(File file, PagedTextDocument document) {
+        OpenTarget target = openTarget;
+        if (target == null || !target.filePath.equals(file.getAbsolutePath())) {
+            return -1;
+        }
+        // 重新分頁時的位置只套用於新的分頁，舊文件的掃描進度不可取走
+        if (target.pageSettings != null && !target.pageSettings.equals(document.getPageSettings())) {
+            return -1;
+        }
+        // 先讀取掃描狀態，掃描結束後的換算一定涵蓋整份文件
+        boolean finished = document.isScanFinished();
+        int page;
+        if (target.position >= 0) {
+            page = document.getPageForPosition(target.position);
+        } else if (target.textOffset >= 0) {
+            page = document.getPageForTextOffset(target.textOffset);
+        } else {
+            page = target.page;
+        }
+        if (page < 0 && !finished) {
+            return -1;
+        }
+        openTarget = null;
+        return page;
+    }
+
     /**
      * 從檔案管理器開啟檔案
      */
@@ -361,9 +453,13 @@ public class MainController {
             openEpubFromFile(file);
         } else if (isImageFile(fileName)) {
             openImageFromFile(file);
+        } else if (ComicArchive.isArchiveName(fileName)) {
+            openArchiveFromFile(file);
+        } else if (isTextFile(fileName)) {
+            startFileLoading(file);
         } else {
             AlertHelper.showError("不支援的檔案格式",
-                    "支援的格式：PDF檔案、EPUB檔案和圖片檔案 (JPG, PNG, GIF, BMP)");
+                    "支援的格式：PDF檔案、EPUB檔案、文字檔案 (TXT, DOCX)、漫畫壓縮檔 (CBZ, ZIP) 和圖片檔案 (JPG, PNG, GIF, BMP, TIFF)");
         }
     }
 
@@ -405,8 +501,8 @@ public class MainController {
                     updateModernLoadingProgress(0.3);
                 });
                 
-                // 載入PDF圖片
-                List<Image> images = pdfLoader.loadImagesFromPdf(file);
+                // 開啟PDF，頁面在顯示時才渲染
+                List<Image> images = pdfLoader.openPdfPages(file);
                 
                 Platform.runLater(() -> {
                     updateModernLoadingMessage("正在處理圖片內容...");
@@ -432,6 +528,7 @@ public class MainController {
                             primaryStage.setTitle("E_Reader - " + file.getName());
                             updateUI();
                             resetTextModeButton();
+                            goToOpenTarget(file, images);
 
                             showNotification("檔案開啟", "成功開啟 PDF檔案: " + file.getName());
                         } else {
@@ -507,10 +604,14 @@ public class MainController {
                             stateManager.setFileLoaded(file.getAbsolutePath(), false, true, images, null);
                             switchToImageMode(0);
                             imageViewer.setImages(images);
+                            if (images instanceof EpubPageList) {
+                                attachEpubPageList((EpubPageList) images);
+                            }
                             stateManager.setCurrentImagePageIndex(0);
                             primaryStage.setTitle("E_Reader - " + file.getName());
                             updateUI();
                             resetTextModeButton();
+                            goToOpenTarget(file, images);
 
                             showNotification("檔案開啟", "成功開啟 EPUB檔案: " + file.getName());
                         } else {
@@ -532,6 +633,41 @@ public class MainController {
         epubThread.start();
     }
 
+    /**
+     * EPUB分頁結果改變時（背景分頁完成或字型大小改變）維持目前的閱讀位置
+     */
+    private void attachEpubPageList(EpubPageList pages) {
+        pages.setLayoutListener(remap -> Platform.runLater(() -> {
+            if (stateManager.getCurrentImages() != pages || pages.isEmpty()) {
+                return;
+            }
+
+            int target = Math.max(0, Math.min(remap.applyAsInt(imageViewer.getCurrentIndex()), pages.size() - 1));
+            imageViewer.goToPage(target);
+            stateManager.setCurrentImagePageIndex(target);
+            updateReadingProgress();
+            updatePageNumberContent();
+        }));
+    }
+
+    /**
+     * 調整EPUB頁面的字型大小，目前所在章節會優先重新分頁
+     *
+     * @param delta 字型大小變化量
+     * @return 目前是否為可調整字型的EPUB頁面
+     */
+    public boolean adjustEpubFontSize(int delta) {
+        if (!stateManager.isEpubMode() || !(stateManager.getCurrentImages() instanceof EpubPageList)) {
+            return false;
+        }
+
+        EpubPageList pages = (EpubPageList) stateManager.getCurrentImages();
+        int newSize = Math.max(8, Math.min(36, pages.getFontSize() + delta));
+        pages.setFontSize(newSize);
+        showNotification("字體調整", String.format("字體大小已調整至 %d", newSize));
+        return true;
+    }
+
     private void showPdfOpeningWarning(File file) {
         Alert warningAlert = new Alert(Alert.AlertType.WARNING);
         warningAlert.setTitle("檔案開啟警告");
@@ -568,6 +704,13 @@ public class MainController {
         // 立即顯示進度條
         LoadingProgressBar.LoadingType loadingType = determineLoadingType(file);
         showModernLoadingBar(loadingType, "準備開啟檔案...");
+        // 分頁設定讀取畫面尺寸，須在UI執行緒產生
+        MappedTextDocument.PageSettings pageSettings =
+                isTextFile(file.getName().toLowerCase()) ? textRenderer.createPageSettings() : null;
+        if (pageSettings != null) {
+            textPageSettings = pageSettings;
+            textReflowGeneration++;
+        }
 
         // 在背景執行緒中載入檔案
         Thread loadingThread = new Thread(() -> {
@@ -588,8 +731,14 @@ public class MainController {
                     loadEpubFile(file);
                 } else if (isImageFile(fileName)) {
                     loadImageFile(file);
+                } else if (ComicArchive.isArchiveName(fileName)) {
+                    // 只讀取中央目錄，直接在UI執行緒開啟
+                    Platform.runLater(() -> {
+                        hideModernLoadingBar();
+                        openArchiveFromFile(file);
+                    });
                 } else if (isTextFile(fileName)) {
-                    loadTextFile(file);
+                    loadTextFile(file, pageSettings);
                 } else {
                     throw new RuntimeException("不支援的檔案格式: " + fileName);
                 }
@@ -616,7 +765,7 @@ public class MainController {
             return LoadingProgressBar.LoadingType.PDF_PROCESSING;
         } else if (fileName.endsWith(".epub")) {
             return LoadingProgressBar.LoadingType.EPUB_PROCESSING;
-        } else if (isImageFile(fileName)) {
+        } else if (isImageFile(fileName) || ComicArchive.isArchiveName(fileName)) {
             return LoadingProgressBar.LoadingType.IMAGE_LOADING;
         } else {
             return LoadingProgressBar.LoadingType.FILE_OPENING;
@@ -645,8 +794,8 @@ public class MainController {
             Platform.runLater(() -> updateModernLoadingProgress(0.4));
             Platform.runLater(() -> updateModernLoadingMessage("正在渲染PDF頁面 (1/" + pageCount + ")..."));
 
-            // 載入所有頁面
-            List<javafx.scene.image.Image> images = pdfLoader.loadImagesFromPdf(file);
+            // 開啟PDF，頁面在顯示時才渲染
+            List<javafx.scene.image.Image> images = pdfLoader.openPdfPages(file);
 
             Platform.runLater(() -> updateModernLoadingProgress(0.8));
             Platform.runLater(() -> updateModernLoadingMessage("正在準備顯示..."));
@@ -792,10 +941,7 @@ public class MainController {
      * 檢查是否為圖片檔案
      */
     private boolean isImageFile(String fileName) {
-        return fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") ||
-                fileName.endsWith(".png") || fileName.endsWith(".gif") ||
-                fileName.endsWith(".bmp") || fileName.endsWith(".tiff") ||
-                fileName.endsWith(".webp");
+        return ImageLoader.isSupportedImageName(fileName);
     }
 
     /**
@@ -807,29 +953,120 @@ public class MainController {
     }
 
     /**
-     * 載入文字檔案
+     * 在文字模式顯示分頁文字文件，頁數隨背景掃描增加，掃描到開啟位置時跳過去
+     *
+     * @param textPages 文件的頁面清單（document.getPages()）
+     * @param targetPage 開啟時已換算出的頁碼，尚未換算出時為-1
+     */
+    private void showTextDocument(File file, PagedTextDocument document,
+                                  List<TextExtractor.PageText> textPages, int targetPage) {
+        stateManager.setCurrentTextPages(textPages);
+        textRenderer.setPages(textPages);
+        textRenderer.goToPage(0);
+        stateManager.setCurrentTextPageIndex(0);
+        if (targetPage > 0) {
+            goToPage(targetPage);
+        }
+
+        document.setScanListener((pageCount, progress, finished) -> {
+            // 開啟位置在掃描執行緒換算，不佔用UI執行緒
+            int scannedTarget = resolveTextOpenTarget(file, document);
+            Platform.runLater(() -> {
+                if (stateManager.getCurrentTextPages() == textPages) {
+                    textRenderer.notifyPagesAdded();
+                    // 使用者已自行翻頁時不再跳轉
+                    if (scannedTarget > 0 && stateManager.getCurrentTextPageIndex() == 0) {
+                        goToPage(scannedTarget);
+                    }
+                    updatePageNumberContent();
+                    updateReadingProgress();
+                }
+            });
+        });
+    }
+
+    /**
+     * 字型大小、行距或可見範圍改變後，以新的分頁設定重新掃描目前的TXT／DOCX。
+     * 新文件在背景開啟，準備好後才換掉目前的文件，並跳回原本頁面起點所在的新頁面
+     */
+    private void reflowTextDocument(MappedTextDocument.PageSettings pageSettings) {
+        PagedTextDocument current = textLoader.getCurrentDocument();
+        if (!stateManager.isTextMode() || current == null
+                || !current.getFile().getAbsolutePath().equals(stateManager.getCurrentFilePath())
+                || pageSettings.equals(textPageSettings)) {
+            return;
+        }
+        textPageSettings = pageSettings;
+        int generation = ++textReflowGeneration;
+
+        File file = current.getFile();
+        // 開啟位置（全文搜尋結果或上一次重新分頁的位置）還沒掃描到時沿用該位置
+        OpenTarget pending = openTarget;
+        if (pending != null && pending.filePath.equals(file.getAbsolutePath())) {
+            openTarget = new OpenTarget(pending.filePath, pending.page, pending.textOffset, pending.position,
+                    pageSettings);
+        } else {
+            long position = current.getPagePosition(textRenderer.getCurrentPageIndex());
+            openTarget = new OpenTarget(file.getAbsolutePath(), 0, -1, position, pageSettings);
+        }
+
+        Thread reflowThread = new Thread(() -> {
+            try {
+                PagedTextDocument document = textLoader.reopenDocument(file, pageSettings);
+                List<TextExtractor.PageText> textPages = document.getPages();
+                int targetPage = resolveTextOpenTarget(file, document);
+                Platform.runLater(() -> {
+                    // 期間已開啟其他檔案或又改變了版面
+                    if (generation != textReflowGeneration || textLoader.getCurrentDocument() != current) {
+                        document.close();
+                        return;
+                    }
+                    textLoader.replaceDocument(document);
+                    showTextDocument(file, document, textPages, targetPage);
+                    updateUI();
+                });
+            } catch (IOException | RuntimeException e) {
+                System.err.println("無法重新分頁文字檔案: " + e.getMessage());
+            }
+        });
+        reflowThread.setDaemon(true);
+        reflowThread.start();
+    }
+
+    /**
+     * 載入文字檔案 - TXT以記憶體映射、DOCX以串流解析開啟，分頁索引在背景建立，頁數隨掃描進度增加
      */
-    private void loadTextFile(File file) throws Exception {
+    private void loadTextFile(File file, MappedTextDocument.PageSettings pageSettings) throws Exception {
         Platform.runLater(() -> updateModernLoadingMessage("正在載入文字檔案..."));
         Platform.runLater(() -> updateModernLoadingProgress(0.3));
 
         try {
-            String content = textLoader.loadTextFile(file);
+            PagedTextDocument document = textLoader.openDocument(file, pageSettings);
+            List<TextExtractor.PageText> textPages = document.getPages();
+            int targetPage = resolveTextOpenTarget(file, document);
 
             Platform.runLater(() -> updateModernLoadingProgress(0.8));
             Platform.runLater(() -> updateModernLoadingMessage("正在準備顯示..."));
 
             Platform.runLater(() -> {
                 try {
-                    textRenderer.setContent(content);
+                    stateManager.setFileLoaded(file.getAbsolutePath(), false, false, null, textPages);
+                    stateManager.setTextMode(true);
+
                     centerPane.getChildren().clear();
-                    centerPane.getChildren().add(textRenderer.getScrollPane());
+                    centerPane.getChildren().addAll(
+                            textRenderer.getMainContainer(),
+                            readingProgressBar,
+                            readingTimeLabel,
+                            pageLabel
+                    );
+                    addFocusModeLabel();
 
-                    stateManager.setCurrentFile(file);
-                    stateManager.setCurrentPage(0);
-                    stateManager.setTotalPages(1);
+                    showTextDocument(file, document, textPages, targetPage);
+                    textRenderer.setThemeColors(settingsManager.getCurrentTheme());
+                    primaryStage.setTitle("E_Reader - " + file.getName());
 
-                    updatePageControls();
+                    updateUI();
 
                     updateModernLoadingProgress(1.0);
                     updateModernLoadingMessage("載入完成！");
@@ -852,6 +1089,32 @@ public class MainController {
         }
     }
 
+    /**
+     * 開啟漫畫壓縮檔 - 只讀取壓縮檔目錄，頁面在顯示時才從壓縮檔解碼
+     */
+    public void openArchiveFromFile(File file) {
+        try {
+            List<Image> images = imageLoader.openArchive(file);
+            if (images.isEmpty()) {
+                AlertHelper.showError("載入失敗", "壓縮檔中沒有找到支援的圖片格式");
+                return;
+            }
+
+            stateManager.setFileLoaded(file.getAbsolutePath(), false, false, images, null);
+            switchToImageMode(0);
+            imageViewer.setImages(images);
+            stateManager.setCurrentImagePageIndex(0);
+
+            primaryStage.setTitle("E_Reader - " + file.getName());
+            updateUI();
+            resetTextModeButton();
+
+            showNotification("檔案開啟", "成功開啟壓縮檔: " + file.getName() + "（共 " + images.size() + " 頁）");
+        } catch (IOException e) {
+            AlertHelper.showError("載入失敗", "無法開啟壓縮檔: " + e.getMessage());
+        }
+    }
+
     private void openImageFromFile(File file) {
         File parentFolder = file.getParentFile();
         if (parentFolder != null) {
@@ -895,6 +1158,13 @@ public class MainController {
         }
     }
 
+    /**
+     * 開啟文字檔案 - 以分頁文字模型在文字模式中顯示，不轉換為頁面圖片
+     */
+    public void openTextFile(File file) {
+        startFileLoading(file);
+    }
+
     public void openPdfFile() {
         FileChooser fc = new FileChooser();
         fc.setTitle("選擇 PDF 檔案");
@@ -914,6 +1184,14 @@ public class MainController {
             return;
         }
 
+        // 文字檔案沒有圖片頁面可切換
+        PagedTextDocument textDocument = textLoader.getCurrentDocument();
+        if (stateManager.isTextMode() && textDocument != null
+                && textDocument.getFile().getAbsolutePath().equals(stateManager.getCurrentFilePath())) {
+            showNotification("文字模式", "文字檔案只能以文字模式閱讀");
+            return;
+        }
+
         // 在切換模式前，先保存當前頁面索引
         int currentPageIndex;
         if (stateManager.isTextMode()) {
@@ -948,7 +1226,10 @@ public class MainController {
             try {
                 List<TextExtractor.PageText> textPages;
                 if (stateManager.isPdfMode()) {
-                    textPages = textExtractor.extractTextFromPdf(new File(stateManager.getCurrentFilePath()));
+                    File pdfFile = new File(stateManager.getCurrentFilePath());
+                    textPages = textExtractor.extractTextFromPdf(pdfFile);
+                    // 保存OCR辨識出的文字，檔案庫全文搜尋可以找到掃描頁面
+                    fileManagerController.getLibraryTextIndex().storeOcrText(pdfFile, textPages);
                 } else if (stateManager.isEpubMode()) {
                     textPages = epubLoader.extractTextFromEpub(new File(stateManager.getCurrentFilePath()));
                 } else {
@@ -1147,7 +1428,7 @@ public class MainController {
                     imageViewer.zoomOut();
                 }
                 e.consume();
-            } else {
+            } else if (!imageViewer.isContinuousMode()) {
                 if (e.getDeltaY() < 0) {
                     goToNextPage();
                 } else if (e.getDeltaY() > 0) {
@@ -1156,6 +1437,13 @@ public class MainController {
             }
         });
 
+        // 連續捲動時依捲動位置更新目前頁碼
+        imageViewer.setOnPageChanged(index -> {
+            stateManager.setCurrentImagePageIndex(index);
+            updatePageNumberContent();
+            updateReadingProgress();
+        });
+
         // 雙擊全螢幕
         imageViewer.getImageView().setOnMouseClicked(e -> {
             if (e.getClickCount() == 2) {
@@ -1285,7 +1573,8 @@ public class MainController {
     }
 
     private void updateControlsForMode() {
-        controlsFactory.updateControlsForMode(stateManager.isTextMode());
+        controlsFactory.updateControlsForMode(stateManager.isTextMode(),
+                stateManager.isEpubMode() && stateManager.getCurrentImages() instanceof EpubPageList);
         
         // **修正：只更新頁碼內容，不改變顯示狀態**
         updatePageNumberContent();
@@ -1348,6 +1637,10 @@ public class MainController {
 
         imageViewer.clearImages();
         textRenderer.clearPages();
+        epubLoader.closeBook();
+        pdfLoader.closeDocument();
+        textLoader.closeDocument();
+        imageLoader.closePages();
 
         if (stateManager.isTextMode()) {
             stateManager.setTextMode(false);
@@ -1423,6 +1716,78 @@ public class MainController {
                 });
     }
 
+    /**
+     * 顯示EPUB目錄，選擇項目後直接跳到對應章節與錨點
+     */
+    public void showTableOfContentsDialog() {
+        if (stateManager.getCurrentFilePath().isEmpty() || !stateManager.isEpubMode()) {
+            AlertHelper.showError("提示", "目錄功能僅支援EPUB檔案");
+            return;
+        }
+
+        EpubTableOfContents toc;
+        try {
+            toc = epubLoader.openBook(new File(stateManager.getCurrentFilePath())).getTableOfContents();
+        } catch (Exception e) {
+            AlertHelper.showError("無法讀取目錄", e.getMessage());
+            return;
+        }
+
+        TreeItem<EpubTableOfContents.Entry> root = new TreeItem<>();
+        addTocItems(root, toc.getEntries());
+        TreeView<EpubTableOfContents.Entry> treeView = new TreeView<>(root);
+        treeView.setShowRoot(false);
+        treeView.setPrefSize(420, 520);
+
+        Dialog<EpubTableOfContents.Entry> dialog = new Dialog<>();
+        dialog.initOwner(primaryStage);
+        dialog.setTitle("目錄");
+        dialog.setHeaderText("選擇要跳轉的章節");
+        dialog.getDialogPane().setContent(treeView);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialog.setResultConverter(button -> {
+            TreeItem<EpubTableOfContents.Entry> selected = treeView.getSelectionModel().getSelectedItem();
+            return button == ButtonType.OK && selected != null ? selected.getValue() : null;
+        });
+
+        // 雙擊項目直接跳轉
+        treeView.setOnMouseClicked(e -> {
+            TreeItem<EpubTableOfContents.Entry> selected = treeView.getSelectionModel().getSelectedItem();
+            if (e.getClickCount() == 2 && selected != null && selected.getValue().hasTarget()) {
+                dialog.setResult(selected.getValue());
+                dialog.close();
+            }
+        });
+
+        dialog.showAndWait().ifPresent(this::goToTocEntry);
+    }
+
+    private void addTocItems(TreeItem<EpubTableOfContents.Entry> parent, List<EpubTableOfContents.Entry> entries) {
+        for (EpubTableOfContents.Entry entry : entries) {
+            TreeItem<EpubTableOfContents.Entry> item = new TreeItem<>(entry);
+            item.setExpanded(entry.getLevel() == 0);
+            addTocItems(item, entry.getChildren());
+            parent.getChildren().add(item);
+        }
+    }
+
+    /**
+     * 跳到目錄項目，只會讀取目標章節
+     */
+    public void goToTocEntry(EpubTableOfContents.Entry entry) {
+        if (entry == null || !entry.hasTarget()) {
+            return;
+        }
+
+        if (stateManager.isTextMode()) {
+            // 文字模式中每個章節為一頁
+            goToPage(entry.getSpineIndex());
+        } else if (stateManager.getCurrentImages() instanceof EpubPageList) {
+            EpubPageList pages = (EpubPageList) stateManager.getCurrentImages();
+            goToPage(pages.getPageForLocation(entry.getSpineIndex(), entry.getFragment()));
+        }
+    }
+
     // 夜間模式切換
     public void toggleNightMode() {
         settingsManager.toggleNightMode();
@@ -2948,4 +3313,26 @@ public class MainController {
             System.err.println("模擬頁面變化時發生錯誤: " + e.getMessage());
         }
     }
+
+    /**
+     * 開啟檔案後要跳到的位置
+     */
+    private static class OpenTarget {
+        final String filePath;
+        final int page;
+        final long textOffset;
+        // 重新分頁前的閱讀位置（PagedTextDocument.getPagePosition），-1表示不使用
+        final long position;
+        // 只套用於以此分頁設定開啟的文件，null表示任何文件
+        final MappedTextDocument.PageSettings pageSettings;
+
+        OpenTarget(String filePath, int page, long textOffset, long position,
+                   MappedTextDocument.PageSettings pageSettings) {
+            this.filePath = filePath;
+            this.page = page;
+            this.textOffset = textOffset;
+            this.position = position;
+            this.pageSettings = pageSettings;
+        }
+    }
 }
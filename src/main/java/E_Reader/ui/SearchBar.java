@@ -0,0 +1,290 @@
+package E_Reader.ui;
+
+import E_Reader.core.TextSearchIndex;
+import E_Reader.viewer.TextRenderer;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.util.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 搜尋列 - 不阻擋閱讀的浮動視窗，輸入時即時搜尋。
+ * 輸入停頓後才送出查詢，查詢在背景執行緒進行，新的查詢會取消尚未完成的舊查詢，
+ * 命中結果（頁碼、前後文）邊找邊加入列表
+ */
+public class SearchBar {
+
+    // 輸入停頓多久後送出查詢
+    private static final Duration DEBOUNCE_DELAY = Duration.millis(200);
+    // 列表最多顯示的結果數量，命中總數仍完整計算
+    private static final int MAX_LISTED_HITS = 500;
+    // 前後文保留的字數
+    private static final int SNIPPET_CONTEXT = 20;
+
+    private final MainController controller;
+    private final Stage stage;
+    private final TextField queryField = new TextField();
+    private final Label countLabel = new Label();
+    private final ObservableList<SearchHit> hits = FXCollections.observableArrayList();
+    private final ListView<SearchHit> hitList = new ListView<>(hits);
+    private final PauseTransition debounce = new PauseTransition(DEBOUNCE_DELAY);
+
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "text-search");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    // 每次送出查詢加一，背景執行緒以此判斷查詢是否已被取代
+    private final AtomicInteger generation = new AtomicInteger();
+    private Future<?> pendingSearch;
+
+    // 目前顯示的結果（只在FX執行緒存取）
+    private TextSearchIndex.SearchResult currentResult;
+    private TextSearchIndex currentIndex;
+    private int currentHit = -1;
+
+    public SearchBar(MainController controller) {
+        this.controller = controller;
+
+        stage = new Stage();
+        stage.initOwner(controller.getPrimaryStage());
+        stage.initModality(Modality.NONE);
+        stage.initStyle(StageStyle.UTILITY);
+        stage.setTitle("搜索文字");
+        stage.setOnHidden(e -> clearSearch());
+
+        setupLayout();
+    }
+
+    private void setupLayout() {
+        queryField.setPromptText("輸入關鍵字，Enter 下一個，Shift+Enter 上一個");
+        queryField.textProperty().addListener((obs, oldText, newText) -> debounce.playFromStart());
+        debounce.setOnFinished(e -> submitQuery(queryField.getText()));
+        queryField.setOnKeyPressed(e -> {
+            if (e.getCode() == KeyCode.ENTER) {
+                // 還在等待送出的查詢先立即執行
+                if (debounce.getStatus() == PauseTransition.Status.RUNNING) {
+                    debounce.stop();
+                    submitQuery(queryField.getText());
+                } else if (e.isShiftDown()) {
+                    showHit(currentHit - 1);
+                } else {
+                    showHit(currentHit + 1);
+                }
+                e.consume();
+            } else if (e.getCode() == KeyCode.ESCAPE) {
+                stage.hide();
+                e.consume();
+            }
+        });
+
+        Button previousButton = new Button("▲");
+        previousButton.setOnAction(e -> showHit(currentHit - 1));
+        Button nextButton = new Button("▼");
+        nextButton.setOnAction(e -> showHit(currentHit + 1));
+
+        countLabel.setMinWidth(90);
+        countLabel.setStyle("-fx-text-fill: #e0e0e0;");
+
+        HBox inputRow = new HBox(6, queryField, countLabel, previousButton, nextButton);
+        inputRow.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(queryField, Priority.ALWAYS);
+
+        hitList.setFixedCellSize(28);
+        hitList.setPrefHeight(260);
+        hitList.getSelectionModel().selectedIndexProperty().addListener((obs, oldIndex, newIndex) -> {
+            int index = newIndex.intValue();
+            if (index >= 0 && index < hits.size() && hits.get(index).hitIndex != currentHit) {
+                showHit(hits.get(index).hitIndex);
+            }
+        });
+        VBox.setVgrow(hitList, Priority.ALWAYS);
+
+        VBox root = new VBox(8, inputRow, hitList);
+        root.setPadding(new Insets(10));
+        root.setStyle("-fx-background-color: rgba(35,35,35,0.98);");
+
+        stage.setScene(new Scene(root, 460, 320));
+    }
+
+    /**
+     * 顯示搜尋列，已顯示時選取輸入框中的文字
+     */
+    public void show() {
+        if (!stage.isShowing()) {
+            Stage owner = controller.getPrimaryStage();
+            stage.setX(owner.getX() + Math.max(0, owner.getWidth() - 500));
+            stage.setY(owner.getY() + 80);
+            stage.show();
+        }
+        stage.toFront();
+        queryField.requestFocus();
+        queryField.selectAll();
+    }
+
+    public boolean isShowing() {
+        return stage.isShowing();
+    }
+
+    private void submitQuery(String query) {
+        int queryGeneration = generation.incrementAndGet();
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+        }
+
+        hits.clear();
+        currentHit = -1;
+        currentResult = null;
+
+        TextSearchIndex index = controller.getTextRenderer().getSearchIndex();
+        currentIndex = index;
+        if (index == null || query == null || query.trim().isEmpty()) {
+            countLabel.setText("");
+            controller.getTextRenderer().setSearchResult(null, -1);
+            refreshTextPage();
+            return;
+        }
+
+        countLabel.setText("搜尋中…");
+        pendingSearch = searchExecutor.submit(() -> runQuery(index, query, queryGeneration));
+    }
+
+    /**
+     * 在背景執行緒執行查詢，分批把命中與前後文送到FX執行緒
+     */
+    private void runQuery(TextSearchIndex index, String query, int queryGeneration) {
+        TextSearchIndex.CancelCheck cancelled = () -> generation.get() != queryGeneration;
+        TextSearchIndex.SearchResult result;
+        try {
+            result = index.search(query, cancelled, (partial, from, to) -> {
+                List<SearchHit> batch = new ArrayList<>();
+                for (int hit = from; hit < to && hit < MAX_LISTED_HITS; hit++) {
+                    batch.add(new SearchHit(hit, partial.getPage(hit), index.getSnippet(partial, hit, SNIPPET_CONTEXT)));
+                }
+                int count = to;
+                Platform.runLater(() -> {
+                    if (generation.get() == queryGeneration) {
+                        hits.addAll(batch);
+                        countLabel.setText("已找到 " + count + " 筆…");
+                    }
+                });
+            });
+        } catch (RuntimeException e) {
+            System.err.println("搜尋時發生錯誤: " + e.getMessage());
+            return;
+        }
+
+        if (cancelled.isCancelled()) {
+            return;
+        }
+        Platform.runLater(() -> {
+            if (generation.get() == queryGeneration) {
+                onQueryFinished(result);
+            }
+        });
+    }
+
+    private void onQueryFinished(TextSearchIndex.SearchResult result) {
+        currentResult = result;
+        if (result.getCount() == 0) {
+            countLabel.setText("沒有結果");
+            controller.getTextRenderer().setSearchResult(null, -1);
+            refreshTextPage();
+            return;
+        }
+
+        // 從目前頁面開始找第一個命中，之後沒有命中時從頭開始
+        int hit = result.firstHitAtOrAfter(controller.getTextRenderer().getCurrentPageIndex());
+        showHit(hit >= 0 ? hit : 0);
+    }
+
+    /**
+     * 跳到指定的命中位置，超出範圍時循環
+     */
+    private void showHit(int hit) {
+        TextRenderer renderer = controller.getTextRenderer();
+        if (currentResult == null || currentResult.getCount() == 0 || renderer.getSearchIndex() != currentIndex) {
+            return;
+        }
+
+        int count = currentResult.getCount();
+        currentHit = (hit % count + count) % count;
+        countLabel.setText((currentHit + 1) + " / " + count);
+        renderer.setSearchResult(currentResult, currentHit);
+        controller.goToPage(currentResult.getPage(currentHit));
+
+        if (currentHit < hits.size()) {
+            hitList.getSelectionModel().select(currentHit);
+            hitList.scrollTo(Math.max(0, currentHit - 3));
+        } else {
+            hitList.getSelectionModel().clearSelection();
+        }
+    }
+
+    private void clearSearch() {
+        debounce.stop();
+        generation.incrementAndGet();
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+        }
+        hits.clear();
+        currentResult = null;
+        currentHit = -1;
+        if (controller.getTextRenderer().getSearchIndex() == currentIndex) {
+            controller.getTextRenderer().setSearchResult(null, -1);
+            refreshTextPage();
+        }
+    }
+
+    /**
+     * 重新繪製目前頁面以更新標示
+     */
+    private void refreshTextPage() {
+        if (controller.getStateManager().isTextMode()) {
+            controller.goToPage(controller.getTextRenderer().getCurrentPageIndex());
+        }
+    }
+
+    /**
+     * 列表中的一筆命中
+     */
+    private static class SearchHit {
+        final int hitIndex;
+        final int page;
+        final String snippet;
+
+        SearchHit(int hitIndex, int page, String snippet) {
+            this.hitIndex = hitIndex;
+            this.page = page;
+            this.snippet = snippet;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("第 %d 頁　%s", page + 1, snippet);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package E_Reader.ui;
 
 import E_Reader.utils.AlertHelper;
+import E_Reader.viewer.ImageViewer;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -29,7 +30,6 @@ import javafx.scene.control.ComboBox;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.ButtonBar;
-import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.layout.Region;
@@ -63,6 +63,7 @@ public class UIControlsFactory {
     private Button zoomOutBtn;
     private Button fitWidthBtn;
     private Button fitHeightBtn;
+    private Button continuousScrollBtn;
     private Button rotateBtn;
 
     // 文字模式专用按钮
@@ -72,6 +73,9 @@ public class UIControlsFactory {
     private Button searchBtn;
     private Button focusModeBtn;
 
+    // 搜尋列（第一次搜尋時建立）
+    private SearchBar searchBar;
+
     // 控制列容器
     private HBox topControls;
     private HBox bottomControls;
@@ -174,6 +178,7 @@ public class UIControlsFactory {
         });
 
         Button bookmarkBtn = createButton("🔖 書籤", controller::showBookmarkDialog);
+        Button tocBtn = createButton("📑 目錄", controller::showTableOfContentsDialog);
         Button fullscreenBtn = createButton("⛶ 全螢幕", controller::toggleFullscreen);
 
         // 共用功能按钮
@@ -217,7 +222,7 @@ public class UIControlsFactory {
         topControls.getChildren().addAll(
                 returnToManagerBtn, toggleNavBarBtn,
                 createSeparator(),
-                bookmarkBtn, textModeBtn,
+                bookmarkBtn, tocBtn, textModeBtn,
                 createSeparator(),
                 noteBtn, highlightBtn,
                 createSeparator(),
@@ -258,6 +263,7 @@ public class UIControlsFactory {
         zoomOutBtn = createButton("🔍-", () -> zoomOut(controller));
         fitWidthBtn = createButton("↔ 寬度", () -> fitWidth(controller));
         fitHeightBtn = createButton("↕ 高度", () -> fitHeight(controller));
+        continuousScrollBtn = createButton("⇕ 連續", () -> toggleContinuousScroll(controller));
         rotateBtn = createButton("🔄", () -> rotateImage(controller));
 
         // 文字模式专用按钮
@@ -338,8 +344,15 @@ public class UIControlsFactory {
      * 根据当前模式更新控制按钮的显示
      */
     public void updateControlsForMode(boolean isTextMode) {
+        updateControlsForMode(isTextMode, false);
+    }
+
+    /**
+     * @param reflowableImages 圖片模式下顯示的是可重新分頁的EPUB頁面，需要字體大小按鈕
+     */
+    public void updateControlsForMode(boolean isTextMode, boolean reflowableImages) {
         updateTopControlsForMode(isTextMode);
-        updateBottomControlsForMode(isTextMode);
+        updateBottomControlsForMode(isTextMode, reflowableImages);
     }
 
     /**
@@ -366,7 +379,7 @@ public class UIControlsFactory {
     /**
      * 更新下方控制列的按钮显示
      */
-    private void updateBottomControlsForMode(boolean isTextMode) {
+    private void updateBottomControlsForMode(boolean isTextMode, boolean reflowableImages) {
         if (bottomControls == null) return;
 
         if (bottomControls.getChildren().isEmpty()) return;
@@ -376,7 +389,7 @@ public class UIControlsFactory {
 
         // 先移除所有模式专用按钮
         centerBottomControls.getChildren().removeAll(
-                zoomInBtn, zoomOutBtn, fitWidthBtn, fitHeightBtn, rotateBtn,
+                zoomInBtn, zoomOutBtn, fitWidthBtn, fitHeightBtn, continuousScrollBtn, rotateBtn,
                 fontSizeIncBtn, fontSizeDecBtn, lineSpacingBtn
         );
 
@@ -399,7 +412,12 @@ public class UIControlsFactory {
             centerBottomControls.getChildren().add(zoomOutBtn);
             centerBottomControls.getChildren().add(fitWidthBtn);
             centerBottomControls.getChildren().add(fitHeightBtn);
+            centerBottomControls.getChildren().add(continuousScrollBtn);
             centerBottomControls.getChildren().add(rotateBtn);
+            if (reflowableImages) {
+                centerBottomControls.getChildren().add(fontSizeIncBtn);
+                centerBottomControls.getChildren().add(fontSizeDecBtn);
+            }
         }
     }
 
@@ -528,31 +546,10 @@ public class UIControlsFactory {
             return;
         }
 
-        TextInputDialog dialog = new TextInputDialog();
-        dialog.setTitle("搜索文字");
-        dialog.setHeaderText("在文件中搜索文字");
-        dialog.setContentText("請輸入搜索關鍵字:");
-
-        // 自定义对话框样式 - 修复版本（增强可见性）
-        dialog.getDialogPane().setStyle(
-                "-fx-background-color: rgba(35,35,35,0.98); " +
-                        "-fx-border-color: rgba(255,255,255,0.4); " +
-                        "-fx-border-width: 1; " +
-                        "-fx-border-radius: 12; " +
-                        "-fx-background-radius: 12; " +
-                        "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.6), 15, 0, 0, 5);"
-        );
-
-        // 修复对话框中的文字颜色
-        dialog.getDialogPane().lookup(".header-panel").setStyle("-fx-text-fill: white;");
-        dialog.getDialogPane().lookup(".content").setStyle("-fx-text-fill: white;");
-
-        dialog.showAndWait().ifPresent(searchTerm -> {
-            if (!searchTerm.trim().isEmpty()) {
-                controller.getTextRenderer().searchText(searchTerm);
-                controller.showNotification("搜索完成", "以高亮顯示搜索結果");
-            }
-        });
+        if (searchBar == null) {
+            searchBar = new SearchBar(controller);
+        }
+        searchBar.show();
     }
     
     private void showNoteDialog(MainController controller) {
@@ -1727,6 +1724,16 @@ public class UIControlsFactory {
         controller.getImageViewer().fitToHeight();
     }
 
+    private void toggleContinuousScroll(MainController controller) {
+        if (controller.getStateManager().isTextMode()) {
+            AlertHelper.showError("提示", "連續捲動僅在圖片模式下可用");
+            return;
+        }
+        ImageViewer imageViewer = controller.getImageViewer();
+        imageViewer.setContinuousMode(!imageViewer.isContinuousMode());
+        continuousScrollBtn.setText(imageViewer.isContinuousMode() ? "▭ 單頁" : "⇕ 連續");
+    }
+
     private void rotateImage(MainController controller) {
         if (controller.getStateManager().isTextMode()) {
             AlertHelper.showError("提示", "圖片旋轉功能僅在圖片模式下可用");
@@ -1737,6 +1744,9 @@ public class UIControlsFactory {
     }
 
     private void adjustFontSize(MainController controller, double delta) {
+        if (!controller.getStateManager().isTextMode() && controller.adjustEpubFontSize((int) delta)) {
+            return;
+        }
         if (!controller.getStateManager().isTextMode()) {
             AlertHelper.showError("提示", "字體調整功能僅在文字模式下可用");
             return;
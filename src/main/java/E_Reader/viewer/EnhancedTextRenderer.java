@@ -3,6 +3,7 @@ package E_Reader.viewer;
 import E_Reader.core.TextExtractor;
 import E_Reader.core.FormatPreservingTextProcessor;
 import E_Reader.settings.SettingsManager;
+import javafx.scene.Node;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
@@ -16,8 +17,8 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.TextAlignment;
 import javafx.application.Platform;
 
+import java.util.AbstractList;
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * 增強版文字渲染器 - 支援格式保持的文字顯示
@@ -25,6 +26,7 @@ import java.util.ArrayList;
 public class EnhancedTextRenderer extends TextRenderer {
 
     private FormatPreservingTextProcessor formatProcessor;
+    private List<TextExtractor.PageText> sourcePages;
     private boolean preserveOriginalFormat = true;
     private boolean showFormatIndicators = false;
 
@@ -51,36 +53,61 @@ public class EnhancedTextRenderer extends TextRenderer {
     @Override
     public void setPages(List<TextExtractor.PageText> pages) {
         super.setPages(pages); // 調用父類方法設定基本資料
+        this.sourcePages = pages;
 
         if (preserveOriginalFormat && pages != null && !pages.isEmpty()) {
             // 使用格式保持模式重新渲染
-            renderPagesWithFormat(pages);
+            renderPagesWithFormat();
         }
     }
 
+    @Override
+    public void clearPages() {
+        super.clearPages();
+        this.sourcePages = null;
+    }
+
     /**
-     * 使用格式保持模式渲染頁面
+     * 使用格式保持模式渲染頁面。頁面在顯示時才分析，
+     * 分析結果由格式處理器快取，設定或主題改變時只重建節點
      */
-    private void renderPagesWithFormat(List<TextExtractor.PageText> pages) {
-        List<EnhancedTextPage> formattedPages = new ArrayList<>();
+    private void renderPagesWithFormat() {
+        List<TextExtractor.PageText> pages = sourcePages;
+        if (pages == null) {
+            return;
+        }
 
-        for (TextExtractor.PageText originalPage : pages) {
-            // 使用格式處理器處理每一頁
-            List<FormatPreservingTextProcessor.FormattedLine> formattedLines =
-                    formatProcessor.processPageText(originalPage);
+        List<EnhancedTextPage> formattedPages = new AbstractList<EnhancedTextPage>() {
+            @Override
+            public EnhancedTextPage get(int index) {
+                return createEnhancedPage(pages.get(index));
+            }
 
-            EnhancedTextPage enhancedPage = new EnhancedTextPage();
-            enhancedPage.pageNumber = originalPage.getPageNumber();
-            enhancedPage.originalPageText = originalPage;
-            enhancedPage.formattedLines = formattedLines;
-            enhancedPage.isEmpty = formattedLines.isEmpty() ||
-                    formattedLines.stream().allMatch(line -> line.lineType == FormatPreservingTextProcessor.LineType.EMPTY);
+            @Override
+            public int size() {
+                return pages.size();
+            }
+        };
 
-            formattedPages.add(enhancedPage);
+        // 更新顯示
+        if (Platform.isFxApplicationThread()) {
+            renderEnhancedPages(formattedPages);
+        } else {
+            Platform.runLater(() -> renderEnhancedPages(formattedPages));
         }
+    }
 
-        // 更新顯示
-        Platform.runLater(() -> renderEnhancedPages(formattedPages));
+    private EnhancedTextPage createEnhancedPage(TextExtractor.PageText originalPage) {
+        List<FormatPreservingTextProcessor.FormattedLine> formattedLines =
+                formatProcessor.processPageText(originalPage);
+
+        EnhancedTextPage enhancedPage = new EnhancedTextPage();
+        enhancedPage.pageNumber = originalPage.getPageNumber();
+        enhancedPage.originalPageText = originalPage;
+        enhancedPage.formattedLines = formattedLines;
+        enhancedPage.isEmpty = formattedLines.isEmpty() ||
+                formattedLines.stream().allMatch(line -> line.lineType == FormatPreservingTextProcessor.LineType.EMPTY);
+        return enhancedPage;
     }
 
     /**
@@ -104,7 +131,8 @@ public class EnhancedTextRenderer extends TextRenderer {
                 renderEnhancedTwoPages(enhancedPages);
                 break;
             case CONTINUOUS:
-                renderEnhancedContinuousPages(enhancedPages);
+                // 連續模式由父類別的ListView顯示，儲存格內容改用格式保持的頁面
+                invalidateContinuousPages();
                 break;
         }
     }
@@ -167,25 +195,15 @@ public class EnhancedTextRenderer extends TextRenderer {
     }
 
     /**
-     * 渲染連續頁面（格式保持模式）
+     * 連續模式的儲存格內容，格式保持模式下使用增強版頁面
      */
-    private void renderEnhancedContinuousPages(List<EnhancedTextPage> pages) {
-        VBox pageContainer = getPageContainer();
-        pageContainer.getChildren().clear();
-
-        for (EnhancedTextPage page : pages) {
-            VBox pageView = createEnhancedPageView(page);
-            pageView.setStyle(pageView.getStyle() + "; -fx-border-color: #444444; -fx-border-width: 0 0 2 0; -fx-border-style: dashed;");
-            pageContainer.getChildren().add(pageView);
-
-            if (pages.indexOf(page) < pages.size() - 1) {
-                Label spacer = new Label();
-                spacer.setPrefHeight(40);
-                pageContainer.getChildren().add(spacer);
-            }
+    @Override
+    protected Node createContinuousPageView(int pageIndex) {
+        List<TextExtractor.PageText> pages = sourcePages;
+        if (!preserveOriginalFormat || pages == null || pageIndex >= pages.size()) {
+            return super.createContinuousPageView(pageIndex);
         }
-
-        pageContainer.setAlignment(Pos.CENTER);
+        return createEnhancedPageView(createEnhancedPage(pages.get(pageIndex)));
     }
 
     /**
@@ -415,8 +433,12 @@ public class EnhancedTextRenderer extends TextRenderer {
     public void setPreserveOriginalFormat(boolean preserve) {
         if (this.preserveOriginalFormat != preserve) {
             this.preserveOriginalFormat = preserve;
-            // 重新渲染當前頁面
-            refreshCurrentPage();
+            // 重新渲染當前頁面，連續模式的頁面高度需要重新量測
+            if (getDisplayMode() == DisplayMode.CONTINUOUS) {
+                invalidateContinuousPages();
+            } else {
+                refreshCurrentPage();
+            }
         }
     }
 
@@ -468,6 +490,7 @@ public class EnhancedTextRenderer extends TextRenderer {
         super.setThemeColors(theme);
         if (formatProcessor != null) {
             formatProcessor.applyTheme(theme);
+            refreshFormattedPages();
         }
     }
 
@@ -479,6 +502,7 @@ public class EnhancedTextRenderer extends TextRenderer {
         super.setFontSize(size);
         if (formatProcessor != null) {
             formatProcessor.setFontSize(size);
+            refreshFormattedPages();
         }
     }
 
@@ -490,6 +514,25 @@ public class EnhancedTextRenderer extends TextRenderer {
         super.setLineSpacing(spacing);
         if (formatProcessor != null) {
             formatProcessor.setLineHeight(spacing);
+            refreshFormattedPages();
+        }
+    }
+
+    /**
+     * 重新整理當前頁面，格式保持模式下以快取的分析結果重建頁面
+     */
+    @Override
+    public void refreshCurrentPage() {
+        if (preserveOriginalFormat && sourcePages != null && !sourcePages.isEmpty()) {
+            renderPagesWithFormat();
+        } else {
+            super.refreshCurrentPage();
+        }
+    }
+
+    private void refreshFormattedPages() {
+        if (preserveOriginalFormat && sourcePages != null && !sourcePages.isEmpty()) {
+            renderPagesWithFormat();
         }
     }
 
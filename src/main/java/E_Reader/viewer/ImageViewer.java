@@ -1,20 +1,52 @@
 package E_Reader.viewer;
 
+import E_Reader.core.ImagePageList;
+import E_Reader.core.PageDimensions;
+import E_Reader.core.PdfPageList;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.geometry.Pos;
+import javafx.util.Duration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
 
 /**
  * 圖片檢視器 - 負責圖片的顯示和縮放控制
+ *
+ * 連續捲動模式下所有頁面的高度在開啟時由頁面尺寸算出，捲軸長度固定；
+ * 只有可見範圍內的頁面會綁定到重複使用的頁面格，解碼在背景執行緒進行，
+ * 並預先解碼可見範圍前後的少數頁面，離開範圍的頁面即釋放。
+ *
+ * 單頁模式放大到超過頁面解碼解析度時，停止捲動或縮放後只解碼畫面中可見的區域，
+ * 疊在頁面上顯示（頁面來源需支援區域解碼）
  */
 public class ImageViewer {
 
+    // 連續捲動模式的頁面間距
+    private static final double CONTINUOUS_PAGE_GAP = 12;
+    // 可見範圍前後預先解碼的頁數
+    private static final int PREFETCH_PAGES = 3;
+    // 頁面尺寸未知時假設的長寬比（高/寬）
+    private static final double DEFAULT_PAGE_ASPECT = 1.414;
+
     private List<Image> images;
     private ImageView imageView = new ImageView();
     private ScrollPane scrollPane;
@@ -28,6 +60,38 @@ public class ImageViewer {
         FIT_WIDTH, FIT_HEIGHT, FIT_PAGE, ORIGINAL_SIZE
     }
 
+    // 連續捲動模式
+    private boolean continuousMode = false;
+    private Pane continuousContent;
+    private final List<PageCell> cellPool = new ArrayList<>();
+    private final Map<Integer, PageCell> boundCells = new HashMap<>();
+    // 可見範圍與預先解碼範圍內已解碼的頁面
+    private final Map<Integer, Image> decodedPages = new HashMap<>();
+    private final Set<Integer> pendingDecodes = new HashSet<>();
+    // 每頁原始尺寸（沒有尺寸資訊的頁面在解碼後更正）
+    private double[] pageWidths;
+    private double[] pageHeights;
+    // 每頁在連續版面中的顯示寬度與起始位置，pageOffsets[n]為內容總高度
+    private double[] displayWidths;
+    private double[] pageOffsets;
+    private double layoutViewportWidth = -1;
+    private double layoutViewportHeight = -1;
+    private boolean layoutDirty = true;
+    private boolean trackingSuspended = false;
+    // 目前需要的頁面範圍，背景解碼前檢查，已離開範圍的要求直接略過
+    private volatile int wantedFirst = 0;
+    private volatile int wantedLast = -1;
+    private IntConsumer pageChangeListener;
+    private ExecutorService decodeExecutor;
+
+    // 單頁模式中延遲載入的頁面解碼完成前顯示的提示
+    private final Label loadingLabel = new Label();
+
+    // 放大檢視時以較高解析度解碼的可見區域
+    private final ImageView detailView = new ImageView();
+    private final PauseTransition detailDelay = new PauseTransition(Duration.millis(150));
+    private volatile int detailGeneration = 0;
+
     public ImageViewer() {
         initializeComponents();
         setupDefaultSettings();
@@ -42,6 +106,16 @@ public class ImageViewer {
         imageContainer = new StackPane();
         imageContainer.setAlignment(Pos.CENTER);
         imageContainer.getChildren().add(imageView);
+        loadingLabel.setStyle("-fx-text-fill: #888888; -fx-font-size: 14px;");
+        loadingLabel.setVisible(false);
+        imageContainer.getChildren().add(loadingLabel);
+
+        // 可見區域的清晰圖層不受版面管理，依頁面位置擺放，不攔截滑鼠事件
+        detailView.setManaged(false);
+        detailView.setMouseTransparent(true);
+        detailView.setSmooth(true);
+        imageContainer.getChildren().add(detailView);
+        detailDelay.setOnFinished(e -> requestDetail());
 
         // 建立可滾動的容器
         scrollPane = new ScrollPane();
@@ -51,6 +125,20 @@ public class ImageViewer {
         scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
         scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
         scrollPane.setStyle("-fx-background: #1e1e1e; -fx-background-color: #1e1e1e;");
+
+        // 連續捲動模式的頁面格放在不受版面管理的容器中，由捲動位置決定擺放
+        continuousContent = new Pane();
+        scrollPane.vvalueProperty().addListener((obs, oldValue, newValue) -> layoutContinuousPages());
+        scrollPane.hvalueProperty().addListener((obs, oldValue, newValue) -> layoutContinuousPages());
+        scrollPane.viewportBoundsProperty().addListener((obs, oldValue, newValue) -> layoutContinuousPages());
+
+        scrollPane.vvalueProperty().addListener((obs, oldValue, newValue) -> onViewChanged());
+        scrollPane.hvalueProperty().addListener((obs, oldValue, newValue) -> onViewChanged());
+        scrollPane.viewportBoundsProperty().addListener((obs, oldValue, newValue) -> onViewChanged());
+        imageView.fitWidthProperty().addListener((obs, oldValue, newValue) -> onViewChanged());
+        imageView.fitHeightProperty().addListener((obs, oldValue, newValue) -> onViewChanged());
+        imageView.imageProperty().addListener((obs, oldValue, newValue) -> onViewChanged());
+        imageView.rotateProperty().addListener((obs, oldValue, newValue) -> onViewChanged());
     }
     
     private void setupDefaultSettings() {
@@ -60,6 +148,7 @@ public class ImageViewer {
     public void setImages(List<Image> images) {
         this.images = images;
         currentIndex = 0;
+        resetContinuousPages();
         showImage();
     }
     
@@ -68,7 +157,9 @@ public class ImageViewer {
         this.currentIndex = 0;
         this.zoomLevel = 1.0;
         this.fitMode = FitMode.FIT_WIDTH;
+        resetContinuousPages();
         imageView.setImage(null);
+        loadingLabel.setVisible(false);
         imageView.setRotate(0);
         pageLabel.setText("Page: 0 / 0");
     }
@@ -146,9 +237,451 @@ public class ImageViewer {
     }
 
     public void rotate() {
+        if (continuousMode) return;
         imageView.setRotate(imageView.getRotate() + 90);
     }
 
+    /**
+     * 切換連續捲動模式，切換前後停留在同一頁
+     */
+    public void setContinuousMode(boolean continuous) {
+        if (continuousMode == continuous) return;
+        continuousMode = continuous;
+
+        if (continuous) {
+            imageView.setImage(null);
+            loadingLabel.setVisible(false);
+            scrollPane.setFitToWidth(false);
+            scrollPane.setFitToHeight(false);
+            scrollPane.setContent(continuousContent);
+            layoutDirty = true;
+            showImage();
+        } else {
+            resetContinuousPages();
+            scrollPane.setFitToWidth(true);
+            scrollPane.setFitToHeight(true);
+            scrollPane.setContent(imageContainer);
+            showImage();
+        }
+    }
+
+    public boolean isContinuousMode() {
+        return continuousMode;
+    }
+
+    /**
+     * 設定連續捲動時目前頁面改變的監聽器（在JavaFX執行緒呼叫）
+     */
+    public void setOnPageChanged(IntConsumer listener) {
+        this.pageChangeListener = listener;
+    }
+
+    /**
+     * 捲動到指定頁面的頂端
+     */
+    private void scrollToPage(int pageIndex) {
+        if (!ensureContinuousLayout()) return;
+
+        // 指定的頁面即為目前頁面，不依捲動位置重新判斷
+        double scrollRange = pageOffsets[pageOffsets.length - 1] - layoutViewportHeight;
+        trackingSuspended = true;
+        try {
+            scrollPane.setVvalue(scrollRange > 0 ? Math.min(1.0, pageOffsets[pageIndex] / scrollRange) : 0);
+            layoutContinuousPages();
+        } finally {
+            trackingSuspended = false;
+        }
+    }
+
+    /**
+     * 依捲動位置擺放可見頁面：離開畫面的頁面格收回，新進入的頁面取用空閒的頁面格，
+     * 並要求背景解碼可見頁面與前後預先解碼範圍內的頁面
+     */
+    private void layoutContinuousPages() {
+        if (!continuousMode || !hasImages()) return;
+
+        Bounds viewport = scrollPane.getViewportBounds();
+        boolean relayout = layoutDirty || pageOffsets == null || images.size() != pageOffsets.length - 1
+                || viewport.getWidth() != layoutViewportWidth || viewport.getHeight() != layoutViewportHeight;
+        int anchorPage = currentIndex;
+        double anchorFraction = 0;
+        if (relayout) {
+            // 版面改變時以目前頁面為錨點，重新計算後捲回同一位置
+            if (pageOffsets != null && anchorPage < pageOffsets.length - 1) {
+                double pageHeight = pageOffsets[anchorPage + 1] - pageOffsets[anchorPage];
+                anchorFraction = pageHeight > 0 ? (visibleTop() - pageOffsets[anchorPage]) / pageHeight : 0;
+                anchorFraction = Math.max(0, Math.min(1, anchorFraction));
+            }
+            releaseCells();
+        }
+        if (!ensureContinuousLayout()) return;
+        if (relayout) {
+            anchorPage = Math.min(anchorPage, images.size() - 1);
+            double target = pageOffsets[anchorPage] + anchorFraction * (pageOffsets[anchorPage + 1] - pageOffsets[anchorPage]);
+            double scrollRange = pageOffsets[pageOffsets.length - 1] - layoutViewportHeight;
+            trackingSuspended = true;
+            try {
+                scrollPane.setVvalue(scrollRange > 0 ? Math.min(1.0, target / scrollRange) : 0);
+            } finally {
+                trackingSuspended = false;
+            }
+        }
+
+        double top = visibleTop();
+        double bottom = top + layoutViewportHeight;
+        int first = pageAt(top);
+        int last = pageAt(bottom);
+        double contentWidth = continuousContent.getPrefWidth();
+
+        // 收回已離開畫面的頁面格
+        Iterator<Map.Entry<Integer, PageCell>> iterator = boundCells.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, PageCell> entry = iterator.next();
+            int page = entry.getKey();
+            if (page < first || page > last) {
+                entry.getValue().unbind();
+                cellPool.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        for (int page = first; page <= last; page++) {
+            PageCell cell = boundCells.get(page);
+            if (cell == null) {
+                cell = cellPool.isEmpty() ? createPageCell() : cellPool.remove(cellPool.size() - 1);
+                cell.bind(decodedPages.get(page));
+                boundCells.put(page, cell);
+            }
+            double width = displayWidths[page];
+            double height = pageOffsets[page + 1] - pageOffsets[page] - CONTINUOUS_PAGE_GAP;
+            cell.place(Math.max(0, (contentWidth - width) / 2), pageOffsets[page], width, height);
+        }
+
+        // 可見頁面優先解碼，接著是下方與上方的預先解碼範圍
+        wantedFirst = Math.max(0, first - PREFETCH_PAGES);
+        wantedLast = Math.min(images.size() - 1, last + PREFETCH_PAGES);
+        for (int page = first; page <= last; page++) {
+            requestDecode(page);
+        }
+        for (int i = 1; i <= PREFETCH_PAGES; i++) {
+            if (last + i <= wantedLast) requestDecode(last + i);
+            if (first - i >= wantedFirst) requestDecode(first - i);
+        }
+        decodedPages.keySet().removeIf(page -> page < wantedFirst || page > wantedLast);
+
+        if (!trackingSuspended && !relayout) {
+            // 畫面上方三分之一處的頁面視為目前頁面
+            int page = pageAt(top + layoutViewportHeight / 3);
+            if (page != currentIndex) {
+                currentIndex = page;
+                pageLabel.setText("Page: " + (currentIndex + 1) + " / " + images.size());
+                if (pageChangeListener != null) {
+                    pageChangeListener.accept(currentIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 需要時重新計算每頁的顯示尺寸與位置
+     *
+     * @return 是否有可用的版面（視窗尚未配置大小時為false）
+     */
+    private boolean ensureContinuousLayout() {
+        if (!hasImages()) return false;
+        Bounds viewport = scrollPane.getViewportBounds();
+        if (viewport.getWidth() <= 0 || viewport.getHeight() <= 0) return false;
+
+        int count = images.size();
+        if (pageWidths == null || pageWidths.length != count) {
+            loadPageSizes();
+            layoutDirty = true;
+        }
+        if (!layoutDirty && viewport.getWidth() == layoutViewportWidth && viewport.getHeight() == layoutViewportHeight) {
+            return true;
+        }
+
+        layoutViewportWidth = viewport.getWidth();
+        layoutViewportHeight = viewport.getHeight();
+        displayWidths = new double[count];
+        pageOffsets = new double[count + 1];
+        double maxWidth = 0;
+        for (int i = 0; i < count; i++) {
+            double aspect = pageHeights[i] / pageWidths[i];
+            double width;
+            switch (fitMode) {
+                case FIT_HEIGHT:
+                    width = layoutViewportHeight / aspect;
+                    break;
+                case FIT_PAGE:
+                    width = Math.min(layoutViewportWidth, layoutViewportHeight / aspect);
+                    break;
+                case ORIGINAL_SIZE:
+                    width = pageWidths[i];
+                    break;
+                case FIT_WIDTH:
+                default:
+                    width = layoutViewportWidth;
+                    break;
+            }
+            width = Math.max(1, width * zoomLevel);
+            displayWidths[i] = width;
+            pageOffsets[i + 1] = pageOffsets[i] + width * aspect + CONTINUOUS_PAGE_GAP;
+            maxWidth = Math.max(maxWidth, width);
+        }
+
+        double contentWidth = Math.max(layoutViewportWidth, maxWidth);
+        double contentHeight = pageOffsets[count];
+        continuousContent.setMinSize(contentWidth, contentHeight);
+        continuousContent.setPrefSize(contentWidth, contentHeight);
+        continuousContent.setMaxSize(contentWidth, contentHeight);
+        layoutDirty = false;
+        return true;
+    }
+
+    /**
+     * 讀取每頁的原始尺寸。列表提供頁面尺寸時直接使用；已全部解碼的列表讀取圖片尺寸；
+     * 其他列表先以已知頁面的長寬比估計，頁面解碼後再更正
+     */
+    private void loadPageSizes() {
+        int count = images.size();
+        pageWidths = new double[count];
+        pageHeights = new double[count];
+
+        if (images instanceof PageDimensions) {
+            PageDimensions dimensions = (PageDimensions) images;
+            for (int i = 0; i < count; i++) {
+                pageWidths[i] = Math.max(1, dimensions.getPageWidth(i));
+                pageHeights[i] = Math.max(1, dimensions.getPageHeight(i));
+            }
+            return;
+        }
+
+        if (images instanceof ArrayList) {
+            for (int i = 0; i < count; i++) {
+                Image image = images.get(i);
+                pageWidths[i] = image.getWidth() > 0 ? image.getWidth() : 1;
+                pageHeights[i] = image.getWidth() > 0 ? image.getHeight() : DEFAULT_PAGE_ASPECT;
+            }
+            return;
+        }
+
+        double width = 1;
+        double height = DEFAULT_PAGE_ASPECT;
+        Image known = decodedPages.get(currentIndex);
+        if (known != null && known.getWidth() > 0) {
+            width = known.getWidth();
+            height = known.getHeight();
+        }
+        for (int i = 0; i < count; i++) {
+            pageWidths[i] = width;
+            pageHeights[i] = height;
+        }
+    }
+
+    /**
+     * 要求背景解碼頁面，已解碼或已在佇列中的頁面不重複要求
+     */
+    private void requestDecode(int page) {
+        if (decodedPages.containsKey(page) || !pendingDecodes.add(page)) return;
+
+        List<Image> source = images;
+        getDecodeExecutor().execute(() -> {
+            Image image = null;
+            boolean skipped = source != images || page < wantedFirst || page > wantedLast;
+            if (!skipped) {
+                try {
+                    image = source.get(page);
+                } catch (RuntimeException e) {
+                    System.err.println("解碼第 " + (page + 1) + " 頁時發生錯誤: " + e.getMessage());
+                }
+            }
+            Image decoded = image;
+            Platform.runLater(() -> onPageDecoded(source, page, decoded, skipped));
+        });
+    }
+
+    private ExecutorService getDecodeExecutor() {
+        if (decodeExecutor == null) {
+            decodeExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "image-page-decoder");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        }
+        return decodeExecutor;
+    }
+
+    /**
+     * 捲動、縮放或換頁時移除已過期的清晰圖層，停止變動後再重新解碼
+     */
+    private void onViewChanged() {
+        detailGeneration++;
+        if (detailView.getImage() != null) {
+            detailView.setImage(null);
+        }
+        if (!continuousMode && images instanceof ImagePageList) {
+            detailDelay.playFromStart();
+        }
+    }
+
+    /**
+     * 顯示的解析度超過頁面解碼結果時，在背景解碼畫面中可見的區域
+     */
+    private void requestDetail() {
+        if (continuousMode || !(images instanceof ImagePageList) || imageView.getRotate() % 360 != 0
+                || scrollPane.getScene() == null || scrollPane.getScene().getWindow() == null) {
+            return;
+        }
+        ImagePageList.PageSource pageSource = ((ImagePageList) images).getSource(currentIndex);
+        Image overview = imageView.getImage();
+        if (!(pageSource instanceof ImagePageList.RegionSource) || overview == null || overview.getWidth() <= 0) {
+            return;
+        }
+
+        // 可見範圍換算為頁面顯示座標
+        Bounds page = imageView.getLayoutBounds();
+        Bounds viewport = scrollPane.getViewportBounds();
+        Bounds visible = imageView.parentToLocal(new BoundingBox(
+                -viewport.getMinX(), -viewport.getMinY(), viewport.getWidth(), viewport.getHeight()));
+        double left = Math.max(page.getMinX(), visible.getMinX());
+        double top = Math.max(page.getMinY(), visible.getMinY());
+        double right = Math.min(page.getMaxX(), visible.getMaxX());
+        double bottom = Math.min(page.getMaxY(), visible.getMaxY());
+        if (right - left < 1 || bottom - top < 1 || page.getWidth() <= 0) {
+            return;
+        }
+
+        // 概覽的像素已足夠顯示時不需要
+        double outputScale = scrollPane.getScene().getWindow().getOutputScaleX();
+        double displayScale = page.getWidth() * outputScale / overview.getWidth();
+        if (displayScale <= 1.1) {
+            return;
+        }
+
+        ImagePageList.RegionSource source = (ImagePageList.RegionSource) pageSource;
+        int generation = detailGeneration;
+        int pixelWidth = (int) Math.ceil((right - left) * outputScale);
+        int pixelHeight = (int) Math.ceil((bottom - top) * outputScale);
+        getDecodeExecutor().execute(() -> {
+            if (generation != detailGeneration || source.getSourceWidth() <= 0) return;
+
+            double toSource = source.getSourceWidth() / page.getWidth();
+            int x = (int) Math.floor(left * toSource);
+            int y = (int) Math.floor(top * toSource);
+            int width = (int) Math.ceil((right - left) * toSource);
+            int height = (int) Math.ceil((bottom - top) * toSource);
+            try {
+                Image detail = source.decodeRegion(x, y, width, height, pixelWidth, pixelHeight);
+                Platform.runLater(() -> showDetail(generation, detail, x / toSource, y / toSource,
+                        width / toSource, height / toSource));
+            } catch (Exception e) {
+                System.err.println("解碼可見區域時發生錯誤: " + e.getMessage());
+            }
+        });
+    }
+
+    private void showDetail(int generation, Image detail, double x, double y, double width, double height) {
+        if (generation != detailGeneration) return;
+
+        Point2D origin = imageView.localToParent(x, y);
+        detailView.setImage(detail);
+        detailView.setFitWidth(width);
+        detailView.setFitHeight(height);
+        detailView.relocate(origin.getX(), origin.getY());
+    }
+
+    private void onPageDecoded(List<Image> source, int page, Image image, boolean skipped) {
+        if (source != images) return;
+        pendingDecodes.remove(page);
+        if (page < wantedFirst || page > wantedLast) return;
+        if (image == null) {
+            if (skipped) {
+                // 略過後又回到需要的範圍內，重新要求解碼
+                requestDecode(page);
+            } else if (!continuousMode && page == currentIndex) {
+                loadingLabel.setText("第 " + (page + 1) + " 頁載入失敗");
+            }
+            return;
+        }
+
+        decodedPages.put(page, image);
+        if (!continuousMode) {
+            if (page == currentIndex) {
+                displayPage(image);
+            }
+            return;
+        }
+
+        // 估計的頁面尺寸與實際不同時更正，並重新計算版面
+        if (pageWidths != null && page < pageWidths.length && image.getWidth() > 0
+                && Math.abs(image.getHeight() / image.getWidth() - pageHeights[page] / pageWidths[page]) > 0.001) {
+            pageWidths[page] = image.getWidth();
+            pageHeights[page] = image.getHeight();
+            layoutDirty = true;
+            layoutContinuousPages();
+            return;
+        }
+
+        PageCell cell = boundCells.get(page);
+        if (cell != null) {
+            cell.setImage(image);
+        }
+    }
+
+    /**
+     * 清除連續捲動模式的頁面格與解碼結果，下次顯示時重新讀取頁面尺寸
+     */
+    private void resetContinuousPages() {
+        releaseCells();
+        decodedPages.clear();
+        pendingDecodes.clear();
+        wantedFirst = 0;
+        wantedLast = -1;
+        pageWidths = null;
+        pageHeights = null;
+        displayWidths = null;
+        pageOffsets = null;
+        layoutDirty = true;
+    }
+
+    private void releaseCells() {
+        for (PageCell cell : boundCells.values()) {
+            cell.unbind();
+            cellPool.add(cell);
+        }
+        boundCells.clear();
+    }
+
+    private double visibleTop() {
+        double contentHeight = pageOffsets != null ? pageOffsets[pageOffsets.length - 1] : 0;
+        return Math.max(0, scrollPane.getVvalue() * (contentHeight - layoutViewportHeight));
+    }
+
+    /**
+     * 以二分搜尋找出位置所在的頁面
+     */
+    private int pageAt(double y) {
+        int low = 0;
+        int high = pageOffsets.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (pageOffsets[mid] <= y) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private PageCell createPageCell() {
+        PageCell cell = new PageCell();
+        continuousContent.getChildren().add(cell);
+        return cell;
+    }
+
     private void showImage() {
         if (images == null || images.isEmpty()) {
             imageView.setImage(null);
@@ -156,10 +689,42 @@ public class ImageViewer {
             return;
         }
 
-        Image currentImage = images.get(currentIndex);
-        imageView.setImage(currentImage);
+        if (continuousMode) {
+            pageLabel.setText("Page: " + (currentIndex + 1) + " / " + images.size());
+            scrollToPage(currentIndex);
+            return;
+        }
+
         pageLabel.setText("Page: " + (currentIndex + 1) + " / " + images.size());
 
+        // 只保留目前頁與預先解碼的下一頁
+        int first = currentIndex;
+        int last = Math.min(currentIndex + 1, images.size() - 1);
+        decodedPages.keySet().removeIf(page -> page < first || page > last);
+        wantedFirst = first;
+        wantedLast = last;
+
+        // 延遲載入的頁面不在JavaFX執行緒渲染，解碼完成前顯示提示
+        Image currentImage = isLazy() ? decodedPages.get(currentIndex) : images.get(currentIndex);
+        if (currentImage != null) {
+            displayPage(currentImage);
+        } else {
+            imageView.setImage(null);
+            loadingLabel.setText("正在載入第 " + (currentIndex + 1) + " 頁...");
+            loadingLabel.setVisible(true);
+            requestDecode(currentIndex);
+        }
+
+        // 背景預先解碼下一頁
+        if (last > currentIndex) {
+            requestDecode(last);
+        }
+    }
+
+    private void displayPage(Image image) {
+        loadingLabel.setVisible(false);
+        imageView.setImage(image);
+
         // 套用目前的尺寸模式
         applySizeMode();
 
@@ -167,10 +732,25 @@ public class ImageViewer {
         imageContainer.setAlignment(Pos.CENTER);
     }
 
+    /**
+     * 頁面在存取時才渲染或解碼的清單
+     */
+    private boolean isLazy() {
+        return images instanceof PdfPageList || images instanceof ImagePageList;
+    }
+
     private void applySizeMode() {
         if (images == null || images.isEmpty()) return;
 
-        Image currentImage = images.get(currentIndex);
+        if (continuousMode) {
+            // 縮放或適配方式改變時重新計算所有頁面的位置，維持目前頁面在畫面頂端
+            layoutDirty = true;
+            layoutContinuousPages();
+            return;
+        }
+
+        Image currentImage = imageView.getImage();
+        if (currentImage == null) return;
         double imageWidth = currentImage.getWidth();
         double imageHeight = currentImage.getHeight();
 
@@ -213,6 +793,43 @@ public class ImageViewer {
         applySizeMode();
     }
 
+    /**
+     * 連續捲動模式的頁面格 - 重複使用，只在綁定期間持有頁面圖片
+     */
+    private static class PageCell extends StackPane {
+        private final ImageView view = new ImageView();
+
+        PageCell() {
+            setManaged(false);
+            view.setPreserveRatio(true);
+            view.setSmooth(true);
+            getChildren().add(view);
+            // 解碼完成前顯示的頁面底色
+            setStyle("-fx-background-color: rgba(255,255,255,0.06);");
+            setVisible(false);
+        }
+
+        void bind(Image image) {
+            view.setImage(image);
+            setVisible(true);
+        }
+
+        void unbind() {
+            view.setImage(null);
+            setVisible(false);
+        }
+
+        void setImage(Image image) {
+            view.setImage(image);
+        }
+
+        void place(double x, double y, double width, double height) {
+            view.setFitWidth(width);
+            view.setFitHeight(height);
+            resizeRelocate(x, y, width, height);
+        }
+    }
+
     // 主題設定
     public void applyTheme(String backgroundColor) {
         scrollPane.setStyle(String.format("-fx-background: %s; -fx-background-color: %s;", 
@@ -274,12 +891,15 @@ public class ImageViewer {
     }
 
     public void refreshCurrentImage() {
+        if (continuousMode) {
+            layoutDirty = true;
+            layoutContinuousPages();
+            return;
+        }
         if (hasImages() && currentIndex >= 0 && currentIndex < images.size()) {
             try {
                 // 重新設置當前圖片
-                Image currentImage = images.get(currentIndex);
-                imageView.setImage(currentImage);
-
+                showImage();
 
                 // 強制重新計算布局
                 Platform.runLater(() -> {
@@ -300,6 +920,10 @@ public class ImageViewer {
      * **新增：強制重新套用所有視覺設定**
      */
     public void forceRefreshDisplay() {
+        if (continuousMode) {
+            refreshCurrentImage();
+            return;
+        }
         if (hasImages()) {
             refreshCurrentImage();
 
@@ -1,8 +1,17 @@
 package E_Reader.viewer;
 
+import E_Reader.core.MappedTextDocument;
 import E_Reader.core.TextExtractor;
+import E_Reader.core.TextSearchIndex;
 import E_Reader.settings.SettingsManager;
+import javafx.animation.PauseTransition;
+import javafx.collections.ObservableListBase;
+import javafx.scene.Node;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
@@ -14,21 +23,52 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.TextAlignment;
 import javafx.application.Platform;
+import javafx.util.Duration;
 
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * 文字渲染器 - 負責文字內容的顯示和格式化
  */
 public class TextRenderer {
 
+    // 已格式化頁面的快取數量（頁面在顯示時才格式化）
+    private static final int FORMATTED_PAGE_CACHE_SIZE = 16;
+    // 連續模式中頁面之間的間距
+    private static final double CONTINUOUS_PAGE_GAP = 40;
+    // 尚未顯示時用來估算每頁行數的可見高度
+    private static final double DEFAULT_VIEWPORT_HEIGHT = 800;
+    // TextFlow一行的高度約為字型大小的倍數（不含行距）
+    private static final double LINE_HEIGHT_FACTOR = 1.35;
+    // 字型、行距或視窗大小改變後等待的時間，連續的調整只重新分頁一次
+    private static final Duration PAGE_LAYOUT_DELAY = Duration.millis(300);
+
     private StackPane mainContainer;
     private ScrollPane scrollPane;
     private VBox pageContainer;
+    // 連續模式：只為可見頁面建立節點，儲存格重複使用
+    private ListView<Integer> continuousView;
+    private final PageIndexList continuousItems = new PageIndexList();
+    // 連續模式中已量測的頁面高度（NaN表示尚未量測），寬度或字型改變時清除
+    private double[] pageHeights = new double[0];
+    private double pageHeightsWidth = -1;
     private List<TextExtractor.PageText> originalPages;
-    private List<TextPage> formattedPages;
+    private final Map<Integer, TextPage> formattedPages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TextPage> eldest) {
+            return size() > FORMATTED_PAGE_CACHE_SIZE;
+        }
+    };
     private int currentPageIndex = 0;
+    // 分頁設定可能改變時延遲通知（TXT與DOCX依新設定重新分頁）
+    private final PauseTransition pageLayoutDelay = new PauseTransition(PAGE_LAYOUT_DELAY);
+    private Consumer<MappedTextDocument.PageSettings> pageLayoutListener;
 
     // 樣式設定
     private Color backgroundColor = Color.web("#1e1e1e");
@@ -47,6 +87,9 @@ public class TextRenderer {
 
     // 搜尋相關
     private String currentSearchTerm = "";
+    private TextSearchIndex searchIndex;
+    private TextSearchIndex.SearchResult searchResult;
+    private int currentMatch = -1;
 
     // 版面設定
     private DisplayMode displayMode = DisplayMode.PAGE_BY_PAGE;
@@ -105,6 +148,37 @@ public class TextRenderer {
         applyTheme();
     }
 
+    /**
+     * 建立連續模式的虛擬化頁面清單（第一次使用時建立）
+     */
+    private ListView<Integer> getContinuousView() {
+        if (continuousView != null) {
+            return continuousView;
+        }
+
+        continuousView = new ListView<>(continuousItems);
+        continuousView.setFocusTraversable(false);
+        continuousView.setCellFactory(list -> new ContinuousPageCell());
+        continuousView.skinProperty().addListener((obs, oldSkin, newSkin) -> {
+            VirtualFlow<?> flow = (VirtualFlow<?>) continuousView.lookup(".virtual-flow");
+            if (flow != null) {
+                flow.positionProperty().addListener((o, oldPosition, newPosition) -> {
+                    if (flow.getFirstVisibleCell() != null && flow.getFirstVisibleCell().getIndex() >= 0) {
+                        currentPageIndex = flow.getFirstVisibleCell().getIndex();
+                    }
+                });
+            }
+        });
+        applyContinuousViewStyle();
+        return continuousView;
+    }
+
+    private void showView(Node view) {
+        if (mainContainer.getChildren().size() != 1 || mainContainer.getChildren().get(0) != view) {
+            mainContainer.getChildren().setAll(view);
+        }
+    }
+
     private void setupResponsiveLayout() {
         mainContainer.widthProperty().addListener((obs, oldWidth, newWidth) -> {
             if (newWidth.doubleValue() > 0) {
@@ -132,9 +206,11 @@ public class TextRenderer {
         adjustLayoutSettings();
 
         if (originalPages != null && !originalPages.isEmpty()) {
-            formatPages();
+            formattedPages.clear();
+            clearPageHeights();
             renderCurrentPage();
         }
+        pageLayoutChanged();
     }
 
     private void adjustLayoutSettings() {
@@ -188,8 +264,14 @@ public class TextRenderer {
 
     public void setPages(List<TextExtractor.PageText> pages) {
         this.originalPages = pages;
+        formattedPages.clear();
+        clearPageHeights();
+        resetSearch();
+        if (pages != null) {
+            searchIndex = new TextSearchIndex(pages);
+            searchIndex.start();
+        }
         if (pages != null && !pages.isEmpty()) {
-            formatPages();
             currentPageIndex = 0;
             renderCurrentPage();
         } else {
@@ -199,9 +281,10 @@ public class TextRenderer {
     
     public void clearPages() {
         this.originalPages = null;
-        this.formattedPages = null;
+        this.formattedPages.clear();
+        clearPageHeights();
         this.currentPageIndex = 0;
-        this.currentSearchTerm = "";
+        resetSearch();
         
         // 清空顯示內容
         if (pageContainer != null) {
@@ -212,41 +295,73 @@ public class TextRenderer {
         showNoContentMessage();
     }
 
-    private void formatPages() {
-        if (originalPages == null || originalPages.isEmpty()) {
-            return;
+    /**
+     * 頁面列表增加了頁面（文字檔仍在掃描），讓搜尋索引繼續建立
+     */
+    public void notifyPagesAdded() {
+        if (searchIndex != null) {
+            searchIndex.pagesAdded();
         }
+    }
 
-        formattedPages = new ArrayList<>();
+    private void resetSearch() {
+        if (searchIndex != null) {
+            searchIndex.close();
+            searchIndex = null;
+        }
+        searchResult = null;
+        currentMatch = -1;
+        currentSearchTerm = "";
+    }
 
-        for (TextExtractor.PageText originalPage : originalPages) {
-            List<String> paragraphs = originalPage.getFormattedParagraphs();
+    private int getPageCount() {
+        return originalPages != null ? originalPages.size() : 0;
+    }
 
-            TextPage currentTextPage = new TextPage();
-            currentTextPage.pageNumber = originalPage.getPageNumber();
-            currentTextPage.originalPageText = originalPage;
-            currentTextPage.paragraphs = new ArrayList<>();
+    /**
+     * 取得格式化後的頁面，只在需要顯示時格式化並快取最近使用的頁面
+     */
+    private TextPage getFormattedPage(int pageIndex) {
+        TextPage cached = formattedPages.get(pageIndex);
+        if (cached != null) {
+            return cached;
+        }
 
-            if (paragraphs.isEmpty()) {
-                currentTextPage.isEmpty = true;
-            } else {
-                for (String paragraph : paragraphs) {
-                    if (!paragraph.trim().isEmpty()) {
-                        currentTextPage.paragraphs.add(paragraph.trim());
-                    }
+        TextExtractor.PageText originalPage = originalPages.get(pageIndex);
+        List<String> paragraphs = originalPage.getFormattedParagraphs();
+
+        TextPage currentTextPage = new TextPage();
+        currentTextPage.pageIndex = pageIndex;
+        currentTextPage.pageNumber = originalPage.getPageNumber();
+        currentTextPage.originalPageText = originalPage;
+        currentTextPage.paragraphs = new ArrayList<>();
+
+        if (paragraphs.isEmpty()) {
+            currentTextPage.isEmpty = true;
+        } else {
+            for (String paragraph : paragraphs) {
+                if (!paragraph.trim().isEmpty()) {
+                    currentTextPage.paragraphs.add(paragraph.trim());
                 }
             }
-
-            formattedPages.add(currentTextPage);
         }
+
+        formattedPages.put(pageIndex, currentTextPage);
+        return currentTextPage;
     }
 
     private void renderCurrentPage() {
-        if (formattedPages == null || formattedPages.isEmpty()) {
+        if (getPageCount() == 0) {
             showNoContentMessage();
             return;
         }
 
+        if (displayMode == DisplayMode.CONTINUOUS) {
+            renderContinuousPages();
+            return;
+        }
+
+        showView(scrollPane);
         pageContainer.getChildren().clear();
 
         switch (displayMode) {
@@ -260,18 +375,18 @@ public class TextRenderer {
                     renderSinglePage();
                 }
                 break;
-            case CONTINUOUS:
-                renderContinuousPages();
+            default:
+                renderSinglePage();
                 break;
         }
     }
 
     private void renderSinglePage() {
-        if (currentPageIndex < 0 || currentPageIndex >= formattedPages.size()) {
+        if (currentPageIndex < 0 || currentPageIndex >= getPageCount()) {
             return;
         }
 
-        TextPage page = formattedPages.get(currentPageIndex);
+        TextPage page = getFormattedPage(currentPageIndex);
         VBox pageView = createPageView(page);
 
         pageContainer.getChildren().clear();
@@ -290,15 +405,15 @@ public class TextRenderer {
         twoPageContainer.setPadding(new Insets(pageMarginVertical, pageMarginHorizontal, 
                 pageMarginVertical, pageMarginHorizontal));
 
-        if (currentPageIndex < formattedPages.size()) {
-            TextPage leftPage = formattedPages.get(currentPageIndex);
+        if (currentPageIndex < getPageCount()) {
+            TextPage leftPage = getFormattedPage(currentPageIndex);
             VBox leftPageView = createPageView(leftPage);
             leftPageView.setPrefWidth(mainContainer.getWidth() / 2 - 100);
             twoPageContainer.getChildren().add(leftPageView);
         }
 
-        if (currentPageIndex + 1 < formattedPages.size()) {
-            TextPage rightPage = formattedPages.get(currentPageIndex + 1);
+        if (currentPageIndex + 1 < getPageCount()) {
+            TextPage rightPage = getFormattedPage(currentPageIndex + 1);
             VBox rightPageView = createPageView(rightPage);
             rightPageView.setPrefWidth(mainContainer.getWidth() / 2 - 100);
             twoPageContainer.getChildren().add(rightPageView);
@@ -309,22 +424,156 @@ public class TextRenderer {
         Platform.runLater(() -> scrollPane.setVvalue(0));
     }
 
+    /**
+     * 連續模式 - 以ListView虛擬化，只有可見頁面會建立節點；
+     * 主題與搜尋變更只重建可見的儲存格，成本與文件長度無關
+     */
     private void renderContinuousPages() {
-        pageContainer.getChildren().clear();
+        ListView<Integer> view = getContinuousView();
+        showView(view);
+
+        continuousItems.setSize(getPageCount());
+        view.refresh();
+        view.scrollTo(Math.max(0, Math.min(currentPageIndex, getPageCount() - 1)));
+    }
+
+    /**
+     * 建立連續模式中一頁的內容，子類別可以改用自己的頁面排版
+     */
+    protected Node createContinuousPageView(int pageIndex) {
+        return createPageView(getFormattedPage(pageIndex));
+    }
+
+    /**
+     * 頁面排版方式改變後重新量測頁面高度，並重建連續模式中的可見頁面
+     */
+    protected void invalidateContinuousPages() {
+        clearPageHeights();
+        if (displayMode == DisplayMode.CONTINUOUS && getPageCount() > 0) {
+            renderContinuousPages();
+        }
+    }
 
-        for (TextPage page : formattedPages) {
-            VBox pageView = createPageView(page);
+    private void applyContinuousViewStyle() {
+        if (continuousView != null) {
+            String background = toHexString(backgroundColor);
+            continuousView.setStyle(String.format(
+                    "-fx-background-color: %s; -fx-control-inner-background: %s; -fx-background-insets: 0; -fx-padding: 0;",
+                    background, background));
+        }
+    }
+
+    private void clearPageHeights() {
+        Arrays.fill(pageHeights, Double.NaN);
+    }
+
+    private double getCachedPageHeight(int pageIndex, double containerWidth) {
+        if (containerWidth != pageHeightsWidth) {
+            clearPageHeights();
+            pageHeightsWidth = containerWidth;
+        }
+        return pageIndex < pageHeights.length ? pageHeights[pageIndex] : Double.NaN;
+    }
+
+    private void cachePageHeight(int pageIndex, double height) {
+        if (pageIndex >= pageHeights.length) {
+            int oldLength = pageHeights.length;
+            pageHeights = Arrays.copyOf(pageHeights, Math.max(pageIndex + 1, Math.max(64, oldLength * 2)));
+            Arrays.fill(pageHeights, oldLength, pageHeights.length, Double.NaN);
+        }
+        pageHeights[pageIndex] = height;
+    }
+
+    /**
+     * 連續模式的頁面儲存格，第一次排版後記錄頁面高度，
+     * 之後捲動時直接使用記錄的高度，不必重新量測文字
+     */
+    private class ContinuousPageCell extends ListCell<Integer> {
+        ContinuousPageCell() {
+            setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+            setAlignment(Pos.TOP_CENTER);
+            setStyle("-fx-background-color: transparent; -fx-padding: 0;");
+        }
+
+        @Override
+        protected void updateItem(Integer pageIndex, boolean empty) {
+            super.updateItem(pageIndex, empty);
+            if (empty || pageIndex == null || pageIndex >= getPageCount()) {
+                setGraphic(null);
+                return;
+            }
+
+            Node pageView = createContinuousPageView(pageIndex);
             pageView.setStyle(pageView.getStyle() + "; -fx-border-color: #444444; -fx-border-width: 0 0 2 0; -fx-border-style: dashed;");
-            pageContainer.getChildren().add(pageView);
+            VBox.setMargin(pageView, Insets.EMPTY);
 
-            if (formattedPages.indexOf(page) < formattedPages.size() - 1) {
-                Label spacer = new Label();
-                spacer.setPrefHeight(40);
-                pageContainer.getChildren().add(spacer);
+            VBox wrapper = new VBox(pageView);
+            wrapper.setAlignment(Pos.TOP_CENTER);
+            if (pageIndex < getPageCount() - 1) {
+                wrapper.setPadding(new Insets(0, 0, CONTINUOUS_PAGE_GAP, 0));
             }
+            setGraphic(wrapper);
         }
 
-        pageContainer.setAlignment(Pos.CENTER);
+        @Override
+        protected double computePrefHeight(double width) {
+            int pageIndex = getIndex();
+            if (isEmpty() || pageIndex < 0) {
+                return super.computePrefHeight(width);
+            }
+
+            // 頁面內容的換行寬度取決於容器寬度
+            double cached = getCachedPageHeight(pageIndex, mainContainer.getWidth());
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
+            double height = super.computePrefHeight(width);
+            cachePageHeight(pageIndex, height);
+            return height;
+        }
+    }
+
+    /**
+     * 只記錄大小的頁碼清單，第i項就是頁碼i，不必為每頁建立物件
+     */
+    private static class PageIndexList extends ObservableListBase<Integer> {
+        private int size = 0;
+
+        void setSize(int newSize) {
+            if (newSize == size) {
+                return;
+            }
+            int oldSize = size;
+            beginChange();
+            if (newSize > oldSize) {
+                size = newSize;
+                nextAdd(oldSize, newSize);
+            } else {
+                int removedFrom = newSize;
+                size = newSize;
+                nextRemove(newSize, new AbstractList<Integer>() {
+                    @Override
+                    public Integer get(int index) { return removedFrom + index; }
+
+                    @Override
+                    public int size() { return oldSize - removedFrom; }
+                });
+            }
+            endChange();
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("頁面索引超出範圍: " + index);
+            }
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
     private VBox createPageView(TextPage page) {
@@ -350,6 +599,8 @@ public class TextRenderer {
         }
 
         double textAreaWidth = calculateOptimalTextWidth();
+        // 只有索引中有命中的頁面才逐段比對標示
+        boolean highlight = searchResult != null && searchResult.hasHitsOnPage(page.pageIndex);
 
         for (String line : page.paragraphs) {
             if (line.isEmpty()) {
@@ -365,7 +616,7 @@ public class TextRenderer {
                 chapterContainer.getChildren().add(chapterFlow);
                 pageView.getChildren().add(chapterContainer);
             } else {
-                TextFlow lineFlow = createLineTextFlow(line);
+                TextFlow lineFlow = createLineTextFlow(line, highlight);
                 lineFlow.setTextAlignment(TextAlignment.LEFT);
 
                 VBox lineContainer = new VBox();
@@ -380,6 +631,25 @@ public class TextRenderer {
         return pageView;
     }
 
+    /**
+     * 依目前的字型、文字寬度與可見高度產生TXT／DOCX的分頁設定，
+     * 讓背景分頁的換行位置與段落TextFlow的排版一致
+     */
+    public MappedTextDocument.PageSettings createPageSettings() {
+        // 段落TextFlow左右各有pageMarginHorizontal的內距
+        double lineWidth = calculateOptimalTextWidth() - pageMarginHorizontal * 2;
+
+        double viewportHeight = scrollPane.getViewportBounds().getHeight();
+        if (viewportHeight <= 0) {
+            viewportHeight = DEFAULT_VIEWPORT_HEIGHT;
+        }
+        double textHeight = viewportHeight - pageMarginVertical * 2 - baseFontSize * 1.2 - paragraphSpacing;
+        int linesPerPage = (int) (textHeight / (baseFontSize * LINE_HEIGHT_FACTOR + lineSpacing));
+
+        return MappedTextDocument.PageSettings.forFont(textFont.getFamily(), (float) baseFontSize,
+                (float) lineWidth, linesPerPage);
+    }
+
     private double calculateOptimalTextWidth() {
         double containerWidth = mainContainer.getWidth();
 
@@ -430,7 +700,7 @@ public class TextRenderer {
         return header;
     }
 
-    private TextFlow createLineTextFlow(String line) {
+    private TextFlow createLineTextFlow(String line, boolean highlight) {
         TextFlow textFlow = new TextFlow();
         textFlow.setLineSpacing(lineSpacing);
         textFlow.setPadding(new Insets(lineSpacing * 2, pageMarginHorizontal, 0, pageMarginHorizontal));
@@ -438,7 +708,7 @@ public class TextRenderer {
         textFlow.setMaxWidth(Region.USE_COMPUTED_SIZE);
         textFlow.setTextAlignment(TextAlignment.LEFT);
 
-        if (currentSearchTerm.isEmpty()) {
+        if (!highlight || currentSearchTerm.isEmpty()) {
             Text text = new Text(line);
             text.setFill(textColor);
             text.setFont(textFont);
@@ -475,6 +745,7 @@ public class TextRenderer {
     }
 
     private void showNoContentMessage() {
+        showView(scrollPane);
         pageContainer.getChildren().clear();
 
         VBox messageContainer = new VBox();
@@ -495,7 +766,7 @@ public class TextRenderer {
 
     // 導航方法
     public void goToPage(int pageIndex) {
-        if (formattedPages == null || pageIndex < 0 || pageIndex >= formattedPages.size()) {
+        if (pageIndex < 0 || pageIndex >= getPageCount()) {
             return;
         }
         currentPageIndex = pageIndex;
@@ -504,12 +775,12 @@ public class TextRenderer {
 
     public void nextPage() {
         if (displayMode == DisplayMode.TWO_PAGE && orientation == DeviceOrientation.LANDSCAPE) {
-            if (currentPageIndex + 2 < formattedPages.size()) {
+            if (currentPageIndex + 2 < getPageCount()) {
                 currentPageIndex += 2;
                 renderCurrentPage();
             }
         } else {
-            if (currentPageIndex + 1 < formattedPages.size()) {
+            if (currentPageIndex + 1 < getPageCount()) {
                 currentPageIndex++;
                 renderCurrentPage();
             }
@@ -538,6 +809,7 @@ public class TextRenderer {
 
         scrollPane.setStyle(String.format("-fx-background: %s; -fx-background-color: %s;",
                 toHexString(backgroundColor), toHexString(backgroundColor)));
+        applyContinuousViewStyle();
     }
 
     public void setThemeColors(SettingsManager.ThemeMode theme) {
@@ -581,41 +853,31 @@ public class TextRenderer {
 
         applyTheme();
 
-        if (formattedPages != null && !formattedPages.isEmpty()) {
+        if (getPageCount() > 0) {
             renderCurrentPage();
         }
     }
 
     // 搜尋功能
-    public void searchText(String searchTerm) {
-        if (originalPages == null || searchTerm == null) {
-            return;
-        }
-
-        currentSearchTerm = searchTerm.trim();
-        renderCurrentPage();
-
-        if (!currentSearchTerm.isEmpty()) {
-            scrollToFirstMatch();
-        }
+    /**
+     * 套用在其他地方完成的搜尋結果（例如搜尋列在背景執行的查詢），只更新標示狀態，不切換頁面
+     */
+    public void setSearchResult(TextSearchIndex.SearchResult result, int hit) {
+        searchResult = result;
+        currentSearchTerm = result != null ? result.getQuery() : "";
+        currentMatch = result != null && hit < result.getCount() ? hit : -1;
     }
 
-    private void scrollToFirstMatch() {
-        if (currentSearchTerm.isEmpty() || formattedPages == null) {
-            return;
-        }
+    public int getMatchCount() {
+        return searchResult != null ? searchResult.getCount() : 0;
+    }
 
-        String lowerSearchTerm = currentSearchTerm.toLowerCase();
+    public int getCurrentMatchIndex() {
+        return currentMatch;
+    }
 
-        for (int i = 0; i < formattedPages.size(); i++) {
-            TextPage page = formattedPages.get(i);
-            for (String paragraph : page.paragraphs) {
-                if (paragraph.toLowerCase().contains(lowerSearchTerm)) {
-                    goToPage(i);
-                    return;
-                }
-            }
-        }
+    public TextSearchIndex getSearchIndex() {
+        return searchIndex;
     }
 
     private void addHighlightedText(TextFlow textFlow, String paragraph, String searchTerm) {
@@ -665,10 +927,12 @@ public class TextRenderer {
 
         baseFontSize = size;
         updateFonts();
+        clearPageHeights();
 
-        if (formattedPages != null && !formattedPages.isEmpty()) {
+        if (getPageCount() > 0) {
             renderCurrentPage();
         }
+        pageLayoutChanged();
     }
 
     public void setLineSpacing(double spacing) {
@@ -676,9 +940,31 @@ public class TextRenderer {
         if (spacing > 5.0) spacing = 5.0;
 
         this.lineSpacing = spacing;
-        if (formattedPages != null && !formattedPages.isEmpty()) {
+        clearPageHeights();
+        if (getPageCount() > 0) {
             renderCurrentPage();
         }
+        pageLayoutChanged();
+    }
+
+    /**
+     * 設定分頁設定改變時的監聽器，於UI執行緒以新的分頁設定呼叫。
+     * 字型大小、行距或可見範圍改變後等待PAGE_LAYOUT_DELAY，連續的改變只通知一次，
+     * 監聽器需自行比較設定是否與目前的分頁相同
+     */
+    public void setPageLayoutListener(Consumer<MappedTextDocument.PageSettings> pageLayoutListener) {
+        this.pageLayoutListener = pageLayoutListener;
+        pageLayoutDelay.setOnFinished(e -> {
+            if (this.pageLayoutListener != null) {
+                this.pageLayoutListener.accept(createPageSettings());
+            }
+        });
+    }
+
+    private void pageLayoutChanged() {
+        if (pageLayoutListener != null) {
+            pageLayoutDelay.playFromStart();
+        }
     }
 
     // Getter 方法
@@ -695,7 +981,7 @@ public class TextRenderer {
     }
 
     public int getTotalPages() {
-        return formattedPages != null ? formattedPages.size() : 0;
+        return getPageCount();
     }
 
     public double getFontSize() {
@@ -744,6 +1030,7 @@ public class TextRenderer {
     
     // 內部類別
     private static class TextPage {
+        int pageIndex;
         int pageNumber;
         TextExtractor.PageText originalPageText;
         List<String> paragraphs;